@@ -0,0 +1,12 @@
+# Lean image: the lean profile, on JDK 11 with an AppCDS archive of the classes loaded at startup (see the README).
+# Build the jar first (mvn clean package), then: docker build -f Dockerfile.lean -t <docker_image_name> .
+FROM eclipse-temurin:11-jre
+RUN apt-get update && apt-get install -y --no-install-recommends curl unzip zip && rm -rf /var/lib/apt/lists/*
+COPY ./target/todolist-0.1.0.jar ./scripts/cds-archive.sh /tmp/
+# the archive is only valid for this JVM, so it is created in the image itself
+RUN /tmp/cds-archive.sh /tmp/todolist-0.1.0.jar /usr/src/todolist --spring.profiles.active=lean \
+    && rm /tmp/todolist-0.1.0.jar /tmp/cds-archive.sh
+WORKDIR /usr/src/todolist
+EXPOSE 8080
+CMD ["java", "-XX:SharedArchiveFile=app.jsa", "@classpath", "ch.ricardo.screening.todolist.TodoListApplication", \
+     "--spring.profiles.active=lean"]
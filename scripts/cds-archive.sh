@@ -0,0 +1,56 @@
+#!/bin/sh
+# Unpacks the application jar into <dir> and creates an AppCDS archive of the classes loaded at startup and by a few
+# requests, so that later JVMs map them from the archive instead of loading, parsing and verifying them (JDK 11+).
+#
+# Usage: scripts/cds-archive.sh <application jar> <dir> [application arguments...]
+# e.g.   scripts/cds-archive.sh target/todolist-0.1.0.jar target/lean --spring.profiles.active=lean
+#
+# Then run the application from <dir> with:
+#   java -XX:SharedArchiveFile=app.jsa -cp @classpath ch.ricardo.screening.todolist.TodoListApplication [arguments]
+#
+# Only classes loaded from jar files can be archived, not from a fat jar nor from a directory: the application
+# classes are packed into app.jar, next to the libraries. The archive is only valid for the same JVM and the same
+# class path, so it is created where the application runs (e.g. in the image).
+set -e
+
+jar=$(readlink -f "$1")
+dir=$2
+shift 2
+port=${PORT:-18080}
+main=ch.ricardo.screening.todolist.TodoListApplication
+
+rm -rf "$dir"
+mkdir -p "$dir"
+cd "$dir"
+unzip -q "$jar" 'BOOT-INF/*'
+mv BOOT-INF/lib lib
+(cd BOOT-INF/classes && zip -qr ../../app.jar .)
+rm -rf BOOT-INF
+# an explicit class path, identical between the dump and the runs
+printf -- '-cp app.jar' > classpath
+for lib in lib/*.jar; do
+    printf ':%s' "$lib" >> classpath
+done
+
+# training run: startup, then a request of each kind
+java -XX:DumpLoadedClassList=classes.lst @classpath "$main" --server.port="$port" "$@" > training.log 2>&1 &
+pid=$!
+until curl -sf -o /dev/null "http://localhost:$port/todolist/items"; do
+    kill -0 "$pid" 2>/dev/null || { cat training.log; exit 1; }
+    sleep 0.1
+done
+curl -sf -o /dev/null "http://localhost:$port/todolist/items/1"
+curl -sf -o /dev/null -X POST -H 'Content-Type: application/json' -d '{"content":"training"}' \
+    "http://localhost:$port/todolist/items"
+curl -sf -o /dev/null -X PUT -H 'Content-Type: application/json' -d '{"content":"training, updated"}' \
+    "http://localhost:$port/todolist/items/3"
+curl -sf -o /dev/null -X DELETE "http://localhost:$port/todolist/items/3"
+curl -sf -o /dev/null "http://localhost:$port/actuator/health"
+kill "$pid"
+wait "$pid" || true
+rm training.log
+
+java -Xshare:dump -XX:SharedClassListFile=classes.lst -XX:SharedArchiveFile=app.jsa @classpath > dump.log 2>&1 \
+    || { cat dump.log; exit 1; }
+rm dump.log
+echo "$(wc -l < classes.lst) classes archived in $dir/app.jsa"
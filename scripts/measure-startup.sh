@@ -0,0 +1,41 @@
+#!/bin/sh
+# Measures the startup time and resident memory of the application.
+#
+# Usage: scripts/measure-startup.sh <runs> <java command and arguments...>
+# e.g.   scripts/measure-startup.sh 5 java -jar target/todolist-0.1.0.jar
+#        scripts/measure-startup.sh 5 java -jar target/todolist-0.1.0.jar --spring.profiles.active=lean
+#
+# For each run, prints the time until the first successful request (from the launch of the JVM), the startup time
+# reported by Spring Boot, and the resident set size (RSS) once started, then after 1000 requests.
+set -e
+
+runs=$1
+shift
+port=${PORT:-18080}
+url=http://localhost:$port/todolist/items/1
+log=$(mktemp)
+
+for run in $(seq "$runs"); do
+    start=$(date +%s%N)
+    "$@" --server.port="$port" > "$log" 2>&1 &
+    pid=$!
+    until curl -sf -o /dev/null "$url"; do
+        if ! kill -0 "$pid" 2>/dev/null; then
+            cat "$log"
+            exit 1
+        fi
+        sleep 0.05
+    done
+    ready=$(( ($(date +%s%N) - start) / 1000000 ))
+    rss_started=$(awk '/VmRSS/ { print int($2 / 1024) }' /proc/$pid/status)
+    for i in $(seq 1000); do
+        printf 'url = "%s"\noutput = "/dev/null"\n' "$url"
+    done | curl -s -K -
+    rss_used=$(awk '/VmRSS/ { print int($2 / 1024) }' /proc/$pid/status)
+    started=$(sed -n 's/.*Started TodoListApplication in \([0-9.]*\) seconds.*/\1/p' "$log")
+    echo "run $run: first request after $ready ms, started in $started s, RSS $rss_started MB, after 1000 requests" \
+        "$rss_used MB"
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+done
+rm -f "$log"
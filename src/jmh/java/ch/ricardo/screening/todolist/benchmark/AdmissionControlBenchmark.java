@@ -0,0 +1,146 @@
+package ch.ricardo.screening.todolist.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+
+import ch.ricardo.screening.todolist.TodoListApplication;
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.service.TodoListService;
+import ch.ricardo.screening.todolist.wire.WireFormats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+/**
+ * Load test of the admission control: {@value #CLIENTS} clients request the whole list of {@value #SIZE} items in
+ * CBOR (an expensive request, as only JSON is cached) over HTTP, as fast as they can, which overloads the server.
+ * <p>
+ * Without admission control ({@code off}), all the requests queue up for the CPU and their latency grows with the
+ * number of clients. With it ({@code on}, rate limits disabled to only measure the concurrency limit), at most 2
+ * requests are served at once and the excess gets a quick 503. The sampled latencies include the rejected requests;
+ * the share of rejections and the p99 of the served requests, as measured by the server, are printed at the end of
+ * each trial. A rejected client waits for the {@code Retry-After} before its next request, outside of the measured
+ * time, as well-behaved clients do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@Threads(AdmissionControlBenchmark.CLIENTS)
+public class AdmissionControlBenchmark {
+
+    static final int CLIENTS = 16;
+
+    private static final int SIZE = 10_000;
+
+    @Param({"off", "on"})
+    public String admission;
+
+    private final AtomicLong served = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private ConfigurableApplicationContext context;
+
+    private String url;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(TodoListApplication.class)
+                // as arguments, which override application.properties (default properties do not)
+                .run("--server.port=0", "--logging.config=classpath:logback-benchmark.xml",
+                        "--todolist.request-log.mode=OFF", "--todolist.compression.enabled=false",
+                        "--todolist.admission.enabled=" + "on".equals(admission),
+                        "--todolist.admission.default-rate=0",
+                        "--todolist.admission.rate.retrieveAllItems=0",
+                        "--todolist.admission.max-concurrent-requests=2",
+                        "--todolist.admission.max-queue-size=4",
+                        "--todolist.admission.max-queue-time-ms=50");
+        int port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+        url = "http://localhost:" + port + "/todolist/items";
+
+        TodoListService service = context.getBean(TodoListService.class);
+        service.deleteAllItems();
+        for (int i = 1; i <= SIZE; i++) {
+            service.create(new TodoItem(String.format("item-%06d, with some text to make it about 100 bytes long "
+                    + "once encoded", i)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        Timer timer = context.getBean(MeterRegistry.class).find("http.server.requests")
+                .tag("uri", "/todolist/items").tag("status", "200").timer();
+        double p99 = 0;
+        if (timer != null) {
+            for (ValueAtPercentile percentile : timer.takeSnapshot().percentileValues()) {
+                if (percentile.percentile() == 0.99) {
+                    p99 = percentile.value(TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        long total = served.get() + rejected.get();
+        System.out.printf("%nadmission %s: %d requests, %.1f%% rejected, p99 of the served ones %.1f ms%n", admission,
+                total, total == 0 ? 0 : 100.0 * rejected.get() / total, p99);
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+
+        private long retryAfterSeconds;
+
+        @Setup(Level.Invocation)
+        public void backOff() throws InterruptedException {
+            TimeUnit.SECONDS.sleep(retryAfterSeconds);
+            retryAfterSeconds = 0;
+        }
+    }
+
+    @Benchmark
+    public int retrieveAllItems(Client client) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestProperty("Accept", WireFormats.APPLICATION_CBOR_VALUE);
+        int status = connection.getResponseCode();
+        if (status == 200) {
+            served.incrementAndGet();
+        } else {
+            rejected.incrementAndGet();
+            client.retryAfterSeconds = connection.getHeaderFieldLong(HttpHeaders.RETRY_AFTER, 0);
+        }
+        // reading the whole body lets the connection be reused
+        try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (body != null) {
+                byte[] buffer = new byte[8192];
+                while (body.read(buffer) >= 0) {
+                    // discarded
+                }
+            }
+        }
+        return status;
+    }
+}
@@ -0,0 +1,119 @@
+package ch.ricardo.screening.todolist.benchmark;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.service.ConcurrentTodoListServiceImpl;
+import ch.ricardo.screening.todolist.service.ItemQuery;
+import ch.ricardo.screening.todolist.service.TodoListAttributeIndex;
+
+/**
+ * Queries of the first page of 20 items by attributes, from the attribute index and from a scan of the list, on items
+ * with random statuses, priorities from 0 to 9 and due dates over a year (a tenth of them without due date). Also
+ * measures updates of the list, which maintain the index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class AttributeQueryBenchmark {
+
+    private static final int PAGE_SIZE = 20;
+
+    private static final LocalDate MONDAY = LocalDate.of(2030, 1, 7);
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    private final Random random = new Random(42);
+
+    private ConcurrentTodoListServiceImpl service;
+
+    private TodoListAttributeIndex index;
+
+    // open items due this week by priority: collects the week of the due date index
+    private ItemQuery dueThisWeek;
+
+    // high priority open or in progress items, most recently updated first: walks the update time index
+    private ItemQuery recentlyUpdated;
+
+    @Setup
+    public void createList() {
+        service = new ConcurrentTodoListServiceImpl();
+        index = new TodoListAttributeIndex(service);
+        for (int i = 0; i < size; i++) {
+            service.create(randomItem("item" + i));
+        }
+        dueThisWeek = new ItemQuery(EnumSet.of(TodoItem.Status.OPEN), null, null, MONDAY, MONDAY.plusDays(6),
+                ItemQuery.SortKey.PRIORITY, true);
+        recentlyUpdated = new ItemQuery(EnumSet.of(TodoItem.Status.OPEN, TodoItem.Status.IN_PROGRESS), 8, null, null,
+                null, ItemQuery.SortKey.UPDATED, true);
+    }
+
+    @Benchmark
+    public List<Long> dueThisWeekFromIndex() {
+        return index.query(dueThisWeek, 0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Long> dueThisWeekFromScan() {
+        return service.retrieveAllItems().stream()
+                .filter(item -> item.getStatus() == TodoItem.Status.OPEN && item.getDueDate() != null
+                        && !item.getDueDate().isBefore(MONDAY) && !item.getDueDate().isAfter(MONDAY.plusDays(6)))
+                .sorted(Comparator.comparingInt(TodoItem::getPriority).reversed()
+                        .thenComparingLong(TodoItem::getId))
+                .limit(PAGE_SIZE)
+                .map(TodoItem::getId)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Long> recentlyUpdatedFromIndex() {
+        return index.query(recentlyUpdated, 0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<Long> recentlyUpdatedFromScan() {
+        return service.retrieveAllItems().stream()
+                .filter(item -> item.getStatus() != TodoItem.Status.DONE && item.getPriority() >= 8)
+                .sorted(Comparator.comparing(TodoItem::getUpdated).thenComparingLong(TodoItem::getId).reversed())
+                .limit(PAGE_SIZE)
+                .map(TodoItem::getId)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Updates a random item with new attributes, which moves it in every index.
+     */
+    @Benchmark
+    public void updateItem() {
+        long id = 1 + random.nextInt(size);
+        service.updateItem(id, randomItem("updated" + id));
+    }
+
+    private TodoItem randomItem(String content) {
+        TodoItem.Status[] statuses = TodoItem.Status.values();
+        return new TodoItem(null, content, statuses[random.nextInt(statuses.length)], random.nextInt(10),
+                random.nextInt(10) == 0 ? null : MONDAY.plusDays(random.nextInt(365) - 7), null, null, 0);
+    }
+}
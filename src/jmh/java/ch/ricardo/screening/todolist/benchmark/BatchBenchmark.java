@@ -0,0 +1,90 @@
+package ch.ricardo.screening.todolist.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.service.TodoListService;
+
+/**
+ * Creates then deletes {@code batchSize} items, either one by one or with the batch methods of the service. Both
+ * benchmarks report batches per millisecond, so their scores compare directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchBenchmark {
+
+    @Param({"list", "concurrent", "concurrent-wal", "offheap"})
+    public String implementation;
+
+    @Param({"100", "1000"})
+    public int batchSize;
+
+    private final AtomicLong newContents = new AtomicLong();
+
+    private BenchmarkServices services;
+
+    private TodoListService service;
+
+    @Setup(Level.Trial)
+    public void createService() throws Exception {
+        services = new BenchmarkServices(implementation);
+        service = services.service();
+    }
+
+    @TearDown(Level.Trial)
+    public void closeService() throws Exception {
+        services.close();
+    }
+
+    @Benchmark
+    public int singleItemOperations() {
+        List<Long> ids = new ArrayList<>(batchSize);
+        for (TodoItem item : newItems()) {
+            service.createIfAbsent(item).ifPresent(createdItem -> ids.add(createdItem.getId()));
+        }
+        int deleted = 0;
+        for (Long id : ids) {
+            deleted += service.deleteItemById(id) ? 1 : 0;
+        }
+        return deleted;
+    }
+
+    @Benchmark
+    public int batchOperations() {
+        List<Long> ids = new ArrayList<>(batchSize);
+        for (Optional<TodoItem> createdItem : service.createItemsIfAbsent(newItems())) {
+            createdItem.ifPresent(item -> ids.add(item.getId()));
+        }
+        return service.deleteItemsById(ids).size();
+    }
+
+    private List<TodoItem> newItems() {
+        List<TodoItem> items = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            items.add(new TodoItem("new-" + newContents.incrementAndGet()));
+        }
+        return items;
+    }
+}
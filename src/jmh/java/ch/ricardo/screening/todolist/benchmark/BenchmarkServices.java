@@ -0,0 +1,86 @@
+package ch.ricardo.screening.todolist.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import ch.ricardo.screening.todolist.persistence.FsyncPolicy;
+import ch.ricardo.screening.todolist.persistence.TodoListJournal;
+import ch.ricardo.screening.todolist.persistence.WriteAheadLog;
+import ch.ricardo.screening.todolist.service.ConcurrentTodoListServiceImpl;
+import ch.ricardo.screening.todolist.service.OffHeapTodoListServiceImpl;
+import ch.ricardo.screening.todolist.service.TieredTodoListServiceImpl;
+import ch.ricardo.screening.todolist.service.TodoListService;
+import ch.ricardo.screening.todolist.service.TodoListServiceImpl;
+import ch.ricardo.screening.todolist.storage.ContentCache;
+import ch.ricardo.screening.todolist.storage.FileItemStore;
+import ch.ricardo.screening.todolist.storage.MappedItemStore;
+
+/**
+ * Creates the service implementations compared by the benchmarks, each with its own temporary directory.
+ */
+class BenchmarkServices implements AutoCloseable {
+
+    private final Path directory;
+
+    private final TodoListService service;
+
+    private final AutoCloseable resource;
+
+    /**
+     * @param implementation "list", "concurrent", "concurrent-wal" (write-ahead log fsync'ed on every write),
+     *                       "offheap" or "tiered"
+     */
+    BenchmarkServices(String implementation) throws IOException {
+        this(implementation, FsyncPolicy.ALWAYS);
+    }
+
+    BenchmarkServices(String implementation, FsyncPolicy fsyncPolicy) throws IOException {
+        directory = Files.createTempDirectory("todolist-benchmark");
+        switch (implementation) {
+            case "list":
+                service = new TodoListServiceImpl();
+                resource = null;
+                break;
+            case "concurrent":
+                service = new ConcurrentTodoListServiceImpl();
+                resource = null;
+                break;
+            case "concurrent-wal":
+                TodoListJournal journal = new WriteAheadLog(directory, fsyncPolicy, 10, Long.MAX_VALUE);
+                service = new ConcurrentTodoListServiceImpl(journal);
+                resource = journal;
+                break;
+            case "offheap":
+                OffHeapTodoListServiceImpl offHeapService = new OffHeapTodoListServiceImpl(
+                        new MappedItemStore(directory.resolve("items.dat"), 64 * 1024 * 1024));
+                service = offHeapService;
+                resource = offHeapService::close;
+                break;
+            case "tiered":
+                TieredTodoListServiceImpl tieredService = new TieredTodoListServiceImpl(
+                        new FileItemStore(directory.resolve("contents.dat")), new ContentCache(64 * 1024 * 1024, 16));
+                service = tieredService;
+                resource = tieredService::close;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown implementation " + implementation);
+        }
+    }
+
+    TodoListService service() {
+        return service;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (resource != null) {
+            resource.close();
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ch.ricardo.screening.todolist.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.ricardo.screening.todolist.persistence.IdBlockStore;
+import ch.ricardo.screening.todolist.service.IdAllocator;
+
+/**
+ * Id allocation from 8 threads at once: the shared {@link AtomicLong} counter previously used by the "list" storage,
+ * against the {@link IdAllocator}, one id at a time and from ranges of {@code rangeSize} ids reserved by each thread
+ * (as by each batch of created items). A range of 1 id updates the shared counter of the allocator for each id.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class IdAllocatorBenchmark {
+
+    @Param({"1", "64", "1024"})
+    public int rangeSize;
+
+    private final AtomicLong counter = new AtomicLong();
+
+    private IdAllocator allocator;
+
+    @Setup(Level.Trial)
+    public void createAllocator() {
+        allocator = new IdAllocator(IdAllocator.DEFAULT_BLOCK_SIZE, IdBlockStore.NONE);
+    }
+
+    /**
+     * The range of ids reserved by a thread, handed out without any synchronization.
+     */
+    @State(Scope.Thread)
+    public static class ReservedRange {
+
+        private long next = 1;
+
+        private long end;
+    }
+
+    @Benchmark
+    public long atomicCounter() {
+        return counter.incrementAndGet();
+    }
+
+    @Benchmark
+    public long idAllocator() {
+        return allocator.next();
+    }
+
+    @Benchmark
+    public long reservedRange(ReservedRange range) {
+        if (range.next > range.end) {
+            range.next = allocator.reserve(rangeSize);
+            range.end = range.next + rangeSize - 1;
+        }
+        return range.next++;
+    }
+}
@@ -0,0 +1,31 @@
+package ch.ricardo.screening.todolist.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Same operations as {@link SingleThreadedServiceBenchmark}, from 8 threads. The "list" implementation is left out,
+ * since it is not thread-safe.
+ */
+@State(Scope.Benchmark)
+@Threads(8)
+public class MultiThreadedServiceBenchmark extends TodoListServiceBenchmark {
+
+    @Param({"concurrent", "offheap", "tiered"})
+    public String implementation;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    @Override
+    protected String implementation() {
+        return implementation;
+    }
+
+    @Override
+    protected int size() {
+        return size;
+    }
+}
@@ -0,0 +1,125 @@
+package ch.ricardo.screening.todolist.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.service.TodoListService;
+import ch.ricardo.screening.todolist.service.WriteOutcome;
+
+/**
+ * Updates from several threads, either blind ({@code updateItem}) or optimistic ({@code compareAndUpdate}: the item is
+ * read, then written only if it still has the version read, and read again otherwise), each thread writing either the
+ * same item as all the others ({@code same}) or an item of its own ({@code own}).
+ * <p>
+ * The {@code stale} counter is the number of optimistic writes per second that found the item changed and had to be
+ * retried: none with an item per thread, where the cost of the optimistic write is one more read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class OptimisticUpdateBenchmark {
+
+    private static final int SIZE = 1000;
+
+    @Param({"list", "concurrent", "offheap"})
+    public String implementation;
+
+    @Param({"same", "own"})
+    public String item;
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    private BenchmarkServices services;
+
+    private TodoListService service;
+
+    @Setup(Level.Trial)
+    public void createItems() throws IOException {
+        services = new BenchmarkServices(implementation);
+        service = services.service();
+        for (int i = 1; i <= SIZE; i++) {
+            service.create(new TodoItem("item" + i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws Exception {
+        services.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+
+        private long id;
+
+        private String prefix;
+
+        private long next;
+
+        @Setup(Level.Trial)
+        public void pickItem(OptimisticUpdateBenchmark benchmark) {
+            int thread = benchmark.threadCount.incrementAndGet();
+            id = "own".equals(benchmark.item) ? thread : 1;
+            prefix = "thread" + thread + "-";
+        }
+
+        /**
+         * Contents of this thread, so that they never conflict with the contents of another thread.
+         */
+        String nextContent() {
+            return prefix + next++;
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Retries {
+
+        public long stale;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            stale = 0;
+        }
+    }
+
+    @Benchmark
+    public boolean updateItem(Writer writer) {
+        return service.updateItem(writer.id, new TodoItem(writer.nextContent()));
+    }
+
+    @Benchmark
+    public WriteOutcome compareAndUpdate(Writer writer, Retries retries) {
+        TodoItem updatedItem = new TodoItem(writer.nextContent());
+        while (true) {
+            long version = service.findItemById(writer.id).get().getVersion();
+            WriteOutcome outcome = service.compareAndUpdate(writer.id, version, updatedItem);
+            if (outcome != WriteOutcome.STALE) {
+                return outcome;
+            }
+            retries.stale++;
+        }
+    }
+}
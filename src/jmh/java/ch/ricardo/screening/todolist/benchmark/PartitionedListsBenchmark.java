@@ -0,0 +1,102 @@
+package ch.ricardo.screening.todolist.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.persistence.TodoListJournalFactory;
+import ch.ricardo.screening.todolist.service.TodoListPartitions;
+import ch.ricardo.screening.todolist.service.TodoListService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Writes from several threads, either all to the same list ({@code shared}) or each to a list of its own
+ * ({@code perThread}), as clients of different users would. Lists of {@value #SIZE} items, in memory.
+ * <p>
+ * With a list per thread, the threads never share a lock, so throughput should grow with the number of threads up to
+ * the number of cores; compare e.g. {@code -t 1} and {@code -t 4}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class PartitionedListsBenchmark {
+
+    private static final int SIZE = 1000;
+
+    @Param({"shared", "perThread"})
+    public String lists;
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    private TodoListPartitions partitions;
+
+    @Setup(Level.Trial)
+    public void createLists() {
+        partitions = new TodoListPartitions(TodoListJournalFactory.NONE, new SimpleMeterRegistry());
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+
+        private TodoListService list;
+
+        private String prefix;
+
+        private long next;
+
+        @Setup(Level.Trial)
+        public void fillList(PartitionedListsBenchmark benchmark) {
+            int thread = benchmark.threadCount.incrementAndGet();
+            String listId = "perThread".equals(benchmark.lists) ? "list" + thread : "shared";
+            prefix = "thread" + thread + "-";
+            // the shared list is filled by the first thread only
+            synchronized (benchmark) {
+                list = benchmark.partitions.getOrCreate(listId);
+                for (int i = (int) list.countItems() + 1; i <= SIZE; i++) {
+                    list.create(new TodoItem("item" + i));
+                }
+            }
+        }
+
+        /**
+         * Contents of this thread, so that they never conflict with the contents of another thread.
+         */
+        String nextContent() {
+            return prefix + next++;
+        }
+
+        long nextId() {
+            return next % SIZE + 1;
+        }
+    }
+
+    @Benchmark
+    public boolean updateItem(Writer writer) {
+        long id = writer.nextId();
+        return writer.list.updateItem(id, new TodoItem(writer.nextContent()));
+    }
+
+    @Benchmark
+    public boolean createThenDeleteItem(Writer writer) {
+        TodoItem item = writer.list.create(new TodoItem(writer.nextContent()));
+        return writer.list.deleteItemById(item.getId());
+    }
+}
@@ -0,0 +1,114 @@
+package ch.ricardo.screening.todolist.benchmark;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import ch.ricardo.screening.todolist.TodoListApplication;
+import ch.ricardo.screening.todolist.logging.RequestLogMode;
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.service.TodoListService;
+
+/**
+ * End-to-end handling of requests by the Spring MVC stack (dispatcher, controller, service and JSON conversion),
+ * through MockMvc so that no network is involved.
+ * <p>
+ * Requests are logged with each {@link RequestLogMode}, to a file ({@code target/benchmark.log}) rather than to the
+ * console.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RestControllerBenchmark {
+
+    @Param({"10", "1000"})
+    public int size;
+
+    @Param({"ASYNC", "SYNC", "OFF"})
+    public RequestLogMode requestLogMode;
+
+    private final AtomicLong newContents = new AtomicLong();
+
+    private ConfigurableApplicationContext context;
+
+    private MockMvc mockMvc;
+
+    private String listETag;
+
+    @Setup(Level.Trial)
+    public void startApplication() throws Exception {
+        context = new SpringApplicationBuilder(TodoListApplication.class)
+                // as arguments, which override application.properties (default properties do not); a single client
+                // sending as fast as it can would be rate limited
+                .run("--server.port=0", "--logging.config=classpath:logback-benchmark.xml",
+                        "--todolist.request-log.mode=" + requestLogMode, "--todolist.admission.enabled=false");
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+
+        TodoListService service = context.getBean(TodoListService.class);
+        service.deleteAllItems();
+        for (int i = 1; i <= size; i++) {
+            service.create(new TodoItem("item-" + i));
+        }
+        listETag = mockMvc.perform(get("/todolist/items")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public MvcResult retrieveItem() throws Exception {
+        return mockMvc.perform(get("/todolist/items/{id}", ThreadLocalRandom.current().nextInt(1, size + 1)))
+                .andReturn();
+    }
+
+    @Benchmark
+    public MvcResult retrieveAllItems() throws Exception {
+        return mockMvc.perform(get("/todolist/items")).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult retrieveAllItemsNotModified() throws Exception {
+        return mockMvc.perform(get("/todolist/items").header(HttpHeaders.IF_NONE_MATCH, listETag)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult createAndDeleteItem() throws Exception {
+        MvcResult created = mockMvc.perform(post("/todolist/items")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"content\":\"new-" + newContents.incrementAndGet() + "\"}"))
+                .andReturn();
+        String location = created.getResponse().getHeader(HttpHeaders.LOCATION);
+        return mockMvc.perform(delete(location)).andReturn();
+    }
+}
@@ -0,0 +1,119 @@
+package ch.ricardo.screening.todolist.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.ricardo.screening.todolist.search.InvertedIndex;
+import ch.ricardo.screening.todolist.search.SearchHits;
+
+/**
+ * Queries and updates of the search index, on contents of a few words drawn from a skewed vocabulary: a handful of
+ * words appear in a large share of the items, most words in very few of them. Queries return the first page of 20
+ * results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SearchBenchmark {
+
+    private static final int VOCABULARY_SIZE = 20_000;
+
+    private static final int WORDS_PER_ITEM = 6;
+
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    private final Random random = new Random(42);
+
+    private String[] vocabulary;
+
+    private InvertedIndex index;
+
+    private String commonQuery;
+
+    private String twoKeywordsQuery;
+
+    private String prefixQuery;
+
+    private String rareQuery;
+
+    @Setup
+    public void createIndex() {
+        vocabulary = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            vocabulary[i] = randomWord();
+        }
+        index = new InvertedIndex();
+        for (long id = 1; id <= size; id++) {
+            index.add(id, randomContent());
+        }
+        // the most common word is in roughly a quarter of the items, the 100th most common in 1% of them
+        commonQuery = vocabulary[0];
+        twoKeywordsQuery = vocabulary[0] + " " + vocabulary[100];
+        prefixQuery = vocabulary[1].substring(0, 2) + "*";
+        rareQuery = vocabulary[VOCABULARY_SIZE / 2];
+    }
+
+    @Benchmark
+    public SearchHits searchCommonKeyword() {
+        return index.search(commonQuery, 0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public SearchHits searchTwoKeywords() {
+        return index.search(twoKeywordsQuery, 0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public SearchHits searchPrefix() {
+        return index.search(prefixQuery, 0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public SearchHits searchRareKeyword() {
+        return index.search(rareQuery, 0, PAGE_SIZE);
+    }
+
+    /**
+     * Re-indexes a random item with a new content, as done for every update of the list.
+     */
+    @Benchmark
+    public void updateItem() {
+        index.add(1 + random.nextInt(size), randomContent());
+    }
+
+    private String randomContent() {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < WORDS_PER_ITEM; i++) {
+            // cubing a uniform number skews the draw towards the first words of the vocabulary
+            double skew = random.nextDouble();
+            content.append(vocabulary[(int) (VOCABULARY_SIZE * skew * skew * skew)]).append(' ');
+        }
+        return content.toString();
+    }
+
+    private String randomWord() {
+        char[] word = new char[4 + random.nextInt(6)];
+        for (int i = 0; i < word.length; i++) {
+            word[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(word);
+    }
+}
@@ -0,0 +1,27 @@
+package ch.ricardo.screening.todolist.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+@State(Scope.Benchmark)
+@Threads(1)
+public class SingleThreadedServiceBenchmark extends TodoListServiceBenchmark {
+
+    @Param({"list", "concurrent", "offheap", "tiered"})
+    public String implementation;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    @Override
+    protected String implementation() {
+        return implementation;
+    }
+
+    @Override
+    protected int size() {
+        return size;
+    }
+}
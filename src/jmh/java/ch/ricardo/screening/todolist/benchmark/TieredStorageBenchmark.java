@@ -0,0 +1,121 @@
+package ch.ricardo.screening.todolist.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.service.TieredTodoListServiceImpl;
+import ch.ricardo.screening.todolist.service.TodoListService;
+import ch.ricardo.screening.todolist.storage.ContentCache;
+import ch.ricardo.screening.todolist.storage.FileItemStore;
+
+/**
+ * Reads of items with long contents, from the default storage and from the tiered storage with a cache smaller and
+ * larger than the contents read most. 90% of the reads go to 10% of the items. Each trial prints the heap used once
+ * the list is filled, and the hit ratio of the cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class TieredStorageBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * "concurrent", or "tiered-" followed by the size of the cache in MB.
+     */
+    @Param({"concurrent", "tiered-16", "tiered-128"})
+    public String implementation;
+
+    @Param({"100000"})
+    public int size;
+
+    @Param({"4096"})
+    public int contentLength;
+
+    private BenchmarkServices services;
+
+    private Path directory;
+
+    private ContentCache cache;
+
+    private TieredTodoListServiceImpl tieredService;
+
+    private TodoListService service;
+
+    @Setup(Level.Trial)
+    public void fillList() throws Exception {
+        if (implementation.startsWith("tiered-")) {
+            long cacheSize = Long.parseLong(implementation.substring("tiered-".length())) * 1024 * 1024;
+            directory = Files.createTempDirectory("todolist-benchmark");
+            cache = new ContentCache(cacheSize, 16);
+            tieredService = new TieredTodoListServiceImpl(new FileItemStore(directory.resolve("contents.dat")), cache);
+            service = tieredService;
+        } else {
+            services = new BenchmarkServices(implementation);
+            service = services.service();
+        }
+        char[] padding = new char[contentLength];
+        Arrays.fill(padding, 'x');
+        for (int i = 1; i <= size; i++) {
+            service.create(new TodoItem("item-" + i + " " + new String(padding)));
+        }
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            memory.gc();
+        }
+        System.out.printf("%n%s: %d MB of heap used by %d items of %d chars%n", implementation,
+                memory.getHeapMemoryUsage().getUsed() / (1024 * 1024), size, contentLength);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeServices() throws Exception {
+        if (tieredService != null) {
+            System.out.printf("%ncache hit ratio %.1f%%, %d evictions%n",
+                    100.0 * cache.hitCount() / Math.max(1, cache.hitCount() + cache.missCount()),
+                    cache.evictionCount());
+            tieredService.close();
+            Files.delete(directory.resolve("contents.dat"));
+            Files.delete(directory);
+        } else {
+            services.close();
+        }
+    }
+
+    @Benchmark
+    public Optional<TodoItem> findItemById() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int hotItems = size / 10;
+        long id = random.nextInt(10) < 9 ? random.nextInt(hotItems) : hotItems + random.nextInt(size - hotItems);
+        return service.findItemById(id + 1);
+    }
+
+    @Benchmark
+    public List<TodoItem> retrievePage() {
+        return service.retrieveItems(ThreadLocalRandom.current().nextInt(size - PAGE_SIZE), PAGE_SIZE);
+    }
+}
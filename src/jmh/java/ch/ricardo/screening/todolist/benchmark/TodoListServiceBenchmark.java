@@ -0,0 +1,97 @@
+package ch.ricardo.screening.todolist.benchmark;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.service.TodoListService;
+
+/**
+ * Operations of {@link TodoListService} on a list of a given size. Concrete subclasses choose the implementations,
+ * the sizes and the number of threads.
+ * <p>
+ * Writes are measured in pairs that leave the size of the list unchanged: a create is followed by the delete of the
+ * created item.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public abstract class TodoListServiceBenchmark {
+
+    private final AtomicLong newContents = new AtomicLong();
+
+    private BenchmarkServices services;
+
+    protected TodoListService service;
+
+    protected abstract String implementation();
+
+    protected abstract int size();
+
+    @Setup(Level.Trial)
+    public void fillList() throws Exception {
+        services = new BenchmarkServices(implementation());
+        service = services.service();
+        for (int i = 1; i <= size(); i++) {
+            service.create(new TodoItem("item-" + i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void closeServices() throws Exception {
+        services.close();
+    }
+
+    @Benchmark
+    public Optional<TodoItem> findItemById() {
+        return service.findItemById(randomId());
+    }
+
+    @Benchmark
+    public boolean exists() {
+        return service.exists(new TodoItem("item-" + randomId()));
+    }
+
+    @Benchmark
+    public boolean updateItem() {
+        long id = randomId();
+        // items keep their content, updates with the own content of an item go through the whole write path
+        return service.updateItem(id, new TodoItem("item-" + id));
+    }
+
+    @Benchmark
+    public boolean createAndDeleteItem() {
+        TodoItem createdItem = service.create(new TodoItem("new-" + newContents.incrementAndGet()));
+        return service.deleteItemById(createdItem.getId());
+    }
+
+    @Benchmark
+    public List<TodoItem> retrieveAllItems() {
+        return service.retrieveAllItems();
+    }
+
+    @Benchmark
+    public List<TodoItem> retrieveItemsPage() {
+        return service.retrieveItems(randomId(), 100);
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, size() + 1);
+    }
+}
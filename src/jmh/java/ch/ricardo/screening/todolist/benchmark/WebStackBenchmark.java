@@ -0,0 +1,181 @@
+package ch.ricardo.screening.todolist.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import ch.ricardo.screening.todolist.TodoListApplication;
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.service.TodoListService;
+
+/**
+ * Load test of the two web stacks, Spring MVC on Tomcat ({@code servlet}) and WebFlux on Netty ({@code reactive}),
+ * over real HTTP connections.
+ * <p>
+ * Before measuring, {@code slowConnections} clients start streaming the whole list (as newline-delimited JSON) and
+ * then stop reading, like clients on a slow network: the server has to keep these responses open. The cost of each
+ * of these connections on the server (threads, heap and resident memory) is printed at setup, and the benchmarks
+ * measure how fast other clients are served meanwhile. As the clients run in the same process, the few hundred bytes
+ * of their own sockets are included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@Threads(8)
+public class WebStackBenchmark {
+
+    private static final int SIZE = 10_000;
+
+    @Param({"servlet", "reactive"})
+    public String stack;
+
+    @Param({"0", "1000"})
+    public int slowConnections;
+
+    private final List<Socket> sockets = new ArrayList<>();
+
+    private ConfigurableApplicationContext context;
+
+    private String baseUrl;
+
+    @Setup(Level.Trial)
+    public void startApplication() throws Exception {
+        context = new SpringApplicationBuilder(TodoListApplication.class)
+                .web("reactive".equals(stack) ? WebApplicationType.REACTIVE : WebApplicationType.SERVLET)
+                // as arguments, which override application.properties (default properties do not); clients all come
+                // from localhost, they would be rate limited as a single one
+                .run("--server.port=0", "--logging.config=classpath:logback-benchmark.xml",
+                        "--todolist.request-log.mode=OFF", "--todolist.admission.enabled=false");
+        int port = Integer.parseInt(context.getEnvironment().getProperty("local.server.port"));
+        baseUrl = "http://localhost:" + port + "/todolist/items";
+
+        TodoListService service = context.getBean(TodoListService.class);
+        service.deleteAllItems();
+        for (int i = 1; i <= SIZE; i++) {
+            service.create(new TodoItem(String.format("item-%06d, with some text to make it about 100 bytes long "
+                    + "once encoded in JSON", i)));
+        }
+
+        long threadsBefore = threadCount();
+        long heapBefore = usedHeap();
+        long rssBefore = residentSetSize();
+        for (int i = 0; i < slowConnections; i++) {
+            sockets.add(openSlowConnection(port));
+        }
+        // let the server fill the socket buffers, until it has to wait for the clients
+        Thread.sleep(2_000);
+        if (slowConnections > 0) {
+            System.out.printf("%n%s stack, %d slow connections: %+d threads, per connection %+d KB of heap and "
+                    + "%+d KB of resident memory%n", stack, slowConnections, threadCount() - threadsBefore,
+                    (usedHeap() - heapBefore) / slowConnections / 1024,
+                    (residentSetSize() - rssBefore) / slowConnections / 1024);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() throws IOException {
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        sockets.clear();
+        context.close();
+    }
+
+    @Benchmark
+    public int retrieveItem() throws IOException {
+        return get(baseUrl + "/1");
+    }
+
+    @Benchmark
+    public int retrieveItemsPage() throws IOException {
+        return get(baseUrl + "?after=5000&limit=100");
+    }
+
+    private static int get(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        int read = 0;
+        // reading the whole body lets the connection be reused
+        try (InputStream body = connection.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            for (int n = body.read(buffer); n >= 0; n = body.read(buffer)) {
+                read += n;
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Requests the whole list and reads only the first byte of the response.
+     */
+    private static Socket openSlowConnection(int port) throws IOException {
+        Socket socket = new Socket();
+        // a small receive window, so that the server quickly has to wait for the client
+        socket.setReceiveBufferSize(4096);
+        socket.connect(new InetSocketAddress("localhost", port));
+        OutputStream output = socket.getOutputStream();
+        output.write(("GET /todolist/items HTTP/1.1\r\nHost: localhost\r\nAccept: application/x-ndjson\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        output.flush();
+        socket.getInputStream().read();
+        return socket;
+    }
+
+    private static long threadCount() {
+        return ManagementFactory.getThreadMXBean().getThreadCount();
+    }
+
+    /**
+     * Memory of the process actually in RAM (heap, thread stacks, direct buffers...), 0 if not on Linux.
+     */
+    private static long residentSetSize() throws IOException {
+        Path status = Paths.get("/proc/self/status");
+        if (!Files.exists(status)) {
+            return 0;
+        }
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+            }
+        }
+        return 0;
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
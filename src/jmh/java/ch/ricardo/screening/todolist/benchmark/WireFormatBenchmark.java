@@ -0,0 +1,133 @@
+package ch.ricardo.screening.todolist.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.wire.TodoListProtobuf;
+
+/**
+ * Encoding and decoding of item lists in each wire format of {@code GET /todolist/items}, with each response
+ * compression. Each trial prints the size of the payload, to be read along with the time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    private static final TypeReference<List<TodoItem>> ITEM_LIST = new TypeReference<List<TodoItem>>() {};
+
+    @Param({"json", "smile", "cbor", "protobuf"})
+    public String format;
+
+    @Param({"none", "gzip", "zstd"})
+    public String compression;
+
+    @Param({"1000"})
+    public int size;
+
+    private ObjectMapper objectMapper;
+
+    private List<TodoItem> items;
+
+    private byte[] payload;
+
+    @Setup
+    public void createItems() throws IOException {
+        switch (format) {
+            case "smile":
+                objectMapper = new ObjectMapper(new SmileFactory());
+                break;
+            case "cbor":
+                objectMapper = new ObjectMapper(new CBORFactory());
+                break;
+            default:
+                objectMapper = new ObjectMapper();
+        }
+        items = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            items.add(new TodoItem(id, "item-" + id));
+        }
+        payload = encode();
+        System.out.printf("%n%s %s payload of %d items: %d bytes%n", format, compression, size, payload.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream output = compress(bytes)) {
+            if (format.equals("protobuf")) {
+                CodedOutputStream coded = CodedOutputStream.newInstance(output);
+                TodoListProtobuf.writeItems(items, coded);
+                coded.flush();
+            } else {
+                objectMapper.writeValue(output, items);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public List<TodoItem> decode() throws IOException {
+        try (InputStream input = decompress(new ByteArrayInputStream(payload))) {
+            if (format.equals("protobuf")) {
+                return TodoListProtobuf.readItems(CodedInputStream.newInstance(input));
+            }
+            return objectMapper.readValue(input, ITEM_LIST);
+        }
+    }
+
+    private OutputStream compress(OutputStream output) throws IOException {
+        switch (compression) {
+            case "gzip":
+                return new GZIPOutputStream(output);
+            case "zstd":
+                return new ZstdOutputStream(output);
+            default:
+                return output;
+        }
+    }
+
+    private InputStream decompress(InputStream input) throws IOException {
+        switch (compression) {
+            case "gzip":
+                return new GZIPInputStream(input);
+            case "zstd":
+                return new ZstdInputStream(input);
+            default:
+                return input;
+        }
+    }
+}
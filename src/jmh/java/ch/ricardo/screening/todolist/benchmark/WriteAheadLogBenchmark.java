@@ -0,0 +1,63 @@
+package ch.ricardo.screening.todolist.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.persistence.FsyncPolicy;
+import ch.ricardo.screening.todolist.service.TodoListService;
+
+/**
+ * Sustained journaled writes per second: each operation is two writes (a create and a delete), both appended to the
+ * write-ahead log. Runs on 8 threads so that writers can share fsyncs; use {@code -t} to change it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+public class WriteAheadLogBenchmark {
+
+    @Param({"ALWAYS", "INTERVAL", "NEVER"})
+    public FsyncPolicy fsyncPolicy;
+
+    private final AtomicLong newContents = new AtomicLong();
+
+    private BenchmarkServices services;
+
+    private TodoListService service;
+
+    @Setup(Level.Trial)
+    public void createService() throws Exception {
+        services = new BenchmarkServices("concurrent-wal", fsyncPolicy);
+        service = services.service();
+    }
+
+    @TearDown(Level.Trial)
+    public void closeService() throws Exception {
+        services.close();
+    }
+
+    @Benchmark
+    public boolean createAndDeleteItem() {
+        TodoItem createdItem = service.create(new TodoItem("new-" + newContents.incrementAndGet()));
+        return service.deleteItemById(createdItem.getId());
+    }
+}
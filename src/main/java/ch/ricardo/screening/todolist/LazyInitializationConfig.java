@@ -0,0 +1,56 @@
+package ch.ricardo.screening.todolist;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+
+/**
+ * Creates the beans on first use instead of at startup, with {@code todolist.lazy-initialization=true} (e.g. in the
+ * {@code lean} profile): the application is ready sooner, beans that a replica never needs are never created, and the
+ * first requests to an endpoint pay for the creation of its beans instead.
+ * <p>
+ * Beans are still created at startup when something needs them then: the web server, the handler mappings and
+ * whatever they depend on, the storage (seeded at startup), the replication (started by runners). So are the beans
+ * annotated with {@code @Lazy(false)}: the listeners of the list (indexes, change feed, JSON cache) load the whole list
+ * when created, which the first request would otherwise wait for, and the change feed must not miss the changes made
+ * before its first subscriber.
+ */
+@Configuration
+@ConditionalOnProperty(name = "todolist.lazy-initialization", havingValue = "true")
+public class LazyInitializationConfig {
+
+    /**
+     * Static, so that it applies before any other bean is created.
+     */
+    @Bean
+    public static BeanFactoryPostProcessor lazyInitialization() {
+        return beanFactory -> {
+            for (String name : beanFactory.getBeanDefinitionNames()) {
+                BeanDefinition definition = beanFactory.getBeanDefinition(name);
+                // infrastructure beans (e.g. post-processors) are looked up at startup anyway
+                if (definition.getRole() != BeanDefinition.ROLE_INFRASTRUCTURE && !isEager(definition)) {
+                    definition.setLazyInit(true);
+                }
+            }
+        };
+    }
+
+    /**
+     * Whether the class of a bean is annotated with {@code @Lazy(false)}: Spring 5.0 definitions cannot tell an
+     * explicit {@code false} from the default.
+     */
+    private static boolean isEager(BeanDefinition definition) {
+        if (!(definition instanceof AnnotatedBeanDefinition)) {
+            return false;
+        }
+        Map<String, Object> lazy = ((AnnotatedBeanDefinition) definition).getMetadata()
+                .getAnnotationAttributes(Lazy.class.getName());
+        return lazy != null && Boolean.FALSE.equals(lazy.get("value"));
+    }
+}
@@ -2,12 +2,12 @@ package ch.ricardo.screening.todolist;
 
 import com.fasterxml.classmate.TypeResolver;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import springfox.documentation.builders.ApiInfoBuilder;
 import springfox.documentation.service.ApiInfo;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
-import org.springframework.web.servlet.config.annotation.WebMvcConfigurationSupport;
 
 import springfox.documentation.builders.PathSelectors;
 import springfox.documentation.builders.RequestHandlerSelectors;
@@ -16,9 +16,16 @@ import springfox.documentation.spi.DocumentationType;
 import springfox.documentation.spring.web.plugins.Docket;
 import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
+/**
+ * Swagger documentation of the API, generated at startup by scanning the controllers. Disabled with
+ * {@code todolist.swagger.enabled=false} (e.g. by the {@code lean} profile), which saves this scan and the springfox
+ * beans.
+ */
 @Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "todolist.swagger.enabled", havingValue = "true", matchIfMissing = true)
 @EnableSwagger2
-public class SwaggerConfig extends WebMvcConfigurationSupport {
+public class SwaggerConfig {
     @Autowired
     private TypeResolver typeResolver;
 
@@ -28,20 +35,11 @@ public class SwaggerConfig extends WebMvcConfigurationSupport {
                 .apiInfo(apiInfo())
                 .useDefaultResponseMessages(false)
                 .select()
-                .apis(RequestHandlerSelectors.any())
+                .apis(RequestHandlerSelectors.basePackage("ch.ricardo.screening.todolist.controller"))
                 .paths(PathSelectors.regex("/todolist/.*"))
                 .build();
     }
 
-    @Override
-    protected void addResourceHandlers(ResourceHandlerRegistry registry) {
-        registry.addResourceHandler("swagger-ui.html")
-                .addResourceLocations("classpath:/META-INF/resources/");
-
-        registry.addResourceHandler("/webjars/**")
-                .addResourceLocations("classpath:/META-INF/resources/webjars/");
-    }
-
     private ApiInfo apiInfo() {
         return new ApiInfoBuilder()
                 .title("TodoList REST API")
@@ -51,4 +49,4 @@ public class SwaggerConfig extends WebMvcConfigurationSupport {
                                 "norbert.leon@gmail.com"))
                 .build();
     }
-}
\ No newline at end of file
+}
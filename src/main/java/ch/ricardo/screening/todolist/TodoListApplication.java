@@ -8,6 +8,8 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 
 import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.replication.ReplicationProperties;
+import ch.ricardo.screening.todolist.replication.ReplicationRole;
 import ch.ricardo.screening.todolist.service.TodoListService;
 
 @SpringBootApplication
@@ -18,11 +20,18 @@ public class TodoListApplication {
 	}
 
 	@Bean
-	CommandLineRunner init(TodoListService todoListService) {
-		return (evt) -> Arrays.asList("do this,do that".split(","))
-				.forEach(
-						content -> {
-							todoListService.create(new TodoItem(content));
-						});
+	CommandLineRunner init(TodoListService todoListService, ReplicationProperties replicationProperties) {
+		return (evt) -> {
+			// only seed an empty list, items recovered from disk are kept as they are, and replicas get their items
+			// from the primary
+			if (replicationProperties.getRole() != ReplicationRole.REPLICA
+					&& todoListService.retrieveItems(0, 1).isEmpty()) {
+				Arrays.asList("do this,do that".split(","))
+						.forEach(
+								content -> {
+									todoListService.create(new TodoItem(content));
+								});
+			}
+		};
 	}
 }
@@ -0,0 +1,44 @@
+package ch.ricardo.screening.todolist;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurationSupport;
+
+import ch.ricardo.screening.todolist.wire.TodoListProtobufHttpMessageConverter;
+
+/**
+ * Spring MVC setup of the servlet stack, with or without the Swagger documentation (see {@link SwaggerConfig}).
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class WebMvcConfig extends WebMvcConfigurationSupport {
+
+    @Value("${todolist.swagger.enabled:true}")
+    private boolean swaggerEnabled;
+
+    @Override
+    protected void addResourceHandlers(ResourceHandlerRegistry registry) {
+        if (!swaggerEnabled) {
+            return;
+        }
+        registry.addResourceHandler("swagger-ui.html")
+                .addResourceLocations("classpath:/META-INF/resources/");
+
+        registry.addResourceHandler("/webjars/**")
+                .addResourceLocations("classpath:/META-INF/resources/webjars/");
+    }
+
+    /**
+     * Smile and CBOR are among the default converters, as their Jackson modules are on the classpath. Protobuf is
+     * only supported for the messages of the Todo list API.
+     */
+    @Override
+    protected void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new TodoListProtobufHttpMessageConverter());
+    }
+}
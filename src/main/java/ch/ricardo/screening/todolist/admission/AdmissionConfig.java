@@ -0,0 +1,27 @@
+package ch.ricardo.screening.todolist.admission;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.handler.MappedInterceptor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "todolist.admission.enabled", havingValue = "true")
+@EnableConfigurationProperties(AdmissionProperties.class)
+public class AdmissionConfig {
+
+    /**
+     * A mapped interceptor is picked up by every handler mapping; it only applies to the Todo list API, Actuator and
+     * Swagger are never limited.
+     */
+    @Bean
+    public MappedInterceptor admissionControlInterceptor(AdmissionProperties properties, MeterRegistry registry) {
+        return new MappedInterceptor(new String[] {"/todolist/**"},
+                new AdmissionControlInterceptor(properties, registry));
+    }
+}
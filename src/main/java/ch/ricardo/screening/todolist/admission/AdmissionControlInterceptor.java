@@ -0,0 +1,166 @@
+package ch.ricardo.screening.todolist.admission;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Admits or rejects the requests of the Todo list API before their controller method runs:
+ * <ul>
+ * <li>a client over the rate of an endpoint gets a {@code 429 Too Many Requests},
+ * <li>a request to a {@code limitedEndpoints} endpoint gets a {@code 503 Service Unavailable} when the
+ * {@link ConcurrencyLimiter} has no permit for it in time.
+ * </ul>
+ * Both come with a {@code Retry-After} and no body, and are counted by {@value #REJECTIONS} (tags {@code endpoint}
+ * and {@code reason}, {@value #RATE_LIMITED} or {@value #OVERLOADED}). Gauges {@value #IN_FLIGHT} and
+ * {@value #QUEUED} follow the concurrency limit.
+ * <p>
+ * An asynchronous endpoint (streams) holds its permit until its response is complete, failed or timed out, since
+ * producing the response is what the permit limits; streams that stay open for long (Server-Sent Events) should not
+ * be limited endpoints.
+ */
+public class AdmissionControlInterceptor implements AsyncHandlerInterceptor {
+
+    static final String REJECTIONS = "todolist.admission.rejections";
+
+    static final String IN_FLIGHT = "todolist.admission.in.flight";
+
+    static final String QUEUED = "todolist.admission.queued";
+
+    static final String RATE_LIMITED = "rate_limited";
+
+    static final String OVERLOADED = "overloaded";
+
+    private static final String PERMIT_ATTRIBUTE = AdmissionControlInterceptor.class.getName() + ".permit";
+
+    private final RateLimiter rateLimiter;
+
+    private final ConcurrencyLimiter concurrencyLimiter;
+
+    private final Set<String> limitedEndpoints;
+
+    private final String clientHeader;
+
+    private final MeterRegistry registry;
+
+    public AdmissionControlInterceptor(AdmissionProperties properties, MeterRegistry registry) {
+        this.rateLimiter = new RateLimiter(properties.getRate(), properties.getDefaultRate(),
+                properties.getBurstSeconds(), properties.getMaxBuckets());
+        this.concurrencyLimiter = new ConcurrencyLimiter(properties.getMaxConcurrentRequests(),
+                properties.getMaxQueueSize(), properties.getMaxQueueTimeMs());
+        this.limitedEndpoints = properties.getLimitedEndpoints();
+        this.clientHeader = properties.getClientHeader();
+        this.registry = registry;
+        Gauge.builder(IN_FLIGHT, concurrencyLimiter, ConcurrencyLimiter::inFlight)
+                .description("Requests of the limited endpoints in progress")
+                .register(registry);
+        Gauge.builder(QUEUED, concurrencyLimiter, ConcurrencyLimiter::queued)
+                .description("Requests of the limited endpoints waiting for a permit")
+                .register(registry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // an asynchronous request was admitted when first dispatched
+        if (!(handler instanceof HandlerMethod) || request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        String endpoint = ((HandlerMethod) handler).getMethod().getName();
+        long waitNanos = rateLimiter.tryAcquire(client(request), endpoint, System.nanoTime());
+        if (waitNanos > 0) {
+            reject(response, endpoint, RATE_LIMITED, HttpStatus.TOO_MANY_REQUESTS, waitNanos);
+            return false;
+        }
+        if (limitedEndpoints.contains(endpoint)) {
+            if (!concurrencyLimiter.tryAcquire()) {
+                reject(response, endpoint, OVERLOADED, HttpStatus.SERVICE_UNAVAILABLE,
+                        TimeUnit.MILLISECONDS.toNanos(concurrencyLimiter.maxQueueTimeMs()));
+                return false;
+            }
+            request.setAttribute(PERMIT_ATTRIBUTE, new Permit());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+            Object handler) {
+        Permit permit = (Permit) request.getAttribute(PERMIT_ATTRIBUTE);
+        if (permit != null) {
+            // released once the asynchronous response ends, even if it never dispatches back to the servlet
+            request.getAsyncContext().addListener(permit);
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            Exception ex) {
+        Permit permit = (Permit) request.getAttribute(PERMIT_ATTRIBUTE);
+        if (permit != null) {
+            permit.release();
+        }
+    }
+
+    private String client(HttpServletRequest request) {
+        String client = clientHeader.isEmpty() ? null : request.getHeader(clientHeader);
+        return client != null ? client : request.getRemoteAddr();
+    }
+
+    /**
+     * The permit of a request, released once whatever ends the request first: the completion of the dispatch, or of
+     * the asynchronous response.
+     */
+    private final class Permit implements AsyncListener {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                concurrencyLimiter.release();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    private void reject(HttpServletResponse response, String endpoint, String reason, HttpStatus status,
+            long retryAfterNanos) {
+        registry.counter(REJECTIONS, "endpoint", endpoint, "reason", reason).increment();
+        response.setStatus(status.value());
+        // whole seconds, rounded up so that the client does not retry too early
+        long retryAfterSeconds = Math.max(1, (retryAfterNanos + 999_999_999) / 1_000_000_000);
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+    }
+}
@@ -0,0 +1,128 @@
+package ch.ricardo.screening.todolist.admission;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the admission control of the Todo list API, bound from the {@code todolist.admission.*} properties.
+ * Endpoints are named after their controller method, as in the request logs.
+ */
+@ConfigurationProperties(prefix = "todolist.admission")
+public class AdmissionProperties {
+
+    /**
+     * Header identifying the client, e.g. an API key set by a gateway. The remote address is used when it is missing
+     * (or when this is empty).
+     */
+    private String clientHeader = "";
+
+    /**
+     * Requests per second allowed to each client, by endpoint name.
+     */
+    private Map<String, Double> rate = new HashMap<>();
+
+    /**
+     * Rate of the endpoints missing from {@code rate}, 0 for no limit.
+     */
+    private double defaultRate = 0;
+
+    /**
+     * Requests a client may send at once after being idle, in seconds of its rate.
+     */
+    private double burstSeconds = 2;
+
+    /**
+     * Clients times endpoints tracked at most, see {@link RateLimiter}.
+     */
+    private int maxBuckets = 100_000;
+
+    /**
+     * Endpoints whose requests share the concurrency limit: the expensive ones.
+     */
+    private Set<String> limitedEndpoints = new LinkedHashSet<>();
+
+    private int maxConcurrentRequests = 4;
+
+    private int maxQueueSize = 16;
+
+    /**
+     * Latency target of the queue: a request waiting longer for a permit is rejected.
+     */
+    private long maxQueueTimeMs = 100;
+
+    public String getClientHeader() {
+        return clientHeader;
+    }
+
+    public void setClientHeader(String clientHeader) {
+        this.clientHeader = clientHeader;
+    }
+
+    public Map<String, Double> getRate() {
+        return rate;
+    }
+
+    public void setRate(Map<String, Double> rate) {
+        this.rate = rate;
+    }
+
+    public double getDefaultRate() {
+        return defaultRate;
+    }
+
+    public void setDefaultRate(double defaultRate) {
+        this.defaultRate = defaultRate;
+    }
+
+    public double getBurstSeconds() {
+        return burstSeconds;
+    }
+
+    public void setBurstSeconds(double burstSeconds) {
+        this.burstSeconds = burstSeconds;
+    }
+
+    public int getMaxBuckets() {
+        return maxBuckets;
+    }
+
+    public void setMaxBuckets(int maxBuckets) {
+        this.maxBuckets = maxBuckets;
+    }
+
+    public Set<String> getLimitedEndpoints() {
+        return limitedEndpoints;
+    }
+
+    public void setLimitedEndpoints(Set<String> limitedEndpoints) {
+        this.limitedEndpoints = limitedEndpoints;
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    public void setMaxQueueSize(int maxQueueSize) {
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    public long getMaxQueueTimeMs() {
+        return maxQueueTimeMs;
+    }
+
+    public void setMaxQueueTimeMs(long maxQueueTimeMs) {
+        this.maxQueueTimeMs = maxQueueTimeMs;
+    }
+}
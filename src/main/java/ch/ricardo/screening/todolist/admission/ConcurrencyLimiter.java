@@ -0,0 +1,72 @@
+package ch.ricardo.screening.todolist.admission;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounds the number of requests in progress, with a bounded queue in front.
+ * <p>
+ * A request that finds no free permit waits for one at most {@code maxQueueTimeMs}, the latency it may add on top of
+ * its own processing; and only if fewer than {@code maxQueueSize} requests are already waiting. Otherwise it is
+ * rejected at once: under overload, a quick rejection the client can retry later is better than a timeout after a long
+ * wait, and the accepted requests keep their usual latency.
+ */
+class ConcurrencyLimiter {
+
+    private final Semaphore permits;
+
+    private final int maxQueueSize;
+
+    private final long maxQueueTimeMs;
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final int maxConcurrentRequests;
+
+    ConcurrencyLimiter(int maxConcurrentRequests, int maxQueueSize, long maxQueueTimeMs) {
+        this.permits = new Semaphore(maxConcurrentRequests);
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.maxQueueSize = maxQueueSize;
+        this.maxQueueTimeMs = maxQueueTimeMs;
+    }
+
+    /**
+     * Gets a permit, to be given back with {@link #release()} once the request is processed.
+     *
+     * @return whether a permit was obtained
+     */
+    boolean tryAcquire() {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        if (queued.incrementAndGet() > maxQueueSize) {
+            queued.decrementAndGet();
+            return false;
+        }
+        try {
+            return permits.tryAcquire(maxQueueTimeMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            queued.decrementAndGet();
+        }
+    }
+
+    void release() {
+        permits.release();
+    }
+
+    int inFlight() {
+        return maxConcurrentRequests - permits.availablePermits();
+    }
+
+    int queued() {
+        return queued.get();
+    }
+
+    long maxQueueTimeMs() {
+        return maxQueueTimeMs;
+    }
+}
@@ -0,0 +1,94 @@
+package ch.ricardo.screening.todolist.admission;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rate limits per client and per endpoint: each client gets a {@link TokenBucket} per endpoint, with the rate of the
+ * endpoint and a burst of {@code burstSeconds} of this rate.
+ * <p>
+ * Buckets are created on the first request of a client, {@code maxBuckets} of them at most. Once there are that many,
+ * the full ones are dropped to make room: a client idle long enough to refill its bucket is not distinguishable from
+ * a new client anyway. Dropping them scans all the buckets, so it is done at most once every {@code burstSeconds}, the
+ * time a bucket takes to refill, by a single thread. The new clients that still find no room share an overflow bucket
+ * per endpoint until then: a flood of new clients gets the rate of a single one, rather than growing the map or
+ * scanning it on every request.
+ */
+class RateLimiter {
+
+    private static final long NEVER_SWEPT = Long.MIN_VALUE;
+
+    private final Map<String, Double> rates;
+
+    private final double defaultRate;
+
+    private final double burstSeconds;
+
+    private final int maxBuckets;
+
+    private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    // by endpoint, for the clients beyond maxBuckets
+    private final ConcurrentMap<String, TokenBucket> overflowBuckets = new ConcurrentHashMap<>();
+
+    private final long sweepIntervalNanos;
+
+    private final AtomicLong nextSweep;
+
+    /**
+     * @param rates       requests per second allowed to each client, by endpoint name
+     * @param defaultRate rate of the endpoints missing from {@code rates}, 0 or less for no limit
+     */
+    RateLimiter(Map<String, Double> rates, double defaultRate, double burstSeconds, int maxBuckets) {
+        this.rates = rates;
+        this.defaultRate = defaultRate;
+        this.burstSeconds = burstSeconds;
+        this.maxBuckets = maxBuckets;
+        this.sweepIntervalNanos = (long) (burstSeconds * 1_000_000_000);
+        this.nextSweep = new AtomicLong(NEVER_SWEPT);
+    }
+
+    /**
+     * Takes a token from the bucket of a client for an endpoint.
+     *
+     * @return 0 if the request is allowed, otherwise the time in nanoseconds until the client may retry
+     */
+    long tryAcquire(String client, String endpoint, long nowNanos) {
+        double rate = rates.getOrDefault(endpoint, defaultRate);
+        if (rate <= 0) {
+            return 0;
+        }
+        String key = endpoint + ' ' + client;
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= maxBuckets) {
+                sweep(nowNanos);
+            }
+            // the size is approximate under concurrent creations, it may exceed maxBuckets by the number of threads
+            bucket = buckets.size() < maxBuckets ? buckets.computeIfAbsent(key, k -> newBucket(rate, nowNanos))
+                    : overflowBuckets.computeIfAbsent(endpoint, k -> newBucket(rate, nowNanos));
+        }
+        return bucket.tryAcquire(nowNanos);
+    }
+
+    /**
+     * Drops the full buckets, unless they were swept less than {@code burstSeconds} ago or another thread does it.
+     */
+    private void sweep(long nowNanos) {
+        long next = nextSweep.get();
+        boolean due = next == NEVER_SWEPT || nowNanos - next >= 0;
+        if (due && nextSweep.compareAndSet(next, nowNanos + sweepIntervalNanos)) {
+            buckets.values().removeIf(candidate -> candidate.isFull(nowNanos));
+        }
+    }
+
+    private TokenBucket newBucket(double rate, long nowNanos) {
+        return new TokenBucket(rate, (int) Math.ceil(rate * burstSeconds), nowNanos);
+    }
+
+    int bucketCount() {
+        return buckets.size();
+    }
+}
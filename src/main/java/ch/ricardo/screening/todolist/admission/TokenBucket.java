@@ -0,0 +1,54 @@
+package ch.ricardo.screening.todolist.admission;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket of {@code burst} tokens refilled at {@code rate} tokens per second.
+ * <p>
+ * The bucket is kept as the time at which it will be full again (the generic cell rate algorithm, equivalent to a
+ * token bucket): taking a token pushes this time by one refill interval, and is refused when it would move more than
+ * {@code burst} intervals ahead of now. A single long updated by compare-and-set, so that the threads of a client
+ * never wait for each other, and no refill timer.
+ */
+final class TokenBucket {
+
+    private final long intervalNanos;
+
+    // a bucket full again in less than this can still give a token
+    private final long toleranceNanos;
+
+    private final AtomicLong fullAt;
+
+    TokenBucket(double rate, int burst, long nowNanos) {
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000 / rate));
+        this.toleranceNanos = intervalNanos * (Math.max(1, burst) - 1);
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Takes a token if one is left.
+     *
+     * @return 0 if a token was taken, otherwise the time in nanoseconds until the next token
+     */
+    long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = fullAt.get();
+            // an idle bucket does not store more than its burst
+            long from = current - nowNanos > 0 ? current : nowNanos;
+            long wait = from - toleranceNanos - nowNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (fullAt.compareAndSet(current, from + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Whether all the tokens are back, in which case forgetting the bucket changes nothing.
+     */
+    boolean isFull(long nowNanos) {
+        return fullAt.get() - nowNanos <= 0;
+    }
+}
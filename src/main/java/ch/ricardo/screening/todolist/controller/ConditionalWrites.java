@@ -0,0 +1,45 @@
+package ch.ricardo.screening.todolist.controller;
+
+import java.util.Optional;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.service.TodoListService;
+import ch.ricardo.screening.todolist.service.WriteOutcome;
+
+/**
+ * Writes conditioned by an {@code If-Match} header. The tag is checked against the current version of the item, then
+ * the write is a compare-and-set on this version: an item changed between the check and the write is not
+ * overwritten, the write is {@link WriteOutcome#STALE} instead.
+ * <p>
+ * A missing item is {@link WriteOutcome#NOT_FOUND} rather than a failed precondition, the status the request would
+ * get without the header.
+ */
+final class ConditionalWrites {
+
+    private ConditionalWrites() {
+    }
+
+    static WriteOutcome update(TodoListService service, Long id, String ifMatch, TodoItem updatedItem) {
+        Optional<TodoItem> current = service.findItemById(id);
+        if (!current.isPresent()) {
+            return WriteOutcome.NOT_FOUND;
+        }
+        long version = current.get().getVersion();
+        if (ETags.matchFails(ifMatch, ETags.ofItem(id, version))) {
+            return WriteOutcome.STALE;
+        }
+        return service.compareAndUpdate(id, version, updatedItem);
+    }
+
+    static WriteOutcome delete(TodoListService service, Long id, String ifMatch) {
+        Optional<TodoItem> current = service.findItemById(id);
+        if (!current.isPresent()) {
+            return WriteOutcome.NOT_FOUND;
+        }
+        long version = current.get().getVersion();
+        if (ETags.matchFails(ifMatch, ETags.ofItem(id, version))) {
+            return WriteOutcome.STALE;
+        }
+        return service.compareAndDelete(id, version);
+    }
+}
@@ -0,0 +1,104 @@
+package ch.ricardo.screening.todolist.controller;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+import org.springframework.http.MediaType;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+
+/**
+ * Strong entity tags derived from the versions of the service.
+ * <p>
+ * The tag of an item also holds its id: items restored from a snapshot all get the version of the snapshot, their
+ * tags still tell them apart.
+ * <p>
+ * Versions may start over when the application restarts (e.g. without persistence), or when a replica reloads the
+ * list from a primary that restarted, so tags are prefixed with an epoch drawn at startup and again at each reload: a
+ * tag obtained before a restart or a reload never matches afterwards.
+ * <p>
+ * A strong tag identifies the bytes of one representation, so the tags of the binary representations end with their
+ * format (e.g. {@code -smile}), and the {@code CompressionFilter} appends the content coding of compressed responses
+ * (e.g. {@code -gzip}). {@code If-Match} accepts the tag of any representation of the current state of an item.
+ */
+final class ETags {
+
+    // the representation and coding suffixes a tag sent to a client may end with
+    private static final Pattern SUFFIXES = Pattern.compile("(-(smile|cbor|protobuf))?(-(gzip|zstd))?\"");
+
+    private static volatile String epoch = newEpoch();
+
+    private ETags() {
+    }
+
+    static String of(long version) {
+        return "\"" + epoch + "-" + Long.toString(version, 36) + "\"";
+    }
+
+    static String of(long version, MediaType representation) {
+        return withRepresentation(of(version), representation);
+    }
+
+    static String ofItem(TodoItem item) {
+        return ofItem(item.getId(), item.getVersion());
+    }
+
+    static String ofItem(TodoItem item, MediaType representation) {
+        return withRepresentation(ofItem(item), representation);
+    }
+
+    static String ofItem(Long id, long version) {
+        return "\"" + epoch + "-" + Long.toString(id, 36) + "-" + Long.toString(version, 36) + "\"";
+    }
+
+    private static String withRepresentation(String etag, MediaType representation) {
+        if (MediaType.APPLICATION_JSON.isCompatibleWith(representation)) {
+            return etag;
+        }
+        String format = representation.getSubtype().replaceFirst("^x-(jackson-)?", "");
+        return etag.substring(0, etag.length() - 1) + "-" + format + "\"";
+    }
+
+    static void renewEpoch() {
+        epoch = newEpoch();
+    }
+
+    private static String newEpoch() {
+        return Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+    }
+
+    /**
+     * Whether a tag is listed in an {@code If-None-Match} header, with the weak comparison this header requires.
+     */
+    static boolean noneMatchFails(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether a tag is missing from an {@code If-Match} header, with the strong comparison this header requires: weak
+     * tags never match. {@code *} matches any tag, the item only has to exist. The tag of any representation or coding
+     * of the given one matches, the write does not depend on the representation the client read.
+     */
+    static boolean matchFails(String ifMatch, String etag) {
+        if (ifMatch == null) {
+            return false;
+        }
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.startsWith(etag.substring(0, etag.length() - 1))
+                    && SUFFIXES.matcher(tag).region(etag.length() - 1, tag.length()).matches()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,109 @@
+package ch.ricardo.screening.todolist.controller;
+
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.model.TodoListEvent;
+import ch.ricardo.screening.todolist.service.TodoListListener;
+import ch.ricardo.screening.todolist.service.TodoListService;
+import ch.ricardo.screening.todolist.service.VersionedItems;
+
+/**
+ * The whole item list, encoded as JSON, cached until the next write.
+ * <p>
+ * The cached encoding is tagged with the version of the list the items were read at, atomically (see
+ * {@link TodoListService#retrieveAllItemsWithVersion()}): a tag always stands for exactly one content, and a client
+ * can never hold a tag newer than its content. Any write increases the version of the list, which invalidates the
+ * cache. Only one thread encodes the list at a time, so a write followed by many
+ * polls costs a single encoding. Lists larger than {@code todolist.list-cache.max-bytes} are encoded but not cached,
+ * and a maximum of 0 disables the cache: the list is then written to the response as it is read, never encoded whole
+ * on the heap.
+ * <p>
+ * The version of a replica goes back when it reloads the list from a primary that restarted: the cache is then
+ * dropped, and the ETag epoch renewed, before the version could match a cached encoding or a tag again.
+ */
+@Component
+@Lazy(false)
+public class ItemListJsonCache implements TodoListListener {
+
+    @Autowired
+    TodoListService todolistService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Value("${todolist.list-cache.max-bytes:67108864}")
+    long maxBytes;
+
+    private volatile EncodedItemList cached;
+
+    @PostConstruct
+    void listen() {
+        todolistService.addListener(this);
+    }
+
+    @Override
+    public void onItems(long version, List<TodoItem> items) {
+        cached = null;
+        ETags.renewEpoch();
+    }
+
+    @Override
+    public void onEvent(TodoListEvent event) {
+    }
+
+    /**
+     * Whether the list is cached, or should rather be written to the response as it is read.
+     */
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    public EncodedItemList get() throws JsonProcessingException {
+        EncodedItemList current = cached;
+        if (current != null && current.getVersion() == todolistService.getVersion()) {
+            return current;
+        }
+        synchronized (this) {
+            current = cached;
+            if (current != null && current.getVersion() == todolistService.getVersion()) {
+                return current;
+            }
+            VersionedItems items = todolistService.retrieveAllItemsWithVersion();
+            byte[] json = objectMapper.writeValueAsBytes(items.getItems());
+            current = new EncodedItemList(items.getVersion(), json);
+            cached = json.length <= maxBytes ? current : null;
+            return current;
+        }
+    }
+
+    public static class EncodedItemList {
+
+        private final long version;
+
+        private final byte[] json;
+
+        EncodedItemList(long version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+    }
+}
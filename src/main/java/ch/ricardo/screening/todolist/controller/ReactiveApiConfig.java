@@ -0,0 +1,108 @@
+package ch.ricardo.screening.todolist.controller;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.DELETE;
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+import static org.springframework.web.reactive.function.server.RequestPredicates.PUT;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.server.HandlerFilterFunction;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import ch.ricardo.screening.todolist.logging.RequestLog;
+import ch.ricardo.screening.todolist.service.ReactiveTodoListService;
+import ch.ricardo.screening.todolist.service.TodoListService;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Routes of the reactive variant of the API, served by WebFlux on Netty when the application is started with
+ * {@code spring.main.web-application-type=reactive} (e.g. with the {@code reactive} profile). The Spring MVC
+ * controllers are not registered then.
+ * <p>
+ * Calls to the service run on bounded pools: a fixed number of threads, and a bounded queue of the calls waiting for
+ * one of them. A call that finds the queue full is rejected, and its request gets a {@code 503 Service Unavailable}
+ * with a {@code Retry-After}, rather than waiting in an unbounded queue.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveApiConfig {
+
+    static final HandlerFilterFunction<ServerResponse, ServerResponse> REJECTED_AS_UNAVAILABLE =
+            (request, next) -> next.handle(request).onErrorResume(RejectedExecutionException.class,
+                    e -> ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1")
+                            .build());
+
+    /**
+     * Tomcat is on the classpath for the Spring MVC stack, and would be preferred to Netty otherwise.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public Scheduler todolistReadScheduler(@Value("${todolist.reactive.read-threads:8}") int readThreads,
+            @Value("${todolist.reactive.read-queue-size:1000}") int readQueueSize) {
+        return boundedScheduler("todolist-read-", readThreads, readQueueSize);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public Scheduler todolistWriteScheduler(@Value("${todolist.reactive.write-threads:8}") int writeThreads,
+            @Value("${todolist.reactive.write-queue-size:1000}") int writeQueueSize) {
+        return boundedScheduler("todolist-write-", writeThreads, writeQueueSize);
+    }
+
+    @Bean
+    public ReactiveTodoListService reactiveTodoListService(TodoListService todolistService,
+            Scheduler todolistReadScheduler, Scheduler todolistWriteScheduler) {
+        return new ReactiveTodoListService(todolistService, todolistReadScheduler, todolistWriteScheduler);
+    }
+
+    @Bean
+    public TodoListHandler todoListHandler(ReactiveTodoListService reactiveTodoListService, ObjectMapper objectMapper,
+            RequestLog requestLog) {
+        return new TodoListHandler(reactiveTodoListService, objectMapper, requestLog);
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> todoListRoutes(TodoListHandler handler) {
+        return route(GET("/todolist/items"), handler::retrieveAllItems)
+                .andRoute(GET("/todolist/items/{id}"), handler::retrieveItem)
+                .andRoute(POST("/todolist/items"), handler::createItem)
+                .andRoute(PUT("/todolist/items/{id}"), handler::updateItem)
+                .andRoute(DELETE("/todolist/items/{id}"), handler::deleteItem)
+                .andRoute(DELETE("/todolist/items"), handler::deleteAllItems)
+                .filter(REJECTED_AS_UNAVAILABLE);
+    }
+
+    /**
+     * Returns a scheduler of {@code threads} threads, rejecting the tasks beyond {@code queueSize} waiting ones with
+     * a {@link RejectedExecutionException}.
+     */
+    static Scheduler boundedScheduler(String threadNamePrefix, int threads, int queueSize) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, threadNamePrefix + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        return Schedulers.fromExecutorService(executor);
+    }
+}
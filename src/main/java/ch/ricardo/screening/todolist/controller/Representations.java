@@ -0,0 +1,50 @@
+package ch.ricardo.screening.todolist.controller;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import ch.ricardo.screening.todolist.wire.WireFormats;
+
+/**
+ * Selects the representation of items that Spring MVC writes for an {@code Accept} header, among JSON and the binary
+ * formats, the way its message converters do. The handlers need it before the body is written, to tag each
+ * representation with its own ETag, and to serve the cached JSON encoding of the list to JSON clients only.
+ */
+final class Representations {
+
+    static final List<MediaType> ITEMS = Arrays.asList(MediaType.APPLICATION_JSON, WireFormats.APPLICATION_SMILE,
+            WireFormats.APPLICATION_CBOR, WireFormats.APPLICATION_PROTOBUF);
+
+    private Representations() {
+    }
+
+    /**
+     * Returns the most specific and preferred of the item types accepted, JSON if none is (the request is then
+     * rejected by Spring MVC anyway).
+     */
+    static MediaType select(String accept) {
+        List<MediaType> acceptedTypes;
+        try {
+            acceptedTypes = accept == null ? Arrays.asList(MediaType.ALL) : MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> compatibleTypes = new ArrayList<>();
+        for (MediaType acceptedType : acceptedTypes) {
+            for (MediaType itemType : ITEMS) {
+                if (acceptedType.isCompatibleWith(itemType)) {
+                    MediaType producedType = itemType.copyQualityValue(acceptedType);
+                    compatibleTypes.add(MediaType.SPECIFICITY_COMPARATOR.compare(acceptedType, producedType) < 0
+                            ? acceptedType : producedType);
+                }
+            }
+        }
+        MediaType.sortBySpecificityAndQuality(compatibleTypes);
+        return compatibleTypes.stream().filter(MediaType::isConcrete).findFirst()
+                .map(MediaType::removeQualityValue).orElse(MediaType.APPLICATION_JSON);
+    }
+}
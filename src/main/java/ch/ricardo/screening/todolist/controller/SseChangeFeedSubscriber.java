@@ -0,0 +1,65 @@
+package ch.ricardo.screening.todolist.controller;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import ch.ricardo.screening.todolist.events.ChangeFeedSubscriber;
+import ch.ricardo.screening.todolist.model.TodoListEvent;
+
+/**
+ * Sends the changes of the list as Server-Sent Events, named {@code created}, {@code updated}, {@code deleted} and
+ * {@code cleared}. The id of each event is its sequence, i.e. the version of the list once the change is applied, so
+ * that a client resumes with the standard {@code Last-Event-ID} header. The data is the item in JSON, or its id only
+ * for a deleted item.
+ */
+class SseChangeFeedSubscriber implements ChangeFeedSubscriber {
+
+    private final SseEmitter emitter;
+
+    SseChangeFeedSubscriber(SseEmitter emitter) {
+        this.emitter = emitter;
+    }
+
+    @Override
+    public void send(TodoListEvent event) throws IOException {
+        String name;
+        Object data;
+        switch (event.getType()) {
+            case CREATED:
+                name = "created";
+                data = event.toItem();
+                break;
+            case UPDATED:
+                name = "updated";
+                data = event.toItem();
+                break;
+            case DELETED:
+                name = "deleted";
+                data = Collections.singletonMap("id", event.getId());
+                break;
+            case ALL_DELETED:
+                name = "cleared";
+                // browsers only dispatch events that have data
+                data = Collections.emptyMap();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown event type " + event.getType());
+        }
+        emitter.send(SseEmitter.event().id(Long.toString(event.getSequence())).name(name)
+                .data(data, MediaType.APPLICATION_JSON));
+    }
+
+    @Override
+    public void reset(long version) throws IOException {
+        emitter.send(SseEmitter.event().id(Long.toString(version)).name("reset")
+                .data(Collections.singletonMap("version", version), MediaType.APPLICATION_JSON));
+    }
+
+    @Override
+    public void disconnect() {
+        emitter.complete();
+    }
+}
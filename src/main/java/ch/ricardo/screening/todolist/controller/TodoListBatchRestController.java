@@ -0,0 +1,139 @@
+package ch.ricardo.screening.todolist.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import ch.ricardo.screening.todolist.logging.RequestLog;
+import ch.ricardo.screening.todolist.model.BatchItemResult;
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.service.TodoListService;
+import ch.ricardo.screening.todolist.service.WriteOutcome;
+import ch.ricardo.screening.todolist.wire.WireFormats;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@Api(value="Todo list batches", description="Batch operations on items of the Todo list")
+@RequestMapping(value = "/todolist/items:batch", produces = {"application/json", WireFormats.APPLICATION_SMILE_VALUE,
+        WireFormats.APPLICATION_CBOR_VALUE, WireFormats.APPLICATION_PROTOBUF_VALUE})
+public class TodoListBatchRestController {
+
+    static final int MAX_BATCH_SIZE = 10_000;
+
+    @Autowired
+    TodoListService todolistService;
+
+    @Autowired
+    RequestLog requestLog;
+
+    @ApiOperation(value = "Create new Todo items given their contents. Provided ids are ignored. "
+            + "The result of each item is 201 (created) or 409 (same content as an existing item).")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Batch processed, see the result of each item"),
+            @ApiResponse(code = 400, message = "Too many items in the batch, or a null item")
+    })
+    @RequestMapping(method = RequestMethod.POST, consumes = {"application/json",
+            WireFormats.APPLICATION_SMILE_VALUE, WireFormats.APPLICATION_CBOR_VALUE,
+            WireFormats.APPLICATION_PROTOBUF_VALUE})
+    public ResponseEntity<List<BatchItemResult>> createItems(@RequestBody List<TodoItem> items) {
+        requestLog.info("createItems", "Creating a batch of {} items", items.size());
+        if (items.size() > MAX_BATCH_SIZE) {
+            return tooLarge("createItems", items.size());
+        }
+        if (items.contains(null)) {
+            return invalid("createItems", items.size());
+        }
+        List<BatchItemResult> results = new ArrayList<>(items.size());
+        for (Optional<TodoItem> createdItem : todolistService.createItemsIfAbsent(items)) {
+            results.add(createdItem
+                    .map(item -> new BatchItemResult(HttpStatus.CREATED.value(), item.getId()))
+                    .orElseGet(() -> new BatchItemResult(HttpStatus.CONFLICT.value(), null)));
+        }
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
+    @ApiOperation(value = "Update the content of existing Todo items, identified by their ids. "
+            + "The result of each item is 200 (updated), 404 (not found) or 409 (same content as another item).")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Batch processed, see the result of each item"),
+            @ApiResponse(code = 400, message = "Too many items in the batch, or a null item")
+    })
+    @RequestMapping(method = RequestMethod.PATCH, consumes = {"application/json",
+            WireFormats.APPLICATION_SMILE_VALUE, WireFormats.APPLICATION_CBOR_VALUE,
+            WireFormats.APPLICATION_PROTOBUF_VALUE})
+    public ResponseEntity<List<BatchItemResult>> updateItems(@RequestBody List<TodoItem> items) {
+        requestLog.info("updateItems", "Updating a batch of {} items", items.size());
+        if (items.size() > MAX_BATCH_SIZE) {
+            return tooLarge("updateItems", items.size());
+        }
+        if (items.contains(null)) {
+            return invalid("updateItems", items.size());
+        }
+        List<WriteOutcome> outcomes = todolistService.updateItems(items);
+        List<BatchItemResult> results = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            results.add(new BatchItemResult(statusOf(outcomes.get(i)).value(), items.get(i).getId()));
+        }
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
+    @ApiOperation(value = "Delete existing Todo items given their ids. "
+            + "The result of each item is 204 (deleted) or 404 (not found).")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Batch processed, see the result of each item"),
+            @ApiResponse(code = 400, message = "Too many items in the batch, or a null item")
+    })
+    @RequestMapping(method = RequestMethod.DELETE, consumes = {"application/json",
+            WireFormats.APPLICATION_SMILE_VALUE, WireFormats.APPLICATION_CBOR_VALUE,
+            WireFormats.APPLICATION_PROTOBUF_VALUE})
+    public ResponseEntity<List<BatchItemResult>> deleteItems(@RequestBody List<Long> ids) {
+        requestLog.info("deleteItems", "Deleting a batch of {} items", ids.size());
+        if (ids.size() > MAX_BATCH_SIZE) {
+            return tooLarge("deleteItems", ids.size());
+        }
+        if (ids.contains(null)) {
+            return invalid("deleteItems", ids.size());
+        }
+        List<Boolean> deleted = todolistService.deleteItemsById(ids);
+        List<BatchItemResult> results = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            HttpStatus status = deleted.get(i) ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND;
+            results.add(new BatchItemResult(status.value(), ids.get(i)));
+        }
+        return new ResponseEntity<>(results, HttpStatus.OK);
+    }
+
+    private ResponseEntity<List<BatchItemResult>> tooLarge(String endpoint, int size) {
+        requestLog.warn(endpoint, "Unable to process a batch of {} items, the limit is {}", size, MAX_BATCH_SIZE);
+        return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+
+    private ResponseEntity<List<BatchItemResult>> invalid(String endpoint, int size) {
+        requestLog.warn(endpoint, "Unable to process a batch of {} items containing a null item", size);
+        return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    }
+
+    private static HttpStatus statusOf(WriteOutcome outcome) {
+        switch (outcome) {
+            case APPLIED:
+                return HttpStatus.OK;
+            case NOT_FOUND:
+                return HttpStatus.NOT_FOUND;
+            default:
+                return HttpStatus.CONFLICT;
+        }
+    }
+}
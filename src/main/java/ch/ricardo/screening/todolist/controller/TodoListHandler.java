@@ -0,0 +1,269 @@
+package ch.ricardo.screening.todolist.controller;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.LongFunction;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import ch.ricardo.screening.todolist.logging.RequestLog;
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.service.ReactiveTodoListService;
+import ch.ricardo.screening.todolist.service.WriteOutcome;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Handlers of the reactive variant of {@code /todolist/items}, with the same contract as
+ * {@link TodoListRestController}: same statuses, headers and bodies, and same request logs. Routes are declared by
+ * {@link ReactiveApiConfig}.
+ * <p>
+ * The whole list is written as it is read from the service, a batch of items at a time, and only as fast as the
+ * client reads it: a slow client holds neither a thread nor the whole list.
+ */
+public class TodoListHandler {
+
+    static final MediaType APPLICATION_NDJSON =
+            MediaType.parseMediaType(TodoListRestController.APPLICATION_NDJSON_VALUE);
+
+    /**
+     * Number of items encoded in a single buffer when streaming the list.
+     */
+    private static final int ENCODING_BATCH_SIZE = 100;
+
+    private final ReactiveTodoListService todolistService;
+
+    private final ObjectMapper objectMapper;
+
+    private final RequestLog requestLog;
+
+    public TodoListHandler(ReactiveTodoListService todolistService, ObjectMapper objectMapper,
+            RequestLog requestLog) {
+        this.todolistService = todolistService;
+        this.objectMapper = objectMapper;
+        this.requestLog = requestLog;
+    }
+
+    public Mono<ServerResponse> retrieveAllItems(ServerRequest request) {
+        Optional<String> limitParameter = request.queryParam("limit");
+        if (!limitParameter.isPresent() && acceptsNdjson(request)) {
+            return streamAllItems();
+        }
+        if (!limitParameter.isPresent()) {
+            requestLog.info("retrieveAllItems", "Retrieving all items");
+            String ifNoneMatch = request.headers().asHttpHeaders().getFirst(HttpHeaders.IF_NONE_MATCH);
+            return todolistService.getVersion().flatMap(version -> {
+                String currentETag = ETags.of(version);
+                if (ETags.noneMatchFails(ifNoneMatch, currentETag)) {
+                    return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(currentETag).build();
+                }
+                // the items may be more recent than the version read above, hence their own ETag
+                return todolistService.retrieveAllItemsWithVersion().flatMap(items -> {
+                    Flux<byte[]> json = Flux.concat(Mono.just(new byte[] {'['}),
+                            encode(Flux.fromIterable(items.getItems()), ','), Mono.just(new byte[] {']'}));
+                    return ServerResponse.ok().eTag(ETags.of(items.getVersion()))
+                            .contentType(MediaType.APPLICATION_JSON_UTF8).body(json, byte[].class);
+                });
+            });
+        }
+        int limit = intParameter(limitParameter.get(), "limit");
+        long after = longParameter(request.queryParam("after").orElse("0"), "after");
+        requestLog.info("retrieveAllItems", "Retrieving at most {} items after id {}", limit, after);
+        if (limit < 1 || limit > TodoListRestController.MAX_PAGE_SIZE) {
+            requestLog.warn("retrieveAllItems", "Unable to retrieve items, invalid page limit {}", limit);
+            return ServerResponse.badRequest().build();
+        }
+        return todolistService.retrieveItems(after, limit).flatMap(page -> {
+            ServerResponse.BodyBuilder response = ServerResponse.ok().contentType(MediaType.APPLICATION_JSON_UTF8);
+            if (page.size() == limit) {
+                long lastId = page.get(page.size() - 1).getId();
+                String next = UriComponentsBuilder.fromUri(request.uri()).replaceQuery(null)
+                        .queryParam("after", lastId).queryParam("limit", limit).build().toUriString();
+                response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+            }
+            return response.syncBody(page);
+        });
+    }
+
+    public Mono<ServerResponse> retrieveItem(ServerRequest request) {
+        Long id = id(request);
+        requestLog.info("retrieveItem", "Retrieving item id {}", id);
+        String ifNoneMatch = request.headers().asHttpHeaders().getFirst(HttpHeaders.IF_NONE_MATCH);
+        return todolistService.findItemById(id)
+                .flatMap(item -> {
+                    String etag = ETags.ofItem(item);
+                    if (ETags.noneMatchFails(ifNoneMatch, etag)) {
+                        return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+                    }
+                    return ServerResponse.ok().eTag(etag).contentType(MediaType.APPLICATION_JSON_UTF8)
+                            .syncBody(item);
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    requestLog.warn("retrieveItem", "Unable to retrieve item id {}", id);
+                    return ServerResponse.notFound().build();
+                }));
+    }
+
+    public Mono<ServerResponse> createItem(ServerRequest request) {
+        return requestBody(request).flatMap(item -> {
+            requestLog.info("createItem", "Creating new item with content {}", item.getContent());
+            return todolistService.createIfAbsent(item)
+                    .flatMap(created -> {
+                        URI location = UriComponentsBuilder.fromUri(request.uri()).replaceQuery(null)
+                                .replacePath("/todolist/items/{id}").buildAndExpand(created.getId()).toUri();
+                        return ServerResponse.created(location).build();
+                    })
+                    .switchIfEmpty(Mono.defer(() -> {
+                        requestLog.warn("createItem",
+                                "Unable to create new item, another item already has the same content: {}",
+                                item.getContent());
+                        return ServerResponse.status(HttpStatus.CONFLICT).build();
+                    }));
+        });
+    }
+
+    public Mono<ServerResponse> updateItem(ServerRequest request) {
+        Long id = id(request);
+        String ifMatch = request.headers().asHttpHeaders().getFirst(HttpHeaders.IF_MATCH);
+        return requestBody(request).flatMap(item -> {
+            requestLog.info("updateItem", "Updating item id {} with new content {}", id, item.getContent());
+            Mono<WriteOutcome> update = ifMatch == null ? todolistService.updateItem(id, item)
+                    : ifMatch(id, ifMatch, version -> todolistService.compareAndUpdate(id, version, item));
+            return update.flatMap(outcome -> {
+                switch (outcome) {
+                case APPLIED:
+                    return todolistService.findItemById(id)
+                            .flatMap(updated -> ServerResponse.ok().eTag(ETags.ofItem(updated))
+                                    .contentType(MediaType.APPLICATION_JSON_UTF8).syncBody(updated))
+                            // deleted in the meantime
+                            .switchIfEmpty(Mono.defer(() -> ServerResponse.notFound().build()));
+                case CONFLICT:
+                    requestLog.warn("updateItem",
+                            "Unable to update item id {}, another item already has the same content: {}",
+                            id, item.getContent());
+                    return ServerResponse.status(HttpStatus.CONFLICT).build();
+                case STALE:
+                    requestLog.warn("updateItem", "Unable to update item id {}, it changed since {}", id, ifMatch);
+                    return ServerResponse.status(HttpStatus.PRECONDITION_FAILED).build();
+                default:
+                    requestLog.warn("updateItem", "Unable to update, item id {} was not found", id);
+                    return ServerResponse.notFound().build();
+                }
+            });
+        });
+    }
+
+    public Mono<ServerResponse> deleteItem(ServerRequest request) {
+        Long id = id(request);
+        String ifMatch = request.headers().asHttpHeaders().getFirst(HttpHeaders.IF_MATCH);
+        requestLog.info("deleteItem", "Deleting item id {}", id);
+        if (ifMatch == null) {
+            return todolistService.deleteItemById(id)
+                    .flatMap(deleted -> deleted ? ServerResponse.noContent().build()
+                            : ServerResponse.notFound().build());
+        }
+        return ifMatch(id, ifMatch, version -> todolistService.compareAndDelete(id, version)).flatMap(outcome -> {
+            switch (outcome) {
+            case APPLIED:
+                return ServerResponse.noContent().build();
+            case STALE:
+                requestLog.warn("deleteItem", "Unable to delete item id {}, it changed since {}", id, ifMatch);
+                return ServerResponse.status(HttpStatus.PRECONDITION_FAILED).build();
+            default:
+                return ServerResponse.notFound().build();
+            }
+        });
+    }
+
+    public Mono<ServerResponse> deleteAllItems(ServerRequest request) {
+        requestLog.info("deleteAllItems", "Deleting all items");
+        return todolistService.deleteAllItems().then(ServerResponse.noContent().build());
+    }
+
+    /**
+     * Applies a write conditioned by an {@code If-Match} header, as a compare-and-set on the version the tag matched,
+     * like {@link ConditionalWrites} does for the servlet stack.
+     */
+    private Mono<WriteOutcome> ifMatch(Long id, String ifMatch, LongFunction<Mono<WriteOutcome>> write) {
+        return todolistService.findItemById(id)
+                .flatMap(current -> ETags.matchFails(ifMatch, ETags.ofItem(current))
+                        ? Mono.just(WriteOutcome.STALE) : write.apply(current.getVersion()))
+                .defaultIfEmpty(WriteOutcome.NOT_FOUND);
+    }
+
+    private Mono<ServerResponse> streamAllItems() {
+        requestLog.info("streamAllItems", "Streaming all items");
+        return ServerResponse.ok().contentType(APPLICATION_NDJSON)
+                .body(encode(todolistService.retrieveAllItems(), '\n'), byte[].class);
+    }
+
+    /**
+     * Encodes items in JSON, a batch at a time, separated by the given character. A line feed separator also
+     * terminates the last item.
+     */
+    private Flux<byte[]> encode(Flux<TodoItem> items, char separator) {
+        boolean terminated = separator == '\n';
+        return items.buffer(ENCODING_BATCH_SIZE).index().map(batch -> {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+                generator.setRootValueSeparator(null);
+                List<TodoItem> batchItems = batch.getT2();
+                for (int i = 0; i < batchItems.size(); i++) {
+                    if (!terminated && (batch.getT1() > 0 || i > 0)) {
+                        generator.writeRaw(separator);
+                    }
+                    generator.writeObject(batchItems.get(i));
+                    if (terminated) {
+                        generator.writeRaw(separator);
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return output.toByteArray();
+        });
+    }
+
+    private static boolean acceptsNdjson(ServerRequest request) {
+        // */* also accepts NDJSON, but then JSON is preferred, as with Spring MVC
+        return request.headers().accept().stream().anyMatch(type -> !type.isWildcardType()
+                && !type.isWildcardSubtype() && type.isCompatibleWith(APPLICATION_NDJSON));
+    }
+
+    private static Mono<TodoItem> requestBody(ServerRequest request) {
+        return request.bodyToMono(TodoItem.class)
+                .switchIfEmpty(Mono.error(new ServerWebInputException("Missing request body")));
+    }
+
+    private static Long id(ServerRequest request) {
+        return longParameter(request.pathVariable("id"), "id");
+    }
+
+    private static long longParameter(String value, String name) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new ServerWebInputException("Invalid " + name + ": " + value);
+        }
+    }
+
+    private static int intParameter(String value, String name) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new ServerWebInputException("Invalid " + name + ": " + value);
+        }
+    }
+}
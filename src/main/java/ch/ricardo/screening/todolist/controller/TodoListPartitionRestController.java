@@ -0,0 +1,240 @@
+package ch.ricardo.screening.todolist.controller;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import ch.ricardo.screening.todolist.logging.RequestLog;
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.service.TodoListPartitions;
+import ch.ricardo.screening.todolist.service.TodoListService;
+import ch.ricardo.screening.todolist.service.TooManyListsException;
+import ch.ricardo.screening.todolist.service.WriteOutcome;
+import ch.ricardo.screening.todolist.wire.WireFormats;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+
+/**
+ * The items API on lists partitioned by list id, {@code /todolist/{listId}/items}. Each list has its own items, ids
+ * and ETags, see {@link TodoListPartitions}. The list id {@code items} is excluded, so that
+ * {@code /todolist/items/...} keeps addressing the default list. A list that cannot be created or loaded because too
+ * many lists are in memory gets a {@code 403 Forbidden}.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@Api(value="Partitioned Todo lists", description="CRUD operations for managing items of a Todo list given its id")
+@RequestMapping(value = "/todolist/{listId:(?!items$)" + TodoListPartitions.LIST_ID_REGEX + "}/items",
+        produces = {"application/json", WireFormats.APPLICATION_SMILE_VALUE, WireFormats.APPLICATION_CBOR_VALUE,
+                WireFormats.APPLICATION_PROTOBUF_VALUE})
+public class TodoListPartitionRestController {
+
+    @Autowired
+    TodoListPartitions partitions;
+
+    @Autowired
+    RequestLog requestLog;
+
+    @ApiOperation(value = "Retrieve all items of a Todo List, or a page of items when a limit is given. "
+            + "The Link header of a full page points to the next one. The whole list carries an ETag.",
+            response = Iterable.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Items successfully retrieved"),
+            @ApiResponse(code = 304, message = "The list did not change since the ETag given in If-None-Match"),
+            @ApiResponse(code = 400, message = "Invalid page limit")
+    })
+    @RequestMapping(method = RequestMethod.GET)
+    public ResponseEntity<List<TodoItem>> retrieveListItems(
+            @ApiParam("Id of the list, letters, digits, - and _") @PathVariable("listId") String listId,
+            @ApiParam("Maximum number of items to return, between 1 and " + TodoListRestController.MAX_PAGE_SIZE)
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @ApiParam("Only return items with an id greater than this one")
+            @RequestParam(value = "after", required = false, defaultValue = "0") long after,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @ApiParam(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            UriComponentsBuilder ucBuilder) {
+        Optional<TodoListService> list = partitions.find(listId);
+        if (limit == null) {
+            requestLog.info("retrieveListItems", "Retrieving all items of list {}", listId);
+            MediaType representation = Representations.select(accept);
+            String etag = ETags.of(list.map(TodoListService::getVersion).orElse(0L), representation);
+            if (ETags.noneMatchFails(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).varyBy(HttpHeaders.ACCEPT).eTag(etag).build();
+            }
+            // items are read after the version, so they are at least as recent as their ETag
+            return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).eTag(etag)
+                    .body(list.map(TodoListService::retrieveAllItems).orElse(Collections.emptyList()));
+        }
+        requestLog.info("retrieveListItems", "Retrieving a page of list {} after id {}", listId, after);
+        if (limit < 1 || limit > TodoListRestController.MAX_PAGE_SIZE) {
+            requestLog.warn("retrieveListItems", "Unable to retrieve items, invalid page limit {}", limit);
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<TodoItem> page = list.map(service -> service.retrieveItems(after, limit))
+                .orElse(Collections.emptyList());
+        HttpHeaders headers = new HttpHeaders();
+        headers.setVary(Collections.singletonList(HttpHeaders.ACCEPT));
+        if (page.size() == limit) {
+            long lastId = page.get(page.size() - 1).getId();
+            String next = ucBuilder.path("/todolist/{listId}/items").queryParam("after", lastId)
+                    .queryParam("limit", limit).buildAndExpand(listId).toUriString();
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return new ResponseEntity<>(page, headers, HttpStatus.OK);
+    }
+
+    @ApiOperation(value = "Retrieve an item of a Todo List given its id. The item carries an ETag.",
+            response = TodoItem.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Item successfully retrieved"),
+            @ApiResponse(code = 304, message = "The item did not change since the ETag given in If-None-Match"),
+            @ApiResponse(code = 404, message = "Item not found")
+    })
+    @RequestMapping(value = "/{id}", method = RequestMethod.GET)
+    public ResponseEntity<TodoItem> retrieveListItem(@PathVariable("listId") String listId,
+            @PathVariable("id") Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @ApiParam(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        requestLog.info("retrieveListItem", "Retrieving item id {} of list {}", id, listId);
+        Optional<TodoItem> maybeItem = partitions.find(listId).flatMap(list -> list.findItemById(id));
+        if (!maybeItem.isPresent()) {
+            requestLog.warn("retrieveListItem", "Unable to retrieve item id {} of list {}", id, listId);
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        String etag = ETags.ofItem(maybeItem.get(), Representations.select(accept));
+        if (ETags.noneMatchFails(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).varyBy(HttpHeaders.ACCEPT).eTag(etag).build();
+        }
+        return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).eTag(etag).body(maybeItem.get());
+    }
+
+    @ApiOperation(value = "Create a new Todo item in a list given its content, the list is created if needed. "
+            + "Provided id is ignored.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 201, message = "Item successfully created"),
+            @ApiResponse(code = 403, message = "Too many lists in memory to create the list. Not created"),
+            @ApiResponse(code = 409, message = "An existing item of the list has the same content. Not created")
+    })
+    @RequestMapping(method = RequestMethod.POST, consumes = {"application/json",
+            WireFormats.APPLICATION_SMILE_VALUE, WireFormats.APPLICATION_CBOR_VALUE,
+            WireFormats.APPLICATION_PROTOBUF_VALUE})
+    public ResponseEntity<Void> createListItem(@PathVariable("listId") String listId, @RequestBody TodoItem item,
+            UriComponentsBuilder ucBuilder) {
+        requestLog.info("createListItem", "Creating new item in list {} with content {}", listId, item.getContent());
+        Optional<TodoItem> createdItem = partitions.getOrCreate(listId).createIfAbsent(item);
+        if (!createdItem.isPresent()) {
+            requestLog.warn("createListItem",
+                    "Unable to create new item, another item of list {} already has the same content: {}", listId,
+                    item.getContent());
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setLocation(ucBuilder.path("/todolist/{listId}/items/{id}")
+                .buildAndExpand(listId, createdItem.get().getId()).toUri());
+        return new ResponseEntity<>(headers, HttpStatus.CREATED);
+    }
+
+    @ApiOperation(value = "Update the content of an existing Todo item of a list. Id provided in the input item is "
+            + "ignored.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Item successfully updated"),
+            @ApiResponse(code = 404, message = "Item not found"),
+            @ApiResponse(code = 409, message = "Another item of the list has the same content. Not updated"),
+            @ApiResponse(code = 412, message = "The item changed since it was read (If-Match). Not updated")
+    })
+    @RequestMapping(value = "/{id}", method = RequestMethod.PUT, consumes = {"application/json",
+            WireFormats.APPLICATION_SMILE_VALUE, WireFormats.APPLICATION_CBOR_VALUE,
+            WireFormats.APPLICATION_PROTOBUF_VALUE})
+    public ResponseEntity<TodoItem> updateListItem(@PathVariable("listId") String listId,
+            @PathVariable("id") Long id,
+            @ApiParam(value = "ETag of the item as read, the item is only updated if it did not change since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @ApiParam(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestBody TodoItem updateItem) {
+        requestLog.info("updateListItem", "Updating item id {} of list {}", id, listId);
+        Optional<TodoListService> list = partitions.find(listId);
+        WriteOutcome outcome = list.map(service -> ifMatch != null
+                ? ConditionalWrites.update(service, id, ifMatch, updateItem)
+                : service.update(id, updateItem))
+                .orElse(WriteOutcome.NOT_FOUND);
+        switch (outcome) {
+            case APPLIED:
+                return retrieveListItem(listId, id, null, accept);
+            case CONFLICT:
+                requestLog.warn("updateListItem",
+                        "Unable to update item id {} of list {}, another item already has the same content", id,
+                        listId);
+                return new ResponseEntity<>(HttpStatus.CONFLICT);
+            case STALE:
+                requestLog.warn("updateListItem", "Unable to update item id {} of list {}, it changed since read",
+                        id, listId);
+                return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+            default:
+                requestLog.warn("updateListItem", "Unable to update, item id {} of list {} was not found", id,
+                        listId);
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+    }
+
+    @ApiOperation(value = "Delete an existing Todo item of a list given its id")
+    @ApiResponses(value = {
+            @ApiResponse(code = 204, message = "Item successfully deleted"),
+            @ApiResponse(code = 404, message = "Item not found"),
+            @ApiResponse(code = 412, message = "The item changed since it was read (If-Match). Not deleted")
+    })
+    @RequestMapping(value = "/{id}", method = RequestMethod.DELETE)
+    public ResponseEntity<Void> deleteListItem(@PathVariable("listId") String listId, @PathVariable("id") Long id,
+            @ApiParam(value = "ETag of the item as read, the item is only deleted if it did not change since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        requestLog.info("deleteListItem", "Deleting item id {} of list {}", id, listId);
+        WriteOutcome outcome = partitions.find(listId).map(list -> ifMatch != null
+                ? ConditionalWrites.delete(list, id, ifMatch)
+                : list.deleteItemById(id) ? WriteOutcome.APPLIED : WriteOutcome.NOT_FOUND)
+                .orElse(WriteOutcome.NOT_FOUND);
+        switch (outcome) {
+            case APPLIED:
+                return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+            case STALE:
+                requestLog.warn("deleteListItem", "Unable to delete item id {} of list {}, it changed since read",
+                        id, listId);
+                return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+            default:
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+    }
+
+    @ApiOperation(value = "Delete all items of a Todo list, other lists are left untouched and ids are not reused")
+    @ApiResponses(value = {
+            @ApiResponse(code = 204, message = "All items deleted")
+    })
+    @RequestMapping(method = RequestMethod.DELETE)
+    public ResponseEntity<Void> deleteAllListItems(@PathVariable("listId") String listId) {
+        requestLog.info("deleteAllListItems", "Deleting all items of list {}", listId);
+        partitions.find(listId).ifPresent(TodoListService::deleteAllItems);
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
+
+    @ExceptionHandler(TooManyListsException.class)
+    public ResponseEntity<Void> tooManyLists(TooManyListsException e) {
+        requestLog.warn("tooManyLists", "Unable to create or load a list: {}", e.getMessage());
+        return new ResponseEntity<>(HttpStatus.FORBIDDEN);
+    }
+}
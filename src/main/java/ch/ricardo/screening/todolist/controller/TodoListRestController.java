@@ -1,62 +1,277 @@
 package ch.ricardo.screening.todolist.controller;
 
-import java.util.Collection;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import ch.ricardo.screening.todolist.controller.ItemListJsonCache.EncodedItemList;
+import ch.ricardo.screening.todolist.events.TodoListChangeFeed;
+import ch.ricardo.screening.todolist.logging.RequestLog;
 import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.search.SearchHits;
+import ch.ricardo.screening.todolist.search.TodoListSearchIndex;
+import ch.ricardo.screening.todolist.service.ItemCursor;
+import ch.ricardo.screening.todolist.service.ItemPage;
+import ch.ricardo.screening.todolist.service.ItemQuery;
+import ch.ricardo.screening.todolist.service.TodoListAttributeIndex;
 import ch.ricardo.screening.todolist.service.TodoListService;
+import ch.ricardo.screening.todolist.service.VersionedItems;
+import ch.ricardo.screening.todolist.service.WriteOutcome;
+import ch.ricardo.screening.todolist.wire.WireFormats;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @Api(value="Todo list", description="CRUD operations for managing items of the Todo list")
-@RequestMapping(value = "/todolist/items", produces = {"application/json"})
+@RequestMapping(value = "/todolist/items", produces = {"application/json", WireFormats.APPLICATION_SMILE_VALUE,
+        WireFormats.APPLICATION_CBOR_VALUE, WireFormats.APPLICATION_PROTOBUF_VALUE})
 public class TodoListRestController {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(TodoListRestController.class);
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    static final int MAX_PAGE_SIZE = 10_000;
+
+    private static final int STREAM_PAGE_SIZE = 1_000;
+
+    static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+
+    static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
 
     @Autowired
     TodoListService todolistService;
 
-    @ApiOperation(value = "Retrieve all items of the Todo List", response = Iterable.class)
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    RequestLog requestLog;
+
+    @Autowired
+    ItemListJsonCache itemListJsonCache;
+
+    // absent when todolist.search.enabled is false
+    @Autowired(required = false)
+    TodoListSearchIndex searchIndex;
+
+    // absent when todolist.attribute-index.enabled is false
+    @Autowired(required = false)
+    TodoListAttributeIndex attributeIndex;
+
+    @Autowired
+    TodoListChangeFeed changeFeed;
+
+    @Value("${todolist.change-feed.timeout-ms:300000}")
+    long changeFeedTimeout;
+
+    @ApiOperation(value = "Retrieve all items of the Todo List, or a page of items when a limit is given, in JSON "
+            + "or in a binary format: Smile, CBOR or Protobuf (see proto/todolist.proto). "
+            + "The Link header of a full page points to the next one. The whole list carries an ETag. "
+            + "With filters or a sort order, retrieve a page of the matching items, at an offset or at the cursor "
+            + "given in the Link header of the previous page. "
+            + "With Accept: " + APPLICATION_NDJSON_VALUE + ", stream all items instead, one JSON item per line.",
+            response = Iterable.class)
     @ApiResponses(value = {
-            @ApiResponse(code = 200, message = "All items successfully retrieved")
+            @ApiResponse(code = 200, message = "Items successfully retrieved"),
+            @ApiResponse(code = 304, message = "The list did not change since the ETag given in If-None-Match"),
+            @ApiResponse(code = 400, message = "Invalid page limit, offset, cursor, filter or sort order"),
+            @ApiResponse(code = 501, message = "Filtering and sorting are disabled")
     })
     @RequestMapping(method = RequestMethod.GET)
-    public Collection<TodoItem> retrieveAllItems() {
-        LOGGER.info("Retrieving all items");
-        return todolistService.retrieveAllItems();
+    public ResponseEntity<?> retrieveAllItems(
+            @ApiParam("Maximum number of items to return, between 1 and " + MAX_PAGE_SIZE)
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @ApiParam("Only return items with an id greater than this one")
+            @RequestParam(value = "after", required = false, defaultValue = "0") long after,
+            @ApiParam("Only return items with one of these statuses, e.g. OPEN,IN_PROGRESS")
+            @RequestParam(value = "status", required = false) List<TodoItem.Status> statuses,
+            @ApiParam("Only return items with at least this priority")
+            @RequestParam(value = "minPriority", required = false) Integer minPriority,
+            @ApiParam("Only return items with at most this priority")
+            @RequestParam(value = "maxPriority", required = false) Integer maxPriority,
+            @ApiParam("Only return items due on or after this date, as yyyy-MM-dd")
+            @RequestParam(value = "dueFrom", required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate dueFrom,
+            @ApiParam("Only return items due on or before this date, as yyyy-MM-dd")
+            @RequestParam(value = "dueTo", required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate dueTo,
+            @ApiParam("Sort key (id, priority, dueDate, created or updated), prefixed with - for a descending order")
+            @RequestParam(value = "sort", required = false) String sort,
+            @ApiParam("Number of matching items to skip, when filtering or sorting")
+            @RequestParam(value = "offset", required = false, defaultValue = "0") int offset,
+            @ApiParam("Cursor of the page, as given in the Link header of the previous one, when filtering or sorting")
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @ApiParam(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            UriComponentsBuilder ucBuilder) throws JsonProcessingException {
+        if (statuses != null || minPriority != null || maxPriority != null || dueFrom != null || dueTo != null
+                || sort != null || cursor != null) {
+            return retrieveMatchingItems("retrieveAllItems", statuses, minPriority, maxPriority, dueFrom, dueTo, sort,
+                    offset, cursor, limit, after);
+        }
+        if (limit == null) {
+            requestLog.info("retrieveAllItems", "Retrieving all items");
+            MediaType representation = Representations.select(accept);
+            String currentETag = ETags.of(todolistService.getVersion(), representation);
+            if (ETags.noneMatchFails(ifNoneMatch, currentETag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).varyBy(HttpHeaders.ACCEPT).eTag(currentETag)
+                        .build();
+            }
+            // the items may be more recent than the version read above, hence their own ETag
+            if (!MediaType.APPLICATION_JSON.isCompatibleWith(representation) || !itemListJsonCache.isEnabled()) {
+                VersionedItems items = todolistService.retrieveAllItemsWithVersion();
+                return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT)
+                        .eTag(ETags.of(items.getVersion(), representation)).body(items.getItems());
+            }
+            EncodedItemList items = itemListJsonCache.get();
+            return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).eTag(ETags.of(items.getVersion()))
+                    .contentType(MediaType.APPLICATION_JSON_UTF8).body(items.getJson());
+        }
+        return retrievePage("retrieveAllItems", limit, after, ucBuilder);
+    }
+
+    // documented with retrieveAllItems: Swagger 2 describes a single GET operation per path
+    @ApiOperation(value = "Stream all items of the Todo List as newline-delimited JSON, one item per line",
+            hidden = true)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "All items successfully streamed")
+    })
+    @RequestMapping(method = RequestMethod.GET, produces = {APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> streamAllItems() {
+        requestLog.info("streamAllItems", "Streaming all items");
+        // Items are fetched page by page, so memory use does not depend on the size of the list
+        StreamingResponseBody body = outputStream -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+            // items are separated by line feeds only, not by Jackson's default space
+            generator.setRootValueSeparator(null);
+            List<TodoItem> page = todolistService.retrieveItems(0, STREAM_PAGE_SIZE);
+            while (!page.isEmpty()) {
+                for (TodoItem item : page) {
+                    generator.writeObject(item);
+                    generator.writeRaw('\n');
+                }
+                generator.flush();
+                page = page.size() < STREAM_PAGE_SIZE ? Collections.emptyList()
+                        : todolistService.retrieveItems(page.get(page.size() - 1).getId(), STREAM_PAGE_SIZE);
+            }
+            generator.close();
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE)).body(body);
     }
 
-    @ApiOperation(value = "Retrieve an item of the Todo List given its id", response = TodoItem.class)
+    @ApiOperation(value = "Stream the changes of the Todo list as Server-Sent Events: created, updated, deleted "
+            + "and cleared. The id of an event is the version of the list once the change is applied; a client "
+            + "resumes with Last-Event-ID, and gets a reset event instead if the changes since are no longer "
+            + "available, to reload the list.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Changes streamed until the stream times out or falls behind"),
+            @ApiResponse(code = 503, message = "Too many streams already open, retry later")
+    })
+    @RequestMapping(value = "/events", method = RequestMethod.GET, produces = {MediaType.TEXT_EVENT_STREAM_VALUE})
+    public ResponseEntity<SseEmitter> streamEvents(
+            @ApiParam("Id of the last event received, to resume from")
+            @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) Long lastEventId) {
+        requestLog.info("streamEvents", "Streaming changes after event {}", lastEventId);
+        SseEmitter emitter = new SseEmitter(changeFeedTimeout);
+        Optional<TodoListChangeFeed.Subscription> subscription =
+                changeFeed.subscribe(lastEventId, new SseChangeFeedSubscriber(emitter));
+        if (!subscription.isPresent()) {
+            requestLog.warn("streamEvents", "Unable to stream changes after event {}, too many streams", lastEventId);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        // also called after a timeout or an error
+        emitter.onCompletion(subscription.get()::cancel);
+        emitter.onTimeout(emitter::complete);
+        return ResponseEntity.ok(emitter);
+    }
+
+    @ApiOperation(value = "Search items by keywords, best matches first. All keywords must match; a keyword ending "
+            + "with * matches any word starting with it. The X-Total-Count header gives the number of matches. "
+            + "The index is updated in the background: results and count may miss the latest writes.",
+            response = Iterable.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Matching items successfully retrieved"),
+            @ApiResponse(code = 400, message = "Invalid offset or limit"),
+            @ApiResponse(code = 501, message = "Search is disabled")
+    })
+    @RequestMapping(value = "/search", method = RequestMethod.GET)
+    public ResponseEntity<List<TodoItem>> searchItems(
+            @ApiParam("Keywords, e.g. \"buy mil*\"") @RequestParam("q") String query,
+            @ApiParam("Number of matches to skip")
+            @RequestParam(value = "offset", required = false, defaultValue = "0") int offset,
+            @ApiParam("Maximum number of matches to return, offset + limit must not exceed " + MAX_PAGE_SIZE)
+            @RequestParam(value = "limit", required = false, defaultValue = "20") int limit) {
+        requestLog.info("searchItems", "Searching items matching {}", query);
+        if (offset < 0 || limit < 1 || (long) offset + limit > MAX_PAGE_SIZE) {
+            requestLog.warn("searchItems", "Unable to search items, invalid offset {} or limit {}", offset, limit);
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if (searchIndex == null) {
+            requestLog.warn("searchItems", "Unable to search items matching {}, search is disabled", query);
+            return new ResponseEntity<>(HttpStatus.NOT_IMPLEMENTED);
+        }
+        SearchHits hits = searchIndex.search(query, offset, limit);
+        List<TodoItem> items = new ArrayList<>(hits.getIds().size());
+        for (Long id : hits.getIds()) {
+            // the index may lag behind a delete
+            todolistService.findItemById(id).ifPresent(items::add);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        // without the deleted items seen on this page; the count of a lagging index is only exact once it caught up
+        long total = hits.getTotal() - (hits.getIds().size() - items.size());
+        headers.set(TOTAL_COUNT_HEADER, Long.toString(total));
+        return new ResponseEntity<>(items, headers, HttpStatus.OK);
+    }
+
+    @ApiOperation(value = "Retrieve an item of the Todo List given its id. The item carries an ETag.",
+            response = TodoItem.class)
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Item successfully retrieved"),
+            @ApiResponse(code = 304, message = "The item did not change since the ETag given in If-None-Match"),
             @ApiResponse(code = 404, message = "Item not found")
     })
     @RequestMapping(value = "/{id}", method = RequestMethod.GET)
-    public ResponseEntity<TodoItem> retrieveItem(@PathVariable("id") Long id) {
-        LOGGER.info("Retrieving item id {}", id);
+    public ResponseEntity<TodoItem> retrieveItem(@PathVariable("id") Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @ApiParam(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        requestLog.info("retrieveItem", "Retrieving item id {}", id);
         Optional<TodoItem> maybeItem = todolistService.findItemById(id);
         if (maybeItem.isPresent()) {
-            return new ResponseEntity<>(maybeItem.get(), HttpStatus.OK);
+            String etag = ETags.ofItem(maybeItem.get(), Representations.select(accept));
+            if (ETags.noneMatchFails(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).varyBy(HttpHeaders.ACCEPT).eTag(etag).build();
+            }
+            return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).eTag(etag).body(maybeItem.get());
         } else {
-            LOGGER.warn("Unable to retrieve item id {}", id);
+            requestLog.warn("retrieveItem", "Unable to retrieve item id {}", id);
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
     }
@@ -66,18 +281,20 @@ public class TodoListRestController {
             @ApiResponse(code = 201, message = "Item successfully created"),
             @ApiResponse(code = 409, message = "An existing item has the same content. Not created")
     })
-    @RequestMapping(method = RequestMethod.POST, consumes = {"application/json"})
+    @RequestMapping(method = RequestMethod.POST, consumes = {"application/json",
+            WireFormats.APPLICATION_SMILE_VALUE, WireFormats.APPLICATION_CBOR_VALUE,
+            WireFormats.APPLICATION_PROTOBUF_VALUE})
     @ResponseStatus(HttpStatus.CREATED)
     public ResponseEntity<Void> createItem(@RequestBody TodoItem item, UriComponentsBuilder ucBuilder) {
-        LOGGER.info("Creating new item with content {}", item.getContent());
-        if (todolistService.exists(item)) {
-            LOGGER.warn("Unable to create new item, another item already has the same content: {}", item.getContent());
+        requestLog.info("createItem", "Creating new item with content {}", item.getContent());
+        Optional<TodoItem> createdItem = todolistService.createIfAbsent(item);
+        if (!createdItem.isPresent()) {
+            requestLog.warn("createItem", "Unable to create new item, another item already has the same content: {}",
+                    item.getContent());
             return new ResponseEntity(HttpStatus.CONFLICT);
         } else {
-            TodoItem createdItem = todolistService.create(item);
-
             HttpHeaders headers = new HttpHeaders();
-            headers.setLocation(ucBuilder.path("/todolist/items/{id}").buildAndExpand(createdItem.getId()).toUri());
+            headers.setLocation(ucBuilder.path("/todolist/items/{id}").buildAndExpand(createdItem.get().getId()).toUri());
             return new ResponseEntity<>(headers, HttpStatus.CREATED);
         }
     }
@@ -85,42 +302,150 @@ public class TodoListRestController {
     @ApiOperation(value = "Update the content of an existing Todo item. Id provided in the input item is ignored.")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Item successfully updated"),
-            @ApiResponse(code = 404, message = "Item not found")
+            @ApiResponse(code = 404, message = "Item not found"),
+            @ApiResponse(code = 409, message = "Another item has the same content. Not updated"),
+            @ApiResponse(code = 412, message = "The item changed since it was read (If-Match). Not updated")
     })
-    @RequestMapping(value = "/{id}", method = RequestMethod.PUT, consumes = {"application/json"})
-    public ResponseEntity<TodoItem> updateItem(@PathVariable("id") Long id, @RequestBody TodoItem updateItem) {
-        LOGGER.info("Updating item id {} with new content {}", id, updateItem.getContent());
-        if (todolistService.updateItem(id, updateItem)) {
-            return retrieveItem(id);
-        } else {
-            LOGGER.warn("Unable to update, item id {} was not found", id);
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    @RequestMapping(value = "/{id}", method = RequestMethod.PUT, consumes = {"application/json",
+            WireFormats.APPLICATION_SMILE_VALUE, WireFormats.APPLICATION_CBOR_VALUE,
+            WireFormats.APPLICATION_PROTOBUF_VALUE})
+    public ResponseEntity<TodoItem> updateItem(@PathVariable("id") Long id,
+            @ApiParam(value = "ETag of the item as read, the item is only updated if it did not change since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @ApiParam(hidden = true) @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestBody TodoItem updateItem) {
+        requestLog.info("updateItem", "Updating item id {} with new content {}", id, updateItem.getContent());
+        WriteOutcome outcome = ifMatch != null
+                ? ConditionalWrites.update(todolistService, id, ifMatch, updateItem)
+                : todolistService.update(id, updateItem);
+        switch (outcome) {
+            case APPLIED:
+                return retrieveItem(id, null, accept);
+            case CONFLICT:
+                requestLog.warn("updateItem",
+                        "Unable to update item id {}, another item already has the same content: {}", id,
+                        updateItem.getContent());
+                return new ResponseEntity<>(HttpStatus.CONFLICT);
+            case STALE:
+                requestLog.warn("updateItem", "Unable to update item id {}, it changed since {}", id, ifMatch);
+                return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+            default:
+                requestLog.warn("updateItem", "Unable to update, item id {} was not found", id);
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
     }
 
     @ApiOperation(value = "Delete an existing Todo item given its id")
     @ApiResponses(value = {
             @ApiResponse(code = 204, message = "Item successfully deleted"),
-            @ApiResponse(code = 404, message = "Item not found")
+            @ApiResponse(code = 404, message = "Item not found"),
+            @ApiResponse(code = 412, message = "The item changed since it was read (If-Match). Not deleted")
     })
     @RequestMapping(value = "/{id}", method = RequestMethod.DELETE)
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public ResponseEntity<Void> deleteItem(@PathVariable("id") Long id) {
-        LOGGER.info("Deleting item id {}", id);
-        HttpStatus responseStatus = todolistService.deleteItemById(id) ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND;
-        return new ResponseEntity<>(responseStatus);
+    public ResponseEntity<Void> deleteItem(@PathVariable("id") Long id,
+            @ApiParam(value = "ETag of the item as read, the item is only deleted if it did not change since")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        requestLog.info("deleteItem", "Deleting item id {}", id);
+        if (ifMatch == null) {
+            boolean deleted = todolistService.deleteItemById(id);
+            return new ResponseEntity<>(deleted ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND);
+        }
+        switch (ConditionalWrites.delete(todolistService, id, ifMatch)) {
+            case APPLIED:
+                return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+            case STALE:
+                requestLog.warn("deleteItem", "Unable to delete item id {}, it changed since {}", id, ifMatch);
+                return new ResponseEntity<>(HttpStatus.PRECONDITION_FAILED);
+            default:
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
     }
 
-    @ApiOperation(value = "Delete all items of the Todo list and reset the id counter")
+    @ApiOperation(value = "Delete all items of the Todo list")
     @ApiResponses(value = {
             @ApiResponse(code = 204, message = "All items deleted")
     })
     @RequestMapping(method = RequestMethod.DELETE)
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public ResponseEntity<Void> deleteAllItems() {
-        LOGGER.info("Deleting all items");
+        requestLog.info("deleteAllItems", "Deleting all items");
         todolistService.deleteAllItems();
         return new ResponseEntity<>(HttpStatus.NO_CONTENT);
     }
 
+    /**
+     * Retrieves a page of the items matching filters, in the given sort order, from the attribute index. The next page
+     * is linked by cursor, so that the client can page through all the results, not only the first
+     * {@value #MAX_PAGE_SIZE}.
+     */
+    private ResponseEntity<List<TodoItem>> retrieveMatchingItems(String endpoint, List<TodoItem.Status> statuses,
+            Integer minPriority, Integer maxPriority, LocalDate dueFrom, LocalDate dueTo, String sort, int offset,
+            String cursor, Integer limit, long after) {
+        requestLog.info(endpoint, "Retrieving items matching filters, sorted by {}, from offset {}", sort, offset);
+        if (attributeIndex == null) {
+            requestLog.warn(endpoint, "Unable to retrieve items sorted by {}, the attribute index is disabled", sort);
+            return new ResponseEntity<>(HttpStatus.NOT_IMPLEMENTED);
+        }
+        if (after != 0) {
+            requestLog.warn(endpoint, "Unable to retrieve items, after {} only pages the unfiltered list", after);
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        int pageSize = limit == null ? MAX_PAGE_SIZE - offset : limit;
+        if (offset < 0 || pageSize < 1 || (long) offset + pageSize > MAX_PAGE_SIZE) {
+            requestLog.warn(endpoint, "Unable to retrieve items, invalid offset {} or limit {}", offset, limit);
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        ItemCursor itemCursor;
+        try {
+            itemCursor = cursor == null ? null : ItemCursor.parse(cursor);
+        } catch (IllegalArgumentException e) {
+            requestLog.warn(endpoint, "Unable to retrieve items, invalid cursor {}", cursor);
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        ItemQuery.SortKey sortKey;
+        try {
+            sortKey = sort == null ? ItemQuery.SortKey.ID : ItemQuery.parseSortKey(sort);
+        } catch (IllegalArgumentException e) {
+            requestLog.warn(endpoint, "Unable to retrieve items, invalid sort order {}", sort);
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        ItemQuery query = new ItemQuery(statuses, minPriority, maxPriority, dueFrom, dueTo, sortKey,
+                sort != null && ItemQuery.isDescending(sort));
+        ItemPage page = attributeIndex.query(query, itemCursor, offset, pageSize);
+        List<TodoItem> items = new ArrayList<>(page.getIds().size());
+        for (Long id : page.getIds()) {
+            // the item may have been deleted since the query
+            todolistService.findItemById(id).ifPresent(items::add);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setVary(Collections.singletonList(HttpHeaders.ACCEPT));
+        if (page.getNext() != null) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest().replaceQueryParam("offset")
+                    .replaceQueryParam("cursor", page.getNext().toString()).replaceQueryParam("limit", pageSize)
+                    .build().toUriString();
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return new ResponseEntity<>(items, headers, HttpStatus.OK);
+    }
+
+    private ResponseEntity<List<TodoItem>> retrievePage(String endpoint, int limit, long after,
+            UriComponentsBuilder ucBuilder) {
+        requestLog.info(endpoint, "Retrieving at most {} items after id {}", limit, after);
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            requestLog.warn(endpoint, "Unable to retrieve items, invalid page limit {}", limit);
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<TodoItem> page = todolistService.retrieveItems(after, limit);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setVary(Collections.singletonList(HttpHeaders.ACCEPT));
+        if (page.size() == limit) {
+            long lastId = page.get(page.size() - 1).getId();
+            String next = ucBuilder.path("/todolist/items").queryParam("after", lastId).queryParam("limit", limit)
+                    .build().toUriString();
+            headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return new ResponseEntity<>(page, headers, HttpStatus.OK);
+    }
+
 }
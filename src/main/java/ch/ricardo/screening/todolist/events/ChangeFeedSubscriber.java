@@ -0,0 +1,35 @@
+package ch.ricardo.screening.todolist.events;
+
+import java.io.IOException;
+
+import ch.ricardo.screening.todolist.model.TodoListEvent;
+
+/**
+ * Receiver of the events of a {@link TodoListChangeFeed}, e.g. a Server-Sent Events stream.
+ * <p>
+ * Methods are called by a sender thread of the feed, never by two threads at once, and may block on a slow client.
+ * An exception ends the subscription.
+ */
+public interface ChangeFeedSubscriber {
+
+    void send(TodoListEvent event) throws IOException;
+
+    /**
+     * Called instead of the missed events when the subscriber asked to resume from an event that is no longer
+     * available: it has to reload the list, at least as recent as the given version, then apply the next events.
+     */
+    void reset(long version) throws IOException;
+
+    /**
+     * Called once the buffered events are sent, e.g. to flush a buffered stream: until then, events may be written
+     * without flushing each of them.
+     */
+    default void flush() throws IOException {
+    }
+
+    /**
+     * Called when the subscriber is disconnected because it did not keep up with the changes. It may resume from the
+     * last event it received.
+     */
+    void disconnect();
+}
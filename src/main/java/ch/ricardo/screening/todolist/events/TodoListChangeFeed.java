@@ -0,0 +1,274 @@
+package ch.ricardo.screening.todolist.events;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.model.TodoListEvent;
+import ch.ricardo.screening.todolist.service.TodoListListener;
+import ch.ricardo.screening.todolist.service.TodoListService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Feed of the changes of the Todo list, fanned out to subscribers such as Server-Sent Events streams.
+ * <p>
+ * The feed listens to the service. Under the write lock of the service, each event is appended to a history of the
+ * latest events, and offered to the bounded buffer of each subscriber: a write never waits for a subscriber. A fixed
+ * pool of {@code sender-threads} threads then drains each buffer to its subscriber, one thread per subscriber at a
+ * time. A subscriber whose buffer is full is disconnected rather than buffered without limit; like any subscriber, it
+ * can then resume from the last event it received, as long as the missed events are still in the history.
+ * <p>
+ * The feed has at most {@code max-subscribers} subscribers, further subscriptions are refused. A subscriber blocked
+ * in a send (e.g. a client that stopped reading) holds a sender thread until the send fails or times out, so the
+ * other subscribers may then be served late, but never by more threads than the pool has.
+ * <p>
+ * Metrics: {@value #SUBSCRIBERS} gauges the current subscribers, {@value #DISCONNECTIONS} counts the subscribers
+ * disconnected for not keeping up.
+ */
+@Component
+@Lazy(false)
+public class TodoListChangeFeed implements TodoListListener {
+
+    static final String SUBSCRIBERS = "todolist.change-feed.subscribers";
+
+    static final String DISCONNECTIONS = "todolist.change-feed.disconnections";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TodoListChangeFeed.class);
+
+    private final int historySize;
+
+    private final int bufferSize;
+
+    private final int maxSubscribers;
+
+    // guarded by this, as are subscriptions and version
+    private final Deque<TodoListEvent> history = new ArrayDeque<>();
+
+    private final Set<Subscription> subscriptions = new HashSet<>();
+
+    private long version;
+
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private final Counter disconnections;
+
+    private final AtomicInteger senderCount = new AtomicInteger();
+
+    // a subscription is queued at most once at a time, so the queue holds at most max-subscribers tasks
+    private final ExecutorService senders;
+
+    public TodoListChangeFeed(TodoListService todolistService, MeterRegistry registry, int historySize,
+            int bufferSize) {
+        this(todolistService, registry, historySize, bufferSize, 16, 1000);
+    }
+
+    @Autowired
+    public TodoListChangeFeed(TodoListService todolistService, MeterRegistry registry,
+            @Value("${todolist.change-feed.history-size:10000}") int historySize,
+            @Value("${todolist.change-feed.buffer-size:1000}") int bufferSize,
+            @Value("${todolist.change-feed.sender-threads:16}") int senderThreads,
+            @Value("${todolist.change-feed.max-subscribers:1000}") int maxSubscribers) {
+        this.historySize = historySize;
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "todolist-change-feed-" + senderCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder(SUBSCRIBERS, subscriberCount, AtomicInteger::get)
+                .description("Number of subscribers of the change feed")
+                .register(registry);
+        this.disconnections = Counter.builder(DISCONNECTIONS)
+                .description("Subscribers of the change feed disconnected because their buffer was full")
+                .register(registry);
+        todolistService.addListener(this);
+    }
+
+    @Override
+    public synchronized void onItems(long version, List<TodoItem> items) {
+        this.version = version;
+        // called again when a replica reloads the whole list: the events before no longer lead to the new items
+        history.clear();
+        for (Subscription subscription : subscriptions) {
+            subscription.reset(version);
+        }
+    }
+
+    @Override
+    public synchronized void onEvent(TodoListEvent event) {
+        version = event.getSequence();
+        history.addLast(event);
+        if (history.size() > historySize) {
+            history.removeFirst();
+        }
+        for (Iterator<Subscription> iterator = subscriptions.iterator(); iterator.hasNext(); ) {
+            Subscription subscription = iterator.next();
+            if (!subscription.offer(event)) {
+                iterator.remove();
+                subscriberCount.decrementAndGet();
+                disconnections.increment();
+            }
+        }
+    }
+
+    /**
+     * Subscribes to the changes following the given event, or to the next changes if no event is given. If the
+     * events following the given one are no longer available, the subscriber is reset first.
+     *
+     * @param lastEventId sequence of the last event received by the subscriber, may be null
+     * @return the subscription, or an empty optional if the feed already has {@code max-subscribers} subscribers
+     */
+    public synchronized Optional<Subscription> subscribe(Long lastEventId, ChangeFeedSubscriber subscriber) {
+        if (subscriptions.size() >= maxSubscribers) {
+            LOGGER.warn("Unable to subscribe to the change feed, it already has {} subscribers", maxSubscribers);
+            return Optional.empty();
+        }
+        Subscription subscription = new Subscription(subscriber);
+        if (lastEventId != null) {
+            // sequences have no gaps: the first event of the history follows the version it was built on
+            long firstAvailable = history.isEmpty() ? version + 1 : history.getFirst().getSequence();
+            long missed = version - lastEventId;
+            if (lastEventId < firstAvailable - 1 || missed < 0 || missed > bufferSize) {
+                LOGGER.debug("Unable to resume from event {}, resetting to version {}", lastEventId, version);
+                subscription.resetVersion = version;
+            } else {
+                for (TodoListEvent event : history) {
+                    if (event.getSequence() > lastEventId) {
+                        subscription.buffer.add(event);
+                    }
+                }
+            }
+        }
+        subscriptions.add(subscription);
+        subscriberCount.incrementAndGet();
+        subscription.schedule();
+        return Optional.of(subscription);
+    }
+
+    @PreDestroy
+    public void close() {
+        senders.shutdownNow();
+    }
+
+    private synchronized void remove(Subscription subscription) {
+        if (subscriptions.remove(subscription)) {
+            subscriberCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * A subscriber of the feed, with its buffer of events not sent yet.
+     */
+    public final class Subscription {
+
+        private final ChangeFeedSubscriber subscriber;
+
+        private final BlockingQueue<TodoListEvent> buffer = new ArrayBlockingQueue<>(bufferSize);
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private volatile long resetVersion = -1;
+
+        private volatile boolean overflowed;
+
+        private volatile boolean cancelled;
+
+        private Subscription(ChangeFeedSubscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        /**
+         * Ends the subscription, e.g. once the client is gone. Events not sent yet are dropped.
+         */
+        public void cancel() {
+            cancelled = true;
+            buffer.clear();
+            remove(this);
+        }
+
+        /**
+         * Buffers an event, called by the feed under its lock.
+         *
+         * @return false if the buffer is full, in which case the subscriber gets disconnected
+         */
+        private boolean offer(TodoListEvent event) {
+            boolean buffered = buffer.offer(event);
+            if (!buffered) {
+                overflowed = true;
+            }
+            schedule();
+            return buffered;
+        }
+
+        /**
+         * Replaces the events not sent yet with a reset, called by the feed under its lock.
+         */
+        private void reset(long version) {
+            buffer.clear();
+            resetVersion = version;
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                senders.execute(this::send);
+            }
+        }
+
+        private void send() {
+            try {
+                if (!cancelled && resetVersion >= 0) {
+                    subscriber.reset(resetVersion);
+                    resetVersion = -1;
+                }
+                // a reset requested meanwhile is sent before the events that follow it
+                for (TodoListEvent event = buffer.poll(); event != null && !cancelled && !overflowed;
+                        event = resetVersion < 0 ? buffer.poll() : null) {
+                    subscriber.send(event);
+                }
+                if (!cancelled) {
+                    subscriber.flush();
+                }
+                if (overflowed && !cancelled) {
+                    LOGGER.warn("Disconnecting a subscriber of the change feed, more than {} events behind",
+                            bufferSize);
+                    cancel();
+                    subscriber.disconnect();
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.debug("Unable to send an event, cancelling its subscription", e);
+                cancel();
+            } finally {
+                scheduled.set(false);
+            }
+            // an event or a reset may have come after the loop, while this was still scheduled
+            if (!cancelled && (!buffer.isEmpty() || resetVersion >= 0)) {
+                schedule();
+            }
+        }
+    }
+}
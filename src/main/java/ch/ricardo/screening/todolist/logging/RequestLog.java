@@ -0,0 +1,252 @@
+package ch.ricardo.screening.todolist.logging;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Logs the requests handled by the controllers, with as little work as possible on the request thread.
+ * <p>
+ * Each endpoint logs to its own logger, {@value #LOGGER_PREFIX}{@code <endpoint>}, so that levels can be set per
+ * endpoint. On the request thread, a message is first filtered by level and by sampling (nothing is formatted when
+ * it is not logged), then its string arguments are truncated. In {@link RequestLogMode#ASYNC} mode, it is then
+ * offered to a bounded queue drained by a background thread, and dropped if the queue is full: request latency never
+ * depends on how fast logs are written. Dropped messages are counted in the {@value #DROPPED} metric. A queued message
+ * keeps the name of the request thread and the time it was logged at, the writer hands them to the Logback appenders
+ * instead of its own. A message that fails to be written is counted in the {@value #FAILED} metric, and the writer
+ * goes on with the next one.
+ * <p>
+ * Messages take one or two arguments, which covers the controllers and avoids allocating a varargs array.
+ */
+public class RequestLog {
+
+    static final String LOGGER_PREFIX = "ch.ricardo.screening.todolist.request.";
+
+    static final String DROPPED = "todolist.request.log.dropped";
+
+    static final String QUEUED = "todolist.request.log.queued";
+
+    static final String FAILED = "todolist.request.log.failed";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RequestLog.class);
+
+    private final RequestLogProperties properties;
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    private final BlockingQueue<Message> queue;
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final Thread writer;
+
+    public RequestLog(RequestLogProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        if (properties.getMode() == RequestLogMode.ASYNC) {
+            this.queue = new ArrayBlockingQueue<>(properties.getBufferSize());
+            this.writer = new Thread(this::writeMessages, "todolist-request-log");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            this.queue = null;
+            this.writer = null;
+        }
+        FunctionCounter.builder(DROPPED, dropped, LongAdder::sum)
+                .description("Request log messages dropped because the buffer was full")
+                .register(registry);
+        FunctionCounter.builder(FAILED, failed, LongAdder::sum)
+                .description("Request log messages that could not be written")
+                .register(registry);
+        Gauge.builder(QUEUED, this, RequestLog::getQueued)
+                .description("Request log messages waiting to be written")
+                .register(registry);
+    }
+
+    public void info(String endpoint, String format) {
+        info(endpoint, format, null, null);
+    }
+
+    public void info(String endpoint, String format, Object argument) {
+        info(endpoint, format, argument, null);
+    }
+
+    public void info(String endpoint, String format, Object argument1, Object argument2) {
+        if (properties.getMode() == RequestLogMode.OFF) {
+            return;
+        }
+        Endpoint target = endpoint(endpoint);
+        if (target.logger.isInfoEnabled() && target.isSampled()) {
+            log(target.logger, false, format, truncate(argument1), truncate(argument2));
+        }
+    }
+
+    public void warn(String endpoint, String format, Object argument) {
+        warn(endpoint, format, argument, null);
+    }
+
+    public void warn(String endpoint, String format, Object argument1, Object argument2) {
+        if (properties.getMode() == RequestLogMode.OFF) {
+            return;
+        }
+        Endpoint target = endpoint(endpoint);
+        if (target.logger.isWarnEnabled()) {
+            log(target.logger, true, format, truncate(argument1), truncate(argument2));
+        }
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public int getQueued() {
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * Stops the background writer, after writing the messages still queued.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (writer != null) {
+            writer.interrupt();
+            writer.join();
+        }
+    }
+
+    private void log(Logger logger, boolean warning, String format, Object argument1, Object argument2) {
+        if (queue == null) {
+            if (warning) {
+                logger.warn(format, argument1, argument2);
+            } else {
+                logger.info(format, argument1, argument2);
+            }
+        } else if (!queue.offer(new Message(logger, warning, format, argument1, argument2,
+                Thread.currentThread().getName(), System.currentTimeMillis()))) {
+            dropped.increment();
+        }
+    }
+
+    private void writeMessages() {
+        try {
+            while (true) {
+                write(queue.take());
+            }
+        } catch (InterruptedException e) {
+            Message message;
+            while ((message = queue.poll()) != null) {
+                write(message);
+            }
+        }
+    }
+
+    private void write(Message message) {
+        try {
+            message.write();
+        } catch (RuntimeException e) {
+            // logged once: a broken appender would otherwise fail on each message
+            if (failed.sum() == 0) {
+                LOGGER.error("Unable to write a request log message, failures are counted by " + FAILED, e);
+            }
+            failed.increment();
+        }
+    }
+
+    private Endpoint endpoint(String name) {
+        Endpoint endpoint = endpoints.get(name);
+        return endpoint != null ? endpoint : endpoints.computeIfAbsent(name, key -> new Endpoint(
+                LoggerFactory.getLogger(LOGGER_PREFIX + key),
+                properties.getSampleRate().getOrDefault(key, properties.getDefaultSampleRate())));
+    }
+
+    private Object truncate(Object argument) {
+        if (argument instanceof String && ((String) argument).length() > properties.getMaxArgumentLength()) {
+            String string = (String) argument;
+            return string.substring(0, properties.getMaxArgumentLength()) + "... (" + string.length() + " chars)";
+        }
+        return argument;
+    }
+
+    private static final class Endpoint {
+
+        private final Logger logger;
+
+        private final double sampleRate;
+
+        private Endpoint(Logger logger, double sampleRate) {
+            this.logger = logger;
+            this.sampleRate = sampleRate;
+        }
+
+        private boolean isSampled() {
+            return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+        }
+    }
+
+    private static final class Message {
+
+        private static final String FQCN = RequestLog.class.getName();
+
+        private final Logger logger;
+
+        private final boolean warning;
+
+        private final String format;
+
+        private final Object argument1;
+
+        private final Object argument2;
+
+        private final String threadName;
+
+        private final long timestamp;
+
+        private Message(Logger logger, boolean warning, String format, Object argument1, Object argument2,
+                String threadName, long timestamp) {
+            this.logger = logger;
+            this.warning = warning;
+            this.format = format;
+            this.argument1 = argument1;
+            this.argument2 = argument2;
+            this.threadName = threadName;
+            this.timestamp = timestamp;
+        }
+
+        private void write() {
+            if (!(logger instanceof ch.qos.logback.classic.Logger)) {
+                // another binding, the event gets the thread and time of the writer
+                if (warning) {
+                    logger.warn(format, argument1, argument2);
+                } else {
+                    logger.info(format, argument1, argument2);
+                }
+                return;
+            }
+            ch.qos.logback.classic.Logger logbackLogger = (ch.qos.logback.classic.Logger) logger;
+            LoggingEvent event = new LoggingEvent(FQCN, logbackLogger, warning ? Level.WARN : Level.INFO, format,
+                    null, new Object[] {argument1, argument2});
+            event.setThreadName(threadName);
+            event.setTimeStamp(timestamp);
+            logbackLogger.callAppenders(event);
+        }
+    }
+}
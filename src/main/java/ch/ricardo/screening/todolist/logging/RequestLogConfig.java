@@ -0,0 +1,17 @@
+package ch.ricardo.screening.todolist.logging;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Configuration
+@EnableConfigurationProperties(RequestLogProperties.class)
+public class RequestLogConfig {
+
+    @Bean
+    public RequestLog requestLog(RequestLogProperties properties, MeterRegistry registry) {
+        return new RequestLog(properties, registry);
+    }
+}
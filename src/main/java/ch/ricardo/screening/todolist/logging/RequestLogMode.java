@@ -0,0 +1,23 @@
+package ch.ricardo.screening.todolist.logging;
+
+/**
+ * How the controllers log the requests they handle.
+ */
+public enum RequestLogMode {
+
+    /**
+     * Log messages are queued in a bounded buffer and written by a background thread. When the buffer is full,
+     * messages are dropped (and counted) rather than blocking the request.
+     */
+    ASYNC,
+
+    /**
+     * Log messages are written by the thread handling the request.
+     */
+    SYNC,
+
+    /**
+     * Requests are not logged.
+     */
+    OFF
+}
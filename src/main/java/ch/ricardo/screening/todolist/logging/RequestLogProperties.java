@@ -0,0 +1,76 @@
+package ch.ricardo.screening.todolist.logging;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the request logs, bound from the {@code todolist.request-log.*} properties.
+ */
+@ConfigurationProperties(prefix = "todolist.request-log")
+public class RequestLogProperties {
+
+    private RequestLogMode mode = RequestLogMode.ASYNC;
+
+    /**
+     * Number of messages the ASYNC mode buffers before dropping new ones.
+     */
+    private int bufferSize = 8192;
+
+    /**
+     * Longer string arguments (e.g. item contents) are truncated to this number of characters.
+     */
+    private int maxArgumentLength = 100;
+
+    /**
+     * Share of the requests of an endpoint that are logged, between 0 and 1, by endpoint name (the name of the
+     * controller method). Warnings are always logged.
+     */
+    private Map<String, Double> sampleRate = new HashMap<>();
+
+    /**
+     * Sample rate of the endpoints missing from {@code sample-rate}.
+     */
+    private double defaultSampleRate = 1.0;
+
+    public RequestLogMode getMode() {
+        return mode;
+    }
+
+    public void setMode(RequestLogMode mode) {
+        this.mode = mode;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public int getMaxArgumentLength() {
+        return maxArgumentLength;
+    }
+
+    public void setMaxArgumentLength(int maxArgumentLength) {
+        this.maxArgumentLength = maxArgumentLength;
+    }
+
+    public Map<String, Double> getSampleRate() {
+        return sampleRate;
+    }
+
+    public void setSampleRate(Map<String, Double> sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public double getDefaultSampleRate() {
+        return defaultSampleRate;
+    }
+
+    public void setDefaultSampleRate(double defaultSampleRate) {
+        this.defaultSampleRate = defaultSampleRate;
+    }
+}
@@ -0,0 +1,246 @@
+package ch.ricardo.screening.todolist.metrics;
+
+import java.util.List;
+import java.util.Optional;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.service.TodoListListener;
+import ch.ricardo.screening.todolist.service.TodoListService;
+import ch.ricardo.screening.todolist.service.VersionedItems;
+import ch.ricardo.screening.todolist.service.WriteOutcome;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Decorates a {@link TodoListService} with metrics:
+ * <ul>
+ * <li>{@value #OPERATIONS}: a timer per operation (tag {@code operation}), counting calls and measuring their latency,
+ * <li>{@value #REJECTIONS}: a counter of the items rejected by an operation (tags {@code operation} and
+ * {@code reason}, {@value #CONFLICT}, {@value #NOT_FOUND} or {@value #STALE}),
+ * <li>{@value #ITEMS}: a gauge of the number of items of the list.
+ * </ul>
+ * Timers are registered upfront, so that recording a call is a field read and a clock read.
+ */
+public class MeteredTodoListService implements TodoListService {
+
+    static final String OPERATIONS = "todolist.service";
+
+    static final String REJECTIONS = "todolist.service.rejections";
+
+    static final String ITEMS = "todolist.items";
+
+    static final String CONFLICT = "conflict";
+
+    static final String NOT_FOUND = "not_found";
+
+    static final String STALE = "stale";
+
+    private final TodoListService delegate;
+
+    private final MeterRegistry registry;
+
+    private final Timer retrieveAllItemsTimer;
+
+    private final Timer retrieveItemsTimer;
+
+    private final Timer findItemByIdTimer;
+
+    private final Timer existsTimer;
+
+    private final Timer createTimer;
+
+    private final Timer createIfAbsentTimer;
+
+    private final Timer updateItemTimer;
+
+    private final Timer updateTimer;
+
+    private final Timer compareAndUpdateTimer;
+
+    private final Timer deleteItemByIdTimer;
+
+    private final Timer compareAndDeleteTimer;
+
+    private final Timer deleteAllItemsTimer;
+
+    private final Timer createItemsIfAbsentTimer;
+
+    private final Timer updateItemsTimer;
+
+    private final Timer deleteItemsByIdTimer;
+
+    public MeteredTodoListService(TodoListService delegate, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.registry = registry;
+        this.retrieveAllItemsTimer = timer("retrieveAllItems");
+        this.retrieveItemsTimer = timer("retrieveItems");
+        this.findItemByIdTimer = timer("findItemById");
+        this.existsTimer = timer("exists");
+        this.createTimer = timer("create");
+        this.createIfAbsentTimer = timer("createIfAbsent");
+        this.updateItemTimer = timer("updateItem");
+        this.updateTimer = timer("update");
+        this.compareAndUpdateTimer = timer("compareAndUpdate");
+        this.deleteItemByIdTimer = timer("deleteItemById");
+        this.compareAndDeleteTimer = timer("compareAndDelete");
+        this.deleteAllItemsTimer = timer("deleteAllItems");
+        this.createItemsIfAbsentTimer = timer("createItemsIfAbsent");
+        this.updateItemsTimer = timer("updateItems");
+        this.deleteItemsByIdTimer = timer("deleteItemsById");
+        Gauge.builder(ITEMS, delegate, TodoListService::countItems)
+                .description("Number of items of the Todo list")
+                .register(registry);
+    }
+
+    @Override
+    public List<TodoItem> retrieveAllItems() {
+        return retrieveAllItemsTimer.record(delegate::retrieveAllItems);
+    }
+
+    @Override
+    public VersionedItems retrieveAllItemsWithVersion() {
+        return retrieveAllItemsTimer.record(delegate::retrieveAllItemsWithVersion);
+    }
+
+    @Override
+    public List<TodoItem> retrieveItems(long afterId, int limit) {
+        return retrieveItemsTimer.record(() -> delegate.retrieveItems(afterId, limit));
+    }
+
+    @Override
+    public long countItems() {
+        return delegate.countItems();
+    }
+
+    @Override
+    public long getVersion() {
+        return delegate.getVersion();
+    }
+
+    @Override
+    public void addListener(TodoListListener listener) {
+        delegate.addListener(listener);
+    }
+
+    /**
+     * Not counted as a rejection when the item is missing: lookups are also made internally, e.g. to build a response
+     * after a write, and a missing item of the API is already visible in the 404s of its endpoint.
+     */
+    @Override
+    public Optional<TodoItem> findItemById(Long id) {
+        return findItemByIdTimer.record(() -> delegate.findItemById(id));
+    }
+
+    @Override
+    public boolean exists(TodoItem item) {
+        return existsTimer.record(() -> delegate.exists(item));
+    }
+
+    @Override
+    public TodoItem create(TodoItem item) {
+        return createTimer.record(() -> delegate.create(item));
+    }
+
+    @Override
+    public Optional<TodoItem> createIfAbsent(TodoItem item) {
+        Optional<TodoItem> createdItem = createIfAbsentTimer.record(() -> delegate.createIfAbsent(item));
+        if (!createdItem.isPresent()) {
+            reject("createIfAbsent", CONFLICT, 1);
+        }
+        return createdItem;
+    }
+
+    @Override
+    public boolean updateItem(Long id, TodoItem currentItem) {
+        if (currentItem == null) {
+            return updateItemTimer.record(() -> delegate.updateItem(id, null));
+        }
+        // the outcome of the update itself tells a conflict from a missing item, no second lookup races with it
+        WriteOutcome outcome = updateItemTimer.record(() -> delegate.update(id, currentItem));
+        rejectUnlessApplied("updateItem", outcome);
+        return outcome == WriteOutcome.APPLIED;
+    }
+
+    @Override
+    public WriteOutcome update(Long id, TodoItem item) {
+        WriteOutcome outcome = updateTimer.record(() -> delegate.update(id, item));
+        rejectUnlessApplied("update", outcome);
+        return outcome;
+    }
+
+    @Override
+    public WriteOutcome compareAndUpdate(Long id, long expectedVersion, TodoItem updatedItem) {
+        WriteOutcome outcome = compareAndUpdateTimer.record(
+                () -> delegate.compareAndUpdate(id, expectedVersion, updatedItem));
+        rejectUnlessApplied("compareAndUpdate", outcome);
+        return outcome;
+    }
+
+    @Override
+    public boolean deleteItemById(Long id) {
+        boolean deleted = deleteItemByIdTimer.record(() -> delegate.deleteItemById(id));
+        if (!deleted) {
+            reject("deleteItemById", NOT_FOUND, 1);
+        }
+        return deleted;
+    }
+
+    @Override
+    public WriteOutcome compareAndDelete(Long id, long expectedVersion) {
+        WriteOutcome outcome = compareAndDeleteTimer.record(() -> delegate.compareAndDelete(id, expectedVersion));
+        rejectUnlessApplied("compareAndDelete", outcome);
+        return outcome;
+    }
+
+    @Override
+    public void deleteAllItems() {
+        deleteAllItemsTimer.record(delegate::deleteAllItems);
+    }
+
+    @Override
+    public List<Optional<TodoItem>> createItemsIfAbsent(List<TodoItem> items) {
+        List<Optional<TodoItem>> createdItems = createItemsIfAbsentTimer.record(
+                () -> delegate.createItemsIfAbsent(items));
+        reject("createItemsIfAbsent", CONFLICT, createdItems.stream().filter(item -> !item.isPresent()).count());
+        return createdItems;
+    }
+
+    @Override
+    public List<WriteOutcome> updateItems(List<TodoItem> items) {
+        List<WriteOutcome> outcomes = updateItemsTimer.record(() -> delegate.updateItems(items));
+        reject("updateItems", CONFLICT, outcomes.stream().filter(WriteOutcome.CONFLICT::equals).count());
+        reject("updateItems", NOT_FOUND, outcomes.stream().filter(WriteOutcome.NOT_FOUND::equals).count());
+        return outcomes;
+    }
+
+    @Override
+    public List<Boolean> deleteItemsById(List<Long> ids) {
+        List<Boolean> deleted = deleteItemsByIdTimer.record(() -> delegate.deleteItemsById(ids));
+        reject("deleteItemsById", NOT_FOUND, deleted.stream().filter(Boolean.FALSE::equals).count());
+        return deleted;
+    }
+
+    private Timer timer(String operation) {
+        return Timer.builder(OPERATIONS)
+                .description("Calls to the Todo list service")
+                .tag("operation", operation)
+                .register(registry);
+    }
+
+    private void rejectUnlessApplied(String operation, WriteOutcome outcome) {
+        if (outcome == WriteOutcome.NOT_FOUND) {
+            reject(operation, NOT_FOUND, 1);
+        } else if (outcome == WriteOutcome.CONFLICT) {
+            reject(operation, CONFLICT, 1);
+        } else if (outcome == WriteOutcome.STALE) {
+            reject(operation, STALE, 1);
+        }
+    }
+
+    private void reject(String operation, String reason, long count) {
+        if (count > 0) {
+            registry.counter(REJECTIONS, "operation", operation, "reason", reason).increment(count);
+        }
+    }
+}
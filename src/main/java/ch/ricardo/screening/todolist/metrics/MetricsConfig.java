@@ -0,0 +1,24 @@
+package ch.ricardo.screening.todolist.metrics;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import ch.ricardo.screening.todolist.service.TodoListService;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Wraps the Todo list service selected by {@code todolist.storage} with metrics. The metered service is the primary
+ * bean, so it is the one injected in the controllers.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    @Primary
+    public TodoListService meteredTodoListService(@Qualifier("todolistService") TodoListService todolistService,
+            MeterRegistry registry) {
+        return new MeteredTodoListService(todolistService, registry);
+    }
+}
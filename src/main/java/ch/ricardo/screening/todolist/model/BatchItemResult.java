@@ -0,0 +1,27 @@
+package ch.ricardo.screening.todolist.model;
+
+import io.swagger.annotations.ApiModelProperty;
+
+public class BatchItemResult {
+
+    @ApiModelProperty(notes = "HTTP status the operation would have had as a single-item request")
+    private int status;
+
+    @ApiModelProperty(notes = "Identifier of the item, absent when no item was created")
+    private Long id;
+
+    public BatchItemResult() {}
+
+    public BatchItemResult(int status, Long id) {
+        this.status = status;
+        this.id = id;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+}
@@ -1,9 +1,21 @@
 package ch.ricardo.screening.todolist.model;
 
+import java.time.Instant;
+import java.time.LocalDate;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import io.swagger.annotations.ApiModelProperty;
 
 public class TodoItem {
 
+    public enum Status {
+        OPEN, IN_PROGRESS, DONE
+    }
+
     private static final Long DEFAULT_ID_VALUE = -1L;
 
     @ApiModelProperty(notes = "Auto-generated identifier", required = false)
@@ -12,6 +24,34 @@ public class TodoItem {
     @ApiModelProperty(notes = "Content of the Todo item")
     private String content;
 
+    @ApiModelProperty(notes = "Status of the Todo item, OPEN by default", required = false)
+    private Status status = Status.OPEN;
+
+    @ApiModelProperty(notes = "Priority of the Todo item, higher is more urgent, 0 by default", required = false)
+    private int priority;
+
+    @ApiModelProperty(notes = "Due date of the Todo item, as yyyy-MM-dd", required = false)
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private LocalDate dueDate;
+
+    @ApiModelProperty(notes = "Creation time, set by the server", readOnly = true)
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant created;
+
+    @ApiModelProperty(notes = "Time of the last update, set by the server", readOnly = true)
+    @JsonFormat(shape = JsonFormat.Shape.STRING)
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Instant updated;
+
+    /**
+     * Version of the item, which changes with each update of the item. Not part of the JSON representation, it is
+     * exposed in the ETag header instead.
+     */
+    @JsonIgnore
+    private long version;
+
     public TodoItem() {}
 
     public TodoItem(String content) {
@@ -23,6 +63,32 @@ public class TodoItem {
         this.content = content;
     }
 
+    public TodoItem(Long id, String content, long version) {
+        this.id = id;
+        this.content = content;
+        this.version = version;
+    }
+
+    public TodoItem(Long id, String content, Status status, int priority, LocalDate dueDate, Instant created,
+            Instant updated, long version) {
+        this.id = id;
+        this.content = content;
+        this.status = status == null ? Status.OPEN : status;
+        this.priority = priority;
+        this.dueDate = dueDate;
+        this.created = created;
+        this.updated = updated;
+        this.version = version;
+    }
+
+    /**
+     * Returns a copy of this item, with the id, timestamps and version the services assign when they write it. The
+     * attributes set by the client (content, status, priority and due date) are kept.
+     */
+    public TodoItem withMetadata(Long id, Instant created, Instant updated, long version) {
+        return new TodoItem(id, content, status, priority, dueDate, created, updated, version);
+    }
+
     public Long getId() {
         return id;
     }
@@ -30,4 +96,28 @@ public class TodoItem {
     public String getContent() {
         return content;
     }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public LocalDate getDueDate() {
+        return dueDate;
+    }
+
+    public Instant getCreated() {
+        return created;
+    }
+
+    public Instant getUpdated() {
+        return updated;
+    }
+
+    public long getVersion() {
+        return version;
+    }
 }
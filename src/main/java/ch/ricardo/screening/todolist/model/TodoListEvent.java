@@ -0,0 +1,117 @@
+package ch.ricardo.screening.todolist.model;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * A change applied to the Todo list. Events are immutable and numbered by a sequence that increases with each change:
+ * replayed in sequence order, they rebuild the list.
+ * <p>
+ * Creations and updates carry the whole item, timestamps included, so that a replayed event writes the item exactly
+ * as it was first written.
+ */
+public class TodoListEvent {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED, ALL_DELETED
+    }
+
+    private final long sequence;
+
+    private final Type type;
+
+    private final Long id;
+
+    private final String content;
+
+    private final TodoItem.Status status;
+
+    private final int priority;
+
+    private final LocalDate dueDate;
+
+    private final Instant created;
+
+    private final Instant updated;
+
+    public TodoListEvent(long sequence, Type type, Long id, String content) {
+        this(sequence, type, id, content, TodoItem.Status.OPEN, 0, null, null, null);
+    }
+
+    public TodoListEvent(long sequence, Type type, Long id, String content, TodoItem.Status status, int priority,
+            LocalDate dueDate, Instant created, Instant updated) {
+        this.sequence = sequence;
+        this.type = type;
+        this.id = id;
+        this.content = content;
+        this.status = status == null ? TodoItem.Status.OPEN : status;
+        this.priority = priority;
+        this.dueDate = dueDate;
+        this.created = created;
+        this.updated = updated;
+    }
+
+    public static TodoListEvent created(long sequence, TodoItem item) {
+        return of(sequence, Type.CREATED, item);
+    }
+
+    public static TodoListEvent updated(long sequence, TodoItem item) {
+        return of(sequence, Type.UPDATED, item);
+    }
+
+    public static TodoListEvent deleted(long sequence, Long id) {
+        return new TodoListEvent(sequence, Type.DELETED, id, null);
+    }
+
+    public static TodoListEvent allDeleted(long sequence) {
+        return new TodoListEvent(sequence, Type.ALL_DELETED, null, null);
+    }
+
+    private static TodoListEvent of(long sequence, Type type, TodoItem item) {
+        return new TodoListEvent(sequence, type, item.getId(), item.getContent(), item.getStatus(),
+                item.getPriority(), item.getDueDate(), item.getCreated(), item.getUpdated());
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public TodoItem.Status getStatus() {
+        return status;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public LocalDate getDueDate() {
+        return dueDate;
+    }
+
+    public Instant getCreated() {
+        return created;
+    }
+
+    public Instant getUpdated() {
+        return updated;
+    }
+
+    /**
+     * Returns the item created or updated by this event, versioned by the event sequence.
+     */
+    public TodoItem toItem() {
+        return new TodoItem(id, content, status, priority, dueDate, created, updated, sequence);
+    }
+}
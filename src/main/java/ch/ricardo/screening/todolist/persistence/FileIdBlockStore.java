@@ -0,0 +1,73 @@
+package ch.ricardo.screening.todolist.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Stores the id ceiling as a single long at the start of a file, overwritten in place and fsync'ed on each
+ * {@link #store(long)}. An 8-byte aligned write never spans two disk sectors, so it cannot be torn by a crash.
+ */
+public class FileIdBlockStore implements IdBlockStore, AutoCloseable {
+
+    private final Path file;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+
+    // guarded by this
+    private long stored;
+
+    public FileIdBlockStore(Path file) throws IOException {
+        this.file = file;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.stored = read();
+    }
+
+    @Override
+    public synchronized long load() {
+        return stored;
+    }
+
+    @Override
+    public synchronized void store(long ceiling) {
+        if (ceiling <= stored) {
+            return;
+        }
+        buffer.clear();
+        buffer.putLong(ceiling).flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, buffer.position());
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to store the id ceiling to " + file, e);
+        }
+        stored = ceiling;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long read() throws IOException {
+        if (channel.size() < Long.BYTES) {
+            return 0;
+        }
+        ByteBuffer content = ByteBuffer.allocate(Long.BYTES);
+        while (content.hasRemaining() && channel.read(content, content.position()) >= 0) {
+            // read until the long is complete
+        }
+        content.flip();
+        return content.getLong();
+    }
+}
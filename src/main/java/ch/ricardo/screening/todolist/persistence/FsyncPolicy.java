@@ -0,0 +1,25 @@
+package ch.ricardo.screening.todolist.persistence;
+
+/**
+ * When the write-ahead log forces its content to disk.
+ */
+public enum FsyncPolicy {
+
+    /**
+     * A write is acknowledged only once it has been fsync'ed. Concurrent writers waiting at the same time share a
+     * single fsync (group commit).
+     */
+    ALWAYS,
+
+    /**
+     * The log is written and fsync'ed in the background at a fixed interval. A crash may lose the writes of the last
+     * interval.
+     */
+    INTERVAL,
+
+    /**
+     * The log is written in the background at a fixed interval and never fsync'ed: flushing to disk is left to the
+     * operating system.
+     */
+    NEVER
+}
@@ -0,0 +1,31 @@
+package ch.ricardo.screening.todolist.persistence;
+
+/**
+ * Durable record of the highest id reserved by an id allocator, so that ids are not handed out again after a restart.
+ */
+public interface IdBlockStore {
+
+    /**
+     * Store that keeps nothing, used when persistence is disabled.
+     */
+    IdBlockStore NONE = new IdBlockStore() {
+        @Override
+        public long load() {
+            return 0;
+        }
+
+        @Override
+        public void store(long ceiling) {
+        }
+    };
+
+    /**
+     * Returns the highest ceiling stored, 0 if none.
+     */
+    long load();
+
+    /**
+     * Durably records that ids up to the given ceiling are reserved. Ceilings lower than the stored one are ignored.
+     */
+    void store(long ceiling);
+}
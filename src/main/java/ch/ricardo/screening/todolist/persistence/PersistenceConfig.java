@@ -0,0 +1,48 @@
+package ch.ricardo.screening.todolist.persistence;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(PersistenceProperties.class)
+public class PersistenceConfig {
+
+    @Bean
+    public TodoListJournal todoListJournal(PersistenceProperties properties) throws IOException {
+        if (!properties.isEnabled()) {
+            return TodoListJournal.NONE;
+        }
+        return new WriteAheadLog(Paths.get(properties.getDirectory()), properties.getFsyncPolicy(),
+                properties.getFsyncIntervalMs(), TimeUnit.SECONDS.toMillis(properties.getSnapshotIntervalSeconds()));
+    }
+
+    /**
+     * Id ceiling of the "list" storage, which journals nothing but its ids: the other storages journal every id with
+     * the event that created it.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "todolist.storage", havingValue = "list")
+    public IdBlockStore idBlockStore(PersistenceProperties properties) throws IOException {
+        if (!properties.isEnabled()) {
+            return IdBlockStore.NONE;
+        }
+        return new FileIdBlockStore(Paths.get(properties.getDirectory(), "ids.dat"));
+    }
+
+    /**
+     * Journals of the partitioned lists, each in its own {@code lists/<list id>} subdirectory.
+     */
+    @Bean
+    public TodoListJournalFactory todoListJournalFactory(PersistenceProperties properties) {
+        if (!properties.isEnabled()) {
+            return TodoListJournalFactory.NONE;
+        }
+        return new WriteAheadLogFactory(Paths.get(properties.getDirectory(), "lists"), properties);
+    }
+}
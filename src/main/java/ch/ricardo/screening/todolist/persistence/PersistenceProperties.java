@@ -0,0 +1,86 @@
+package ch.ricardo.screening.todolist.persistence;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the Todo list persistence, bound from the {@code todolist.persistence.*} properties.
+ */
+@ConfigurationProperties(prefix = "todolist.persistence")
+public class PersistenceProperties {
+
+    /**
+     * Whether changes are journaled to disk and recovered at startup.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Directory holding the write-ahead log segments and the snapshot.
+     */
+    private String directory = "data";
+
+    private FsyncPolicy fsyncPolicy = FsyncPolicy.ALWAYS;
+
+    /**
+     * Delay between two background flushes, for the INTERVAL and NEVER fsync policies.
+     */
+    private long fsyncIntervalMs = 10;
+
+    /**
+     * Delay between two snapshots. A snapshot is skipped when nothing changed since the previous one.
+     */
+    private long snapshotIntervalSeconds = 60;
+
+    /**
+     * Threads running the background flushes and snapshots of the journals of the partitioned lists, shared by all
+     * the lists.
+     */
+    private int listJournalThreads = 2;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    public void setFsyncPolicy(FsyncPolicy fsyncPolicy) {
+        this.fsyncPolicy = fsyncPolicy;
+    }
+
+    public long getFsyncIntervalMs() {
+        return fsyncIntervalMs;
+    }
+
+    public void setFsyncIntervalMs(long fsyncIntervalMs) {
+        this.fsyncIntervalMs = fsyncIntervalMs;
+    }
+
+    public long getSnapshotIntervalSeconds() {
+        return snapshotIntervalSeconds;
+    }
+
+    public void setSnapshotIntervalSeconds(long snapshotIntervalSeconds) {
+        this.snapshotIntervalSeconds = snapshotIntervalSeconds;
+    }
+
+    public int getListJournalThreads() {
+        return listJournalThreads;
+    }
+
+    public void setListJournalThreads(int listJournalThreads) {
+        this.listJournalThreads = listJournalThreads;
+    }
+}
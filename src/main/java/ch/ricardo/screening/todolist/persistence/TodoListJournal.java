@@ -0,0 +1,64 @@
+package ch.ricardo.screening.todolist.persistence;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import ch.ricardo.screening.todolist.model.TodoListEvent;
+
+/**
+ * Durable record of the changes applied to a Todo list.
+ * <p>
+ * The service numbers and appends every change while holding its write lock, so that the journal order is the order
+ * in which changes were applied, and waits for durability with {@link #awaitDurable(long)} once the lock is released.
+ * This lets concurrent writers share a single fsync.
+ */
+public interface TodoListJournal extends AutoCloseable {
+
+    /**
+     * Journal that keeps nothing, used when persistence is disabled.
+     */
+    TodoListJournal NONE = new TodoListJournal() {
+        @Override
+        public void recover(Consumer<TodoListSnapshot> snapshotLoader, Consumer<TodoListEvent> eventReplayer) {
+        }
+
+        @Override
+        public void append(TodoListEvent event) {
+        }
+
+        @Override
+        public void awaitDurable(long sequence) {
+        }
+
+        @Override
+        public void scheduleSnapshots(Supplier<TodoListSnapshot> snapshotSupplier) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /**
+     * Loads the latest snapshot, if any, then replays in order the events journaled after it.
+     */
+    void recover(Consumer<TodoListSnapshot> snapshotLoader, Consumer<TodoListEvent> eventReplayer);
+
+    /**
+     * Appends an event to the journal. Events must be appended in sequence order.
+     */
+    void append(TodoListEvent event);
+
+    /**
+     * Blocks until the event with the given sequence is as durable as the configured {@link FsyncPolicy} requires.
+     */
+    void awaitDurable(long sequence);
+
+    /**
+     * Starts taking periodic snapshots of the list, so that the journal can be compacted.
+     */
+    void scheduleSnapshots(Supplier<TodoListSnapshot> snapshotSupplier);
+
+    @Override
+    void close();
+}
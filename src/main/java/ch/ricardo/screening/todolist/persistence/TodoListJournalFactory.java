@@ -0,0 +1,32 @@
+package ch.ricardo.screening.todolist.persistence;
+
+/**
+ * Opens the journals of the lists partitioned by list id, one journal per list.
+ */
+public interface TodoListJournalFactory {
+
+    /**
+     * Factory of journals that keep nothing, used when persistence is disabled.
+     */
+    TodoListJournalFactory NONE = new TodoListJournalFactory() {
+        @Override
+        public boolean exists(String listId) {
+            return false;
+        }
+
+        @Override
+        public TodoListJournal open(String listId) {
+            return TodoListJournal.NONE;
+        }
+    };
+
+    /**
+     * Whether a journal was already written for the given list, e.g. before a restart.
+     */
+    boolean exists(String listId);
+
+    /**
+     * Opens the journal of the given list, to be recovered by the service of the list and closed with it.
+     */
+    TodoListJournal open(String listId);
+}
@@ -0,0 +1,36 @@
+package ch.ricardo.screening.todolist.persistence;
+
+import java.util.List;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+
+/**
+ * A consistent copy of the Todo list: its items, its id counter and the sequence of the last journaled event it
+ * includes.
+ */
+public class TodoListSnapshot {
+
+    private final long lastSequence;
+
+    private final long counter;
+
+    private final List<TodoItem> items;
+
+    public TodoListSnapshot(long lastSequence, long counter, List<TodoItem> items) {
+        this.lastSequence = lastSequence;
+        this.counter = counter;
+        this.items = items;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public long getCounter() {
+        return counter;
+    }
+
+    public List<TodoItem> getItems() {
+        return items;
+    }
+}
@@ -0,0 +1,577 @@
+package ch.ricardo.screening.todolist.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.model.TodoListEvent;
+import ch.ricardo.screening.todolist.storage.ItemAttributes;
+
+/**
+ * Append-only journal of the Todo list changes, written with a {@link FileChannel}.
+ * <p>
+ * The log is split in segments named after the sequence of their first event ({@code wal-<sequence>.log}). A record
+ * is made of its payload size, the CRC32 of its payload, and the payload itself: event sequence, event type, item id,
+ * UTF-8 content and, for creations and updates, the {@link ItemAttributes} of the item. A record that is truncated or
+ * fails its checksum marks the end of the log, which is how a write torn by a crash is detected and discarded at
+ * recovery.
+ * <p>
+ * Appends only encode the record in an in-memory buffer. The buffer is written to the current segment either by the
+ * first writer waiting for durability ({@link FsyncPolicy#ALWAYS}, all the records buffered meanwhile share the same
+ * fsync) or by a background task ({@link FsyncPolicy#INTERVAL} and {@link FsyncPolicy#NEVER}).
+ * <p>
+ * The background flushes and the snapshots run on a scheduler of the log's own, or on a scheduler shared by several
+ * logs (e.g. one per partitioned list), which then survives the log: closing the log only cancels its tasks.
+ * <p>
+ * Snapshots are taken periodically: the log is rolled to a new segment, the snapshot is written to a temporary file
+ * and atomically renamed to {@code snapshot.dat}, then the segments it covers are deleted.
+ * <p>
+ * The log fails stop: once the buffered records could not be written or fsync'ed, every later append is rejected, as
+ * the records that follow could not be replayed after the lost ones. The events that failed were already applied and
+ * possibly seen by other clients, and are lost by a crash: the instance has to be restarted, recovering the list from
+ * what reached the disk.
+ */
+public class WriteAheadLog implements TodoListJournal {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteAheadLog.class);
+
+    static final String SNAPSHOT_FILE = "snapshot.dat";
+
+    private static final String SEGMENT_PREFIX = "wal-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final int SNAPSHOT_MAGIC = 0x54444C41;
+
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private static final int NULL_CONTENT = -1;
+
+    private static final TodoListEvent.Type[] EVENT_TYPES = TodoListEvent.Type.values();
+
+    private final Path directory;
+
+    private final FsyncPolicy fsyncPolicy;
+
+    private final long snapshotIntervalMs;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final boolean ownScheduler;
+
+    private final List<ScheduledFuture<?>> tasks = new CopyOnWriteArrayList<>();
+
+    /**
+     * Held by the thread writing the buffered records to disk, and while rolling to a new segment.
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // guarded by this
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    // guarded by this
+    private long appendedSequence;
+
+    // guarded by this
+    private FileChannel segment;
+
+    // guarded by flushLock
+    private ByteBuffer flushing = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    private volatile long durableSequence;
+
+    // the first failure to write the log, after which it rejects any append
+    private volatile IOException failure;
+
+    private volatile long snapshotSequence;
+
+    private volatile Supplier<TodoListSnapshot> snapshotSupplier;
+
+    public WriteAheadLog(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMs, long snapshotIntervalMs)
+            throws IOException {
+        this(directory, fsyncPolicy, fsyncIntervalMs, snapshotIntervalMs,
+                Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "todolist-wal");
+                    thread.setDaemon(true);
+                    return thread;
+                }), true);
+    }
+
+    /**
+     * Creates a log running its background tasks on the given scheduler, which is left running when the log is
+     * closed.
+     */
+    public WriteAheadLog(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMs, long snapshotIntervalMs,
+            ScheduledExecutorService scheduler) throws IOException {
+        this(directory, fsyncPolicy, fsyncIntervalMs, snapshotIntervalMs, scheduler, false);
+    }
+
+    private WriteAheadLog(Path directory, FsyncPolicy fsyncPolicy, long fsyncIntervalMs, long snapshotIntervalMs,
+            ScheduledExecutorService scheduler, boolean ownScheduler) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.fsyncPolicy = fsyncPolicy;
+        this.snapshotIntervalMs = snapshotIntervalMs;
+        this.scheduler = scheduler;
+        this.ownScheduler = ownScheduler;
+        if (fsyncPolicy != FsyncPolicy.ALWAYS) {
+            tasks.add(scheduler.scheduleWithFixedDelay(this::backgroundFlush, fsyncIntervalMs, fsyncIntervalMs,
+                    TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Override
+    public void recover(Consumer<TodoListSnapshot> snapshotLoader, Consumer<TodoListEvent> eventReplayer) {
+        try {
+            long lastSequence = 0;
+            Path snapshotFile = directory.resolve(SNAPSHOT_FILE);
+            if (Files.exists(snapshotFile)) {
+                TodoListSnapshot snapshot = readSnapshot(snapshotFile);
+                snapshotLoader.accept(snapshot);
+                lastSequence = snapshot.getLastSequence();
+                snapshotSequence = lastSequence;
+            }
+            long replayed = 0;
+            for (Path segmentFile : segmentFiles()) {
+                long before = lastSequence;
+                lastSequence = replaySegment(segmentFile, lastSequence, eventReplayer);
+                replayed += lastSequence - before;
+            }
+            LOGGER.info("Recovered Todo list from {}: snapshot at sequence {}, {} events replayed", directory,
+                    snapshotSequence, replayed);
+
+            synchronized (this) {
+                appendedSequence = lastSequence;
+                durableSequence = lastSequence;
+                segment = openSegment(lastSequence + 1);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to recover the Todo list from " + directory, e);
+        }
+    }
+
+    @Override
+    public synchronized void append(TodoListEvent event) {
+        if (segment == null) {
+            throw new IllegalStateException("The write-ahead log must be recovered before appending to it");
+        }
+        if (failure != null) {
+            throw new IllegalStateException("The write-ahead log failed, the instance must be restarted", failure);
+        }
+        byte[] content = event.getContent() == null ? null : event.getContent().getBytes(StandardCharsets.UTF_8);
+        ItemAttributes attributes = hasItem(event) ? ItemAttributes.of(event.toItem()) : null;
+        int payloadSize = Long.BYTES + 1 + Long.BYTES + Integer.BYTES + (content == null ? 0 : content.length)
+                + (attributes == null ? 0 : ItemAttributes.SIZE);
+        ensureCapacity(RECORD_HEADER_SIZE + payloadSize);
+
+        appendedSequence = event.getSequence();
+        int start = pending.position();
+        pending.putInt(payloadSize);
+        pending.putInt(0);
+        pending.putLong(event.getSequence());
+        pending.put((byte) event.getType().ordinal());
+        pending.putLong(event.getId() == null ? 0 : event.getId());
+        if (content == null) {
+            pending.putInt(NULL_CONTENT);
+        } else {
+            pending.putInt(content.length);
+            pending.put(content);
+        }
+        if (attributes != null) {
+            attributes.write(pending, pending.position());
+            pending.position(pending.position() + ItemAttributes.SIZE);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(pending.array(), start + RECORD_HEADER_SIZE, payloadSize);
+        pending.putInt(start + Integer.BYTES, (int) crc.getValue());
+    }
+
+    @Override
+    public void awaitDurable(long sequence) {
+        if (failure != null) {
+            throw new UncheckedIOException("Unable to write to the write-ahead log", failure);
+        }
+        if (fsyncPolicy != FsyncPolicy.ALWAYS || durableSequence >= sequence) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            // the records may have been flushed by another writer while this one was waiting for the lock
+            if (durableSequence < sequence) {
+                flush(true);
+            }
+            if (failure != null) {
+                // failed by the writer that held the lock before this one
+                throw failure;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write to the write-ahead log", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void scheduleSnapshots(Supplier<TodoListSnapshot> snapshotSupplier) {
+        this.snapshotSupplier = snapshotSupplier;
+        tasks.add(scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                takeSnapshot();
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Unable to take a snapshot of the Todo list", e);
+            }
+        }, snapshotIntervalMs, snapshotIntervalMs, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Takes a snapshot of the list and deletes the log segments it makes obsolete. Does nothing if no event was
+     * appended since the previous snapshot.
+     */
+    void takeSnapshot() throws IOException {
+        Supplier<TodoListSnapshot> supplier = snapshotSupplier;
+        synchronized (this) {
+            if (supplier == null || appendedSequence == snapshotSequence) {
+                return;
+            }
+        }
+        long firstRetainedSequence = rollSegment();
+        // taken after the roll, the snapshot includes at least every event of the previous segments
+        TodoListSnapshot snapshot = supplier.get();
+        writeSnapshot(snapshot);
+        snapshotSequence = snapshot.getLastSequence();
+
+        for (Path segmentFile : segmentFiles()) {
+            if (firstSequenceOf(segmentFile) < firstRetainedSequence) {
+                Files.delete(segmentFile);
+            }
+        }
+        LOGGER.info("Snapshot of {} items taken at sequence {}", snapshot.getItems().size(),
+                snapshot.getLastSequence());
+    }
+
+    @Override
+    public void close() {
+        tasks.forEach(task -> task.cancel(false));
+        if (ownScheduler) {
+            scheduler.shutdown();
+        }
+        flushLock.lock();
+        try {
+            flush(fsyncPolicy != FsyncPolicy.NEVER);
+            synchronized (this) {
+                if (segment != null) {
+                    segment.close();
+                    segment = null;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Unable to close the write-ahead log", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    long getDurableSequence() {
+        return durableSequence;
+    }
+
+    private void backgroundFlush() {
+        flushLock.lock();
+        try {
+            flush(fsyncPolicy == FsyncPolicy.INTERVAL);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Unable to write to the write-ahead log", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    boolean hasFailed() {
+        return failure != null;
+    }
+
+    /**
+     * Writes the buffered records to the current segment, and fails the log if it cannot. Must be called with the
+     * flush lock held, so that the records reach the file in sequence order.
+     */
+    private void flush(boolean force) throws IOException {
+        if (failure != null) {
+            return;
+        }
+        try {
+            write(force);
+        } catch (IOException e) {
+            fail(e);
+            throw e;
+        }
+    }
+
+    private void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+            LOGGER.error("The write-ahead log failed, rejecting any write until the instance is restarted", e);
+        }
+    }
+
+    private void write(boolean force) throws IOException {
+        long flushedSequence;
+        FileChannel channel;
+        synchronized (this) {
+            if (segment == null || pending.position() == 0 && appendedSequence == durableSequence) {
+                // nothing appended since the last flush, e.g. the journal of a list that is not written to
+                return;
+            }
+            ByteBuffer full = pending;
+            pending = flushing;
+            flushing = full;
+            flushedSequence = appendedSequence;
+            channel = segment;
+        }
+        flushing.flip();
+        while (flushing.hasRemaining()) {
+            channel.write(flushing);
+        }
+        flushing.clear();
+        if (force) {
+            channel.force(false);
+        }
+        durableSequence = flushedSequence;
+    }
+
+    /**
+     * Flushes and closes the current segment, and starts a new one.
+     *
+     * @return the sequence of the first event of the new segment
+     */
+    private long rollSegment() throws IOException {
+        flushLock.lock();
+        try {
+            flush(fsyncPolicy != FsyncPolicy.NEVER);
+            if (failure != null) {
+                throw new IOException("The write-ahead log failed", failure);
+            }
+            synchronized (this) {
+                try {
+                    // records appended since the flush above still belong to the old segment
+                    pending.flip();
+                    while (pending.hasRemaining()) {
+                        segment.write(pending);
+                    }
+                    pending.clear();
+                    segment.force(false);
+                    segment.close();
+                    durableSequence = appendedSequence;
+                    segment = openSegment(appendedSequence + 1);
+                    return appendedSequence + 1;
+                } catch (IOException e) {
+                    fail(e);
+                    throw e;
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void ensureCapacity(int recordSize) {
+        if (pending.remaining() < recordSize) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + recordSize));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+    }
+
+    private FileChannel openSegment(long firstSequence) throws IOException {
+        Path segmentFile = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        return FileChannel.open(segmentFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static long firstSequenceOf(Path segmentFile) {
+        String name = segmentFile.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Replays the events of a segment newer than the given sequence, and truncates the segment after its last valid
+     * record.
+     *
+     * @return the sequence of the last event read
+     */
+    private long replaySegment(Path segmentFile, long lastSequence, Consumer<TodoListEvent> eventReplayer)
+            throws IOException {
+        long segmentSize = Files.size(segmentFile);
+        long validSize = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segmentFile)))) {
+            while (true) {
+                int payloadSize;
+                int checksum;
+                byte[] payload;
+                try {
+                    payloadSize = in.readInt();
+                    checksum = in.readInt();
+                    if (payloadSize < 0 || payloadSize > segmentSize) {
+                        break;
+                    }
+                    payload = new byte[payloadSize];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(payload, 0, payloadSize);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                validSize += RECORD_HEADER_SIZE + payloadSize;
+
+                ByteBuffer record = ByteBuffer.wrap(payload);
+                long sequence = record.getLong();
+                TodoListEvent.Type type = EVENT_TYPES[record.get()];
+                long id = record.getLong();
+                int contentSize = record.getInt();
+                String content = null;
+                if (contentSize != NULL_CONTENT) {
+                    content = new String(payload, record.position(), contentSize, StandardCharsets.UTF_8);
+                    record.position(record.position() + contentSize);
+                }
+                if (sequence > lastSequence) {
+                    eventReplayer.accept(toEvent(sequence, type, id, content, record));
+                    lastSequence = sequence;
+                }
+            }
+        }
+        if (validSize < segmentSize) {
+            LOGGER.warn("Discarding {} bytes of incomplete records at the end of {}", segmentSize - validSize,
+                    segmentFile);
+            try (FileChannel channel = FileChannel.open(segmentFile, StandardOpenOption.WRITE)) {
+                channel.truncate(validSize);
+            }
+        }
+        return lastSequence;
+    }
+
+    private void writeSnapshot(TodoListSnapshot snapshot) throws IOException {
+        Path temporaryFile = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream channelOut = Channels.newOutputStream(channel);
+            CheckedOutputStream checkedOut = new CheckedOutputStream(new BufferedOutputStream(channelOut), new CRC32());
+            DataOutputStream out = new DataOutputStream(checkedOut);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(snapshot.getLastSequence());
+            out.writeLong(snapshot.getCounter());
+            out.writeInt(snapshot.getItems().size());
+            for (TodoItem item : snapshot.getItems()) {
+                out.writeLong(item.getId());
+                if (item.getContent() == null) {
+                    out.writeInt(NULL_CONTENT);
+                } else {
+                    byte[] content = item.getContent().getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(content.length);
+                    out.write(content);
+                }
+                ItemAttributes.of(item).write(out);
+            }
+            out.writeLong(checkedOut.getChecksum().getValue());
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temporaryFile, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static TodoListSnapshot readSnapshot(Path snapshotFile) throws IOException {
+        try (InputStream fileIn = Files.newInputStream(snapshotFile)) {
+            CheckedInputStream checkedIn = new CheckedInputStream(new BufferedInputStream(fileIn), new CRC32());
+            DataInputStream in = new DataInputStream(checkedIn);
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException("Not a Todo list snapshot: " + snapshotFile);
+            }
+            long lastSequence = in.readLong();
+            long counter = in.readLong();
+            int size = in.readInt();
+            List<TodoItem> items = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                long id = in.readLong();
+                int contentSize = in.readInt();
+                String content = null;
+                if (contentSize != NULL_CONTENT) {
+                    byte[] bytes = new byte[contentSize];
+                    in.readFully(bytes);
+                    content = new String(bytes, StandardCharsets.UTF_8);
+                }
+                items.add(ItemAttributes.read(in).toItem(id, content, 0));
+            }
+            long expectedChecksum = checkedIn.getChecksum().getValue();
+            if (in.readLong() != expectedChecksum) {
+                throw new IOException("Corrupted Todo list snapshot: " + snapshotFile);
+            }
+            return new TodoListSnapshot(lastSequence, counter, items);
+        }
+    }
+
+    private static boolean hasItem(TodoListEvent event) {
+        return event.getType() == TodoListEvent.Type.CREATED || event.getType() == TodoListEvent.Type.UPDATED;
+    }
+
+    /**
+     * Decodes the event of a record whose payload is read up to the end of the content.
+     */
+    private static TodoListEvent toEvent(long sequence, TodoListEvent.Type type, long id, String content,
+            ByteBuffer record) {
+        if (type == TodoListEvent.Type.ALL_DELETED) {
+            return TodoListEvent.allDeleted(sequence);
+        }
+        if (type == TodoListEvent.Type.DELETED) {
+            return new TodoListEvent(sequence, type, id, content);
+        }
+        TodoItem item = ItemAttributes.read(record, record.position()).toItem(id, content, sequence);
+        return type == TodoListEvent.Type.CREATED ? TodoListEvent.created(sequence, item)
+                : TodoListEvent.updated(sequence, item);
+    }
+}
@@ -0,0 +1,57 @@
+package ch.ricardo.screening.todolist.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens a {@link WriteAheadLog} per partitioned list, in the {@code <list id>} subdirectory of a directory. The
+ * background flushes and snapshots of all the logs share a few threads, rather than a thread per list.
+ */
+public class WriteAheadLogFactory implements TodoListJournalFactory {
+
+    private final Path directory;
+
+    private final PersistenceProperties properties;
+
+    private final ScheduledExecutorService scheduler;
+
+    public WriteAheadLogFactory(Path directory, PersistenceProperties properties) {
+        this.directory = directory;
+        this.properties = properties;
+        AtomicInteger threads = new AtomicInteger();
+        this.scheduler = Executors.newScheduledThreadPool(properties.getListJournalThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "todolist-lists-wal-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public boolean exists(String listId) {
+        return Files.isDirectory(directory.resolve(listId));
+    }
+
+    @Override
+    public TodoListJournal open(String listId) {
+        try {
+            return new WriteAheadLog(directory.resolve(listId), properties.getFsyncPolicy(),
+                    properties.getFsyncIntervalMs(), TimeUnit.SECONDS.toMillis(properties.getSnapshotIntervalSeconds()),
+                    scheduler);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open the journal of list " + listId, e);
+        }
+    }
+
+    /**
+     * Stops the shared threads, once the logs were closed.
+     */
+    public void close() {
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,225 @@
+package ch.ricardo.screening.todolist.replication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+
+import ch.ricardo.screening.todolist.persistence.TodoListSnapshot;
+import ch.ricardo.screening.todolist.service.ReplicableTodoListService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Replica end of the replication: follows a primary, see {@link ReplicationProtocol}, and applies its events and
+ * snapshots to the local list, from a dedicated thread. The connection is opened again whenever it fails or the
+ * primary is silent for {@code timeout-ms}, resuming from the version reached.
+ * <p>
+ * The staleness of the replica is the time since it was last known to hold every change of the primary: each heartbeat
+ * of the primary tells its version at the time, which the replica holds once it applied the events up to that version
+ * (they may still be on their way when the heartbeat arrives). A replica keeps up with a busy primary as long as it
+ * reaches, from time to time, the version of a heartbeat received shortly before.
+ * <p>
+ * Metrics: {@value #STALENESS} gauges the staleness in ms, {@value #SNAPSHOTS} counts the snapshots loaded.
+ */
+public class ReplicaClient implements ApplicationRunner, AutoCloseable {
+
+    static final String STALENESS = "todolist.replication.staleness";
+
+    static final String SNAPSHOTS = "todolist.replication.snapshots";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaClient.class);
+
+    // heartbeats waiting for the replica to reach their version, beyond which new heartbeats are ignored
+    private static final int MAX_PENDING_HEARTBEATS = 64;
+
+    private final ReplicableTodoListService todolistService;
+
+    private final ReplicationProperties properties;
+
+    private final Counter snapshots;
+
+    // versions of the heartbeats not reached yet, with the nanoTime they were received at; follower thread only
+    private final Deque<long[]> pendingHeartbeats = new ArrayDeque<>();
+
+    // log followed, 0 for none: the primary then starts with a snapshot
+    private volatile long logId;
+
+    private volatile boolean upToDate;
+
+    private volatile long upToDateNanos;
+
+    private volatile boolean closed;
+
+    private volatile Socket socket;
+
+    private Thread follower;
+
+    public ReplicaClient(ReplicableTodoListService todolistService, ReplicationProperties properties,
+            MeterRegistry registry) {
+        this.todolistService = todolistService;
+        this.properties = properties;
+        this.snapshots = Counter.builder(SNAPSHOTS)
+                .description("Snapshots of the primary loaded by the replica")
+                .register(registry);
+        Gauge.builder(STALENESS, this, ReplicaClient::getStalenessMs)
+                .description("Time since the replica was last up to date with its primary")
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+
+    /**
+     * Starts following the primary once the application is ready. Runners are created at startup, even with lazy
+     * initialization.
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        start();
+    }
+
+    public synchronized void start() {
+        if (follower == null) {
+            follower = new Thread(this::follow, "todolist-replication-follower");
+            follower.setDaemon(true);
+            follower.start();
+        }
+    }
+
+    /**
+     * Milliseconds since the replica was last known to hold every change of the primary, {@link Long#MAX_VALUE} if it
+     * never was.
+     */
+    public long getStalenessMs() {
+        return upToDate ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - upToDateNanos) : Long.MAX_VALUE;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        Socket current = socket;
+        if (current != null) {
+            closeQuietly(current);
+        }
+        if (follower != null) {
+            follower.interrupt();
+        }
+    }
+
+    private void follow() {
+        // only the first of consecutive failures is a warning, e.g. while the primary starts
+        boolean failing = false;
+        while (!closed) {
+            try (Socket connection = new Socket()) {
+                socket = connection;
+                connection.connect(new InetSocketAddress(properties.getHost(), properties.getPort()),
+                        (int) properties.getTimeoutMs());
+                connection.setSoTimeout((int) properties.getTimeoutMs());
+                connection.setTcpNoDelay(true);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+                ReplicationProtocol.writeHello(out, logId, todolistService.getVersion());
+                out.flush();
+                DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+                ReplicationProtocol.Hello hello = ReplicationProtocol.readHello(in);
+                LOGGER.info("Following the primary at {} from version {}", connection.getRemoteSocketAddress(),
+                        todolistService.getVersion());
+                failing = false;
+                pendingHeartbeats.clear();
+                if (hello.getLogId() == logId) {
+                    heartbeat(hello.getVersion());
+                }
+                receive(in, hello.getLogId());
+            } catch (IOException | RuntimeException e) {
+                if (!closed && !failing) {
+                    LOGGER.warn("Lost the primary, reconnecting every {} ms: {}", properties.getReconnectDelayMs(),
+                            e.toString());
+                } else {
+                    LOGGER.debug("Unable to reach the primary: {}", e.toString());
+                }
+                failing = true;
+            }
+            try {
+                Thread.sleep(properties.getReconnectDelayMs());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void receive(DataInputStream in, long primaryLogId) throws IOException {
+        while (!closed) {
+            byte type = in.readByte();
+            switch (type) {
+                case ReplicationProtocol.EVENT:
+                    if (logId != primaryLogId) {
+                        throw new IOException("Received events of a log the replica does not follow yet");
+                    }
+                    try {
+                        todolistService.replicate(ReplicationProtocol.readEvent(in));
+                    } catch (IllegalStateException e) {
+                        // missed events: start over from a snapshot
+                        logId = 0;
+                        throw e;
+                    }
+                    break;
+                case ReplicationProtocol.SNAPSHOT:
+                    TodoListSnapshot snapshot = ReplicationProtocol.readSnapshot(in);
+                    todolistService.load(snapshot);
+                    logId = primaryLogId;
+                    snapshots.increment();
+                    // the version of the primary when the snapshot was taken, like a heartbeat
+                    heartbeat(snapshot.getLastSequence());
+                    LOGGER.info("Loaded a snapshot of {} items at version {}", snapshot.getItems().size(),
+                            snapshot.getLastSequence());
+                    break;
+                case ReplicationProtocol.HEARTBEAT:
+                    long version = in.readLong();
+                    // the versions of another log tell nothing about the local list
+                    if (logId == primaryLogId) {
+                        heartbeat(version);
+                    }
+                    break;
+                default:
+                    throw new IOException("Unknown replication message " + type);
+            }
+            catchUp();
+        }
+    }
+
+    private void heartbeat(long version) {
+        if (pendingHeartbeats.size() < MAX_PENDING_HEARTBEATS) {
+            pendingHeartbeats.addLast(new long[] {version, System.nanoTime()});
+        }
+    }
+
+    /**
+     * Records that the replica is up to date as of the latest heartbeat whose version it reached.
+     */
+    private void catchUp() {
+        long version = todolistService.getVersion();
+        while (!pendingHeartbeats.isEmpty() && pendingHeartbeats.peekFirst()[0] <= version) {
+            upToDateNanos = pendingHeartbeats.removeFirst()[1];
+            upToDate = true;
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            LOGGER.debug("Unable to close {}", socket, e);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package ch.ricardo.screening.todolist.replication;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.util.UrlPathHelper;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Turns the Todo list API of a replica into a read-only API with bounded staleness, as a Spring MVC interceptor or as
+ * a WebFlux filter:
+ * <ul>
+ * <li>requests to the partitioned lists get a {@code 404 Not Found}: only the default list is replicated, a replica
+ * would answer from its own, empty partitions,
+ * <li>writes get a {@code 405 Method Not Allowed}, they have to be sent to the primary,
+ * <li>reads get a {@code 503 Service Unavailable} with a {@code Retry-After} while the replica was last up to date
+ * with its primary more than {@code max-staleness-ms} ago, e.g. when it lost the primary or catches up from a
+ * snapshot, so that a load balancer sends them to another instance.
+ * </ul>
+ */
+public class ReplicaReadGuard implements AsyncHandlerInterceptor, WebFilter {
+
+    static final String API_PATH = "/todolist/";
+
+    static final String REPLICATED_PATH = API_PATH + "items";
+
+    private static final UrlPathHelper PATH_HELPER = new UrlPathHelper();
+
+    private static final String ALLOWED_METHODS = HttpMethod.GET + ", " + HttpMethod.HEAD;
+
+    private final ReplicaClient replicaClient;
+
+    private final long maxStalenessMs;
+
+    public ReplicaReadGuard(ReplicaClient replicaClient, long maxStalenessMs) {
+        this.replicaClient = replicaClient;
+        this.maxStalenessMs = maxStalenessMs;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        HttpStatus rejection = rejection(PATH_HELPER.getPathWithinApplication(request),
+                HttpMethod.resolve(request.getMethod()));
+        if (rejection == null) {
+            return true;
+        }
+        response.setStatus(rejection.value());
+        if (rejection == HttpStatus.METHOD_NOT_ALLOWED) {
+            response.setHeader(HttpHeaders.ALLOW, ALLOWED_METHODS);
+        } else if (rejection == HttpStatus.SERVICE_UNAVAILABLE) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        }
+        return false;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        HttpStatus rejection = path.startsWith(API_PATH) ? rejection(path, exchange.getRequest().getMethod()) : null;
+        if (rejection == null) {
+            return chain.filter(exchange);
+        }
+        exchange.getResponse().setStatusCode(rejection);
+        if (rejection == HttpStatus.METHOD_NOT_ALLOWED) {
+            exchange.getResponse().getHeaders().set(HttpHeaders.ALLOW, ALLOWED_METHODS);
+        } else if (rejection == HttpStatus.SERVICE_UNAVAILABLE) {
+            exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+        }
+        return exchange.getResponse().setComplete();
+    }
+
+    /**
+     * Returns the status rejecting a request to the given path of the API, or null if the request may be served.
+     */
+    private HttpStatus rejection(String path, HttpMethod method) {
+        if (!isReplicated(path)) {
+            return HttpStatus.NOT_FOUND;
+        } else if (method != HttpMethod.GET && method != HttpMethod.HEAD) {
+            return HttpStatus.METHOD_NOT_ALLOWED;
+        }
+        return replicaClient.getStalenessMs() > maxStalenessMs ? HttpStatus.SERVICE_UNAVAILABLE : null;
+    }
+
+    /**
+     * Tells the paths of the default list ({@code /todolist/items}, its items and its batches) from the paths of the
+     * partitioned lists.
+     */
+    private static boolean isReplicated(String path) {
+        if (!path.startsWith(REPLICATED_PATH)) {
+            return false;
+        }
+        return path.length() == REPLICATED_PATH.length() || path.charAt(REPLICATED_PATH.length()) == '/'
+                || path.charAt(REPLICATED_PATH.length()) == ':';
+    }
+}
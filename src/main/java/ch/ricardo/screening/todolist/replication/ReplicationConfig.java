@@ -0,0 +1,57 @@
+package ch.ricardo.screening.todolist.replication;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.handler.MappedInterceptor;
+
+import ch.ricardo.screening.todolist.events.TodoListChangeFeed;
+import ch.ricardo.screening.todolist.persistence.PersistenceProperties;
+import ch.ricardo.screening.todolist.service.ReplicableTodoListService;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Primary/replica replication of the default storage, the only one implementing {@link ReplicableTodoListService}.
+ */
+@Configuration
+@EnableConfigurationProperties(ReplicationProperties.class)
+public class ReplicationConfig {
+
+    private static final String ROLE = "todolist.replication.role";
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = ROLE, havingValue = "primary")
+    public ReplicationServer replicationServer(ReplicableTodoListService todolistService,
+            TodoListChangeFeed changeFeed, ReplicationProperties properties, MeterRegistry registry) {
+        return new ReplicationServer(todolistService, changeFeed, properties, registry);
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = ROLE, havingValue = "replica")
+    public ReplicaClient replicaClient(ReplicableTodoListService todolistService, ReplicationProperties properties,
+            PersistenceProperties persistenceProperties, MeterRegistry registry) {
+        if (persistenceProperties.isEnabled()) {
+            throw new IllegalStateException("A replica cannot persist its list, it is rebuilt from its primary: "
+                    + "set todolist.persistence.enabled=false");
+        }
+        return new ReplicaClient(todolistService, properties, registry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = ROLE, havingValue = "replica")
+    public ReplicaReadGuard replicaReadGuard(ReplicaClient replicaClient, ReplicationProperties properties) {
+        return new ReplicaReadGuard(replicaClient, properties.getMaxStalenessMs());
+    }
+
+    /**
+     * Only the Todo list API is read-only, Actuator and Swagger are not. WebFlux picks the guard up as a filter.
+     */
+    @Bean
+    @ConditionalOnProperty(name = ROLE, havingValue = "replica")
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    public MappedInterceptor replicaReadInterceptor(ReplicaReadGuard replicaReadGuard) {
+        return new MappedInterceptor(new String[] {ReplicaReadGuard.API_PATH + "**"}, replicaReadGuard);
+    }
+}
@@ -0,0 +1,98 @@
+package ch.ricardo.screening.todolist.replication;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Settings of the replication of the Todo list, bound from the {@code todolist.replication.*} properties.
+ */
+@ConfigurationProperties(prefix = "todolist.replication")
+public class ReplicationProperties {
+
+    private ReplicationRole role = ReplicationRole.NONE;
+
+    /**
+     * Address the primary listens on, and the replicas connect to.
+     */
+    private String host = "localhost";
+
+    /**
+     * Port the primary listens on, and the replicas connect to. A primary listens on a free port when 0.
+     */
+    private int port = 7070;
+
+    /**
+     * Delay between two heartbeats of the primary, which tell the replicas its latest version.
+     */
+    private long heartbeatIntervalMs = 100;
+
+    /**
+     * A replica that hears nothing from its primary for this long reconnects.
+     */
+    private long timeoutMs = 2000;
+
+    /**
+     * Delay before a replica reconnects to its primary.
+     */
+    private long reconnectDelayMs = 500;
+
+    /**
+     * Reads of a replica are rejected when it was last up to date with its primary longer ago than this.
+     */
+    private long maxStalenessMs = 1000;
+
+    public ReplicationRole getRole() {
+        return role;
+    }
+
+    public void setRole(ReplicationRole role) {
+        this.role = role;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public long getHeartbeatIntervalMs() {
+        return heartbeatIntervalMs;
+    }
+
+    public void setHeartbeatIntervalMs(long heartbeatIntervalMs) {
+        this.heartbeatIntervalMs = heartbeatIntervalMs;
+    }
+
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    public void setTimeoutMs(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    public long getReconnectDelayMs() {
+        return reconnectDelayMs;
+    }
+
+    public void setReconnectDelayMs(long reconnectDelayMs) {
+        this.reconnectDelayMs = reconnectDelayMs;
+    }
+
+    public long getMaxStalenessMs() {
+        return maxStalenessMs;
+    }
+
+    public void setMaxStalenessMs(long maxStalenessMs) {
+        this.maxStalenessMs = maxStalenessMs;
+    }
+}
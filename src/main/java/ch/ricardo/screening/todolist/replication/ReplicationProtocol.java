@@ -0,0 +1,179 @@
+package ch.ricardo.screening.todolist.replication;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.model.TodoListEvent;
+import ch.ricardo.screening.todolist.persistence.TodoListSnapshot;
+import ch.ricardo.screening.todolist.storage.ItemAttributes;
+
+/**
+ * Messages exchanged between a primary and a replica over a TCP connection, in big-endian order.
+ * <p>
+ * Both ends start with a hello: {@value #MAGIC}, the protocol version, the id of the log followed and a version of the
+ * list. The replica sends the log it followed last and the version it reached, the primary its own log, drawn at
+ * startup, and its current version. The primary then only sends messages, each starting with its type:
+ * <pre>
+ * EVENT      sequence, type (ordinal), then for CREATED and UPDATED: id, content, attributes; for DELETED: id
+ * SNAPSHOT   last sequence, id counter, number of items, then for each item: id, content, attributes
+ * HEARTBEAT  version of the primary
+ * </pre>
+ * Contents are written as their length in bytes (-1 for none) followed by their UTF-8 encoding, attributes as
+ * {@link ItemAttributes}.
+ */
+final class ReplicationProtocol {
+
+    static final int MAGIC = 0x54444C52;
+
+    static final int VERSION = 1;
+
+    static final byte EVENT = 1;
+
+    static final byte SNAPSHOT = 2;
+
+    static final byte HEARTBEAT = 3;
+
+    private static final TodoListEvent.Type[] EVENT_TYPES = TodoListEvent.Type.values();
+
+    private ReplicationProtocol() {
+    }
+
+    static void writeHello(DataOutput out, long logId, long version) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(logId);
+        out.writeLong(version);
+    }
+
+    static Hello readHello(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a replication connection");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported replication protocol version " + version);
+        }
+        return new Hello(in.readLong(), in.readLong());
+    }
+
+    static void writeEvent(DataOutput out, TodoListEvent event) throws IOException {
+        out.writeByte(EVENT);
+        out.writeLong(event.getSequence());
+        out.writeByte(event.getType().ordinal());
+        switch (event.getType()) {
+            case CREATED:
+            case UPDATED:
+                writeItem(out, event.toItem());
+                break;
+            case DELETED:
+                out.writeLong(event.getId());
+                break;
+            case ALL_DELETED:
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown event type " + event.getType());
+        }
+    }
+
+    /**
+     * Reads an event, once its message type was read.
+     */
+    static TodoListEvent readEvent(DataInput in) throws IOException {
+        long sequence = in.readLong();
+        int type = in.readUnsignedByte();
+        if (type >= EVENT_TYPES.length) {
+            throw new IOException("Unknown event type " + type);
+        }
+        switch (EVENT_TYPES[type]) {
+            case CREATED:
+                return TodoListEvent.created(sequence, readItem(in, sequence));
+            case UPDATED:
+                return TodoListEvent.updated(sequence, readItem(in, sequence));
+            case DELETED:
+                return TodoListEvent.deleted(sequence, in.readLong());
+            default:
+                return TodoListEvent.allDeleted(sequence);
+        }
+    }
+
+    static void writeSnapshot(DataOutput out, TodoListSnapshot snapshot) throws IOException {
+        out.writeByte(SNAPSHOT);
+        out.writeLong(snapshot.getLastSequence());
+        out.writeLong(snapshot.getCounter());
+        out.writeInt(snapshot.getItems().size());
+        for (TodoItem item : snapshot.getItems()) {
+            writeItem(out, item);
+        }
+    }
+
+    /**
+     * Reads a snapshot, once its message type was read.
+     */
+    static TodoListSnapshot readSnapshot(DataInput in) throws IOException {
+        long lastSequence = in.readLong();
+        long counter = in.readLong();
+        int size = in.readInt();
+        List<TodoItem> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(readItem(in, lastSequence));
+        }
+        return new TodoListSnapshot(lastSequence, counter, items);
+    }
+
+    static void writeHeartbeat(DataOutput out, long version) throws IOException {
+        out.writeByte(HEARTBEAT);
+        out.writeLong(version);
+    }
+
+    private static void writeItem(DataOutput out, TodoItem item) throws IOException {
+        out.writeLong(item.getId());
+        if (item.getContent() == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] content = item.getContent().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(content.length);
+            out.write(content);
+        }
+        ItemAttributes.of(item).write(out);
+    }
+
+    private static TodoItem readItem(DataInput in, long version) throws IOException {
+        long id = in.readLong();
+        int length = in.readInt();
+        String content = null;
+        if (length >= 0) {
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            content = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return ItemAttributes.read(in).toItem(id, content, version);
+    }
+
+    /**
+     * The hello of either end of a connection.
+     */
+    static final class Hello {
+
+        private final long logId;
+
+        private final long version;
+
+        Hello(long logId, long version) {
+            this.logId = logId;
+            this.version = version;
+        }
+
+        long getLogId() {
+            return logId;
+        }
+
+        long getVersion() {
+            return version;
+        }
+    }
+}
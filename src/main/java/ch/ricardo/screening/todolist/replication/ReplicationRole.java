@@ -0,0 +1,22 @@
+package ch.ricardo.screening.todolist.replication;
+
+/**
+ * Role of an instance in the replication of the Todo list.
+ */
+public enum ReplicationRole {
+
+    /**
+     * The instance keeps its list to itself.
+     */
+    NONE,
+
+    /**
+     * The instance serves the whole API, and ships the changes of its list to the replicas connected to it.
+     */
+    PRIMARY,
+
+    /**
+     * The instance follows a primary and only serves reads, as long as it is not too far behind the primary.
+     */
+    REPLICA
+}
@@ -0,0 +1,295 @@
+package ch.ricardo.screening.todolist.replication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+
+import ch.ricardo.screening.todolist.events.ChangeFeedSubscriber;
+import ch.ricardo.screening.todolist.events.TodoListChangeFeed;
+import ch.ricardo.screening.todolist.model.TodoListEvent;
+import ch.ricardo.screening.todolist.persistence.TodoListSnapshot;
+import ch.ricardo.screening.todolist.service.ReplicableTodoListService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Primary end of the replication: ships the changes of the list to the replicas connected to it, see
+ * {@link ReplicationProtocol}.
+ * <p>
+ * Each replica is a subscriber of the {@link TodoListChangeFeed}, which provides the ordered log of the changes: a
+ * replica resumes from the version it reached as long as the change feed still holds the events that follow, and
+ * otherwise gets a snapshot of the list first, when the feed resets it. A replica that falls more than
+ * {@code todolist.change-feed.buffer-size} events behind is disconnected, and catches up from a snapshot when it
+ * reconnects. Events are sent by the sender threads of the feed, and flushed once the buffer of the replica is
+ * drained, so that a burst of writes takes a few network writes. Between them, a heartbeat tells each idle replica the
+ * current version, so that it knows how recent it is.
+ * <p>
+ * The log is identified by an id drawn at startup: a replica that followed another log, e.g. before the primary
+ * restarted, always starts over from a snapshot.
+ * <p>
+ * Metrics: {@value #REPLICAS} gauges the connected replicas.
+ */
+public class ReplicationServer implements ApplicationRunner, AutoCloseable {
+
+    static final String REPLICAS = "todolist.replication.replicas";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicationServer.class);
+
+    private final ReplicableTodoListService todolistService;
+
+    private final TodoListChangeFeed changeFeed;
+
+    private final ReplicationProperties properties;
+
+    private final long logId = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+
+    private final Set<ReplicaSession> sessions = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "todolist-replication-heartbeats");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile ServerSocket serverSocket;
+
+    private Thread acceptor;
+
+    public ReplicationServer(ReplicableTodoListService todolistService, TodoListChangeFeed changeFeed,
+            ReplicationProperties properties, MeterRegistry registry) {
+        this.todolistService = todolistService;
+        this.changeFeed = changeFeed;
+        this.properties = properties;
+        Gauge.builder(REPLICAS, sessions, Set::size)
+                .description("Number of replicas connected to the primary")
+                .register(registry);
+    }
+
+    /**
+     * Starts the server once the application is ready. Runners are created at startup, even with lazy initialization.
+     */
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        start();
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket();
+        // a restarted primary takes its port back while the connections of the previous one are in TIME_WAIT
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(InetAddress.getByName(properties.getHost()), properties.getPort()), 50);
+        acceptor = new Thread(this::accept, "todolist-replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        heartbeats.scheduleWithFixedDelay(this::sendHeartbeats, properties.getHeartbeatIntervalMs(),
+                properties.getHeartbeatIntervalMs(), TimeUnit.MILLISECONDS);
+        LOGGER.info("Shipping the changes of the list to replicas on {}", serverSocket.getLocalSocketAddress());
+    }
+
+    /**
+     * Port the server listens on, useful when it was started on a free port.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() {
+        heartbeats.shutdownNow();
+        if (serverSocket != null) {
+            closeQuietly(serverSocket);
+            // the port is only released once the acceptor returns from accept()
+            try {
+                acceptor.join(properties.getTimeoutMs());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (ReplicaSession session : sessions) {
+            session.close();
+        }
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    LOGGER.warn("Unable to accept a replica", e);
+                }
+                continue;
+            }
+            try {
+                open(socket);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Unable to open the replication session of {}: {}", socket.getRemoteSocketAddress(),
+                        e.toString());
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    private void open(Socket socket) throws IOException {
+        socket.setSoTimeout((int) properties.getTimeoutMs());
+        socket.setTcpNoDelay(true);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        ReplicationProtocol.Hello hello = ReplicationProtocol.readHello(in);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        ReplicationProtocol.writeHello(out, logId, todolistService.getVersion());
+        out.flush();
+
+        ReplicaSession session = new ReplicaSession(socket, out);
+        sessions.add(session);
+        // the version of another log means nothing here: -1 is older than any event, the feed resets the replica
+        long lastEventId = hello.getLogId() == logId ? hello.getVersion() : -1;
+        Optional<TodoListChangeFeed.Subscription> subscription = changeFeed.subscribe(lastEventId, session);
+        if (!subscription.isPresent()) {
+            LOGGER.warn("Refusing replica {}, the change feed has too many subscribers",
+                    socket.getRemoteSocketAddress());
+            session.close();
+            return;
+        }
+        session.subscription = subscription.get();
+        if (!sessions.contains(session)) {
+            // closed by a sender thread before the subscription was known
+            session.subscription.cancel();
+            return;
+        }
+        LOGGER.info("Replica {} connected at version {}", socket.getRemoteSocketAddress(), hello.getVersion());
+    }
+
+    private void sendHeartbeats() {
+        for (ReplicaSession session : sessions) {
+            session.sendHeartbeat(todolistService.getVersion());
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            LOGGER.debug("Unable to close {}", closeable, e);
+        }
+    }
+
+    /**
+     * The connection to a replica. Events, snapshots and heartbeats are written under a lock, as they come from the
+     * sender thread of the feed and from the heartbeat thread.
+     */
+    private final class ReplicaSession implements ChangeFeedSubscriber {
+
+        private final Socket socket;
+
+        private final DataOutputStream out;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private volatile TodoListChangeFeed.Subscription subscription;
+
+        private ReplicaSession(Socket socket, DataOutputStream out) {
+            this.socket = socket;
+            this.out = out;
+        }
+
+        @Override
+        public void send(TodoListEvent event) throws IOException {
+            lock.lock();
+            try {
+                ReplicationProtocol.writeEvent(out, event);
+            } catch (IOException e) {
+                close();
+                throw e;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            lock.lock();
+            try {
+                out.flush();
+            } catch (IOException e) {
+                close();
+                throw e;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Sends a snapshot at least as recent as the given version: the replica skips the events it already holds.
+         */
+        @Override
+        public void reset(long version) throws IOException {
+            lock.lock();
+            try {
+                TodoListSnapshot snapshot = todolistService.snapshot();
+                ReplicationProtocol.writeSnapshot(out, snapshot);
+                out.flush();
+                LOGGER.info("Sent a snapshot of {} items at version {} to replica {}", snapshot.getItems().size(),
+                        snapshot.getLastSequence(), socket.getRemoteSocketAddress());
+            } catch (IOException e) {
+                close();
+                throw e;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void disconnect() {
+            LOGGER.warn("Disconnecting replica {}, too far behind", socket.getRemoteSocketAddress());
+            close();
+        }
+
+        /**
+         * Sends a heartbeat, unless the connection is busy sending events or a snapshot.
+         */
+        void sendHeartbeat(long version) {
+            if (!lock.tryLock()) {
+                return;
+            }
+            try {
+                ReplicationProtocol.writeHeartbeat(out, version);
+                out.flush();
+            } catch (IOException e) {
+                LOGGER.info("Lost replica {}: {}", socket.getRemoteSocketAddress(), e.toString());
+                close();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void close() {
+            if (sessions.remove(this)) {
+                closeQuietly(socket);
+                TodoListChangeFeed.Subscription current = subscription;
+                if (current != null) {
+                    current.cancel();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package ch.ricardo.screening.todolist.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index of item contents, updated item by item.
+ * <p>
+ * Contents are split in lower-case terms made of letters and digits. Each term maps to a {@link PostingList} of the
+ * items containing it, and each item id maps to the posting lists it is part of, so that an item can be removed or
+ * re-indexed without touching the other items: no write ever rebuilds the index. Terms are kept sorted, so that a
+ * prefix query is a range of the term map.
+ * <p>
+ * A query is a list of terms, all of which must match. A term ending with {@code *} matches any term starting with
+ * it (only the first {@value #MAX_PREFIX_EXPANSION} terms, in alphabetical order, are considered). Results are ranked
+ * with BM25: rare terms weigh more than common ones, repeated terms more than single ones, and short contents more
+ * than long ones. Equal scores are ranked by id.
+ * <p>
+ * Candidates are the items of the least frequent query term, read sequentially from its posting lists; the other
+ * terms are looked up by binary search in their posting lists, so the cost of a query depends on the number of items
+ * matching its most selective term.
+ * <p>
+ * Item ids must fit in an {@code int}, as they index arrays. Not thread-safe.
+ */
+public class InvertedIndex {
+
+    static final int MAX_PREFIX_EXPANSION = 1000;
+
+    private static final double K1 = 1.2;
+
+    private static final double B = 0.75;
+
+    private static final PostingList[] NO_TERMS = new PostingList[0];
+
+    private final NavigableMap<String, PostingList> postingsByTerm = new TreeMap<>();
+
+    private PostingList[][] termsById = new PostingList[1024][];
+
+    private int[] lengthsById = new int[1024];
+
+    private long documents;
+
+    private long totalLength;
+
+    /**
+     * Indexes the content of an item, replacing its previous content if it was already indexed.
+     */
+    public void add(long id, String content) {
+        int index = index(id);
+        remove(id);
+        if (index >= termsById.length) {
+            int length = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(index + 1L, termsById.length * 2L));
+            termsById = Arrays.copyOf(termsById, length);
+            lengthsById = Arrays.copyOf(lengthsById, length);
+        }
+        List<String> tokens = tokenize(content);
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokens) {
+            frequencies.merge(token, 1, Integer::sum);
+        }
+        PostingList[] terms = frequencies.isEmpty() ? NO_TERMS : new PostingList[frequencies.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            PostingList postings = postingsByTerm.computeIfAbsent(entry.getKey(), PostingList::new);
+            postings.put(id, entry.getValue());
+            terms[i++] = postings;
+        }
+        termsById[index] = terms;
+        lengthsById[index] = tokens.size();
+        documents++;
+        totalLength += tokens.size();
+    }
+
+    public void remove(long id) {
+        int index = index(id);
+        if (index >= termsById.length || termsById[index] == null) {
+            return;
+        }
+        for (PostingList postings : termsById[index]) {
+            postings.remove(id);
+            if (postings.isEmpty()) {
+                postingsByTerm.remove(postings.term());
+            }
+        }
+        termsById[index] = null;
+        documents--;
+        totalLength -= lengthsById[index];
+    }
+
+    public void clear() {
+        postingsByTerm.clear();
+        termsById = new PostingList[1024][];
+        lengthsById = new int[1024];
+        documents = 0;
+        totalLength = 0;
+    }
+
+    /**
+     * Number of indexed items.
+     */
+    public long size() {
+        return documents;
+    }
+
+    /**
+     * Returns a page of the items matching all the terms of the query, best match first.
+     *
+     * @param offset number of matches to skip
+     * @param limit maximum number of matches to return
+     */
+    public SearchHits search(String query, int offset, int limit) {
+        List<QueryTerm> terms = parse(query);
+        if (terms.isEmpty() || documents == 0) {
+            return new SearchHits(0, Collections.emptyList());
+        }
+        double averageLength = Math.max(1, (double) totalLength / documents);
+        for (QueryTerm term : terms) {
+            if (term.postings.isEmpty()) {
+                return new SearchHits(0, Collections.emptyList());
+            }
+            long frequency = Math.min(documents, term.documentFrequency());
+            term.idf = Math.log(1 + (documents - frequency + 0.5) / (frequency + 0.5));
+        }
+        terms.sort(Comparator.comparingLong(QueryTerm::documentFrequency));
+
+        int window = (int) Math.min(Integer.MAX_VALUE - 8, (long) offset + limit);
+        PriorityQueue<Hit> best = new PriorityQueue<>(Math.min(window, 1024) + 1, Hit.WORST_FIRST);
+        long total = 0;
+        Candidates candidates = new Candidates(terms.get(0).postings);
+        for (long id = candidates.next(); id != Candidates.END; id = candidates.next()) {
+            double score = score(id, candidates.frequency(), terms, averageLength);
+            if (score < 0) {
+                continue;
+            }
+            total++;
+            // candidates come in increasing id order: on equal scores, the hits already kept rank first
+            if (best.size() < window) {
+                best.add(new Hit(id, score));
+            } else if (window > 0 && score > best.peek().score) {
+                best.poll();
+                best.add(new Hit(id, score));
+            }
+        }
+
+        List<Hit> ranked = new ArrayList<>(best);
+        ranked.sort(Hit.WORST_FIRST.reversed());
+        List<Long> ids = new ArrayList<>();
+        for (int i = offset; i < ranked.size(); i++) {
+            ids.add(ranked.get(i).id);
+        }
+        return new SearchHits(total, ids);
+    }
+
+    /**
+     * Splits a text in lower-case terms of letters and digits.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inToken = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inToken && start < 0) {
+                start = i;
+            } else if (!inToken && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * BM25 score of a candidate item, or -1 if it does not contain all the terms.
+     *
+     * @param candidateFrequency frequency of the first term, the candidate term, in the item
+     */
+    private double score(long id, int candidateFrequency, List<QueryTerm> terms, double averageLength) {
+        double lengthNorm = K1 * (1 - B + B * lengthsById[(int) id] / averageLength);
+        double score = terms.get(0).idf * candidateFrequency * (K1 + 1) / (candidateFrequency + lengthNorm);
+        for (int i = 1; i < terms.size(); i++) {
+            QueryTerm term = terms.get(i);
+            int frequency = 0;
+            for (PostingList postings : term.postings) {
+                frequency += postings.frequency(id);
+            }
+            if (frequency == 0) {
+                return -1;
+            }
+            score += term.idf * frequency * (K1 + 1) / (frequency + lengthNorm);
+        }
+        return score;
+    }
+
+    private List<QueryTerm> parse(String query) {
+        Map<String, QueryTerm> terms = new LinkedHashMap<>();
+        for (String word : query.trim().split("\\s+")) {
+            boolean prefix = word.endsWith("*");
+            List<String> tokens = tokenize(word);
+            for (int i = 0; i < tokens.size(); i++) {
+                String token = tokens.get(i);
+                if (prefix && i == tokens.size() - 1) {
+                    terms.computeIfAbsent(token + "*", key -> new QueryTerm(expand(token)));
+                } else {
+                    PostingList postings = postingsByTerm.get(token);
+                    terms.computeIfAbsent(token, key -> new QueryTerm(postings == null
+                            ? Collections.emptyList() : Collections.singletonList(postings)));
+                }
+            }
+        }
+        return new ArrayList<>(terms.values());
+    }
+
+    private List<PostingList> expand(String prefix) {
+        List<PostingList> expansion = new ArrayList<>();
+        for (PostingList postings : postingsByTerm.subMap(prefix, true, prefix + Character.MAX_VALUE, false)
+                .values()) {
+            if (expansion.size() == MAX_PREFIX_EXPANSION) {
+                break;
+            }
+            expansion.add(postings);
+        }
+        return expansion;
+    }
+
+    private static int index(long id) {
+        if (id < 0 || id >= Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Item id out of the indexable range: " + id);
+        }
+        return (int) id;
+    }
+
+    private static final class QueryTerm {
+
+        private final List<PostingList> postings;
+
+        private double idf;
+
+        private QueryTerm(List<PostingList> postings) {
+            this.postings = postings;
+        }
+
+        private long documentFrequency() {
+            long frequency = 0;
+            for (PostingList list : postings) {
+                frequency += list.documentFrequency();
+            }
+            return frequency;
+        }
+    }
+
+    private static final class Hit {
+
+        /**
+         * Lower scores first, then higher ids, so that the head of a priority queue is the hit to evict.
+         */
+        private static final Comparator<Hit> WORST_FIRST = Comparator.<Hit>comparingDouble(hit -> hit.score)
+                .thenComparing(Comparator.<Hit>comparingLong(hit -> hit.id).reversed());
+
+        private final long id;
+
+        private final double score;
+
+        private Hit(long id, double score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Ids of the union of posting lists, in increasing order and without duplicates.
+     */
+    private static final class Candidates {
+
+        private static final long END = -1;
+
+        private final PriorityQueue<Cursor> cursors = new PriorityQueue<>(Comparator.comparingLong(Cursor::id));
+
+        private int frequency;
+
+        private Candidates(List<PostingList> postings) {
+            for (PostingList list : postings) {
+                Cursor cursor = new Cursor(list);
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+            }
+        }
+
+        private long next() {
+            if (cursors.isEmpty()) {
+                return END;
+            }
+            long id = cursors.peek().id();
+            frequency = 0;
+            while (!cursors.isEmpty() && cursors.peek().id() == id) {
+                Cursor cursor = cursors.poll();
+                frequency += cursor.frequency();
+                if (cursor.advance()) {
+                    cursors.add(cursor);
+                }
+            }
+            return id;
+        }
+
+        /**
+         * Summed frequency, in the item returned by the last call to {@link #next()}, of the terms of the lists.
+         */
+        private int frequency() {
+            return frequency;
+        }
+    }
+
+    private static final class Cursor {
+
+        private final PostingList postings;
+
+        private int position = -1;
+
+        private Cursor(PostingList postings) {
+            this.postings = postings;
+        }
+
+        private long id() {
+            return postings.idAt(position);
+        }
+
+        private int frequency() {
+            return postings.frequencyAt(position);
+        }
+
+        /**
+         * Moves to the next live entry.
+         *
+         * @return false once the end of the list is reached
+         */
+        private boolean advance() {
+            do {
+                position++;
+            } while (position < postings.size() && postings.frequencyAt(position) == 0);
+            return position < postings.size();
+        }
+    }
+}
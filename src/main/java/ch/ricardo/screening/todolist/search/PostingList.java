@@ -0,0 +1,134 @@
+package ch.ricardo.screening.todolist.search;
+
+import java.util.Arrays;
+
+/**
+ * Ids of the items containing a term, with the number of occurrences of the term in each item, sorted by id.
+ * <p>
+ * Ids are handed out in increasing order, so new items are appended. Removing an item only zeroes its frequency; the
+ * zeroed entries are squeezed out once they make up half of the list, so that removals are O(log n) amortized.
+ * <p>
+ * Not thread-safe.
+ */
+final class PostingList {
+
+    private static final int MIN_COMPACTED_SIZE = 16;
+
+    private final String term;
+
+    private long[] ids = new long[4];
+
+    private int[] frequencies = new int[4];
+
+    private int size;
+
+    private int live;
+
+    PostingList(String term) {
+        this.term = term;
+    }
+
+    String term() {
+        return term;
+    }
+
+    void put(long id, int frequency) {
+        if (size == 0 || id > ids[size - 1]) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            ids[size] = id;
+            frequencies[size] = frequency;
+            size++;
+            live++;
+            return;
+        }
+        int position = Arrays.binarySearch(ids, 0, size, id);
+        if (position >= 0) {
+            if (frequencies[position] == 0) {
+                live++;
+            }
+            frequencies[position] = frequency;
+            return;
+        }
+        // an existing item gained the term: rare, so paying for the shift is fine
+        int insertion = -position - 1;
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            frequencies = Arrays.copyOf(frequencies, size * 2);
+        }
+        System.arraycopy(ids, insertion, ids, insertion + 1, size - insertion);
+        System.arraycopy(frequencies, insertion, frequencies, insertion + 1, size - insertion);
+        ids[insertion] = id;
+        frequencies[insertion] = frequency;
+        size++;
+        live++;
+    }
+
+    void remove(long id) {
+        int position = Arrays.binarySearch(ids, 0, size, id);
+        if (position < 0 || frequencies[position] == 0) {
+            return;
+        }
+        frequencies[position] = 0;
+        live--;
+        if (size > MIN_COMPACTED_SIZE && live < size / 2) {
+            compact();
+        }
+    }
+
+    /**
+     * Number of occurrences of the term in the given item, 0 if the item does not contain the term.
+     */
+    int frequency(long id) {
+        int position = Arrays.binarySearch(ids, 0, size, id);
+        return position < 0 ? 0 : frequencies[position];
+    }
+
+    /**
+     * Number of items containing the term.
+     */
+    int documentFrequency() {
+        return live;
+    }
+
+    boolean isEmpty() {
+        return live == 0;
+    }
+
+    /**
+     * Number of entries, including removed ones, for iterating with {@link #idAt(int)} and {@link #frequencyAt(int)}.
+     */
+    int size() {
+        return size;
+    }
+
+    long idAt(int position) {
+        return ids[position];
+    }
+
+    /**
+     * Frequency of the entry at the given position, 0 for a removed entry.
+     */
+    int frequencyAt(int position) {
+        return frequencies[position];
+    }
+
+    private void compact() {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (frequencies[i] != 0) {
+                ids[kept] = ids[i];
+                frequencies[kept] = frequencies[i];
+                kept++;
+            }
+        }
+        size = kept;
+        int capacity = Math.max(4, Integer.highestOneBit(Math.max(1, size)) * 2);
+        if (capacity < ids.length) {
+            ids = Arrays.copyOf(ids, capacity);
+            frequencies = Arrays.copyOf(frequencies, capacity);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package ch.ricardo.screening.todolist.search;
+
+import java.util.List;
+
+/**
+ * A page of search results: the ids of the matching items, best match first, and the total number of matches.
+ */
+public class SearchHits {
+
+    private final long total;
+
+    private final List<Long> ids;
+
+    public SearchHits(long total, List<Long> ids) {
+        this.total = total;
+        this.ids = ids;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public List<Long> getIds() {
+        return ids;
+    }
+}
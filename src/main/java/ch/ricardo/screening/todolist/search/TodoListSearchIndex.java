@@ -0,0 +1,175 @@
+package ch.ricardo.screening.todolist.search;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.model.TodoListEvent;
+import ch.ricardo.screening.todolist.service.TodoListListener;
+import ch.ricardo.screening.todolist.service.TodoListService;
+
+/**
+ * Full-text index of the Todo list, kept up to date with the changes of the service.
+ * <p>
+ * The index listens to the service, and applies each change on a dedicated thread: writes to the service only pay
+ * for queuing the change, and a long query can only delay the index, never a write. As a consequence, search results
+ * may lag behind the latest writes by the time it takes to apply them, usually well under a millisecond;
+ * {@link #getVersion()} tells which version of the list the index reflects.
+ * <p>
+ * At most {@code todolist.search.queue-size} changes wait for the indexer. Past it, changes are dropped rather than
+ * queued (writes never block on the index) and the index is rebuilt from the items of the service once the indexer
+ * catches up: the changes queued meanwhile are coalesced into a single rebuild, and the queued changes the rebuild
+ * already reflects are skipped.
+ * <p>
+ * The index holds every word of every item on the heap; it can be disabled with {@code todolist.search.enabled=false}
+ * (the search endpoint then answers {@code 501 Not Implemented}).
+ */
+@Component
+@Lazy(false)
+@ConditionalOnProperty(name = "todolist.search.enabled", havingValue = "true", matchIfMissing = true)
+public class TodoListSearchIndex implements TodoListListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TodoListSearchIndex.class);
+
+    private final InvertedIndex index = new InvertedIndex();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final TodoListService todolistService;
+
+    private final ThreadPoolExecutor indexer;
+
+    private volatile long version = -1;
+
+    // set when a change could not be queued, the indexer then rebuilds the index from the service
+    private volatile boolean rebuildRequested;
+
+    @Autowired
+    public TodoListSearchIndex(TodoListService todolistService,
+            @Value("${todolist.search.queue-size:10000}") int queueSize) {
+        this.todolistService = todolistService;
+        this.indexer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "todolist-search-index");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (runnable, executor) -> rebuildRequested = true);
+        todolistService.addListener(this);
+    }
+
+    @Override
+    public void onItems(long version, List<TodoItem> items) {
+        indexer.execute(() -> {
+            if (rebuildRequested) {
+                // the service is at least as recent as the given items
+                rebuildIfRequested();
+            } else {
+                write(() -> index(items), version);
+            }
+        });
+    }
+
+    @Override
+    public void onEvent(TodoListEvent event) {
+        indexer.execute(() -> {
+            rebuildIfRequested();
+            if (event.getSequence() <= version) {
+                // already reflected by a rebuild
+                return;
+            }
+            write(() -> apply(event), event.getSequence());
+        });
+    }
+
+    /**
+     * @see InvertedIndex#search(String, int, int)
+     */
+    public SearchHits search(String query, int offset, int limit) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return index.search(query, offset, limit);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Version of the list reflected by the index, -1 until the initial items are indexed.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @PreDestroy
+    public void close() {
+        indexer.shutdownNow();
+    }
+
+    private void index(List<TodoItem> items) {
+        index.clear();
+        for (TodoItem item : items) {
+            index.add(item.getId(), item.getContent());
+        }
+        LOGGER.info("Indexed {} items for search", items.size());
+    }
+
+    private void apply(TodoListEvent event) {
+        switch (event.getType()) {
+            case CREATED:
+            case UPDATED:
+                index.add(event.getId(), event.getContent());
+                break;
+            case DELETED:
+                index.remove(event.getId());
+                break;
+            case ALL_DELETED:
+                index.clear();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown event type " + event.getType());
+        }
+    }
+
+    /**
+     * Rebuilds the index from the service if changes were dropped. The items are read after the version, so they are
+     * at least as recent as it: the queued changes up to this version are skipped, the later ones are applied again.
+     */
+    private void rebuildIfRequested() {
+        if (!rebuildRequested) {
+            return;
+        }
+        rebuildRequested = false;
+        LOGGER.warn("Search index fell behind the changes of the list, rebuilding it");
+        long currentVersion = todolistService.getVersion();
+        List<TodoItem> items = todolistService.retrieveAllItems();
+        write(() -> index(items), currentVersion);
+    }
+
+    private void write(Runnable change, long newVersion) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            change.run();
+            version = newVersion;
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to index change at version {}", newVersion, e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,438 @@
+package ch.ricardo.screening.todolist.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.model.TodoListEvent;
+import ch.ricardo.screening.todolist.persistence.TodoListJournal;
+import ch.ricardo.screening.todolist.persistence.TodoListSnapshot;
+
+/**
+ * Thread-safe in-memory implementation of the Todo list.
+ * <p>
+ * Items are indexed by id in a {@link ConcurrentHashMap} and by content in a second map, so lookups by id or
+ * content are O(1). Since ids are handed out in increasing order, a {@link ConcurrentSkipListMap} keyed by id gives
+ * the insertion order used by {@link #retrieveAllItems()}, and lets {@link #retrieveItems(long, int)} seek directly to
+ * the start of a page.
+ * <p>
+ * Content is unique across the list: {@link #createIfAbsent(TodoItem)} checks and claims a content under the write
+ * lock, and an update cannot give an item the content of another item, otherwise the content index could no longer
+ * point to a single id.
+ * <p>
+ * Reads never lock. Writes are serialized on a single monitor so that the three maps and the id counter always move
+ * together. Every write is turned into a {@link TodoListEvent}, appended to the {@link TodoListJournal} and applied
+ * under that monitor; the writer then waits for the journal to make it durable once the monitor is released, so
+ * that concurrent writers can share the same fsync. At construction, the list is recovered from the journal.
+ * <p>
+ * A write is therefore visible to readers and listeners (e.g. the change feed) before it is durable. If the journal
+ * then fails to make it durable, its writer gets an error, and the journal fails stop: it rejects every later write
+ * before it is applied, so that nothing else is seen that a crash would lose, until the instance is restarted.
+ * <p>
+ * The sequence of the last applied event is the version of the list, and the version of an item is the sequence of
+ * the event that last wrote it. Listeners receive the events as they are applied, under the write lock. The
+ * compare-and-set writes check the version of the item under the same lock, right before writing it.
+ * <p>
+ * The list can be replicated: {@link #replicate(TodoListEvent)} applies the events of a primary as if they were local
+ * writes, and {@link #load(TodoListSnapshot)} replaces the list with a snapshot of the primary. Replicas run without
+ * a journal, which could not record a loaded snapshot: they are rebuilt from their primary when they start.
+ */
+@Service("todolistService")
+@ConditionalOnProperty(name = "todolist.storage", havingValue = "concurrent", matchIfMissing = true)
+public class ConcurrentTodoListServiceImpl implements ReplicableTodoListService {
+
+    private final Object writeLock = new Object();
+
+    private final AtomicLong counter = new AtomicLong();
+
+    private final Map<Long, TodoItem> itemsById = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> idsByContent = new ConcurrentHashMap<>();
+
+    private final ConcurrentNavigableMap<Long, TodoItem> itemsInOrder = new ConcurrentSkipListMap<>();
+
+    private final TodoListJournal journal;
+
+    private final List<TodoListListener> listeners = new CopyOnWriteArrayList<>();
+
+    // written with writeLock held, once the event is applied, so that it also serves as the list version
+    private volatile long sequence;
+
+    public ConcurrentTodoListServiceImpl() {
+        this(TodoListJournal.NONE);
+    }
+
+    @Autowired
+    public ConcurrentTodoListServiceImpl(TodoListJournal journal) {
+        this.journal = journal;
+        journal.recover(this::restore, this::apply);
+        journal.scheduleSnapshots(this::snapshot);
+    }
+
+    @Override
+    public List<TodoItem> retrieveAllItems() {
+        return new ArrayList<>(itemsInOrder.values());
+    }
+
+    @Override
+    public VersionedItems retrieveAllItemsWithVersion() {
+        synchronized (writeLock) {
+            return new VersionedItems(sequence, new ArrayList<>(itemsInOrder.values()));
+        }
+    }
+
+    @Override
+    public List<TodoItem> retrieveItems(long afterId, int limit) {
+        // the size of a skip list is counted by walking it, the one of the hash map is not
+        List<TodoItem> page = new ArrayList<>(Math.min(limit, itemsById.size()));
+        for (TodoItem item : itemsInOrder.tailMap(afterId, false).values()) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(item);
+        }
+        return page;
+    }
+
+    @Override
+    public long countItems() {
+        return itemsById.size();
+    }
+
+    @Override
+    public long getVersion() {
+        return sequence;
+    }
+
+    @Override
+    public void addListener(TodoListListener listener) {
+        synchronized (writeLock) {
+            listener.onItems(sequence, retrieveAllItems());
+            listeners.add(listener);
+        }
+    }
+
+    @Override
+    public Optional<TodoItem> findItemById(Long id) {
+        return id == null ? Optional.empty() : Optional.ofNullable(itemsById.get(id));
+    }
+
+    @Override
+    public boolean exists(TodoItem item) {
+        return item.getContent() != null && idsByContent.containsKey(item.getContent());
+    }
+
+    @Override
+    public TodoItem create(TodoItem item) {
+        TodoListEvent event;
+        synchronized (writeLock) {
+            event = createLocked(item);
+        }
+        journal.awaitDurable(event.getSequence());
+        return event.toItem();
+    }
+
+    @Override
+    public Optional<TodoItem> createIfAbsent(TodoItem item) {
+        // fast path: a conflicting content is rejected without taking the write lock
+        if (exists(item)) {
+            return Optional.empty();
+        }
+        TodoListEvent event;
+        synchronized (writeLock) {
+            if (exists(item)) {
+                return Optional.empty();
+            }
+            event = createLocked(item);
+        }
+        journal.awaitDurable(event.getSequence());
+        return Optional.of(event.toItem());
+    }
+
+    @Override
+    public List<Optional<TodoItem>> createItemsIfAbsent(List<TodoItem> items) {
+        List<Optional<TodoItem>> createdItems = new ArrayList<>(items.size());
+        long lastSequence = 0;
+        synchronized (writeLock) {
+            for (TodoItem item : items) {
+                if (exists(item)) {
+                    createdItems.add(Optional.empty());
+                } else {
+                    TodoListEvent event = createLocked(item);
+                    createdItems.add(Optional.of(event.toItem()));
+                    lastSequence = event.getSequence();
+                }
+            }
+        }
+        // the whole batch is made durable at once
+        journal.awaitDurable(lastSequence);
+        return createdItems;
+    }
+
+    @Override
+    public boolean updateItem(Long id, TodoItem updatedItem) {
+        if (updatedItem == null || id == null) {
+            return false;
+        }
+        TodoListEvent event;
+        synchronized (writeLock) {
+            if (checkUpdate(id, updatedItem.getContent()) != WriteOutcome.APPLIED) {
+                return false;
+            }
+            event = updateLocked(id, updatedItem);
+        }
+        journal.awaitDurable(event.getSequence());
+        return true;
+    }
+
+    @Override
+    public WriteOutcome compareAndUpdate(Long id, long expectedVersion, TodoItem updatedItem) {
+        TodoListEvent event;
+        synchronized (writeLock) {
+            WriteOutcome outcome = checkVersion(id, expectedVersion);
+            if (outcome == WriteOutcome.APPLIED) {
+                outcome = checkUpdate(id, updatedItem.getContent());
+            }
+            if (outcome != WriteOutcome.APPLIED) {
+                return outcome;
+            }
+            event = updateLocked(id, updatedItem);
+        }
+        journal.awaitDurable(event.getSequence());
+        return WriteOutcome.APPLIED;
+    }
+
+    @Override
+    public List<WriteOutcome> updateItems(List<TodoItem> items) {
+        List<WriteOutcome> outcomes = new ArrayList<>(items.size());
+        long lastSequence = 0;
+        synchronized (writeLock) {
+            for (TodoItem item : items) {
+                WriteOutcome outcome = checkUpdate(item.getId(), item.getContent());
+                if (outcome == WriteOutcome.APPLIED) {
+                    lastSequence = updateLocked(item.getId(), item).getSequence();
+                }
+                outcomes.add(outcome);
+            }
+        }
+        journal.awaitDurable(lastSequence);
+        return outcomes;
+    }
+
+    @Override
+    public boolean deleteItemById(Long id) {
+        if (id == null) {
+            return false;
+        }
+        TodoListEvent event;
+        synchronized (writeLock) {
+            if (!itemsById.containsKey(id)) {
+                return false;
+            }
+            event = record(TodoListEvent.deleted(nextSequence(), id));
+        }
+        journal.awaitDurable(event.getSequence());
+        return true;
+    }
+
+    @Override
+    public WriteOutcome compareAndDelete(Long id, long expectedVersion) {
+        TodoListEvent event;
+        synchronized (writeLock) {
+            WriteOutcome outcome = checkVersion(id, expectedVersion);
+            if (outcome != WriteOutcome.APPLIED) {
+                return outcome;
+            }
+            event = record(TodoListEvent.deleted(nextSequence(), id));
+        }
+        journal.awaitDurable(event.getSequence());
+        return WriteOutcome.APPLIED;
+    }
+
+    @Override
+    public List<Boolean> deleteItemsById(List<Long> ids) {
+        List<Boolean> deleted = new ArrayList<>(ids.size());
+        long lastSequence = 0;
+        synchronized (writeLock) {
+            for (Long id : ids) {
+                boolean found = id != null && itemsById.containsKey(id);
+                if (found) {
+                    lastSequence = record(TodoListEvent.deleted(nextSequence(), id)).getSequence();
+                }
+                deleted.add(found);
+            }
+        }
+        journal.awaitDurable(lastSequence);
+        return deleted;
+    }
+
+    @Override
+    public void deleteAllItems() {
+        TodoListEvent event;
+        synchronized (writeLock) {
+            event = record(TodoListEvent.allDeleted(nextSequence()));
+        }
+        journal.awaitDurable(event.getSequence());
+    }
+
+    @Override
+    public TodoListSnapshot snapshot() {
+        synchronized (writeLock) {
+            return new TodoListSnapshot(sequence, counter.get(), new ArrayList<>(itemsInOrder.values()));
+        }
+    }
+
+    @Override
+    public void load(TodoListSnapshot snapshot) {
+        synchronized (writeLock) {
+            restore(snapshot);
+            List<TodoItem> items = retrieveAllItems();
+            for (TodoListListener listener : listeners) {
+                listener.onItems(sequence, items);
+            }
+        }
+    }
+
+    @Override
+    public boolean replicate(TodoListEvent event) {
+        synchronized (writeLock) {
+            if (event.getSequence() <= sequence) {
+                return false;
+            }
+            if (event.getSequence() != nextSequence()) {
+                throw new IllegalStateException("Missing events between version " + sequence + " and event "
+                        + event.getSequence());
+            }
+            record(event);
+        }
+        return true;
+    }
+
+    /**
+     * Must be called with the write lock held.
+     */
+    private TodoListEvent createLocked(TodoItem item) {
+        Instant now = Instant.ofEpochMilli(System.currentTimeMillis());
+        return record(TodoListEvent.created(nextSequence(), item.withMetadata(counter.get() + 1, now, now, 0)));
+    }
+
+    /**
+     * Must be called with the write lock held, once {@link #checkUpdate(Long, String)} accepted the update.
+     */
+    private TodoListEvent updateLocked(Long id, TodoItem updatedItem) {
+        Instant created = itemsById.get(id).getCreated();
+        Instant now = Instant.ofEpochMilli(System.currentTimeMillis());
+        return record(TodoListEvent.updated(nextSequence(), updatedItem.withMetadata(id, created, now, 0)));
+    }
+
+    /**
+     * Must be called with the write lock held.
+     */
+    private WriteOutcome checkUpdate(Long id, String content) {
+        if (id == null || !itemsById.containsKey(id)) {
+            return WriteOutcome.NOT_FOUND;
+        }
+        return isClaimedByAnotherItem(content, id) ? WriteOutcome.CONFLICT : WriteOutcome.APPLIED;
+    }
+
+    /**
+     * Must be called with the write lock held.
+     */
+    private WriteOutcome checkVersion(Long id, long expectedVersion) {
+        TodoItem item = id == null ? null : itemsById.get(id);
+        if (item == null) {
+            return WriteOutcome.NOT_FOUND;
+        }
+        return item.getVersion() == expectedVersion ? WriteOutcome.APPLIED : WriteOutcome.STALE;
+    }
+
+    /**
+     * Journals an event, applies it and notifies the listeners. Must be called with the write lock held.
+     */
+    private TodoListEvent record(TodoListEvent event) {
+        journal.append(event);
+        apply(event);
+        for (TodoListListener listener : listeners) {
+            listener.onEvent(event);
+        }
+        return event;
+    }
+
+    private long nextSequence() {
+        return sequence + 1;
+    }
+
+    /**
+     * Applies an event to the maps. Must be called with the write lock held, or from the constructor.
+     */
+    private void apply(TodoListEvent event) {
+        switch (event.getType()) {
+            case CREATED:
+                store(event.toItem());
+                // ids of replayed events may jump over ids of items that were deleted since
+                counter.set(Math.max(counter.get(), event.getId()));
+                break;
+            case UPDATED:
+                unindexContent(itemsById.get(event.getId()));
+                store(event.toItem());
+                break;
+            case DELETED:
+                itemsInOrder.remove(event.getId());
+                unindexContent(itemsById.remove(event.getId()));
+                break;
+            case ALL_DELETED:
+                // the counter is not reset, so that an id never designates two different items
+                clear();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown event type " + event.getType());
+        }
+        sequence = event.getSequence();
+    }
+
+    private void restore(TodoListSnapshot snapshot) {
+        clear();
+        // versions are not part of snapshots: restored items take the version of the snapshot
+        snapshot.getItems().forEach(item -> store(item.withMetadata(item.getId(), item.getCreated(),
+                item.getUpdated(), snapshot.getLastSequence())));
+        counter.set(snapshot.getCounter());
+        sequence = snapshot.getLastSequence();
+    }
+
+    private void clear() {
+        itemsInOrder.clear();
+        itemsById.clear();
+        idsByContent.clear();
+    }
+
+    private boolean isClaimedByAnotherItem(String content, Long id) {
+        Long ownerId = content == null ? null : idsByContent.get(content);
+        return ownerId != null && !ownerId.equals(id);
+    }
+
+    private void store(TodoItem item) {
+        itemsById.put(item.getId(), item);
+        itemsInOrder.put(item.getId(), item);
+        if (item.getContent() != null) {
+            idsByContent.put(item.getContent(), item.getId());
+        }
+    }
+
+    private void unindexContent(TodoItem item) {
+        if (item != null && item.getContent() != null) {
+            idsByContent.remove(item.getContent(), item.getId());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ch.ricardo.screening.todolist.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import ch.ricardo.screening.todolist.persistence.IdBlockStore;
+
+/**
+ * Hands out increasing item ids by ranges, persisted by blocks rather than one by one.
+ * <p>
+ * A caller reserves a range of consecutive ids at once with {@link #reserve(int)}, e.g. one range per batch of
+ * created items or per thread, and then hands them out without any synchronization. A reservation is a single atomic
+ * addition to the highest reserved id, without locking. When a reservation passes the ceiling of the current block,
+ * the ceiling of the next block of {@code blockSize} ids (or more, to cover the range) is written to the
+ * {@link IdBlockStore} before any of its ids is handed out: the store is written once per block, not once per id, and
+ * only then do reservations lock.
+ * <p>
+ * Ids are never handed out twice, even across resets of the list (the allocator is never rewound) and across
+ * restarts (the allocator starts above the stored ceiling). The price is that the ids left in the block reserved
+ * before a restart are skipped.
+ * <p>
+ * Thread-safe. Ranges reserved by concurrent callers are disjoint, but are not handed out in the order of their
+ * reservation: a caller that needs ids in creation order reserves them under its own write lock.
+ */
+public class IdAllocator {
+
+    public static final int DEFAULT_BLOCK_SIZE = 64;
+
+    private final int blockSize;
+
+    private final IdBlockStore store;
+
+    private final AtomicLong last;
+
+    // only written under the store lock, once the store holds it
+    private volatile long ceiling;
+
+    private final Object storeLock = new Object();
+
+    public IdAllocator() {
+        this(DEFAULT_BLOCK_SIZE, IdBlockStore.NONE);
+    }
+
+    public IdAllocator(int blockSize, IdBlockStore store) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Invalid block size " + blockSize);
+        }
+        this.blockSize = blockSize;
+        this.store = store;
+        this.ceiling = store.load();
+        this.last = new AtomicLong(ceiling);
+    }
+
+    /**
+     * Returns a new id, greater than all the ids handed out before.
+     */
+    public long next() {
+        return reserve(1);
+    }
+
+    /**
+     * Reserves a range of consecutive ids, greater than all the ids reserved before.
+     *
+     * @param count number of ids of the range
+     * @return the first id of the range, the caller owns this id and the {@code count - 1} following ones
+     */
+    public long reserve(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Invalid number of ids " + count);
+        }
+        long end = last.addAndGet(count);
+        if (end > ceiling) {
+            storeCeiling(end);
+        }
+        return end - count + 1;
+    }
+
+    private void storeCeiling(long end) {
+        synchronized (storeLock) {
+            long current = ceiling;
+            if (end > current) {
+                long blocks = (end - current + blockSize - 1) / blockSize;
+                store.store(current + blocks * blockSize);
+                ceiling = current + blocks * blockSize;
+            }
+        }
+    }
+}
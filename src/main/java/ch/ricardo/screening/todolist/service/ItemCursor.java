@@ -0,0 +1,54 @@
+package ch.ricardo.screening.todolist.service;
+
+/**
+ * Position in the results of an {@link ItemQuery}, right after an item: the value of the sort key of that item, and
+ * its id. A page starting at a cursor is found in O(log n) whatever its depth, unlike a page at an offset, which walks
+ * all the matching items before it; and it does not shift when items before it are created or deleted.
+ * <p>
+ * Clients get it as an opaque token, which only makes sense with the filters and sort order of the query that
+ * returned it.
+ */
+public final class ItemCursor {
+
+    private static final int RADIX = 36;
+
+    private final long key;
+
+    private final long id;
+
+    public ItemCursor(long key, long id) {
+        this.key = key;
+        this.id = id;
+    }
+
+    /**
+     * Parses a token returned by {@link #toString()}.
+     *
+     * @throws IllegalArgumentException if the token is not one
+     */
+    public static ItemCursor parse(String token) {
+        int separator = token.indexOf('.');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Invalid cursor: " + token);
+        }
+        // NumberFormatException is an IllegalArgumentException
+        return new ItemCursor(Long.parseLong(token.substring(0, separator), RADIX),
+                Long.parseLong(token.substring(separator + 1), RADIX));
+    }
+
+    public long getKey() {
+        return key;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the cursor as a token, safe in a URL.
+     */
+    @Override
+    public String toString() {
+        return Long.toString(key, RADIX) + "." + Long.toString(id, RADIX);
+    }
+}
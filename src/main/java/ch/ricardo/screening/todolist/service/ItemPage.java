@@ -0,0 +1,30 @@
+package ch.ricardo.screening.todolist.service;
+
+import java.util.List;
+
+/**
+ * A page of the results of an {@link ItemQuery}: the ids of the matching items, in the order of the query, and the
+ * cursor of the next page.
+ */
+public class ItemPage {
+
+    private final List<Long> ids;
+
+    private final ItemCursor next;
+
+    public ItemPage(List<Long> ids, ItemCursor next) {
+        this.ids = ids;
+        this.next = next;
+    }
+
+    public List<Long> getIds() {
+        return ids;
+    }
+
+    /**
+     * Cursor after the last item of the page, null if the page is not full: there is no next page.
+     */
+    public ItemCursor getNext() {
+        return next;
+    }
+}
@@ -0,0 +1,111 @@
+package ch.ricardo.screening.todolist.service;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+
+/**
+ * Filter and sort order of a query of the items by attributes, run by {@link TodoListAttributeIndex}.
+ * <p>
+ * All the filters must match; a filter left null matches any item. Ranges include both their bounds, and a due date
+ * range never matches items without a due date. Items sort by id, in creation order, unless another sort key is
+ * given; items with equal keys sort by id.
+ */
+public class ItemQuery {
+
+    public enum SortKey {
+        ID("id"), PRIORITY("priority"), DUE_DATE("dueDate"), CREATED("created"), UPDATED("updated");
+
+        private final String parameter;
+
+        SortKey(String parameter) {
+            this.parameter = parameter;
+        }
+
+        /**
+         * Name of the key in the {@code sort} parameter of the API, which is also the name of the JSON field.
+         */
+        public String getParameter() {
+            return parameter;
+        }
+    }
+
+    private final Set<TodoItem.Status> statuses;
+
+    private final Integer minPriority;
+
+    private final Integer maxPriority;
+
+    private final LocalDate dueFrom;
+
+    private final LocalDate dueTo;
+
+    private final SortKey sortKey;
+
+    private final boolean descending;
+
+    /**
+     * @param statuses statuses to match, any status if null or empty
+     */
+    public ItemQuery(Collection<TodoItem.Status> statuses, Integer minPriority, Integer maxPriority, LocalDate dueFrom,
+            LocalDate dueTo, SortKey sortKey, boolean descending) {
+        this.statuses = statuses == null || statuses.isEmpty() ? null : EnumSet.copyOf(statuses);
+        this.minPriority = minPriority;
+        this.maxPriority = maxPriority;
+        this.dueFrom = dueFrom;
+        this.dueTo = dueTo;
+        this.sortKey = sortKey == null ? SortKey.ID : sortKey;
+        this.descending = descending;
+    }
+
+    /**
+     * Parses a sort order as given in the API: the name of a sort key, prefixed with {@code -} for a descending
+     * order, e.g. {@code -priority}.
+     *
+     * @throws IllegalArgumentException if the key is unknown
+     */
+    public static SortKey parseSortKey(String sort) {
+        String name = sort.startsWith("-") ? sort.substring(1) : sort;
+        for (SortKey key : SortKey.values()) {
+            if (key.getParameter().equals(name)) {
+                return key;
+            }
+        }
+        throw new IllegalArgumentException("Unknown sort key: " + name);
+    }
+
+    public static boolean isDescending(String sort) {
+        return sort.startsWith("-");
+    }
+
+    public Set<TodoItem.Status> getStatuses() {
+        return statuses;
+    }
+
+    public Integer getMinPriority() {
+        return minPriority;
+    }
+
+    public Integer getMaxPriority() {
+        return maxPriority;
+    }
+
+    public LocalDate getDueFrom() {
+        return dueFrom;
+    }
+
+    public LocalDate getDueTo() {
+        return dueTo;
+    }
+
+    public SortKey getSortKey() {
+        return sortKey;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+}
@@ -0,0 +1,573 @@
+package ch.ricardo.screening.todolist.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.model.TodoListEvent;
+import ch.ricardo.screening.todolist.persistence.FsyncPolicy;
+import ch.ricardo.screening.todolist.storage.ItemAttributes;
+import ch.ricardo.screening.todolist.storage.MappedItemStore;
+import ch.ricardo.screening.todolist.storage.OffHeapBitSet;
+import ch.ricardo.screening.todolist.storage.OffHeapLongArray;
+import ch.ricardo.screening.todolist.storage.OffHeapLongLongMap;
+
+/**
+ * Implementation of the Todo list for very large lists, keeping items out of the Java heap.
+ * <p>
+ * Items are stored as records of a {@link MappedItemStore}. The offset of the record of each item is kept in an
+ * off-heap array indexed by id (ids are dense, so an array is the most compact id-to-offset map), and contents are
+ * indexed by their 64-bit hash in an off-heap map pointing to a chain of records sharing that hash. Neither index
+ * holds a Java object per item, and {@link TodoItem} instances are only created for the items returned to callers, so
+ * the heap footprint does not depend on the number of items. An off-heap bit set of the live ids lets pages skip the
+ * ids of deleted items in blocks of 4096, rather than one by one. The whole list is never held in memory either:
+ * {@link #retrieveAllItems()} returns a list read page by page as it is iterated, each page under the read lock, and
+ * so do {@link #retrieveAllItemsWithVersion()} and the items given to new listeners.
+ * <p>
+ * The mapped file survives restarts: at startup, the indexes are rebuilt by scanning the record headers, without
+ * decoding any content. The changed chunks of the file are forced to disk according to an {@link FsyncPolicy}: after
+ * each write ({@code ALWAYS}), at a fixed interval ({@code INTERVAL}, the default), or only when the store is closed
+ * ({@code NEVER}); otherwise the operating system writes them back when it sees fit.
+ * <p>
+ * Reads share a read lock, writes take the write lock.
+ * <p>
+ * Versions of the list and of the items are only kept in memory: they start over from 0 when the file is reopened.
+ */
+@Service("todolistService")
+@ConditionalOnProperty(name = "todolist.storage", havingValue = "offheap")
+public class OffHeapTodoListServiceImpl implements TodoListService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapTodoListServiceImpl.class);
+
+    private static final long NO_RECORD = 0;
+
+    // a record never spans two chunks, whose offsets and positions are ints
+    private static final int MAX_CHUNK_SIZE_MB = 2047;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final MappedItemStore store;
+
+    private final OffHeapLongArray offsetsById = new OffHeapLongArray(1024);
+
+    private final OffHeapLongLongMap offsetsByContentHash = new OffHeapLongLongMap(1024);
+
+    private final OffHeapLongArray versionsById = new OffHeapLongArray(1024);
+
+    private final OffHeapBitSet ids = new OffHeapBitSet();
+
+    private final FsyncPolicy fsyncPolicy;
+
+    private final ScheduledExecutorService syncer;
+
+    private final List<TodoListListener> listeners = new CopyOnWriteArrayList<>();
+
+    // guarded by the write lock
+    private long counter;
+
+    // guarded by the write lock
+    private long size;
+
+    // written with the write lock held, at the end of each write
+    private volatile long version;
+
+    @Autowired
+    public OffHeapTodoListServiceImpl(@Value("${todolist.offheap.file:data/items.dat}") String file,
+            @Value("${todolist.offheap.chunk-size-mb:64}") int chunkSizeMb,
+            @Value("${todolist.offheap.fsync-policy:INTERVAL}") FsyncPolicy fsyncPolicy,
+            @Value("${todolist.offheap.fsync-interval-ms:1000}") long fsyncIntervalMs) throws IOException {
+        this(new MappedItemStore(Paths.get(file), chunkSize(chunkSizeMb)), fsyncPolicy, fsyncIntervalMs);
+    }
+
+    public OffHeapTodoListServiceImpl(MappedItemStore store) {
+        this(store, FsyncPolicy.NEVER, 0);
+    }
+
+    public OffHeapTodoListServiceImpl(MappedItemStore store, FsyncPolicy fsyncPolicy, long fsyncIntervalMs) {
+        this.store = store;
+        this.fsyncPolicy = fsyncPolicy;
+        this.counter = store.getCounter();
+        store.forEachRecord(offset -> {
+            long id = store.id(offset);
+            offsetsById.set(id, offset);
+            ids.set(id);
+            linkContent(offset);
+            size++;
+        });
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "todolist-offheap-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(this::force, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    static int chunkSize(int chunkSizeMb) {
+        if (chunkSizeMb < 1 || chunkSizeMb > MAX_CHUNK_SIZE_MB) {
+            throw new IllegalArgumentException("todolist.offheap.chunk-size-mb must be between 1 and "
+                    + MAX_CHUNK_SIZE_MB + ": " + chunkSizeMb);
+        }
+        return (int) (chunkSizeMb * 1024L * 1024L);
+    }
+
+    /**
+     * All the items, read page by page as the returned list is iterated, see {@link PagedItems}.
+     */
+    @Override
+    public List<TodoItem> retrieveAllItems() {
+        return new PagedItems(this, countItems());
+    }
+
+    /**
+     * The version, then the items read page by page as they are iterated: the items are at least as recent as the
+     * version, without holding the lock while they are all read.
+     */
+    @Override
+    public VersionedItems retrieveAllItemsWithVersion() {
+        long currentVersion = version;
+        return new VersionedItems(currentVersion, retrieveAllItems());
+    }
+
+    @Override
+    public List<TodoItem> retrieveItems(long afterId, int limit) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            List<TodoItem> items = new ArrayList<>();
+            for (long id = ids.nextSetBit(Math.max(afterId + 1, 1)); id > 0 && items.size() < limit;
+                    id = ids.nextSetBit(id + 1)) {
+                items.add(item(id, offsetsById.get(id)));
+            }
+            return items;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public long countItems() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return size;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public void addListener(TodoListListener listener) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            // pages are read under the read lock, which the write lock holder gets as well
+            listener.onItems(version, retrieveAllItems());
+            listeners.add(listener);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<TodoItem> findItemById(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            long offset = offsetsById.get(id);
+            return offset == NO_RECORD ? Optional.empty()
+                    : Optional.of(item(id, offset));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean exists(TodoItem item) {
+        byte[] content = encode(item.getContent());
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return findByContent(content) != NO_RECORD;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public TodoItem create(TodoItem item) {
+        byte[] content = encode(item.getContent());
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            return createLocked(item, content);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<TodoItem> createIfAbsent(TodoItem item) {
+        // fast path: a conflicting content is rejected without taking the write lock
+        if (exists(item)) {
+            return Optional.empty();
+        }
+        byte[] content = encode(item.getContent());
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (findByContent(content) != NO_RECORD) {
+                return Optional.empty();
+            }
+            return Optional.of(createLocked(item, content));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Optional<TodoItem>> createItemsIfAbsent(List<TodoItem> items) {
+        List<Optional<TodoItem>> createdItems = new ArrayList<>(items.size());
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            for (TodoItem item : items) {
+                byte[] content = encode(item.getContent());
+                if (findByContent(content) != NO_RECORD) {
+                    createdItems.add(Optional.empty());
+                } else {
+                    createdItems.add(Optional.of(createLocked(item, content)));
+                }
+            }
+            return createdItems;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean updateItem(Long id, TodoItem updatedItem) {
+        if (updatedItem == null || id == null) {
+            return false;
+        }
+        byte[] content = encode(updatedItem.getContent());
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            return updateLocked(id, updatedItem, content) == WriteOutcome.APPLIED;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public WriteOutcome compareAndUpdate(Long id, long expectedVersion, TodoItem updatedItem) {
+        byte[] content = encode(updatedItem.getContent());
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            WriteOutcome outcome = checkVersion(id, expectedVersion);
+            return outcome == WriteOutcome.APPLIED ? updateLocked(id, updatedItem, content) : outcome;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<WriteOutcome> updateItems(List<TodoItem> items) {
+        List<WriteOutcome> outcomes = new ArrayList<>(items.size());
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            for (TodoItem item : items) {
+                outcomes.add(updateLocked(item.getId(), item, encode(item.getContent())));
+            }
+            return outcomes;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean deleteItemById(Long id) {
+        if (id == null) {
+            return false;
+        }
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            return deleteLocked(id);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public WriteOutcome compareAndDelete(Long id, long expectedVersion) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            WriteOutcome outcome = checkVersion(id, expectedVersion);
+            if (outcome == WriteOutcome.APPLIED) {
+                deleteLocked(id);
+            }
+            return outcome;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Boolean> deleteItemsById(List<Long> ids) {
+        List<Boolean> deleted = new ArrayList<>(ids.size());
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            for (Long id : ids) {
+                deleted.add(id != null && deleteLocked(id));
+            }
+            return deleted;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteAllItems() {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            store.clear();
+            offsetsById.clear();
+            offsetsByContentHash.clear();
+            versionsById.clear();
+            ids.clear();
+            // reset counter
+            counter = 0;
+            size = 0;
+            version++;
+            notifyListeners(TodoListEvent.allDeleted(version));
+            forceIfAlways();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (syncer != null) {
+            syncer.shutdownNow();
+        }
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            store.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Forces the chunks written since the previous call to disk. The read lock keeps writers out, not readers.
+     */
+    void force() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            store.force();
+        } catch (RuntimeException e) {
+            LOGGER.error("Unable to force the item store to disk", e);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Must be called with the write lock held, at the end of each write.
+     */
+    private void forceIfAlways() {
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            store.force();
+        }
+    }
+
+    private TodoItem createLocked(TodoItem newItem, byte[] encodedContent) {
+        try {
+            long id = counter + 1;
+            Instant now = Instant.ofEpochMilli(System.currentTimeMillis());
+            TodoItem item = newItem.withMetadata(id, now, now, version + 1);
+            long offset = store.append(id, hash(encodedContent), encodedContent, ItemAttributes.of(item));
+            counter = id;
+            store.setCounter(id);
+            offsetsById.set(id, offset);
+            ids.set(id);
+            linkContent(offset);
+            size++;
+            versionsById.set(id, ++version);
+            notifyListeners(TodoListEvent.created(version, item));
+            forceIfAlways();
+            return item;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write to the item store", e);
+        }
+    }
+
+    private WriteOutcome updateLocked(Long id, TodoItem updatedItem, byte[] encodedContent) {
+        long offset = id == null ? NO_RECORD : offsetsById.get(id);
+        if (offset == NO_RECORD) {
+            return WriteOutcome.NOT_FOUND;
+        }
+        long ownerOffset = findByContent(encodedContent);
+        if (ownerOffset != NO_RECORD && ownerOffset != offset) {
+            return WriteOutcome.CONFLICT;
+        }
+        try {
+            TodoItem item = updatedItem.withMetadata(id, store.attributes(offset).created(),
+                    Instant.ofEpochMilli(System.currentTimeMillis()), version + 1);
+            ItemAttributes attributes = ItemAttributes.of(item);
+            unlinkContent(offset);
+            if (!store.rewrite(offset, hash(encodedContent), encodedContent, attributes)) {
+                long newOffset = store.append(id, hash(encodedContent), encodedContent, attributes);
+                store.free(offset);
+                offsetsById.set(id, newOffset);
+                offset = newOffset;
+            }
+            linkContent(offset);
+            versionsById.set(id, ++version);
+            notifyListeners(TodoListEvent.updated(version, item));
+            forceIfAlways();
+            return WriteOutcome.APPLIED;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write to the item store", e);
+        }
+    }
+
+    private WriteOutcome checkVersion(Long id, long expectedVersion) {
+        if (id == null || offsetsById.get(id) == NO_RECORD) {
+            return WriteOutcome.NOT_FOUND;
+        }
+        return versionsById.get(id) == expectedVersion ? WriteOutcome.APPLIED : WriteOutcome.STALE;
+    }
+
+    private boolean deleteLocked(long id) {
+        long offset = offsetsById.get(id);
+        if (offset == NO_RECORD) {
+            return false;
+        }
+        unlinkContent(offset);
+        store.free(offset);
+        offsetsById.set(id, NO_RECORD);
+        ids.clear(id);
+        versionsById.set(id, 0);
+        size--;
+        version++;
+        notifyListeners(TodoListEvent.deleted(version, id));
+        forceIfAlways();
+        return true;
+    }
+
+    private TodoItem item(long id, long offset) {
+        return store.attributes(offset).toItem(id, store.content(offset), versionsById.get(id));
+    }
+
+    private void notifyListeners(TodoListEvent event) {
+        for (TodoListListener listener : listeners) {
+            listener.onEvent(event);
+        }
+    }
+
+    private long findByContent(byte[] content) {
+        if (content == null) {
+            return NO_RECORD;
+        }
+        long offset = offsetsByContentHash.get(hash(content), NO_RECORD);
+        while (offset != NO_RECORD && !store.contentEquals(offset, content)) {
+            offset = store.next(offset);
+        }
+        return offset;
+    }
+
+    /**
+     * Puts a record at the head of the chain of records sharing its content hash.
+     */
+    private void linkContent(long offset) {
+        long hash = store.hash(offset);
+        if (hash != 0) {
+            store.setNext(offset, offsetsByContentHash.get(hash, NO_RECORD));
+            offsetsByContentHash.put(hash, offset);
+        }
+    }
+
+    private void unlinkContent(long offset) {
+        long hash = store.hash(offset);
+        if (hash == 0) {
+            return;
+        }
+        long head = offsetsByContentHash.get(hash, NO_RECORD);
+        if (head == offset) {
+            long next = store.next(offset);
+            if (next == NO_RECORD) {
+                offsetsByContentHash.remove(hash);
+            } else {
+                offsetsByContentHash.put(hash, next);
+            }
+        } else {
+            long previous = head;
+            while (store.next(previous) != offset) {
+                previous = store.next(previous);
+            }
+            store.setNext(previous, store.next(offset));
+        }
+    }
+
+    private static byte[] encode(String content) {
+        return content == null ? null : content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the content, never 0 so that 0 can stand for a null content.
+     */
+    static long hash(byte[] content) {
+        if (content == null) {
+            return 0;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : content) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+}
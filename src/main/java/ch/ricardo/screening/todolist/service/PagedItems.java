@@ -0,0 +1,97 @@
+package ch.ricardo.screening.todolist.service;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+
+/**
+ * The items of a list, read page by page by {@link TodoListService#retrieveItems(long, int)} as they are iterated, for
+ * the storages that do not hold the list on the heap. Each page is read at once, e.g. under the read lock of the
+ * storage, so the list is weakly consistent: it reflects the writes done while it is iterated or not. Its size is the
+ * number of items when it is created. Only sequential access is cheap: {@link #get(int)} reads all the pages up to the
+ * item.
+ */
+final class PagedItems extends AbstractList<TodoItem> {
+
+    // items read at once
+    static final int PAGE_SIZE = 1000;
+
+    private final TodoListService service;
+
+    private final int size;
+
+    PagedItems(TodoListService service, long size) {
+        this.service = service;
+        this.size = (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public TodoItem get(int index) {
+        if (index < 0) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        Iterator<TodoItem> items = iterator();
+        for (int i = 0; i < index && items.hasNext(); i++) {
+            items.next();
+        }
+        if (!items.hasNext()) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        return items.next();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<TodoItem> iterator() {
+        return new Iterator<TodoItem>() {
+
+            private List<TodoItem> page = Collections.emptyList();
+
+            private int index;
+
+            private long lastId;
+
+            private boolean last;
+
+            @Override
+            public boolean hasNext() {
+                if (index < page.size()) {
+                    return true;
+                }
+                if (last) {
+                    return false;
+                }
+                page = service.retrieveItems(lastId, PAGE_SIZE);
+                index = 0;
+                last = page.size() < PAGE_SIZE;
+                return !page.isEmpty();
+            }
+
+            @Override
+            public TodoItem next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                TodoItem item = page.get(index++);
+                lastId = item.getId();
+                return item;
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<TodoItem> spliterator() {
+        // not sized: the items iterated may differ from the size
+        return Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+}
@@ -0,0 +1,150 @@
+package ch.ricardo.screening.todolist.service;
+
+import java.util.Collections;
+import java.util.List;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * Non-blocking facade of a {@link TodoListService}, for the reactive web stack.
+ * <p>
+ * Reads may read a file (with the "offheap" and "tiered" storages) or wait for a lock held by a write, and writes may
+ * wait for the write lock of the service and, with persistence, for an fsync: reads run on the read scheduler and
+ * writes on the write scheduler, both bounded, so that they never block an event loop. Writes have their own threads,
+ * so that a burst of slow reads does not delay them. Only {@link #getVersion()}, a field read, runs on the subscribing
+ * thread.
+ */
+public class ReactiveTodoListService {
+
+    /**
+     * Number of items read from the service at once when streaming the whole list.
+     */
+    static final int STREAM_PAGE_SIZE = 100;
+
+    private final TodoListService todolistService;
+
+    private final Scheduler readScheduler;
+
+    private final Scheduler writeScheduler;
+
+    public ReactiveTodoListService(TodoListService todolistService, Scheduler readScheduler,
+            Scheduler writeScheduler) {
+        this.todolistService = todolistService;
+        this.readScheduler = readScheduler;
+        this.writeScheduler = writeScheduler;
+    }
+
+    /**
+     * Streams all the items, in id order. Items are read from the service a page at a time, and only once the
+     * subscriber has requested them (a page is only read once the previous one is consumed): a slow subscriber holds
+     * at most a page of items, not the whole list.
+     */
+    public Flux<TodoItem> retrieveAllItems() {
+        // one item per request: concatMapIterable would prefetch a page before any demand
+        return Flux.<TodoItem, PageCursor>generate(PageCursor::new, (cursor, sink) -> {
+            TodoItem item = cursor.next();
+            if (item == null) {
+                sink.complete();
+            } else {
+                sink.next(item);
+            }
+            return cursor;
+        }).subscribeOn(readScheduler);
+    }
+
+    /**
+     * All the items and the version of the list they reflect, read atomically, see
+     * {@link TodoListService#retrieveAllItemsWithVersion()}. Unlike {@link #retrieveAllItems()}, the whole list is
+     * held at once.
+     */
+    public Mono<VersionedItems> retrieveAllItemsWithVersion() {
+        return Mono.fromSupplier(todolistService::retrieveAllItemsWithVersion).subscribeOn(readScheduler);
+    }
+
+    public Mono<List<TodoItem>> retrieveItems(long afterId, int limit) {
+        return Mono.fromSupplier(() -> todolistService.retrieveItems(afterId, limit)).subscribeOn(readScheduler);
+    }
+
+    public Mono<TodoItem> findItemById(Long id) {
+        return Mono.defer(() -> Mono.justOrEmpty(todolistService.findItemById(id))).subscribeOn(readScheduler);
+    }
+
+    public Mono<Long> getVersion() {
+        return Mono.fromSupplier(todolistService::getVersion);
+    }
+
+    /**
+     * Creates an item, unless another item has the same content.
+     *
+     * @return the created item, or an empty {@link Mono} if the item was not created
+     */
+    public Mono<TodoItem> createIfAbsent(TodoItem item) {
+        return Mono.defer(() -> Mono.justOrEmpty(todolistService.createIfAbsent(item)))
+                .subscribeOn(writeScheduler);
+    }
+
+    /**
+     * Updates the content of an item. Unlike {@link TodoListService#updateItem(Long, TodoItem)}, tells a missing item
+     * from a conflicting content without a second lookup.
+     */
+    public Mono<WriteOutcome> updateItem(Long id, TodoItem item) {
+        return Mono.fromSupplier(() -> todolistService.update(id, item))
+                .subscribeOn(writeScheduler);
+    }
+
+    public Mono<WriteOutcome> compareAndUpdate(Long id, long expectedVersion, TodoItem item) {
+        return Mono.fromSupplier(() -> todolistService.compareAndUpdate(id, expectedVersion, item))
+                .subscribeOn(writeScheduler);
+    }
+
+    public Mono<Boolean> deleteItemById(Long id) {
+        return Mono.fromSupplier(() -> todolistService.deleteItemById(id)).subscribeOn(writeScheduler);
+    }
+
+    public Mono<WriteOutcome> compareAndDelete(Long id, long expectedVersion) {
+        return Mono.fromSupplier(() -> todolistService.compareAndDelete(id, expectedVersion))
+                .subscribeOn(writeScheduler);
+    }
+
+    public Mono<Void> deleteAllItems() {
+        return Mono.<Void>fromRunnable(todolistService::deleteAllItems).subscribeOn(writeScheduler);
+    }
+
+    /**
+     * Position of a stream in the list, reading the next page once the current one is consumed.
+     */
+    private final class PageCursor {
+
+        private List<TodoItem> page = Collections.emptyList();
+
+        private int index;
+
+        private long lastId;
+
+        private boolean last;
+
+        /**
+         * Returns the next item, null at the end of the list.
+         */
+        TodoItem next() {
+            if (index == page.size()) {
+                if (last) {
+                    return null;
+                }
+                page = todolistService.retrieveItems(lastId, STREAM_PAGE_SIZE);
+                index = 0;
+                // a short page is the last one, no need to ask for the next
+                last = page.size() < STREAM_PAGE_SIZE;
+                if (page.isEmpty()) {
+                    return null;
+                }
+            }
+            TodoItem item = page.get(index++);
+            lastId = item.getId();
+            return item;
+        }
+    }
+}
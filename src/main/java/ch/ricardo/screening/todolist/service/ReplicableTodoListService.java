@@ -0,0 +1,31 @@
+package ch.ricardo.screening.todolist.service;
+
+import ch.ricardo.screening.todolist.model.TodoListEvent;
+import ch.ricardo.screening.todolist.persistence.TodoListSnapshot;
+
+/**
+ * A Todo list that can be replicated. A primary ships the events its listeners receive, and snapshots of the list to
+ * the replicas that cannot resume from the events; a replica loads the snapshots and applies the events in sequence
+ * order, so that its versions are the ones of the primary.
+ */
+public interface ReplicableTodoListService extends TodoListService {
+
+    /**
+     * Returns a consistent copy of the list: its items, its id counter and the version they reflect.
+     */
+    TodoListSnapshot snapshot();
+
+    /**
+     * Replaces the whole list with a snapshot, e.g. of the primary of a replica. Listeners receive the new items with
+     * {@link TodoListListener#onItems(long, java.util.List)}.
+     */
+    void load(TodoListSnapshot snapshot);
+
+    /**
+     * Applies an event of the primary, numbered by the primary.
+     *
+     * @return false if the event is already applied, i.e. the list is at least as recent as the event
+     * @throws IllegalStateException if events are missing between the version of the list and the event
+     */
+    boolean replicate(TodoListEvent event);
+}
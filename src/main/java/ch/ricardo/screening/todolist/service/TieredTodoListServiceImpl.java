@@ -0,0 +1,750 @@
+package ch.ricardo.screening.todolist.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.model.TodoListEvent;
+import ch.ricardo.screening.todolist.persistence.FsyncPolicy;
+import ch.ricardo.screening.todolist.storage.ContentCache;
+import ch.ricardo.screening.todolist.storage.FileItemStore;
+import ch.ricardo.screening.todolist.storage.ItemAttributes;
+import ch.ricardo.screening.todolist.storage.OffHeapLongArray;
+import ch.ricardo.screening.todolist.storage.OffHeapLongLongMap;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Implementation of the Todo list for lists whose contents do not fit in memory: only ids, versions, content hashes
+ * and the fixed-size attributes of the items are kept in memory, contents are stored on disk and cached.
+ * <p>
+ * Each item is a record of a {@link FileItemStore}. The offset of its last record, its version, its content hash and
+ * its attributes are kept in off-heap arrays indexed by id, and contents are indexed by hash in an off-heap map
+ * pointing to a chain of the items sharing that hash. Listing ids, counting items, checking versions and
+ * {@link #exists(TodoItem)} for a content that is not taken therefore never touch the disk.
+ * <p>
+ * Contents are read from disk on demand through a {@link ContentCache} of a bounded size, so the heap taken by contents
+ * is capped whatever the size of the list. Written contents are cached, as they are likely to be read back. Pages of
+ * the list are read through the cache without filling it, so that a client reading the whole list does not evict the
+ * contents read item by item.
+ * <p>
+ * The whole list is never held in memory either: {@link #retrieveAllItems()} returns a list read page by page as it
+ * is iterated, each page under the read lock, and so does {@link #retrieveAllItemsWithVersion()}.
+ * <p>
+ * The file survives restarts: at startup, the records are read sequentially and checked against their CRC, the
+ * indexes are rebuilt from their headers, and the cache starts empty. Records hold the version of the list they were
+ * written at, so the versions of the list and of the items carry on where they were. Appended records are forced to
+ * disk according to an {@link FsyncPolicy}, like those of the {@link OffHeapTodoListServiceImpl}.
+ * <p>
+ * Records written over are garbage: once they take more space than the live records, and more than
+ * {@code todolist.tiered.compaction-min-bytes}, a write compacts the file, copying the live records to a new one.
+ * <p>
+ * Reads share a read lock, writes take the write lock.
+ */
+@Service("todolistService")
+@ConditionalOnProperty(name = "todolist.storage", havingValue = "tiered")
+public class TieredTodoListServiceImpl implements TodoListService {
+
+    static final String CACHE_GETS = "todolist.content.cache.gets";
+
+    static final String CACHE_EVICTIONS = "todolist.content.cache.evictions";
+
+    static final String CACHE_SIZE = "todolist.content.cache.size";
+
+    static final String CACHE_BYTES = "todolist.content.cache.bytes";
+
+    static final String FILE_BYTES = "todolist.content.file.bytes";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TieredTodoListServiceImpl.class);
+
+    private static final int CACHE_SEGMENTS = 16;
+
+    private static final long DEFAULT_COMPACTION_MIN_BYTES = 64L * 1024 * 1024;
+
+    private static final long NO_RECORD = 0;
+
+    private static final long NO_ID = 0;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final FileItemStore store;
+
+    private final ContentCache cache;
+
+    private final OffHeapLongArray offsetsById = new OffHeapLongArray(1024);
+
+    private final OffHeapLongArray hashesById = new OffHeapLongArray(1024);
+
+    private final OffHeapLongArray versionsById = new OffHeapLongArray(1024);
+
+    private final OffHeapLongArray attributesById = new OffHeapLongArray(ItemAttributes.LONGS * 1024);
+
+    // size of the last record of each item, written over when the item is
+    private final OffHeapLongArray recordSizesById = new OffHeapLongArray(1024);
+
+    // next id in the chain of the items sharing a content hash
+    private final OffHeapLongArray nextIdsById = new OffHeapLongArray(1024);
+
+    private final OffHeapLongLongMap idsByContentHash = new OffHeapLongLongMap(1024);
+
+    private final FsyncPolicy fsyncPolicy;
+
+    private final ScheduledExecutorService syncer;
+
+    private final long compactionMinBytes;
+
+    private final List<TodoListListener> listeners = new CopyOnWriteArrayList<>();
+
+    // guarded by the write lock
+    private long counter;
+
+    // guarded by the write lock
+    private long size;
+
+    // size of the live records, guarded by the write lock
+    private long liveBytes;
+
+    // written with the write lock held, at the end of each write
+    private volatile long version;
+
+    @Autowired
+    public TieredTodoListServiceImpl(@Value("${todolist.tiered.file:data/contents.dat}") String file,
+            @Value("${todolist.tiered.cache-size-mb:64}") int cacheSizeMb,
+            @Value("${todolist.tiered.fsync-policy:INTERVAL}") FsyncPolicy fsyncPolicy,
+            @Value("${todolist.tiered.fsync-interval-ms:1000}") long fsyncIntervalMs,
+            @Value("${todolist.tiered.compaction-min-bytes:67108864}") long compactionMinBytes,
+            MeterRegistry registry) throws IOException {
+        this(new FileItemStore(Paths.get(file)), new ContentCache(cacheSizeMb * 1024L * 1024, CACHE_SEGMENTS),
+                fsyncPolicy, fsyncIntervalMs, compactionMinBytes);
+        FunctionCounter.builder(CACHE_GETS, cache, ContentCache::hitCount)
+                .tag("result", "hit")
+                .description("Reads of item contents found in the cache")
+                .register(registry);
+        FunctionCounter.builder(CACHE_GETS, cache, ContentCache::missCount)
+                .tag("result", "miss")
+                .description("Reads of item contents that went to disk")
+                .register(registry);
+        FunctionCounter.builder(CACHE_EVICTIONS, cache, ContentCache::evictionCount)
+                .description("Item contents evicted from the cache")
+                .register(registry);
+        Gauge.builder(CACHE_SIZE, cache, ContentCache::count)
+                .description("Number of cached item contents")
+                .register(registry);
+        Gauge.builder(CACHE_BYTES, cache, ContentCache::size)
+                .description("Estimated heap taken by the cached item contents")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder(FILE_BYTES, store, FileItemStore::size)
+                .description("Size of the file of the item contents, uncompacted records included")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    public TieredTodoListServiceImpl(FileItemStore store, ContentCache cache) throws IOException {
+        this(store, cache, FsyncPolicy.NEVER, 0, DEFAULT_COMPACTION_MIN_BYTES);
+    }
+
+    public TieredTodoListServiceImpl(FileItemStore store, ContentCache cache, FsyncPolicy fsyncPolicy,
+            long fsyncIntervalMs, long compactionMinBytes) throws IOException {
+        this.store = store;
+        this.cache = cache;
+        this.fsyncPolicy = fsyncPolicy;
+        this.compactionMinBytes = compactionMinBytes;
+        store.forEachRecord((offset, id, hash, length, recordVersion, attributes) -> {
+            boolean live = offsetsById.get(id) != NO_RECORD;
+            if (live) {
+                liveBytes -= recordSizesById.get(id);
+            }
+            if (length == FileItemStore.DELETED) {
+                offsetsById.set(id, NO_RECORD);
+                hashesById.set(id, 0);
+                versionsById.set(id, 0);
+                if (live) {
+                    size--;
+                }
+            } else {
+                offsetsById.set(id, offset);
+                hashesById.set(id, hash);
+                versionsById.set(id, recordVersion);
+                recordSizesById.set(id, FileItemStore.recordSize(length));
+                liveBytes += FileItemStore.recordSize(length);
+                attributes.write(attributesById, id);
+                if (!live) {
+                    size++;
+                }
+            }
+            // deletion records keep the ids of deleted items from being handed out again
+            counter = Math.max(counter, id);
+            version = Math.max(version, recordVersion);
+        });
+        for (long id = 1; id <= counter; id++) {
+            if (offsetsById.get(id) != NO_RECORD) {
+                linkContent(id);
+            }
+        }
+        if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+            syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "todolist-tiered-sync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            syncer.scheduleWithFixedDelay(this::force, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    /**
+     * All the items, read page by page as the returned list is iterated, see {@link PagedItems}.
+     */
+    @Override
+    public List<TodoItem> retrieveAllItems() {
+        return new PagedItems(this, countItems());
+    }
+
+    /**
+     * The version, then the items read page by page as they are iterated, see {@link #retrieveAllItems()}: the items
+     * are at least as recent as the version, without holding the lock while they are all read.
+     */
+    @Override
+    public VersionedItems retrieveAllItemsWithVersion() {
+        long currentVersion = version;
+        return new VersionedItems(currentVersion, retrieveAllItems());
+    }
+
+    @Override
+    public List<TodoItem> retrieveItems(long afterId, int limit) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            List<TodoItem> items = new ArrayList<>();
+            for (long id = Math.max(afterId + 1, 1); id <= counter && items.size() < limit; id++) {
+                if (offsetsById.get(id) != NO_RECORD) {
+                    items.add(item(id, scanContent(id)));
+                }
+            }
+            return items;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public long countItems() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return size;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public void addListener(TodoListListener listener) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            // pages are read under the read lock, which the write lock holder gets as well
+            listener.onItems(version, retrieveAllItems());
+            listeners.add(listener);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<TodoItem> findItemById(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return offsetsById.get(id) == NO_RECORD ? Optional.empty()
+                    : Optional.of(item(id, content(id)));
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean exists(TodoItem item) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return findByContent(item.getContent()) != NO_ID;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public TodoItem create(TodoItem item) {
+        byte[] content = encode(item.getContent());
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            return createLocked(item, content);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<TodoItem> createIfAbsent(TodoItem item) {
+        // fast path: a conflicting content is rejected without taking the write lock
+        if (exists(item)) {
+            return Optional.empty();
+        }
+        byte[] content = encode(item.getContent());
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (findByContent(item.getContent()) != NO_ID) {
+                return Optional.empty();
+            }
+            return Optional.of(createLocked(item, content));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Optional<TodoItem>> createItemsIfAbsent(List<TodoItem> items) {
+        List<Optional<TodoItem>> createdItems = new ArrayList<>(items.size());
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            for (TodoItem item : items) {
+                if (findByContent(item.getContent()) != NO_ID) {
+                    createdItems.add(Optional.empty());
+                } else {
+                    createdItems.add(Optional.of(createLocked(item, encode(item.getContent()))));
+                }
+            }
+            return createdItems;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean updateItem(Long id, TodoItem updatedItem) {
+        if (updatedItem == null || id == null) {
+            return false;
+        }
+        byte[] content = encode(updatedItem.getContent());
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            return updateLocked(id, updatedItem, content) == WriteOutcome.APPLIED;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public WriteOutcome compareAndUpdate(Long id, long expectedVersion, TodoItem updatedItem) {
+        byte[] content = encode(updatedItem.getContent());
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            WriteOutcome outcome = checkVersion(id, expectedVersion);
+            return outcome == WriteOutcome.APPLIED ? updateLocked(id, updatedItem, content) : outcome;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<WriteOutcome> updateItems(List<TodoItem> items) {
+        List<WriteOutcome> outcomes = new ArrayList<>(items.size());
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            for (TodoItem item : items) {
+                outcomes.add(updateLocked(item.getId(), item, encode(item.getContent())));
+            }
+            return outcomes;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean deleteItemById(Long id) {
+        if (id == null) {
+            return false;
+        }
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            return deleteLocked(id);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public WriteOutcome compareAndDelete(Long id, long expectedVersion) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            WriteOutcome outcome = checkVersion(id, expectedVersion);
+            if (outcome == WriteOutcome.APPLIED) {
+                deleteLocked(id);
+            }
+            return outcome;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Boolean> deleteItemsById(List<Long> ids) {
+        List<Boolean> deleted = new ArrayList<>(ids.size());
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            for (Long id : ids) {
+                deleted.add(id != null && deleteLocked(id));
+            }
+            return deleted;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteAllItems() {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            store.clear();
+            cache.clear();
+            offsetsById.clear();
+            hashesById.clear();
+            versionsById.clear();
+            attributesById.clear();
+            nextIdsById.clear();
+            idsByContentHash.clear();
+            recordSizesById.clear();
+            // reset counter
+            counter = 0;
+            size = 0;
+            liveBytes = 0;
+            version++;
+            // keeps the version of the list from starting over when the file is reopened
+            store.appendDeletion(NO_ID, version);
+            notifyListeners(TodoListEvent.allDeleted(version));
+            forceIfAlways();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to clear the item store", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (syncer != null) {
+            syncer.shutdownNow();
+        }
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            store.close();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Forces the records appended since the previous call to disk. The read lock keeps writers out, not readers.
+     */
+    void force() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            store.force();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Unable to force the item store to disk", e);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Size of the file taken by the live records, file header excluded.
+     */
+    long liveBytes() {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return liveBytes;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    /**
+     * Must be called with the write lock held, at the end of each write.
+     */
+    private void forceIfAlways() throws IOException {
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            store.force();
+        }
+    }
+
+    /**
+     * Compacts the file once the records written over take more space than the live ones, and than the minimum: the
+     * cost of a compaction, proportional to the live records, is spread over the writes that made as much garbage.
+     * Must be called with the write lock held, at the end of each write.
+     */
+    private void compactIfDue() {
+        long garbage = store.size() - liveBytes;
+        if (garbage <= Math.max(liveBytes, compactionMinBytes)) {
+            return;
+        }
+        try {
+            store.compact((id, offset) -> offsetsById.get(id) == offset);
+            store.forEachRecord((offset, id, hash, length, recordVersion, attributes) -> {
+                if (length != FileItemStore.DELETED) {
+                    offsetsById.set(id, offset);
+                }
+            });
+        } catch (IOException e) {
+            // the write is done, and the records are all still in the file, compacted or not
+            LOGGER.error("Unable to compact the item store", e);
+        }
+    }
+
+    private TodoItem createLocked(TodoItem newItem, byte[] encodedContent) {
+        try {
+            long id = counter + 1;
+            Instant now = Instant.ofEpochMilli(System.currentTimeMillis());
+            TodoItem item = newItem.withMetadata(id, now, now, version + 1);
+            ItemAttributes attributes = ItemAttributes.of(item);
+            long hash = OffHeapTodoListServiceImpl.hash(encodedContent);
+            long offset = store.append(id, hash, encodedContent, attributes, version + 1);
+            counter = id;
+            offsetsById.set(id, offset);
+            hashesById.set(id, hash);
+            attributes.write(attributesById, id);
+            linkContent(id);
+            cacheContent(id, item.getContent());
+            setRecordSize(id, encodedContent);
+            size++;
+            versionsById.set(id, ++version);
+            notifyListeners(TodoListEvent.created(version, item));
+            forceIfAlways();
+            compactIfDue();
+            return item;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write to the item store", e);
+        }
+    }
+
+    private WriteOutcome updateLocked(Long id, TodoItem updatedItem, byte[] encodedContent) {
+        if (id == null || offsetsById.get(id) == NO_RECORD) {
+            return WriteOutcome.NOT_FOUND;
+        }
+        long ownerId = findByContent(updatedItem.getContent());
+        if (ownerId != NO_ID && ownerId != id) {
+            return WriteOutcome.CONFLICT;
+        }
+        try {
+            TodoItem item = updatedItem.withMetadata(id, ItemAttributes.read(attributesById, id).created(),
+                    Instant.ofEpochMilli(System.currentTimeMillis()), version + 1);
+            ItemAttributes attributes = ItemAttributes.of(item);
+            long hash = OffHeapTodoListServiceImpl.hash(encodedContent);
+            long offset = store.append(id, hash, encodedContent, attributes, version + 1);
+            unlinkContent(id);
+            offsetsById.set(id, offset);
+            hashesById.set(id, hash);
+            attributes.write(attributesById, id);
+            linkContent(id);
+            cacheContent(id, item.getContent());
+            liveBytes -= recordSizesById.get(id);
+            setRecordSize(id, encodedContent);
+            versionsById.set(id, ++version);
+            notifyListeners(TodoListEvent.updated(version, item));
+            forceIfAlways();
+            compactIfDue();
+            return WriteOutcome.APPLIED;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write to the item store", e);
+        }
+    }
+
+    private WriteOutcome checkVersion(Long id, long expectedVersion) {
+        if (id == null || offsetsById.get(id) == NO_RECORD) {
+            return WriteOutcome.NOT_FOUND;
+        }
+        return versionsById.get(id) == expectedVersion ? WriteOutcome.APPLIED : WriteOutcome.STALE;
+    }
+
+    private boolean deleteLocked(long id) {
+        if (offsetsById.get(id) == NO_RECORD) {
+            return false;
+        }
+        try {
+            store.appendDeletion(id, version + 1);
+            unlinkContent(id);
+            cache.remove(id);
+            offsetsById.set(id, NO_RECORD);
+            hashesById.set(id, 0);
+            versionsById.set(id, 0);
+            liveBytes -= recordSizesById.get(id);
+            size--;
+            version++;
+            notifyListeners(TodoListEvent.deleted(version, id));
+            forceIfAlways();
+            compactIfDue();
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to write to the item store", e);
+        }
+    }
+
+    private void setRecordSize(long id, byte[] encodedContent) {
+        int recordSize = FileItemStore.recordSize(encodedContent == null ? FileItemStore.NULL_CONTENT
+                : encodedContent.length);
+        recordSizesById.set(id, recordSize);
+        liveBytes += recordSize;
+    }
+
+    private TodoItem item(long id, String content) {
+        return ItemAttributes.read(attributesById, id).toItem(id, content, versionsById.get(id));
+    }
+
+    private void notifyListeners(TodoListEvent event) {
+        for (TodoListListener listener : listeners) {
+            listener.onEvent(event);
+        }
+    }
+
+    /**
+     * Returns the content of an item, from the cache or else from disk, caching it.
+     */
+    private String content(long id) {
+        if (hashesById.get(id) == 0) {
+            return null;
+        }
+        String content = cache.get(id);
+        if (content == null) {
+            content = read(id);
+            cache.put(id, content);
+        }
+        return content;
+    }
+
+    /**
+     * Returns the content of an item, from the cache or else from disk, without caching it.
+     */
+    private String scanContent(long id) {
+        if (hashesById.get(id) == 0) {
+            return null;
+        }
+        String content = cache.peek(id);
+        return content == null ? read(id) : content;
+    }
+
+    private String read(long id) {
+        try {
+            return new String(store.content(offsetsById.get(id)), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read item " + id + " from the item store", e);
+        }
+    }
+
+    private void cacheContent(long id, String content) {
+        if (content == null) {
+            cache.remove(id);
+        } else {
+            cache.put(id, content);
+        }
+    }
+
+    /**
+     * Returns the id of the item with the given content, {@link #NO_ID} if there is none. Contents are only read to
+     * tell apart the items sharing the hash of the given content.
+     */
+    private long findByContent(String content) {
+        if (content == null) {
+            return NO_ID;
+        }
+        long id = idsByContentHash.get(OffHeapTodoListServiceImpl.hash(encode(content)), NO_ID);
+        while (id != NO_ID && !Objects.equals(content(id), content)) {
+            id = nextIdsById.get(id);
+        }
+        return id;
+    }
+
+    /**
+     * Puts an item at the head of the chain of the items sharing its content hash.
+     */
+    private void linkContent(long id) {
+        long hash = hashesById.get(id);
+        if (hash != 0) {
+            nextIdsById.set(id, idsByContentHash.get(hash, NO_ID));
+            idsByContentHash.put(hash, id);
+        }
+    }
+
+    private void unlinkContent(long id) {
+        long hash = hashesById.get(id);
+        if (hash == 0) {
+            return;
+        }
+        long head = idsByContentHash.get(hash, NO_ID);
+        if (head == id) {
+            long next = nextIdsById.get(id);
+            if (next == NO_ID) {
+                idsByContentHash.remove(hash);
+            } else {
+                idsByContentHash.put(hash, next);
+            }
+        } else {
+            long previous = head;
+            while (nextIdsById.get(previous) != id) {
+                previous = nextIdsById.get(previous);
+            }
+            nextIdsById.set(previous, nextIdsById.get(id));
+        }
+        nextIdsById.set(id, NO_ID);
+    }
+
+    private static byte[] encode(String content) {
+        return content == null ? null : content.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,429 @@
+package ch.ricardo.screening.todolist.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.model.TodoListEvent;
+import ch.ricardo.screening.todolist.service.ItemQuery.SortKey;
+
+/**
+ * Sorted secondary indexes of the Todo list on the attributes of the items, kept up to date with the changes of the
+ * service, to filter and sort the list without scanning it.
+ * <p>
+ * Each index is a {@link ConcurrentSkipListSet} of the items ordered by status, then by an attribute (id, priority, due
+ * date or update time), then by id: the items of a status within a range of the attribute are a contiguous slice of
+ * the index, found in O(log n). A query walks the slices of the index of its sort key, merging the slices of the
+ * statuses it asks for and stopping as soon as the page is full: it costs O(log n + w), w being the number of items
+ * walked, which includes the items skipped to reach the offset. When it also filters on a range of another attribute,
+ * the walk may skip many items out of that range: past a budget of skipped items, the m items of the range are
+ * collected from the index of that attribute and sorted instead, in O(log n + m log m). Either way, a query does not
+ * scan the whole list. Creation times follow ids, so sorting by creation time walks the id index.
+ * <p>
+ * Offsets are meant for the first pages: a page at an offset walks all the matching items before it. The next page
+ * rather starts at the {@link ItemCursor} of the previous one, the sort key and id of its last item, found in O(log n)
+ * in each slice: pages at cursors cost the same however deep they are. A query sorted by another attribute than its
+ * range still collects and sorts the whole range for each page.
+ * <p>
+ * Unlike the search index, changes are applied by the listener itself, as they only take a few O(log n) insertions
+ * and removals: a query sees every write completed before it started. Queries do not lock, and are weakly consistent
+ * with the writes running meanwhile: an item written during a query may or may not be part of its results.
+ */
+@Component
+@Lazy(false)
+@ConditionalOnProperty(name = "todolist.attribute-index.enabled", havingValue = "true", matchIfMissing = true)
+public class TodoListAttributeIndex implements TodoListListener {
+
+    private static final SortKey[] INDEXED_KEYS = {SortKey.ID, SortKey.PRIORITY, SortKey.DUE_DATE, SortKey.UPDATED};
+
+    private static final TodoItem.Status[] STATUSES = TodoItem.Status.values();
+
+    // a walk of the sort key index filtering on another range may skip this many entries per item of the page...
+    private static final int WALK_BUDGET_FACTOR = 4;
+
+    // ...plus this many, before the range is collected instead
+    private static final int MIN_WALK_BUDGET = 64;
+
+    // key of the items without due date, which sort last
+    private static final long NO_DUE_DATE = Long.MAX_VALUE;
+
+    // key of the items written before they had timestamps
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private final Map<Long, Entry> entriesById = new ConcurrentHashMap<>();
+
+    private final Map<SortKey, NavigableSet<Entry>> indexes = new EnumMap<>(SortKey.class);
+
+    @Autowired
+    public TodoListAttributeIndex(TodoListService todolistService) {
+        for (SortKey key : INDEXED_KEYS) {
+            indexes.put(key, new ConcurrentSkipListSet<>(indexOrder(key)));
+        }
+        todolistService.addListener(this);
+    }
+
+    @Override
+    public void onItems(long version, List<TodoItem> items) {
+        clear();
+        for (TodoItem item : items) {
+            put(Entry.of(item));
+        }
+    }
+
+    @Override
+    public void onEvent(TodoListEvent event) {
+        switch (event.getType()) {
+            case CREATED:
+            case UPDATED:
+                put(Entry.of(event.toItem()));
+                break;
+            case DELETED:
+                remove(event.getId());
+                break;
+            case ALL_DELETED:
+                clear();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown event type " + event.getType());
+        }
+    }
+
+    /**
+     * Returns the ids of a page of the items matching a query, in the order of the query.
+     *
+     * @param offset number of matching items to skip
+     * @param limit maximum number of ids to return
+     */
+    public List<Long> query(ItemQuery query, int offset, int limit) {
+        return query(query, null, offset, limit).getIds();
+    }
+
+    /**
+     * Returns a page of the items matching a query, in the order of the query, and the cursor of the next page.
+     *
+     * @param after cursor returned with the previous page of the same query, null for the first page
+     * @param offset number of matching items to skip, after the cursor if any
+     * @param limit maximum number of ids to return
+     */
+    public ItemPage query(ItemQuery query, ItemCursor after, int offset, int limit) {
+        Filter filter = new Filter(query);
+        SortKey sortKey = query.getSortKey() == SortKey.CREATED ? SortKey.ID : query.getSortKey();
+        SortKey rangeKey = filter.hasRange(sortKey) ? sortKey
+                : filter.hasRange(SortKey.DUE_DATE) ? SortKey.DUE_DATE
+                : filter.hasRange(SortKey.PRIORITY) ? SortKey.PRIORITY : sortKey;
+        List<Entry> entries;
+        if (rangeKey == sortKey) {
+            entries = walk(filter, sortKey, query.isDescending(), after, offset, limit, Long.MAX_VALUE);
+        } else {
+            // a wide range is cheaper to skip through than to collect and sort: try the walk first, within a budget
+            entries = walk(filter, sortKey, query.isDescending(), after, offset, limit,
+                    WALK_BUDGET_FACTOR * ((long) offset + limit) + MIN_WALK_BUDGET);
+            if (entries == null) {
+                entries = collect(filter, rangeKey, sortKey, query.isDescending(), after, offset, limit);
+            }
+        }
+        List<Long> ids = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            ids.add(entry.id);
+        }
+        Entry last = entries.size() == limit ? entries.get(limit - 1) : null;
+        return new ItemPage(ids, last == null ? null : new ItemCursor(last.key(sortKey), last.id));
+    }
+
+    /**
+     * Number of items indexed.
+     */
+    public int size() {
+        return entriesById.size();
+    }
+
+    /**
+     * Walks the index of the sort key, merging the slices of the statuses in sort order, until the page is full.
+     *
+     * @param budget maximum number of index entries to walk
+     * @return the entries of the page, or null if the budget ran out before the page was full
+     */
+    private List<Entry> walk(Filter filter, SortKey sortKey, boolean descending, ItemCursor after, int offset,
+            int limit, long budget) {
+        Comparator<Entry> order = sortOrder(sortKey, descending);
+        List<Iterator<Entry>> slices = new ArrayList<>();
+        List<Entry> heads = new ArrayList<>();
+        for (int status : filter.statuses) {
+            NavigableSet<Entry> slice = slice(filter, sortKey, status, after, descending);
+            Iterator<Entry> iterator = (descending ? slice.descendingSet() : slice).iterator();
+            slices.add(iterator);
+            heads.add(iterator.hasNext() ? iterator.next() : null);
+        }
+        List<Entry> entries = new ArrayList<>(Math.min(limit, entriesById.size()));
+        int skipped = 0;
+        long walked = 0;
+        while (entries.size() < limit) {
+            if (walked++ == budget) {
+                return null;
+            }
+            // a handful of statuses at most, a linear search of the smallest head beats a heap
+            int next = -1;
+            for (int i = 0; i < heads.size(); i++) {
+                if (heads.get(i) != null && (next < 0 || order.compare(heads.get(i), heads.get(next)) < 0)) {
+                    next = i;
+                }
+            }
+            if (next < 0) {
+                break;
+            }
+            Entry entry = heads.get(next);
+            Iterator<Entry> slice = slices.get(next);
+            heads.set(next, slice.hasNext() ? slice.next() : null);
+            if (filter.matches(current(entry, sortKey))) {
+                if (skipped < offset) {
+                    skipped++;
+                } else {
+                    entries.add(entry);
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Collects the items of the range filtered on from the index of that range, and sorts them by the sort key.
+     */
+    private List<Entry> collect(Filter filter, SortKey rangeKey, SortKey sortKey, boolean descending,
+            ItemCursor after, int offset, int limit) {
+        Comparator<Entry> order = sortOrder(sortKey, descending);
+        // only compared on the sort key and id, its status does not matter
+        Entry from = after == null ? null : Entry.at(sortKey, 0, after.getKey(), after.getId());
+        List<Entry> matches = new ArrayList<>();
+        for (int status : filter.statuses) {
+            for (Entry entry : slice(filter, rangeKey, status, null, false)) {
+                Entry current = current(entry, rangeKey);
+                if (filter.matches(current) && (from == null || order.compare(current, from) > 0)) {
+                    matches.add(current);
+                }
+            }
+        }
+        matches.sort(order);
+        return offset >= matches.size() ? new ArrayList<>()
+                : new ArrayList<>(matches.subList(offset, offset + Math.min(limit, matches.size() - offset)));
+    }
+
+    /**
+     * Returns the items of a status within the range of an attribute the filter asks for, and past the cursor if any.
+     * A cursor out of the range, which the query did not return, is ignored.
+     */
+    private NavigableSet<Entry> slice(Filter filter, SortKey key, int status, ItemCursor after, boolean descending) {
+        Comparator<Entry> order = indexOrder(key);
+        Entry lowest = Entry.probe(key, status, filter.lowest(key), false);
+        Entry highest = Entry.probe(key, status, filter.highest(key), true);
+        boolean lowestIncluded = true;
+        boolean highestIncluded = true;
+        if (after != null) {
+            Entry from = Entry.at(key, status, after.getKey(), after.getId());
+            if (!descending && order.compare(from, lowest) >= 0) {
+                lowest = from;
+                lowestIncluded = false;
+            } else if (descending && order.compare(from, highest) <= 0) {
+                highest = from;
+                highestIncluded = false;
+            }
+        }
+        return order.compare(lowest, highest) > 0 ? Collections.emptyNavigableSet()
+                : indexes.get(key).subSet(lowest, lowestIncluded, highest, highestIncluded);
+    }
+
+    /**
+     * Returns the current attributes of an item found in an index, or null if the index entry is out of date: the item
+     * is being updated or deleted, and the entry is about to be removed from the index.
+     */
+    private Entry current(Entry entry, SortKey key) {
+        Entry current = entriesById.get(entry.id);
+        return current != null && current.status == entry.status && current.key(key) == entry.key(key) ? current
+                : null;
+    }
+
+    /**
+     * Indexes the new attributes of an item. The new entries are added before the old ones are removed, so that
+     * concurrent queries always find the item; {@link #current(Entry, SortKey)} skips whichever entry is out of date.
+     */
+    private void put(Entry entry) {
+        Entry previous = entriesById.get(entry.id);
+        for (SortKey key : INDEXED_KEYS) {
+            indexes.get(key).add(entry);
+        }
+        entriesById.put(entry.id, entry);
+        if (previous != null) {
+            for (SortKey key : INDEXED_KEYS) {
+                // an entry equal to the previous one in this index was not added, the previous one stands for it
+                if (indexOrder(key).compare(previous, entry) != 0) {
+                    indexes.get(key).remove(previous);
+                }
+            }
+        }
+    }
+
+    private void remove(Long id) {
+        Entry previous = entriesById.remove(id);
+        if (previous != null) {
+            for (SortKey key : INDEXED_KEYS) {
+                indexes.get(key).remove(previous);
+            }
+        }
+    }
+
+    private void clear() {
+        entriesById.clear();
+        for (SortKey key : INDEXED_KEYS) {
+            indexes.get(key).clear();
+        }
+    }
+
+    private static Comparator<Entry> indexOrder(SortKey key) {
+        return (entry1, entry2) -> {
+            if (entry1.status != entry2.status) {
+                return Integer.compare(entry1.status, entry2.status);
+            }
+            int byKey = Long.compare(entry1.key(key), entry2.key(key));
+            return byKey != 0 ? byKey : Long.compare(entry1.id, entry2.id);
+        };
+    }
+
+    private static Comparator<Entry> sortOrder(SortKey key, boolean descending) {
+        Comparator<Entry> order = (entry1, entry2) -> {
+            int byKey = Long.compare(entry1.key(key), entry2.key(key));
+            return byKey != 0 ? byKey : Long.compare(entry1.id, entry2.id);
+        };
+        return descending ? order.reversed() : order;
+    }
+
+    /**
+     * Attributes of an item, as indexed. Immutable: an update of the item replaces its entry.
+     */
+    private static final class Entry {
+
+        private final long id;
+
+        private final int status;
+
+        private final int priority;
+
+        private final long dueDate;
+
+        private final long updated;
+
+        private Entry(long id, int status, int priority, long dueDate, long updated) {
+            this.id = id;
+            this.status = status;
+            this.priority = priority;
+            this.dueDate = dueDate;
+            this.updated = updated;
+        }
+
+        static Entry of(TodoItem item) {
+            return new Entry(item.getId(), item.getStatus().ordinal(), item.getPriority(),
+                    item.getDueDate() == null ? NO_DUE_DATE : item.getDueDate().toEpochDay(),
+                    item.getUpdated() == null ? NO_TIMESTAMP : item.getUpdated().toEpochMilli());
+        }
+
+        /**
+         * Returns an entry sorting right where an item of the given status, key and id does.
+         */
+        static Entry at(SortKey key, int status, long value, long id) {
+            return new Entry(id, status, (int) value, value, value);
+        }
+
+        /**
+         * Returns an entry sorting first (or last) among the entries of the given status and key.
+         */
+        static Entry probe(SortKey key, int status, long value, boolean last) {
+            long id = key == SortKey.ID ? value : last ? Long.MAX_VALUE : Long.MIN_VALUE;
+            return new Entry(id, status, (int) value, value, value);
+        }
+
+        long key(SortKey key) {
+            switch (key) {
+                case ID:
+                case CREATED:
+                    return id;
+                case PRIORITY:
+                    return priority;
+                case DUE_DATE:
+                    return dueDate;
+                case UPDATED:
+                    return updated;
+                default:
+                    throw new IllegalArgumentException("Unknown sort key " + key);
+            }
+        }
+    }
+
+    /**
+     * The filters of a query, as bounds of the indexed keys.
+     */
+    private static final class Filter {
+
+        private final int[] statuses;
+
+        private final int minPriority;
+
+        private final int maxPriority;
+
+        private final long dueFrom;
+
+        private final long dueTo;
+
+        private final boolean dueDateFiltered;
+
+        Filter(ItemQuery query) {
+            List<Integer> ordinals = new ArrayList<>();
+            for (TodoItem.Status status : STATUSES) {
+                if (query.getStatuses() == null || query.getStatuses().contains(status)) {
+                    ordinals.add(status.ordinal());
+                }
+            }
+            this.statuses = ordinals.stream().mapToInt(Integer::intValue).toArray();
+            this.minPriority = query.getMinPriority() == null ? Integer.MIN_VALUE : query.getMinPriority();
+            this.maxPriority = query.getMaxPriority() == null ? Integer.MAX_VALUE : query.getMaxPriority();
+            this.dueDateFiltered = query.getDueFrom() != null || query.getDueTo() != null;
+            this.dueFrom = query.getDueFrom() == null ? Long.MIN_VALUE : query.getDueFrom().toEpochDay();
+            // a due date range leaves out the items without due date
+            this.dueTo = query.getDueTo() != null ? query.getDueTo().toEpochDay()
+                    : dueDateFiltered ? NO_DUE_DATE - 1 : NO_DUE_DATE;
+        }
+
+        boolean hasRange(SortKey key) {
+            return key == SortKey.PRIORITY ? minPriority != Integer.MIN_VALUE || maxPriority != Integer.MAX_VALUE
+                    : key == SortKey.DUE_DATE && dueDateFiltered;
+        }
+
+        long lowest(SortKey key) {
+            return key == SortKey.PRIORITY ? minPriority : key == SortKey.DUE_DATE ? dueFrom : Long.MIN_VALUE;
+        }
+
+        long highest(SortKey key) {
+            return key == SortKey.PRIORITY ? maxPriority : key == SortKey.DUE_DATE ? dueTo : Long.MAX_VALUE;
+        }
+
+        /**
+         * Tells whether the current attributes of an item match, null standing for an index entry out of date.
+         */
+        boolean matches(Entry entry) {
+            return entry != null && entry.priority >= minPriority && entry.priority <= maxPriority
+                    && entry.dueDate >= dueFrom && entry.dueDate <= dueTo
+                    && Arrays.binarySearch(statuses, entry.status) >= 0;
+        }
+    }
+}
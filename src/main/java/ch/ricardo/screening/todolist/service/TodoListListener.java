@@ -0,0 +1,28 @@
+package ch.ricardo.screening.todolist.service;
+
+import java.util.List;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.model.TodoListEvent;
+
+/**
+ * Listener of the changes of a Todo list, registered with {@link TodoListService#addListener(TodoListListener)}.
+ * <p>
+ * Both methods are called while the service holds its write lock, so that events are received in sequence order and
+ * none is missed between the initial items and the first event. They must return quickly (e.g. by handing the work
+ * over to another thread), and must not call the service.
+ */
+public interface TodoListListener {
+
+    /**
+     * Called at registration, with the items of the list and the version of the list they reflect. Called again
+     * whenever the whole list is replaced, e.g. when a replica loads a snapshot of its primary: the version may then
+     * be lower than the one of the previous events.
+     */
+    void onItems(long version, List<TodoItem> items);
+
+    /**
+     * Called after each change. The sequence of the event is the version of the list once the change is applied.
+     */
+    void onEvent(TodoListEvent event);
+}
@@ -0,0 +1,345 @@
+package ch.ricardo.screening.todolist.service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.persistence.TodoListJournal;
+import ch.ricardo.screening.todolist.persistence.TodoListJournalFactory;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Todo lists partitioned by list id, e.g. one list per user or team.
+ * <p>
+ * Each list is a {@link ConcurrentTodoListServiceImpl} of its own, with its own items, id sequence, version, write
+ * lock and journal: writes to different lists never contend, and deleting all the items of a list leaves the other
+ * lists alone. Lists are created by their first write, and loaded from their journal the first time they are used
+ * after a restart. Looking up a list that is already loaded is a single {@link ConcurrentHashMap#get(Object)}.
+ * <p>
+ * At most {@code max-lists} lists are kept in memory, creating or loading another one fails with a
+ * {@link TooManyListsException}. Journaled lists that were not used for {@code idle-timeout-seconds} are evicted
+ * from memory, their journal closed, and loaded again by their next use; lists that are not journaled cannot be
+ * recovered, and are kept.
+ * <p>
+ * The lists are returned as handles that look the list up again for each operation, and count the operations in
+ * progress: a list is only evicted while none is, and a handle kept across an eviction loads the list again. A list
+ * is evicted under the lock of its map entry, which also guards its loading, so its journal is closed before it can
+ * be opened again.
+ * <p>
+ * The number of lists in memory is published as the {@value #LISTS} gauge.
+ */
+@Service
+public class TodoListPartitions {
+
+    static final String LISTS = "todolist.lists";
+
+    /**
+     * List ids are used as directory names by the journals, so they are restricted to a safe subset.
+     */
+    public static final String LIST_ID_REGEX = "[A-Za-z0-9_-]{1,64}";
+
+    private static final Pattern LIST_ID = Pattern.compile(LIST_ID_REGEX);
+
+    private final ConcurrentMap<String, Partition> partitions = new ConcurrentHashMap<>();
+
+    private final TodoListJournalFactory journals;
+
+    private final int maxLists;
+
+    private final long idleTimeoutNanos;
+
+    private final ScheduledExecutorService evictor;
+
+    public TodoListPartitions(TodoListJournalFactory journals, MeterRegistry registry) {
+        this(journals, registry, 10000, 600);
+    }
+
+    @Autowired
+    public TodoListPartitions(TodoListJournalFactory journals, MeterRegistry registry,
+            @Value("${todolist.lists.max-lists:10000}") int maxLists,
+            @Value("${todolist.lists.idle-timeout-seconds:600}") long idleTimeoutSeconds) {
+        this(journals, registry, maxLists, idleTimeoutSeconds, TimeUnit.SECONDS);
+    }
+
+    TodoListPartitions(TodoListJournalFactory journals, MeterRegistry registry, int maxLists, long idleTimeout,
+            TimeUnit unit) {
+        this.journals = journals;
+        this.maxLists = maxLists;
+        this.idleTimeoutNanos = unit.toNanos(idleTimeout);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "todolist-lists-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long evictionPeriodMillis = Math.max(1, unit.toMillis(idleTimeout));
+        evictor.scheduleWithFixedDelay(this::evictIdleLists, evictionPeriodMillis, evictionPeriodMillis,
+                TimeUnit.MILLISECONDS);
+        Gauge.builder(LISTS, partitions, ConcurrentMap::size)
+                .description("Number of partitioned Todo lists in memory")
+                .register(registry);
+    }
+
+    /**
+     * Returns the list of the given id, if it was ever written to. Unlike {@link #getOrCreate(String)}, reads of
+     * unknown lists do not create them.
+     *
+     * @throws TooManyListsException if the list has to be loaded, and {@code max-lists} lists are already in memory
+     */
+    public Optional<TodoListService> find(String listId) {
+        Partition partition = partitions.get(checkListId(listId));
+        if (partition == null && journals.exists(listId)) {
+            partition = load(listId);
+        }
+        return partition == null ? Optional.empty() : Optional.of(partition.handle);
+    }
+
+    /**
+     * Returns the list of the given id, created empty if needed.
+     *
+     * @throws TooManyListsException if the list has to be created or loaded, and {@code max-lists} lists are already
+     *         in memory
+     */
+    public TodoListService getOrCreate(String listId) {
+        Partition partition = partitions.get(checkListId(listId));
+        return (partition == null ? load(listId) : partition).handle;
+    }
+
+    /**
+     * Evicts the journaled lists that were not used for the idle timeout, and are not in use, closing their journal.
+     */
+    void evictIdleLists() {
+        long now = System.nanoTime();
+        partitions.forEach((listId, partition) -> {
+            if (now - partition.lastUsed > idleTimeoutNanos && journals.exists(listId)) {
+                partitions.computeIfPresent(listId,
+                        (id, current) -> current == partition && partition.evict() ? null : current);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        evictor.shutdown();
+        partitions.values().forEach(partition -> partition.journal.close());
+    }
+
+    private Partition load(String listId) {
+        if (partitions.size() >= maxLists) {
+            evictIdleLists();
+        }
+        // computeIfAbsent locks the entry, so that a list is never recovered twice from its journal, nor while it is
+        // being evicted
+        return partitions.computeIfAbsent(listId, id -> {
+            if (partitions.size() >= maxLists) {
+                throw new TooManyListsException(maxLists);
+            }
+            TodoListJournal journal = journals.open(id);
+            return new Partition(new ConcurrentTodoListServiceImpl(journal), journal, new ListHandle(id));
+        });
+    }
+
+    /**
+     * Runs an operation on the list of the given id, loading it again if it was evicted, and keeps it from being
+     * evicted meanwhile.
+     */
+    private <T> T call(String listId, Function<TodoListService, T> operation) {
+        while (true) {
+            Partition partition = partitions.get(listId);
+            if (partition == null) {
+                partition = load(listId);
+            }
+            if (partition.acquire()) {
+                try {
+                    return operation.apply(partition.service);
+                } finally {
+                    partition.release();
+                }
+            }
+            // evicted since it was looked up
+        }
+    }
+
+    private static String checkListId(String listId) {
+        if (listId == null || !LIST_ID.matcher(listId).matches()) {
+            throw new IllegalArgumentException("Invalid list id " + listId);
+        }
+        return listId;
+    }
+
+    private static final class Partition {
+
+        private static final int EVICTED = -1;
+
+        private final TodoListService service;
+
+        private final TodoListJournal journal;
+
+        private final TodoListService handle;
+
+        // number of operations in progress, or EVICTED
+        private final AtomicInteger users = new AtomicInteger();
+
+        private volatile long lastUsed = System.nanoTime();
+
+        private Partition(TodoListService service, TodoListJournal journal, TodoListService handle) {
+            this.service = service;
+            this.journal = journal;
+            this.handle = handle;
+        }
+
+        /**
+         * Registers an operation in progress, unless the list was evicted.
+         */
+        private boolean acquire() {
+            int current;
+            do {
+                current = users.get();
+                if (current == EVICTED) {
+                    return false;
+                }
+            } while (!users.compareAndSet(current, current + 1));
+            lastUsed = System.nanoTime();
+            return true;
+        }
+
+        private void release() {
+            lastUsed = System.nanoTime();
+            users.decrementAndGet();
+        }
+
+        /**
+         * Closes the journal unless an operation is in progress. Must be called under the lock of the map entry.
+         */
+        private boolean evict() {
+            if (!users.compareAndSet(0, EVICTED)) {
+                return false;
+            }
+            journal.close();
+            return true;
+        }
+    }
+
+    /**
+     * The list of an id, as returned to the callers: each operation is run on the list currently in memory.
+     * Listeners are registered with the list in memory, and are not registered again if it is evicted.
+     */
+    private final class ListHandle implements TodoListService {
+
+        private final String listId;
+
+        private ListHandle(String listId) {
+            this.listId = listId;
+        }
+
+        @Override
+        public List<TodoItem> retrieveAllItems() {
+            return call(listId, TodoListService::retrieveAllItems);
+        }
+
+        @Override
+        public VersionedItems retrieveAllItemsWithVersion() {
+            return call(listId, TodoListService::retrieveAllItemsWithVersion);
+        }
+
+        @Override
+        public List<TodoItem> retrieveItems(long afterId, int limit) {
+            return call(listId, list -> list.retrieveItems(afterId, limit));
+        }
+
+        @Override
+        public long countItems() {
+            return call(listId, TodoListService::countItems);
+        }
+
+        @Override
+        public long getVersion() {
+            return call(listId, TodoListService::getVersion);
+        }
+
+        @Override
+        public void addListener(TodoListListener listener) {
+            call(listId, list -> {
+                list.addListener(listener);
+                return null;
+            });
+        }
+
+        @Override
+        public Optional<TodoItem> findItemById(Long id) {
+            return call(listId, list -> list.findItemById(id));
+        }
+
+        @Override
+        public boolean exists(TodoItem item) {
+            return call(listId, list -> list.exists(item));
+        }
+
+        @Override
+        public TodoItem create(TodoItem item) {
+            return call(listId, list -> list.create(item));
+        }
+
+        @Override
+        public Optional<TodoItem> createIfAbsent(TodoItem item) {
+            return call(listId, list -> list.createIfAbsent(item));
+        }
+
+        @Override
+        public boolean updateItem(Long id, TodoItem currentItem) {
+            return call(listId, list -> list.updateItem(id, currentItem));
+        }
+
+        @Override
+        public boolean deleteItemById(Long id) {
+            return call(listId, list -> list.deleteItemById(id));
+        }
+
+        @Override
+        public WriteOutcome compareAndUpdate(Long id, long expectedVersion, TodoItem updatedItem) {
+            return call(listId, list -> list.compareAndUpdate(id, expectedVersion, updatedItem));
+        }
+
+        @Override
+        public WriteOutcome compareAndDelete(Long id, long expectedVersion) {
+            return call(listId, list -> list.compareAndDelete(id, expectedVersion));
+        }
+
+        @Override
+        public void deleteAllItems() {
+            call(listId, list -> {
+                list.deleteAllItems();
+                return null;
+            });
+        }
+
+        @Override
+        public List<Optional<TodoItem>> createItemsIfAbsent(List<TodoItem> items) {
+            return call(listId, list -> list.createItemsIfAbsent(items));
+        }
+
+        @Override
+        public List<WriteOutcome> updateItems(List<TodoItem> items) {
+            return call(listId, list -> list.updateItems(items));
+        }
+
+        @Override
+        public List<Boolean> deleteItemsById(List<Long> ids) {
+            return call(listId, list -> list.deleteItemsById(ids));
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package ch.ricardo.screening.todolist.service;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import ch.ricardo.screening.todolist.model.TodoItem;
 
@@ -9,15 +11,115 @@ public interface TodoListService {
 
     List<TodoItem> retrieveAllItems();
 
+    /**
+     * All the items together with the version of the list they reflect, read atomically: unlike a version read before
+     * the items, no write can happen in between. The items are copied while writes wait, except by the storages that
+     * do not hold the list on the heap: they read the version first, then the items page by page, which are then at
+     * least as recent as the version.
+     */
+    VersionedItems retrieveAllItemsWithVersion();
+
+    /**
+     * Keyset pagination over the items, in id order.
+     *
+     * @param afterId only items with a greater id are returned, use 0 to start from the first item
+     * @param limit maximum number of items to return
+     */
+    List<TodoItem> retrieveItems(long afterId, int limit);
+
+    /**
+     * Number of items of the list, cheap enough to be polled by monitoring.
+     */
+    long countItems();
+
+    /**
+     * Version of the whole list, increased by every write. A reader that gets the version before reading items is
+     * guaranteed that the items are at least as recent as that version.
+     */
+    long getVersion();
+
+    /**
+     * Registers a listener of the changes of the list, see {@link TodoListListener}.
+     */
+    void addListener(TodoListListener listener);
+
     Optional<TodoItem> findItemById(Long id);
 
     boolean exists(TodoItem item);
 
     TodoItem create(TodoItem item);
 
+    /**
+     * Atomically creates a new item unless another item already has the same content.
+     *
+     * @return the created item, or an empty optional if the content is already taken
+     */
+    Optional<TodoItem> createIfAbsent(TodoItem item);
+
     boolean updateItem(Long id, TodoItem currentItem);
 
+    /**
+     * Updates the content of an item, telling a missing item from a content taken by another item atomically, unlike
+     * {@link #updateItem(Long, TodoItem)} followed by a lookup.
+     *
+     * @return {@link WriteOutcome#NOT_FOUND}, {@link WriteOutcome#CONFLICT} or {@link WriteOutcome#APPLIED}
+     */
+    default WriteOutcome update(Long id, TodoItem item) {
+        return updateItems(Collections.singletonList(item.withMetadata(id, null, null, 0))).get(0);
+    }
+
     boolean deleteItemById(Long id);
 
+    /**
+     * Updates the content of an item only if it still has the expected version. The version is checked and the item
+     * written atomically, so a client that read the item cannot overwrite a change made since (optimistic
+     * concurrency): it gets {@link WriteOutcome#STALE} and may read the item again.
+     *
+     * @param expectedVersion version of the item as read by the client, see {@link TodoItem#getVersion()}
+     * @return {@link WriteOutcome#NOT_FOUND}, {@link WriteOutcome#STALE}, {@link WriteOutcome#CONFLICT} if the
+     * content is taken by another item, or {@link WriteOutcome#APPLIED}
+     */
+    WriteOutcome compareAndUpdate(Long id, long expectedVersion, TodoItem updatedItem);
+
+    /**
+     * Deletes an item only if it still has the expected version, atomically.
+     *
+     * @return {@link WriteOutcome#NOT_FOUND}, {@link WriteOutcome#STALE} or {@link WriteOutcome#APPLIED}
+     */
+    WriteOutcome compareAndDelete(Long id, long expectedVersion);
+
     void deleteAllItems();
+
+    /**
+     * Creates each item unless its content is already taken, by an existing item or by a previous item of the batch.
+     * Implementations apply the whole batch at once, e.g. under a single lock acquisition.
+     *
+     * @return for each item, in order, the created item or an empty optional
+     */
+    default List<Optional<TodoItem>> createItemsIfAbsent(List<TodoItem> items) {
+        return items.stream().map(this::createIfAbsent).collect(Collectors.toList());
+    }
+
+    /**
+     * Updates the content of each item, identified by the id of the given item.
+     *
+     * @return for each item, in order, the outcome of its update
+     */
+    default List<WriteOutcome> updateItems(List<TodoItem> items) {
+        return items.stream().map(item -> {
+            if (updateItem(item.getId(), item)) {
+                return WriteOutcome.APPLIED;
+            }
+            return findItemById(item.getId()).isPresent() ? WriteOutcome.CONFLICT : WriteOutcome.NOT_FOUND;
+        }).collect(Collectors.toList());
+    }
+
+    /**
+     * Deletes each item of the given ids.
+     *
+     * @return for each id, in order, whether an item was deleted
+     */
+    default List<Boolean> deleteItemsById(List<Long> ids) {
+        return ids.stream().map(this::deleteItemById).collect(Collectors.toList());
+    }
 }
@@ -1,29 +1,103 @@
 package ch.ricardo.screening.todolist.service;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.model.TodoListEvent;
+import ch.ricardo.screening.todolist.persistence.IdBlockStore;
 
+/**
+ * The original implementation, on a list scanned by each operation.
+ * <p>
+ * Writes are serialized on a single monitor, so that an item found by a scan is still at the same index when it is
+ * replaced or removed, and so that the version of an item can be compared and set atomically. The list is copied on
+ * write: each write publishes a new unmodifiable list, so reads never lock and never see a list being modified, and
+ * the list returned by {@link #retrieveAllItems()} is a consistent snapshot. A write copies the list, which costs no
+ * more than the scan it already does.
+ */
 @Service("todolistService")
+@ConditionalOnProperty(name = "todolist.storage", havingValue = "list")
 public class TodoListServiceImpl implements TodoListService {
 
-    private static final AtomicLong counter = new AtomicLong();
+    private final AtomicLong version = new AtomicLong();
 
-    private static List<TodoItem> items = new ArrayList<TodoItem>();
+    // replaced, never modified, by the writes
+    private volatile List<TodoItem> items = Collections.emptyList();
+
+    private final Object writeLock = new Object();
+
+    private final List<TodoListListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final IdAllocator ids;
+
+    public TodoListServiceImpl() {
+        this(new IdAllocator());
+    }
+
+    @Autowired
+    public TodoListServiceImpl(IdBlockStore idBlockStore, @Value("${todolist.ids.block-size:64}") int idBlockSize) {
+        this(new IdAllocator(idBlockSize, idBlockStore));
+    }
+
+    public TodoListServiceImpl(IdAllocator ids) {
+        this.ids = ids;
+    }
 
     @Override
     public List<TodoItem> retrieveAllItems() {
         return items;
     }
 
+    @Override
+    public VersionedItems retrieveAllItemsWithVersion() {
+        synchronized (writeLock) {
+            return new VersionedItems(version.get(), items);
+        }
+    }
+
+    @Override
+    public List<TodoItem> retrieveItems(long afterId, int limit) {
+        List<TodoItem> items = this.items;
+        int from = indexAfter(items, afterId);
+        return items.subList(from, (int) Math.min(items.size(), (long) from + limit));
+    }
+
+    @Override
+    public long countItems() {
+        return items.size();
+    }
+
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public void addListener(TodoListListener listener) {
+        synchronized (writeLock) {
+            listener.onItems(version.get(), items);
+            listeners.add(listener);
+        }
+    }
+
     @Override
     public Optional<TodoItem> findItemById(Long id) {
-        return items.stream().filter(item -> item.getId().equals(id)).findFirst();
+        List<TodoItem> items = this.items;
+        int index = indexOf(items, id);
+        return index < 0 ? Optional.empty() : Optional.of(items.get(index));
     }
 
     @Override
@@ -33,36 +107,199 @@ public class TodoListServiceImpl implements TodoListService {
 
     @Override
     public TodoItem create(TodoItem item) {
-        TodoItem createdItem = new TodoItem(counter.incrementAndGet(), item.getContent());
-        items.add(createdItem);
-        return createdItem;
+        synchronized (writeLock) {
+            Instant now = Instant.ofEpochMilli(System.currentTimeMillis());
+            TodoItem createdItem = item.withMetadata(ids.next(), now, now, version.incrementAndGet());
+            List<TodoItem> newItems = new ArrayList<>(items.size() + 1);
+            newItems.addAll(items);
+            newItems.add(createdItem);
+            items = Collections.unmodifiableList(newItems);
+            notifyListeners(TodoListEvent.created(createdItem.getVersion(), createdItem));
+            return createdItem;
+        }
+    }
+
+    @Override
+    public Optional<TodoItem> createIfAbsent(TodoItem item) {
+        synchronized (writeLock) {
+            return exists(item) ? Optional.empty() : Optional.of(create(item));
+        }
+    }
+
+    /**
+     * Creates the whole batch with a single copy of the list, from a single range of ids reserved for the batch.
+     */
+    @Override
+    public List<Optional<TodoItem>> createItemsIfAbsent(List<TodoItem> batch) {
+        synchronized (writeLock) {
+            Set<String> contents = items.stream().map(TodoItem::getContent).collect(Collectors.toSet());
+            List<Boolean> absent = new ArrayList<>(batch.size());
+            int count = 0;
+            for (TodoItem item : batch) {
+                boolean isAbsent = contents.add(item.getContent());
+                absent.add(isAbsent);
+                count += isAbsent ? 1 : 0;
+            }
+            List<Optional<TodoItem>> createdItems = new ArrayList<>(batch.size());
+            if (count == 0) {
+                batch.forEach(item -> createdItems.add(Optional.empty()));
+                return createdItems;
+            }
+            long id = ids.reserve(count);
+            Instant now = Instant.ofEpochMilli(System.currentTimeMillis());
+            List<TodoItem> newItems = new ArrayList<>(items.size() + count);
+            newItems.addAll(items);
+            List<TodoItem> created = new ArrayList<>(count);
+            for (int i = 0; i < batch.size(); i++) {
+                if (absent.get(i)) {
+                    TodoItem createdItem = batch.get(i).withMetadata(id++, now, now, version.incrementAndGet());
+                    newItems.add(createdItem);
+                    created.add(createdItem);
+                    createdItems.add(Optional.of(createdItem));
+                } else {
+                    createdItems.add(Optional.empty());
+                }
+            }
+            items = Collections.unmodifiableList(newItems);
+            for (TodoItem createdItem : created) {
+                notifyListeners(TodoListEvent.created(createdItem.getVersion(), createdItem));
+            }
+            return createdItems;
+        }
     }
 
     @Override
     public boolean updateItem(Long id, TodoItem updatedItem) {
-        if (updatedItem == null) {
-            return false;
-        } else {
-            Optional<TodoItem> item = findItemById(id);
-            item.ifPresent(originalItem -> {
-                int index = items.indexOf(originalItem);
-                // I want to keep my todoItems immutable, so i'm replacing the item by a new one instead of mutating it
-                items.set(index, new TodoItem(id, updatedItem.getContent()));
-            });
-            return item.isPresent();
+        return updatedItem != null && update(id, updatedItem) == WriteOutcome.APPLIED;
+    }
+
+    @Override
+    public WriteOutcome update(Long id, TodoItem updatedItem) {
+        synchronized (writeLock) {
+            int index = indexOf(id);
+            if (index < 0) {
+                return WriteOutcome.NOT_FOUND;
+            } else if (isClaimedByAnotherItem(updatedItem.getContent(), id)) {
+                return WriteOutcome.CONFLICT;
+            }
+            replace(index, updatedItem);
+            return WriteOutcome.APPLIED;
+        }
+    }
+
+    @Override
+    public WriteOutcome compareAndUpdate(Long id, long expectedVersion, TodoItem updatedItem) {
+        synchronized (writeLock) {
+            int index = indexOf(id);
+            if (index < 0) {
+                return WriteOutcome.NOT_FOUND;
+            } else if (items.get(index).getVersion() != expectedVersion) {
+                return WriteOutcome.STALE;
+            } else if (isClaimedByAnotherItem(updatedItem.getContent(), id)) {
+                return WriteOutcome.CONFLICT;
+            }
+            replace(index, updatedItem);
+            return WriteOutcome.APPLIED;
         }
     }
 
     @Override
     public boolean deleteItemById(Long id) {
-        return items.removeIf(item -> item.getId().equals(id));
+        synchronized (writeLock) {
+            int index = indexOf(id);
+            if (index < 0) {
+                return false;
+            }
+            remove(index);
+            return true;
+        }
+    }
+
+    @Override
+    public WriteOutcome compareAndDelete(Long id, long expectedVersion) {
+        synchronized (writeLock) {
+            int index = indexOf(id);
+            if (index < 0) {
+                return WriteOutcome.NOT_FOUND;
+            } else if (items.get(index).getVersion() != expectedVersion) {
+                return WriteOutcome.STALE;
+            }
+            remove(index);
+            return WriteOutcome.APPLIED;
+        }
     }
 
     @Override
     public void deleteAllItems() {
-        items.clear();
-        // reset counter
-        counter.set(0);
+        synchronized (writeLock) {
+            // ids are not reset, so that an id never designates two different items
+            items = Collections.emptyList();
+            notifyListeners(TodoListEvent.allDeleted(version.incrementAndGet()));
+        }
+    }
+
+    private int indexOf(Long id) {
+        return indexOf(items, id);
+    }
+
+    private static int indexOf(List<TodoItem> items, Long id) {
+        if (id == null) {
+            return -1;
+        }
+        int index = indexAfter(items, id - 1);
+        return index < items.size() && items.get(index).getId().equals(id) ? index : -1;
+    }
+
+    /**
+     * Returns the index of the first item with an id greater than the given one: ids are reserved under the write
+     * lock and items are appended, so the list is sorted by id.
+     */
+    private static int indexAfter(List<TodoItem> items, long afterId) {
+        int low = 0;
+        int high = items.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (items.get(middle).getId() <= afterId) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Must be called with the write lock held.
+     */
+    private void replace(int index, TodoItem updatedItem) {
+        // I want to keep my todoItems immutable, so i'm replacing the item by a new one instead of mutating it
+        TodoItem item = items.get(index);
+        TodoItem newItem = updatedItem.withMetadata(item.getId(), item.getCreated(),
+                Instant.ofEpochMilli(System.currentTimeMillis()), version.incrementAndGet());
+        List<TodoItem> newItems = new ArrayList<>(items);
+        newItems.set(index, newItem);
+        items = Collections.unmodifiableList(newItems);
+        notifyListeners(TodoListEvent.updated(newItem.getVersion(), newItem));
+    }
+
+    /**
+     * Must be called with the write lock held.
+     */
+    private void remove(int index) {
+        List<TodoItem> newItems = new ArrayList<>(items);
+        Long id = newItems.remove(index).getId();
+        items = Collections.unmodifiableList(newItems);
+        notifyListeners(TodoListEvent.deleted(version.incrementAndGet(), id));
+    }
+
+    private void notifyListeners(TodoListEvent event) {
+        for (TodoListListener listener : listeners) {
+            listener.onEvent(event);
+        }
+    }
+
+    private boolean isClaimedByAnotherItem(String content, Long id) {
+        return findItemByContent(content).filter(item -> !item.getId().equals(id)).isPresent();
     }
 
     private Optional<TodoItem> findItemByContent(String content) {
@@ -0,0 +1,13 @@
+package ch.ricardo.screening.todolist.service;
+
+/**
+ * Thrown when a partitioned list has to be created or loaded while the maximum number of lists is already in memory.
+ */
+public class TooManyListsException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public TooManyListsException(int maxLists) {
+        super("Unable to create or load another list, " + maxLists + " lists are already in memory");
+    }
+}
@@ -0,0 +1,28 @@
+package ch.ricardo.screening.todolist.service;
+
+import java.util.List;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+
+/**
+ * All the items of the list, exactly as of a version of the list.
+ */
+public class VersionedItems {
+
+    private final long version;
+
+    private final List<TodoItem> items;
+
+    public VersionedItems(long version, List<TodoItem> items) {
+        this.version = version;
+        this.items = items;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<TodoItem> getItems() {
+        return items;
+    }
+}
@@ -0,0 +1,24 @@
+package ch.ricardo.screening.todolist.service;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+
+/**
+ * Outcome of a write on an existing item.
+ */
+public enum WriteOutcome {
+
+    APPLIED,
+
+    NOT_FOUND,
+
+    /**
+     * The write would have given the item the content of another item.
+     */
+    CONFLICT,
+
+    /**
+     * The item was written since the version the write expected, see
+     * {@link TodoListService#compareAndUpdate(Long, long, TodoItem)}.
+     */
+    STALE
+}
@@ -0,0 +1,166 @@
+package ch.ricardo.screening.todolist.storage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Least recently used cache of item contents, keyed by item id, bounded by the memory taken by the contents.
+ * <p>
+ * The cache is split in segments by id, each a {@link LinkedHashMap} in access order guarded by its own monitor, so
+ * that readers of different items rarely wait for each other. Each segment evicts its least recently used contents
+ * once they take more than its share of the maximum size. The size of an entry is estimated from the length of its
+ * content, 2 bytes per char plus the overhead of the entry, the key and the string.
+ * <p>
+ * {@link #get(long)} counts hits and misses, {@link #peek(long)} does not: it is meant for scans, which should not
+ * weigh in the hit ratio of point reads.
+ */
+public class ContentCache {
+
+    static final int ENTRY_OVERHEAD = 112;
+
+    private final Segment[] segments;
+
+    private final long maxSegmentSize;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize maximum size of the cached contents, in bytes
+     * @param segmentCount number of segments, rounded up to a power of 2
+     */
+    public ContentCache(long maxSize, int segmentCount) {
+        int count = segmentCount <= 1 ? 1 : Integer.highestOneBit((segmentCount - 1) << 1);
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment();
+        }
+        this.maxSegmentSize = maxSize / count;
+    }
+
+    /**
+     * Returns the cached content of an item, or null if it is not cached.
+     */
+    public String get(long id) {
+        String content = peek(id);
+        (content == null ? misses : hits).increment();
+        return content;
+    }
+
+    /**
+     * Same as {@link #get(long)}, without counting a hit or a miss.
+     */
+    public String peek(long id) {
+        Segment segment = segmentOf(id);
+        synchronized (segment) {
+            return segment.get(id);
+        }
+    }
+
+    /**
+     * Caches the content of an item, in place of its previous content. Contents larger than a segment are not
+     * cached.
+     */
+    public void put(long id, String content) {
+        long size = sizeOf(content);
+        Segment segment = segmentOf(id);
+        synchronized (segment) {
+            String previous = size > maxSegmentSize ? segment.remove(id) : segment.put(id, content);
+            if (previous != null) {
+                segment.bytes -= sizeOf(previous);
+            }
+            if (size > maxSegmentSize) {
+                return;
+            }
+            segment.bytes += size;
+            Iterator<String> leastRecentlyUsed = segment.values().iterator();
+            while (segment.bytes > maxSegmentSize) {
+                segment.bytes -= sizeOf(leastRecentlyUsed.next());
+                leastRecentlyUsed.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    public void remove(long id) {
+        Segment segment = segmentOf(id);
+        synchronized (segment) {
+            String previous = segment.remove(id);
+            if (previous != null) {
+                segment.bytes -= sizeOf(previous);
+            }
+        }
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+                segment.bytes = 0;
+            }
+        }
+    }
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Number of cached contents.
+     */
+    public long count() {
+        long count = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                count += segment.size();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Estimated size of the cached contents, in bytes.
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.bytes;
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentOf(long id) {
+        // consecutive ids go to consecutive segments
+        return segments[(int) id & (segments.length - 1)];
+    }
+
+    private static long sizeOf(String content) {
+        return ENTRY_OVERHEAD + 2L * content.length();
+    }
+
+    private static final class Segment extends LinkedHashMap<Long, String> {
+
+        private static final long serialVersionUID = 1L;
+
+        // guarded by the segment monitor
+        private long bytes;
+
+        Segment() {
+            super(16, 0.75f, true);
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package ch.ricardo.screening.todolist.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Todo item records appended to a file, and read back with positional reads: unlike {@link MappedItemStore}, contents
+ * are neither on the Java heap nor mapped in the address space of the process, only the page cache of the OS holds
+ * them.
+ * <p>
+ * The file starts with a {@value #FILE_HEADER_SIZE} bytes header (magic number and format version), followed by the
+ * records:
+ * <pre>
+ *  0  long  item id
+ *  8  long  64-bit hash of the content, 0 for a null content
+ * 16  int   length of the content, -1 for a null content, -2 for the deletion of the item
+ * 20  long  version of the list once the record was written
+ * 28  int   CRC32 of the record, this field excluded
+ * 32        attributes of the item, see {@link ItemAttributes}, zeros for a deletion
+ * 64        UTF-8 content
+ * </pre>
+ * Records are only appended: an update appends a new record for the item and a delete appends a deletion record, the
+ * last record of an item being the one that counts when the file is read back. The records written over are dropped
+ * by {@link #compact(LiveRecords)}, which rewrites the live ones to a new file and renames it over the old one.
+ * <p>
+ * Every record is checked against its CRC when read. Records are appended in order, so only the last ones can be torn
+ * by a crash: the invalid records that end the file are dropped when it is scanned, and overwritten by the next
+ * appends, while an invalid record followed by valid ones fails the scan rather than lose them.
+ * <p>
+ * Appends reach the disk when the OS writes them back, or when {@link #force()} is called.
+ * <p>
+ * Reads are thread-safe, appends, {@link #force()} and {@link #compact(LiveRecords)} must be serialized by the caller,
+ * and compactions with the reads.
+ */
+public class FileItemStore implements AutoCloseable {
+
+    public static final int NULL_CONTENT = -1;
+
+    public static final int DELETED = -2;
+
+    static final int FILE_HEADER_SIZE = 8;
+
+    private static final int MAGIC = 0x54444F46;
+
+    private static final int VERSION = 3;
+
+    private static final int LENGTH_OFFSET = 16;
+
+    private static final int VERSION_OFFSET = 20;
+
+    private static final int CRC_OFFSET = 28;
+
+    private static final int ATTRIBUTES_OFFSET = 32;
+
+    private static final int RECORD_HEADER_SIZE = ATTRIBUTES_OFFSET + ItemAttributes.SIZE;
+
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+
+    private FileChannel channel;
+
+    private long writePosition;
+
+    /**
+     * Opens the store, creating the file if needed.
+     */
+    public FileItemStore(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.file = file;
+        // left by a compaction that did not complete
+        Files.deleteIfExists(compactionFile());
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            write(fileHeader(), 0);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            read(header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Not a Todo item store: " + file);
+            }
+        }
+        this.writePosition = channel.size();
+    }
+
+    /**
+     * Size of a record with a content of the given length, {@link #NULL_CONTENT} or {@link #DELETED}.
+     */
+    public static int recordSize(int length) {
+        return RECORD_HEADER_SIZE + Math.max(length, 0);
+    }
+
+    /**
+     * Appends the record of an item.
+     *
+     * @param version version of the list once the item is written
+     * @return the offset of the record
+     */
+    public long append(long id, long hash, byte[] content, ItemAttributes attributes, long version)
+            throws IOException {
+        int length = content == null ? NULL_CONTENT : content.length;
+        ByteBuffer record = ByteBuffer.allocate(recordSize(length));
+        record.putLong(id).putLong(hash).putInt(length).putLong(version);
+        attributes.write(record, ATTRIBUTES_OFFSET);
+        if (content != null) {
+            record.position(RECORD_HEADER_SIZE);
+            record.put(content);
+        }
+        return append(record, length);
+    }
+
+    /**
+     * Appends the record of the deletion of an item.
+     *
+     * @param version version of the list once the item is deleted
+     */
+    public void appendDeletion(long id, long version) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        record.putLong(id).putLong(0).putInt(DELETED).putLong(version);
+        append(record, DELETED);
+    }
+
+    /**
+     * Reads the content of the record at the given offset.
+     *
+     * @return the UTF-8 content, or null for a null content
+     */
+    public byte[] content(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        read(header, offset);
+        int length = header.getInt(LENGTH_OFFSET);
+        byte[] content = new byte[Math.max(length, 0)];
+        read(ByteBuffer.wrap(content), offset + RECORD_HEADER_SIZE);
+        if (crc(header.array(), content, 0, content.length) != header.getInt(CRC_OFFSET)) {
+            throw new IOException("Corrupt record at offset " + offset + " of " + file);
+        }
+        return length < 0 ? null : content;
+    }
+
+    /**
+     * Calls the given visitor with every valid record but its content, in file order. The contents are read as well,
+     * sequentially, to check the records. Invalid records at the end of the file are dropped, and overwritten by the
+     * next append.
+     *
+     * @throws IOException when an invalid record is followed by valid ones
+     */
+    public void forEachRecord(RecordVisitor visitor) throws IOException {
+        writePosition = scan((offset, header, content, length) -> visitor.visit(offset, header.getLong(0),
+                header.getLong(Long.BYTES), length, header.getLong(VERSION_OFFSET),
+                length == DELETED ? null : ItemAttributes.read(header, ATTRIBUTES_OFFSET)));
+    }
+
+    /**
+     * Rewrites the file with its live records only, and a deletion record keeping the highest id and version seen
+     * from being handed out again. The records are copied to a new file, forced to disk and renamed over the file, so
+     * a crash leaves either file complete. Offsets change: the caller reads them back with
+     * {@link #forEachRecord(RecordVisitor)}.
+     */
+    public void compact(LiveRecords live) throws IOException {
+        Path compactionFile = compactionFile();
+        try (FileChannel target = FileChannel.open(compactionFile, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            // not closed: the channel is closed by the try block
+            OutputStream output = new BufferedOutputStream(Channels.newOutputStream(target), SCAN_BUFFER_SIZE);
+            output.write(fileHeader().array());
+            Compaction compaction = new Compaction(live, output);
+            scan(compaction);
+            compaction.finish();
+            output.flush();
+            target.force(true);
+        }
+        Files.move(compactionFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        channel.close();
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        writePosition = channel.size();
+    }
+
+    /**
+     * Size of the file, in bytes.
+     */
+    public long size() {
+        return writePosition;
+    }
+
+    /**
+     * Drops all the records.
+     */
+    public void clear() throws IOException {
+        channel.truncate(FILE_HEADER_SIZE);
+        writePosition = FILE_HEADER_SIZE;
+    }
+
+    /**
+     * Forces the records appended so far to disk.
+     */
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.force(false);
+        channel.close();
+    }
+
+    private long append(ByteBuffer record, int length) throws IOException {
+        record.putInt(CRC_OFFSET, crc(record.array(), record.array(), RECORD_HEADER_SIZE, Math.max(length, 0)));
+        record.clear();
+        long offset = writePosition;
+        write(record, offset);
+        writePosition += record.limit();
+        return offset;
+    }
+
+    /**
+     * Reads the records sequentially, calling the scanner with the valid ones.
+     *
+     * @return the end of the last valid record
+     */
+    private long scan(RecordScanner scanner) throws IOException {
+        long end = channel.size();
+        channel.position(FILE_HEADER_SIZE);
+        // not closed: closing the stream would close the channel
+        DataInputStream records = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel),
+                SCAN_BUFFER_SIZE));
+        byte[] header = new byte[RECORD_HEADER_SIZE];
+        byte[] content = new byte[0];
+        long offset = FILE_HEADER_SIZE;
+        long invalidOffset = -1;
+        try {
+            while (offset < end) {
+                records.readFully(header);
+                ByteBuffer fields = ByteBuffer.wrap(header);
+                int length = fields.getInt(LENGTH_OFFSET);
+                if (length < DELETED || length > end - offset - RECORD_HEADER_SIZE) {
+                    // the end of the record is unknown, so is the start of the next one
+                    break;
+                }
+                if (length > content.length) {
+                    content = new byte[length];
+                }
+                records.readFully(content, 0, Math.max(length, 0));
+                boolean valid = crc(header, content, 0, Math.max(length, 0)) == fields.getInt(CRC_OFFSET);
+                if (valid && invalidOffset >= 0) {
+                    throw new IOException("Corrupt record at offset " + invalidOffset + " of " + file);
+                } else if (valid) {
+                    scanner.scan(offset, fields, content, length);
+                } else if (invalidOffset < 0) {
+                    invalidOffset = offset;
+                }
+                offset += recordSize(length);
+            }
+        } catch (EOFException e) {
+            // incomplete last record
+        }
+        return invalidOffset >= 0 ? invalidOffset : offset;
+    }
+
+    private Path compactionFile() {
+        return file.resolveSibling(file.getFileName() + ".compacting");
+    }
+
+    private static ByteBuffer fileHeader() {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION);
+        header.flip();
+        return header;
+    }
+
+    private static int crc(byte[] header, byte[] content, int contentOffset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(header, 0, CRC_OFFSET);
+        crc.update(header, CRC_OFFSET + Integer.BYTES, RECORD_HEADER_SIZE - CRC_OFFSET - Integer.BYTES);
+        crc.update(content, contentOffset, length);
+        return (int) crc.getValue();
+    }
+
+    private void write(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private void read(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Record at " + position + " is beyond the end of the item store");
+            }
+            position += read;
+        }
+    }
+
+    public interface RecordVisitor {
+
+        /**
+         * @param length length of the content, {@link #NULL_CONTENT} or {@link #DELETED}
+         * @param version version of the list once the record was written
+         * @param attributes attributes of the item, null for a deletion
+         */
+        void visit(long offset, long id, long hash, int length, long version, ItemAttributes attributes);
+    }
+
+    public interface LiveRecords {
+
+        /**
+         * Whether the record of an item at the given offset is the one that counts.
+         */
+        boolean isLive(long id, long offset);
+    }
+
+    private interface RecordScanner {
+
+        void scan(long offset, ByteBuffer header, byte[] content, int length) throws IOException;
+    }
+
+    /**
+     * Copies the live records, as is, and keeps track of the highest id and version.
+     */
+    private final class Compaction implements RecordScanner {
+
+        private final LiveRecords live;
+
+        private final OutputStream output;
+
+        private long lastId;
+
+        private long lastLiveId;
+
+        private long lastVersion;
+
+        Compaction(LiveRecords live, OutputStream output) {
+            this.live = live;
+            this.output = output;
+        }
+
+        @Override
+        public void scan(long offset, ByteBuffer header, byte[] content, int length) throws IOException {
+            long id = header.getLong(0);
+            lastId = Math.max(lastId, id);
+            lastVersion = Math.max(lastVersion, header.getLong(VERSION_OFFSET));
+            if (length != DELETED && live.isLive(id, offset)) {
+                output.write(header.array());
+                output.write(content, 0, Math.max(length, 0));
+                lastLiveId = Math.max(lastLiveId, id);
+            }
+        }
+
+        void finish() throws IOException {
+            // the deletion of item 0, which never exists, when the last id is live
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+            record.putLong(lastLiveId == lastId ? 0 : lastId).putLong(0).putInt(DELETED).putLong(lastVersion);
+            record.putInt(CRC_OFFSET, crc(record.array(), record.array(), RECORD_HEADER_SIZE, 0));
+            output.write(record.array());
+        }
+    }
+}
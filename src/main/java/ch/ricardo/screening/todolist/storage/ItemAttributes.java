@@ -0,0 +1,108 @@
+package ch.ricardo.screening.todolist.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDate;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+
+/**
+ * Attributes of a Todo item besides its id and content, encoded as the stores write them: {@value #LONGS} longs
+ * holding the status and the priority, the due date in days since the epoch, and the creation and update times in ms
+ * since the epoch. Missing dates are encoded as {@link #NONE}.
+ */
+public final class ItemAttributes {
+
+    /**
+     * Number of longs the attributes are encoded in.
+     */
+    public static final int LONGS = 4;
+
+    /**
+     * Size of the encoded attributes, in bytes.
+     */
+    public static final int SIZE = LONGS * Long.BYTES;
+
+    static final long NONE = Long.MIN_VALUE;
+
+    private static final TodoItem.Status[] STATUSES = TodoItem.Status.values();
+
+    private final long statusAndPriority;
+
+    private final long dueDate;
+
+    private final long created;
+
+    private final long updated;
+
+    private ItemAttributes(long statusAndPriority, long dueDate, long created, long updated) {
+        this.statusAndPriority = statusAndPriority;
+        this.dueDate = dueDate;
+        this.created = created;
+        this.updated = updated;
+    }
+
+    public static ItemAttributes of(TodoItem item) {
+        return new ItemAttributes((long) item.getStatus().ordinal() << 32 | (item.getPriority() & 0xFFFFFFFFL),
+                item.getDueDate() == null ? NONE : item.getDueDate().toEpochDay(),
+                item.getCreated() == null ? NONE : item.getCreated().toEpochMilli(),
+                item.getUpdated() == null ? NONE : item.getUpdated().toEpochMilli());
+    }
+
+    /**
+     * Returns the item with these attributes.
+     */
+    public TodoItem toItem(long id, String content, long version) {
+        return new TodoItem(id, content, STATUSES[(int) (statusAndPriority >>> 32)], (int) statusAndPriority,
+                dueDate == NONE ? null : LocalDate.ofEpochDay(dueDate),
+                created(), updated == NONE ? null : Instant.ofEpochMilli(updated), version);
+    }
+
+    public Instant created() {
+        return created == NONE ? null : Instant.ofEpochMilli(created);
+    }
+
+    /**
+     * Writes the attributes at the given position of a buffer, without moving its position.
+     */
+    public void write(ByteBuffer buffer, int position) {
+        buffer.putLong(position, statusAndPriority);
+        buffer.putLong(position + Long.BYTES, dueDate);
+        buffer.putLong(position + 2 * Long.BYTES, created);
+        buffer.putLong(position + 3 * Long.BYTES, updated);
+    }
+
+    public static ItemAttributes read(ByteBuffer buffer, int position) {
+        return new ItemAttributes(buffer.getLong(position), buffer.getLong(position + Long.BYTES),
+                buffer.getLong(position + 2 * Long.BYTES), buffer.getLong(position + 3 * Long.BYTES));
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeLong(statusAndPriority);
+        out.writeLong(dueDate);
+        out.writeLong(created);
+        out.writeLong(updated);
+    }
+
+    public static ItemAttributes read(DataInput in) throws IOException {
+        return new ItemAttributes(in.readLong(), in.readLong(), in.readLong(), in.readLong());
+    }
+
+    /**
+     * Writes the attributes of an item to an array holding {@value #LONGS} longs per id.
+     */
+    public void write(OffHeapLongArray array, long id) {
+        array.set(id * LONGS, statusAndPriority);
+        array.set(id * LONGS + 1, dueDate);
+        array.set(id * LONGS + 2, created);
+        array.set(id * LONGS + 3, updated);
+    }
+
+    public static ItemAttributes read(OffHeapLongArray array, long id) {
+        return new ItemAttributes(array.get(id * LONGS), array.get(id * LONGS + 1), array.get(id * LONGS + 2),
+                array.get(id * LONGS + 3));
+    }
+}
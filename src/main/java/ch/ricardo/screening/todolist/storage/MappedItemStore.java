@@ -0,0 +1,320 @@
+package ch.ricardo.screening.todolist.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * Todo item records kept in a memory-mapped file.
+ * <p>
+ * The file starts with a {@value #FILE_HEADER_SIZE} bytes header (magic number, chunk size, id counter and end of the
+ * last record), followed by the records. A record is a fixed-size header followed by a slab holding the UTF-8
+ * content:
+ * <pre>
+ *  0  long  item id, 0 once the record is freed
+ *  8  long  64-bit hash of the content, 0 for a null content
+ * 16  long  offset of the next record with the same content hash, 0 at the end of the chain
+ * 24  int   capacity of the content slab
+ * 28  int   length of the content, -1 for a null content
+ * 32        attributes of the item, see {@link ItemAttributes}
+ * 64        content
+ * </pre>
+ * The file is mapped in chunks of a fixed size, and a record never spans two chunks: when the end of a chunk is too
+ * short for the next record, it is marked as skipped and the record goes to the next chunk. Records are 8-byte
+ * aligned, and are addressed by their offset in the file, so {@code 0} (inside the file header) never designates a
+ * record.
+ * <p>
+ * Records are only appended. An update that does not fit in the slab of the original record frees it and appends a
+ * new one; freed space is reclaimed when the store is cleared.
+ * <p>
+ * Writes reach the file when the operating system writes the mapped pages back, or when {@link #force()} writes the
+ * chunks changed since the previous call.
+ * <p>
+ * Not thread-safe: concurrent reads are fine, but writes and {@link #force()} must be serialized with reads by the
+ * caller.
+ */
+public class MappedItemStore implements AutoCloseable {
+
+    static final int FILE_HEADER_SIZE = 64;
+
+    private static final int MAGIC = 0x54444F48;
+
+    private static final int VERSION = 2;
+
+    private static final int CHUNK_SIZE_OFFSET = 8;
+
+    private static final int COUNTER_OFFSET = 16;
+
+    private static final int WRITE_POSITION_OFFSET = 24;
+
+    private static final int RECORD_HEADER_SIZE = 64;
+
+    private static final int HASH_OFFSET = 8;
+
+    private static final int NEXT_OFFSET = 16;
+
+    private static final int CAPACITY_OFFSET = 24;
+
+    private static final int LENGTH_OFFSET = 28;
+
+    private static final int ATTRIBUTES_OFFSET = 32;
+
+    private static final long FREED = 0;
+
+    private static final long SKIPPED = -1;
+
+    private static final int NULL_CONTENT = -1;
+
+    private final FileChannel channel;
+
+    private final int chunkSize;
+
+    private final List<MappedByteBuffer> chunks = new ArrayList<>();
+
+    // chunks written since the last force
+    private final BitSet dirtyChunks = new BitSet();
+
+    private long writePosition;
+
+    /**
+     * Opens the store, creating the file if needed. An existing file is mapped as is, with the chunk size it was
+     * created with.
+     */
+    public MappedItemStore(Path file, int chunkSize) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            this.chunkSize = alignedChunkSize(chunkSize);
+            MappedByteBuffer header = chunk(0);
+            header.putInt(0, MAGIC);
+            header.putInt(4, VERSION);
+            header.putInt(CHUNK_SIZE_OFFSET, this.chunkSize);
+            setWritePosition(FILE_HEADER_SIZE);
+        } else {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, FILE_HEADER_SIZE);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Not a Todo item store: " + file);
+            }
+            this.chunkSize = header.getInt(CHUNK_SIZE_OFFSET);
+            this.writePosition = header.getLong(WRITE_POSITION_OFFSET);
+            for (long position = 0; position < writePosition; position += this.chunkSize) {
+                chunk(position);
+            }
+        }
+    }
+
+    public long getCounter() {
+        return chunks.get(0).getLong(COUNTER_OFFSET);
+    }
+
+    public void setCounter(long counter) {
+        writableChunkAt(0).putLong(COUNTER_OFFSET, counter);
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @return the offset of the record
+     */
+    public long append(long id, long hash, byte[] content, ItemAttributes attributes) throws IOException {
+        int capacity = align(content == null ? 0 : content.length);
+        int recordSize = RECORD_HEADER_SIZE + capacity;
+        if (recordSize > chunkSize) {
+            throw new IllegalArgumentException("Content of " + content.length + " bytes exceeds the chunk size");
+        }
+        long offset = writePosition;
+        int remaining = chunkSize - (int) (offset % chunkSize);
+        if (remaining < recordSize) {
+            writableChunkAt(offset).putLong((int) (offset % chunkSize), SKIPPED);
+            offset += remaining;
+        }
+        MappedByteBuffer chunk = chunk(offset);
+        dirtyChunks.set((int) (offset / chunkSize));
+        int position = (int) (offset % chunkSize);
+        chunk.putLong(position, id);
+        chunk.putInt(position + CAPACITY_OFFSET, capacity);
+        writeContent(chunk, position, hash, content, attributes);
+        setWritePosition(offset + recordSize);
+        return offset;
+    }
+
+    /**
+     * Replaces the content and the attributes of a record in place.
+     *
+     * @return false if the new content does not fit in the record slab, in which case the record is left unchanged
+     */
+    public boolean rewrite(long offset, long hash, byte[] content, ItemAttributes attributes) {
+        MappedByteBuffer chunk = writableChunkAt(offset);
+        int position = (int) (offset % chunkSize);
+        if (content != null && content.length > chunk.getInt(position + CAPACITY_OFFSET)) {
+            return false;
+        }
+        writeContent(chunk, position, hash, content, attributes);
+        return true;
+    }
+
+    public void free(long offset) {
+        writableChunkAt(offset).putLong((int) (offset % chunkSize), FREED);
+    }
+
+    public long id(long offset) {
+        return chunkAt(offset).getLong((int) (offset % chunkSize));
+    }
+
+    public long hash(long offset) {
+        return chunkAt(offset).getLong((int) (offset % chunkSize) + HASH_OFFSET);
+    }
+
+    public long next(long offset) {
+        return chunkAt(offset).getLong((int) (offset % chunkSize) + NEXT_OFFSET);
+    }
+
+    public void setNext(long offset, long next) {
+        writableChunkAt(offset).putLong((int) (offset % chunkSize) + NEXT_OFFSET, next);
+    }
+
+    public ItemAttributes attributes(long offset) {
+        return ItemAttributes.read(chunkAt(offset), (int) (offset % chunkSize) + ATTRIBUTES_OFFSET);
+    }
+
+    public String content(long offset) {
+        MappedByteBuffer chunk = chunkAt(offset);
+        int position = (int) (offset % chunkSize);
+        int length = chunk.getInt(position + LENGTH_OFFSET);
+        if (length == NULL_CONTENT) {
+            return null;
+        }
+        byte[] content = new byte[length];
+        slab(chunk, position).get(content);
+        return new String(content, StandardCharsets.UTF_8);
+    }
+
+    public boolean contentEquals(long offset, byte[] content) {
+        MappedByteBuffer chunk = chunkAt(offset);
+        int position = (int) (offset % chunkSize);
+        int length = chunk.getInt(position + LENGTH_OFFSET);
+        if (content == null || length == NULL_CONTENT) {
+            return content == null && length == NULL_CONTENT;
+        }
+        if (length != content.length) {
+            return false;
+        }
+        int contentPosition = position + RECORD_HEADER_SIZE;
+        for (int i = 0; i < length; i++) {
+            if (chunk.get(contentPosition + i) != content[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calls the given action with the offset of every live record, in file order.
+     */
+    public void forEachRecord(LongConsumer action) {
+        long offset = FILE_HEADER_SIZE;
+        while (offset < writePosition) {
+            int position = (int) (offset % chunkSize);
+            if (chunkSize - position < RECORD_HEADER_SIZE || id(offset) == SKIPPED) {
+                offset += chunkSize - position;
+                continue;
+            }
+            if (id(offset) != FREED) {
+                action.accept(offset);
+            }
+            offset += RECORD_HEADER_SIZE + chunkAt(offset).getInt(position + CAPACITY_OFFSET);
+        }
+    }
+
+    /**
+     * Drops all the records and resets the id counter.
+     */
+    public void clear() {
+        setCounter(0);
+        setWritePosition(FILE_HEADER_SIZE);
+    }
+
+    /**
+     * Writes the chunks changed since the previous call to the file, and waits for the device to store them.
+     */
+    public void force() {
+        for (int index = dirtyChunks.nextSetBit(0); index >= 0; index = dirtyChunks.nextSetBit(index + 1)) {
+            chunks.get(index).force();
+        }
+        dirtyChunks.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    private void writeContent(MappedByteBuffer chunk, int position, long hash, byte[] content,
+            ItemAttributes attributes) {
+        chunk.putLong(position + HASH_OFFSET, hash);
+        attributes.write(chunk, position + ATTRIBUTES_OFFSET);
+        chunk.putInt(position + LENGTH_OFFSET, content == null ? NULL_CONTENT : content.length);
+        if (content != null) {
+            slab(chunk, position).put(content);
+        }
+    }
+
+    /**
+     * Returns a view positioned on the content slab of a record. Java 8 has no absolute bulk get/put, and moving the
+     * position of the shared chunk would not be safe for concurrent readers.
+     */
+    private static ByteBuffer slab(MappedByteBuffer chunk, int position) {
+        ByteBuffer view = chunk.duplicate();
+        view.position(position + RECORD_HEADER_SIZE);
+        return view;
+    }
+
+    private void setWritePosition(long writePosition) {
+        this.writePosition = writePosition;
+        writableChunkAt(0).putLong(WRITE_POSITION_OFFSET, writePosition);
+    }
+
+    private MappedByteBuffer chunkAt(long offset) {
+        return chunks.get((int) (offset / chunkSize));
+    }
+
+    private MappedByteBuffer writableChunkAt(long offset) {
+        dirtyChunks.set((int) (offset / chunkSize));
+        return chunkAt(offset);
+    }
+
+    /**
+     * Returns the chunk holding the given offset, mapping it (and growing the file) if needed.
+     */
+    private MappedByteBuffer chunk(long offset) throws IOException {
+        int index = (int) (offset / chunkSize);
+        while (chunks.size() <= index) {
+            chunks.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) chunks.size() * chunkSize, chunkSize));
+        }
+        return chunks.get(index);
+    }
+
+    private static int align(int size) {
+        return (size + Long.BYTES - 1) & -Long.BYTES;
+    }
+
+    private static int alignedChunkSize(int chunkSize) {
+        if (chunkSize < FILE_HEADER_SIZE + RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Chunk size too small: " + chunkSize);
+        }
+        return chunkSize & -Long.BYTES;
+    }
+}
@@ -0,0 +1,71 @@
+package ch.ricardo.screening.todolist.storage;
+
+/**
+ * Set of non-negative {@code long}, stored as bits in direct buffers, with an ordered iteration that skips empty
+ * regions: a summary keeps one bit per non-empty word of 64 bits, so that {@link #nextSetBit(long)} reads one summary
+ * word per 4096 absent values instead of one word per 64.
+ * <p>
+ * Not thread-safe.
+ */
+public class OffHeapBitSet {
+
+    private final OffHeapLongArray words = new OffHeapLongArray(16);
+
+    private final OffHeapLongArray summary = new OffHeapLongArray(16);
+
+    // one past the highest word ever set since the last clear, bounds the searches
+    private long wordsInUse;
+
+    public boolean get(long index) {
+        return (words.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    public void set(long index) {
+        long wordIndex = index >>> 6;
+        words.set(wordIndex, words.get(wordIndex) | (1L << index));
+        summary.set(wordIndex >>> 6, summary.get(wordIndex >>> 6) | (1L << wordIndex));
+        wordsInUse = Math.max(wordsInUse, wordIndex + 1);
+    }
+
+    public void clear(long index) {
+        long wordIndex = index >>> 6;
+        long word = words.get(wordIndex) & ~(1L << index);
+        words.set(wordIndex, word);
+        if (word == 0) {
+            summary.set(wordIndex >>> 6, summary.get(wordIndex >>> 6) & ~(1L << wordIndex));
+        }
+    }
+
+    /**
+     * Returns the lowest value of the set greater than or equal to the given one, or -1 if there is none.
+     */
+    public long nextSetBit(long from) {
+        long wordIndex = from >>> 6;
+        if (wordIndex >= wordsInUse) {
+            return -1;
+        }
+        long word = words.get(wordIndex) & (-1L << from);
+        if (word != 0) {
+            return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+        }
+        // the next non-empty word, found through the summary
+        long next = wordIndex + 1;
+        long summaryIndex = next >>> 6;
+        long summaryWord = next >= wordsInUse ? 0 : summary.get(summaryIndex) & (-1L << next);
+        while (summaryWord == 0) {
+            summaryIndex++;
+            if (summaryIndex << 6 >= wordsInUse) {
+                return -1;
+            }
+            summaryWord = summary.get(summaryIndex);
+        }
+        wordIndex = (summaryIndex << 6) + Long.numberOfTrailingZeros(summaryWord);
+        return (wordIndex << 6) + Long.numberOfTrailingZeros(words.get(wordIndex));
+    }
+
+    public void clear() {
+        words.clear();
+        summary.clear();
+        wordsInUse = 0;
+    }
+}
@@ -0,0 +1,53 @@
+package ch.ricardo.screening.todolist.storage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Growable array of {@code long}, stored in a direct buffer. Elements that were never set are {@code 0}.
+ * <p>
+ * Not thread-safe.
+ */
+public class OffHeapLongArray {
+
+    private static final int MAX_LENGTH = Integer.MAX_VALUE / Long.BYTES;
+
+    private ByteBuffer elements;
+
+    private int length;
+
+    public OffHeapLongArray(int initialLength) {
+        allocate(Math.max(16, initialLength));
+    }
+
+    public long get(long index) {
+        return index < 0 || index >= length ? 0 : elements.getLong((int) index * Long.BYTES);
+    }
+
+    public void set(long index, long value) {
+        if (index < 0 || index >= MAX_LENGTH) {
+            throw new IndexOutOfBoundsException("Off-heap array index out of range: " + index);
+        }
+        if (index >= length) {
+            grow((int) Math.min(MAX_LENGTH, Math.max(index + 1, (long) length * 2)));
+        }
+        elements.putLong((int) index * Long.BYTES, value);
+    }
+
+    public void clear() {
+        allocate(16);
+    }
+
+    private void grow(int newLength) {
+        ByteBuffer oldElements = elements;
+        allocate(newLength);
+        oldElements.clear();
+        elements.put(oldElements);
+        elements.clear();
+    }
+
+    private void allocate(int newLength) {
+        // direct buffers are zeroed on allocation
+        elements = ByteBuffer.allocateDirect(newLength * Long.BYTES);
+        length = newLength;
+    }
+}
@@ -0,0 +1,139 @@
+package ch.ricardo.screening.todolist.storage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Open-addressing hash map from {@code long} to {@code long}, stored in a direct buffer so that its entries cost no
+ * heap and no object per entry.
+ * <p>
+ * Collisions are resolved by linear probing, and removals shift the following entries back instead of leaving
+ * tombstones. The key {@code 0} is reserved to mark free slots and cannot be stored.
+ * <p>
+ * Not thread-safe.
+ */
+public class OffHeapLongLongMap {
+
+    private static final int ENTRY_SIZE = 2 * Long.BYTES;
+
+    private static final long FREE = 0;
+
+    private static final double MAX_LOAD_FACTOR = 0.7;
+
+    private ByteBuffer table;
+
+    private int capacity;
+
+    private int size;
+
+    public OffHeapLongLongMap(int initialCapacity) {
+        allocate(Integer.highestOneBit(Math.max(16, initialCapacity - 1) << 1));
+    }
+
+    public long get(long key, long missingValue) {
+        checkKey(key);
+        for (int slot = slotOf(key); ; slot = nextSlot(slot)) {
+            long slotKey = keyAt(slot);
+            if (slotKey == key) {
+                return valueAt(slot);
+            } else if (slotKey == FREE) {
+                return missingValue;
+            }
+        }
+    }
+
+    public void put(long key, long value) {
+        checkKey(key);
+        if (size + 1 > capacity * MAX_LOAD_FACTOR) {
+            resize(capacity * 2);
+        }
+        for (int slot = slotOf(key); ; slot = nextSlot(slot)) {
+            long slotKey = keyAt(slot);
+            if (slotKey == FREE) {
+                table.putLong(slot * ENTRY_SIZE, key);
+                table.putLong(slot * ENTRY_SIZE + Long.BYTES, value);
+                size++;
+                return;
+            } else if (slotKey == key) {
+                table.putLong(slot * ENTRY_SIZE + Long.BYTES, value);
+                return;
+            }
+        }
+    }
+
+    public boolean remove(long key) {
+        checkKey(key);
+        int slot = slotOf(key);
+        while (keyAt(slot) != key) {
+            if (keyAt(slot) == FREE) {
+                return false;
+            }
+            slot = nextSlot(slot);
+        }
+        // shift back the entries of the probe sequence that would no longer be reachable
+        int free = slot;
+        for (int next = nextSlot(free); keyAt(next) != FREE; next = nextSlot(next)) {
+            int ideal = slotOf(keyAt(next));
+            boolean movable = free <= next ? (ideal <= free || ideal > next) : (ideal <= free && ideal > next);
+            if (movable) {
+                table.putLong(free * ENTRY_SIZE, keyAt(next));
+                table.putLong(free * ENTRY_SIZE + Long.BYTES, valueAt(next));
+                free = next;
+            }
+        }
+        table.putLong(free * ENTRY_SIZE, FREE);
+        size--;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        allocate(16);
+    }
+
+    private void resize(int newCapacity) {
+        ByteBuffer oldTable = table;
+        int oldCapacity = capacity;
+        allocate(newCapacity);
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            long key = oldTable.getLong(slot * ENTRY_SIZE);
+            if (key != FREE) {
+                put(key, oldTable.getLong(slot * ENTRY_SIZE + Long.BYTES));
+            }
+        }
+    }
+
+    private void allocate(int newCapacity) {
+        if ((long) newCapacity * ENTRY_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Off-heap map cannot grow beyond " + capacity + " entries");
+        }
+        table = ByteBuffer.allocateDirect(newCapacity * ENTRY_SIZE);
+        capacity = newCapacity;
+        size = 0;
+    }
+
+    private int slotOf(long key) {
+        // Fibonacci hashing spreads sequential keys over the whole table
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - Integer.numberOfTrailingZeros(capacity)));
+    }
+
+    private int nextSlot(int slot) {
+        return (slot + 1) & (capacity - 1);
+    }
+
+    private long keyAt(int slot) {
+        return table.getLong(slot * ENTRY_SIZE);
+    }
+
+    private long valueAt(int slot) {
+        return table.getLong(slot * ENTRY_SIZE + Long.BYTES);
+    }
+
+    private static void checkKey(long key) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+    }
+}
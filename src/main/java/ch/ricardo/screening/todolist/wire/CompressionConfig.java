@@ -0,0 +1,30 @@
+package ch.ricardo.screening.todolist.wire;
+
+import java.util.Arrays;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class CompressionConfig {
+
+    /**
+     * Compresses the bodies of the items API in JSON and in the binary formats; streams are left as they are.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "todolist.compression.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<CompressionFilter> compressionFilter(
+            @Value("${todolist.compression.min-response-size:2048}") int minResponseSize) {
+        CompressionFilter filter = new CompressionFilter(minResponseSize, Arrays.asList(MediaType.APPLICATION_JSON,
+                WireFormats.APPLICATION_SMILE, WireFormats.APPLICATION_CBOR, WireFormats.APPLICATION_PROTOBUF));
+        FilterRegistrationBean<CompressionFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.addUrlPatterns("/todolist/*");
+        return registration;
+    }
+}
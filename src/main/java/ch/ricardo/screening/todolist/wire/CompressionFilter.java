@@ -0,0 +1,409 @@
+package ch.ricardo.screening.todolist.wire;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Compresses responses with zstd or gzip, as accepted by the client in {@code Accept-Encoding}, zstd being preferred.
+ * <p>
+ * The body is buffered until it reaches {@code minResponseSize} bytes: smaller bodies are sent as is, since
+ * compression would hardly make them smaller but would cost CPU on both sides. Only the given content types are
+ * compressed, so that streams (Server-Sent Events, newline-delimited JSON) are written through without buffering.
+ * Bodies written asynchronously, after the request was handed over to another thread, are never compressed, since
+ * the filter cannot end their compressed stream, and neither are non-blocking writes.
+ * <p>
+ * A strong ETag identifies the bytes of a representation, so the coding selected for a request is appended to the
+ * ETag of its response (e.g. {@code "...-gzip"}), and removed from the tags of its {@code If-None-Match} header
+ * before the handler compares them with its own tags.
+ */
+public class CompressionFilter extends OncePerRequestFilter {
+
+    static final String ZSTD = "zstd";
+
+    static final String GZIP = "gzip";
+
+    private final int minResponseSize;
+
+    private final Collection<MediaType> compressibleTypes;
+
+    public CompressionFilter(int minResponseSize, Collection<MediaType> compressibleTypes) {
+        this.minResponseSize = minResponseSize;
+        this.compressibleTypes = compressibleTypes;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String encoding = selectEncoding(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        // whether or not this response is compressed, another one could be
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (encoding == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        CompressingResponse compressingResponse = new CompressingResponse(request, response, encoding);
+        chain.doFilter(new DecodingTagsRequest(request, encoding), compressingResponse);
+        if (!request.isAsyncStarted()) {
+            compressingResponse.finish();
+        }
+    }
+
+    /**
+     * Returns the encoding to use given an {@code Accept-Encoding} header, null for none.
+     */
+    static String selectEncoding(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        boolean gzip = false;
+        for (String candidate : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            String[] parts = candidate.split(";");
+            String coding = parts[0].trim();
+            if (parts.length > 1 && parts[1].trim().matches("q=0(\\.0*)?")) {
+                // explicitly refused
+                continue;
+            }
+            if (coding.equals(ZSTD)) {
+                return ZSTD;
+            }
+            gzip |= coding.equals(GZIP);
+        }
+        return gzip ? GZIP : null;
+    }
+
+    /**
+     * Returns the given entity tags, with the given coding appended, e.g. {@code "1-2-gzip"} for {@code "1-2"}.
+     */
+    static String withCoding(String etags, String coding) {
+        return etags.replaceAll("\"(\\s*(,|$))", "-" + coding + "\"$1");
+    }
+
+    /**
+     * Returns the given entity tags, without the given coding where they end with it.
+     */
+    static String withoutCoding(String etags, String coding) {
+        return etags.replaceAll("-" + coding + "\"(\\s*(,|$))", "\"$1");
+    }
+
+    private boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        MediaType type = MediaType.parseMediaType(contentType);
+        return compressibleTypes.stream().anyMatch(compressible -> compressible.includes(type));
+    }
+
+    private final class CompressingResponse extends HttpServletResponseWrapper {
+
+        private final HttpServletRequest request;
+
+        private final String encoding;
+
+        private BufferingOutputStream outputStream;
+
+        private PrintWriter writer;
+
+        CompressingResponse(HttpServletRequest request, HttpServletResponse response, String encoding) {
+            super(response);
+            this.request = request;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() has already been called");
+            }
+            if (outputStream == null) {
+                outputStream = new BufferingOutputStream(this);
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                if (outputStream != null) {
+                    throw new IllegalStateException("getOutputStream() has already been called");
+                }
+                outputStream = new BufferingOutputStream(this);
+                writer = new PrintWriter(new OutputStreamWriter(outputStream, getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        /**
+         * The length of the body is only known once it is decided whether it is compressed, it is set then.
+         */
+        @Override
+        public void setContentLength(int length) {
+        }
+
+        @Override
+        public void setContentLengthLong(long length) {
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (HttpHeaders.ETAG.equalsIgnoreCase(name)) {
+                super.setHeader(name, withCoding(value, encoding));
+            } else if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (HttpHeaders.ETAG.equalsIgnoreCase(name)) {
+                super.addHeader(name, withCoding(value, encoding));
+            } else if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                super.addHeader(name, value);
+            }
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                super.setIntHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addIntHeader(String name, int value) {
+            if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                super.addIntHeader(name, value);
+            }
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (outputStream != null) {
+                if (outputStream.isBuffering()) {
+                    // committing the response now would prevent the choice of its encoding and length
+                    return;
+                }
+                outputStream.flush();
+            }
+            super.flushBuffer();
+        }
+
+        @Override
+        public void resetBuffer() {
+            if (outputStream != null) {
+                outputStream.reset();
+            }
+            super.resetBuffer();
+        }
+
+        @Override
+        public void reset() {
+            if (outputStream != null) {
+                outputStream.reset();
+            }
+            super.reset();
+        }
+
+        void finish() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (outputStream != null) {
+                outputStream.finish();
+            }
+        }
+
+        private HttpServletResponse response() {
+            return (HttpServletResponse) getResponse();
+        }
+    }
+
+    /**
+     * Request whose {@code If-None-Match} tags no longer end with the coding selected for its response.
+     */
+    private static final class DecodingTagsRequest extends HttpServletRequestWrapper {
+
+        private final String encoding;
+
+        DecodingTagsRequest(HttpServletRequest request, String encoding) {
+            super(request);
+            this.encoding = encoding;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            String value = super.getHeader(name);
+            return value != null && HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name)
+                    ? withoutCoding(value, encoding) : value;
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            if (!HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name)) {
+                return super.getHeaders(name);
+            }
+            List<String> values = new ArrayList<>();
+            for (String value : Collections.list(super.getHeaders(name))) {
+                values.add(withoutCoding(value, encoding));
+            }
+            return Collections.enumeration(values);
+        }
+    }
+
+    /**
+     * Buffers the body until the decision to compress it or not can be made: it is compressed once it exceeds the
+     * threshold, and sent as is when it is complete before.
+     */
+    private final class BufferingOutputStream extends ServletOutputStream {
+
+        private final CompressingResponse response;
+
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        // set once decided, the compressing stream or the stream of the response
+        private OutputStream target;
+
+        private boolean compressed;
+
+        private boolean finished;
+
+        BufferingOutputStream(CompressingResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (target == null) {
+                if (!isCompressible(response.getContentType())
+                        || response.containsHeader(HttpHeaders.CONTENT_ENCODING)
+                        || response.request.isAsyncStarted()) {
+                    sendUncompressed(false);
+                } else if (buffer.size() + length < minResponseSize) {
+                    buffer.write(bytes, offset, length);
+                    return;
+                } else {
+                    sendCompressed();
+                }
+            }
+            target.write(bytes, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (target == null) {
+                // message converters flush once done: the body is sent when complete, with its length
+                return;
+            }
+            target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        @Override
+        public boolean isReady() {
+            return !(target instanceof ServletOutputStream) || ((ServletOutputStream) target).isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            // non-blocking writes go straight to the response, the filter would block them while compressing
+            if (target == null) {
+                try {
+                    sendUncompressed(false);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            if (compressed) {
+                throw new IllegalStateException("Non-blocking writes cannot follow compressed ones");
+            }
+            ((ServletOutputStream) target).setWriteListener(writeListener);
+        }
+
+        boolean isBuffering() {
+            return target == null;
+        }
+
+        void reset() {
+            if (target == null) {
+                buffer.reset();
+            }
+        }
+
+        void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (target == null) {
+                sendUncompressed(true);
+            }
+            if (compressed) {
+                // writes the end of the compressed stream
+                target.close();
+            } else {
+                target.flush();
+            }
+        }
+
+        private void sendUncompressed(boolean complete) throws IOException {
+            HttpServletResponse servletResponse = response.response();
+            if (complete && !servletResponse.isCommitted()) {
+                servletResponse.setContentLength(buffer.size());
+            }
+            target = servletResponse.getOutputStream();
+            drainBuffer();
+        }
+
+        private void sendCompressed() throws IOException {
+            HttpServletResponse servletResponse = response.response();
+            servletResponse.setHeader(HttpHeaders.CONTENT_ENCODING, response.encoding);
+            OutputStream body = servletResponse.getOutputStream();
+            // flushes compress what was written so far, so that streamed parts are not held back
+            target = GZIP.equals(response.encoding) ? new GZIPOutputStream(body, 8192, true)
+                    : new ZstdOutputStream(body);
+            compressed = true;
+            drainBuffer();
+        }
+
+        private void drainBuffer() throws IOException {
+            buffer.writeTo(target);
+            buffer = null;
+        }
+    }
+}
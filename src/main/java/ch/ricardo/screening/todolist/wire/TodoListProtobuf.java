@@ -0,0 +1,261 @@
+package ch.ricardo.screening.todolist.wire;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.WireFormat;
+
+import ch.ricardo.screening.todolist.model.BatchItemResult;
+import ch.ricardo.screening.todolist.model.TodoItem;
+
+/**
+ * Protobuf encoding of the API messages, following the schema in {@code proto/todolist.proto}.
+ * <p>
+ * The messages are written and read field by field with the coded streams of protobuf-java rather than through
+ * generated classes, so that the model classes are encoded directly, without copying them to and from protobuf
+ * messages. Unknown fields are skipped, and repeated ids are read whether they are packed or not, so that clients
+ * using generated code of a newer schema are still understood.
+ */
+public final class TodoListProtobuf {
+
+    private static final int ITEM_ID = tag(1, WireFormat.WIRETYPE_VARINT);
+    private static final int ITEM_CONTENT = tag(2, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int ITEM_STATUS = tag(3, WireFormat.WIRETYPE_VARINT);
+    private static final int ITEM_PRIORITY = tag(4, WireFormat.WIRETYPE_VARINT);
+    private static final int ITEM_DUE_DATE = tag(5, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int RESULT_STATUS = tag(1, WireFormat.WIRETYPE_VARINT);
+    private static final int RESULT_ID = tag(2, WireFormat.WIRETYPE_VARINT);
+    // the single repeated field of the list messages
+    private static final int LIST_ELEMENT = tag(1, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+    private static final int UNPACKED_ID = tag(1, WireFormat.WIRETYPE_VARINT);
+
+    private static final TodoItem.Status[] STATUSES = TodoItem.Status.values();
+
+    private TodoListProtobuf() {}
+
+    /**
+     * Writes a {@code TodoItem} message. As with generated code, fields holding their default value are not written.
+     */
+    public static void writeItem(TodoItem item, CodedOutputStream output) throws IOException {
+        if (item.getId() != null) {
+            output.writeInt64(1, item.getId());
+        }
+        if (item.getContent() != null) {
+            output.writeString(2, item.getContent());
+        }
+        if (item.getStatus() != null && item.getStatus() != TodoItem.Status.OPEN) {
+            output.writeEnum(3, item.getStatus().ordinal());
+        }
+        if (item.getPriority() != 0) {
+            output.writeInt32(4, item.getPriority());
+        }
+        if (item.getDueDate() != null) {
+            output.writeString(5, item.getDueDate().toString());
+        }
+        if (item.getCreated() != null) {
+            output.writeInt64(6, item.getCreated().toEpochMilli());
+        }
+        if (item.getUpdated() != null) {
+            output.writeInt64(7, item.getUpdated().toEpochMilli());
+        }
+    }
+
+    /**
+     * Writes a {@code TodoItemList} message.
+     */
+    public static void writeItems(List<TodoItem> items, CodedOutputStream output) throws IOException {
+        for (TodoItem item : items) {
+            output.writeUInt32NoTag(LIST_ELEMENT);
+            output.writeUInt32NoTag(sizeOf(item));
+            writeItem(item, output);
+        }
+    }
+
+    /**
+     * Writes a {@code BatchItemResultList} message.
+     */
+    public static void writeResults(List<BatchItemResult> results, CodedOutputStream output) throws IOException {
+        for (BatchItemResult result : results) {
+            output.writeUInt32NoTag(LIST_ELEMENT);
+            output.writeUInt32NoTag(sizeOf(result));
+            output.writeInt32(1, result.getStatus());
+            if (result.getId() != null) {
+                output.writeInt64(2, result.getId());
+            }
+        }
+    }
+
+    /**
+     * Writes an {@code IdList} message, with packed ids.
+     */
+    public static void writeIds(List<Long> ids, CodedOutputStream output) throws IOException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        int size = 0;
+        for (Long id : ids) {
+            size += CodedOutputStream.computeInt64SizeNoTag(id);
+        }
+        output.writeUInt32NoTag(LIST_ELEMENT);
+        output.writeUInt32NoTag(size);
+        for (Long id : ids) {
+            output.writeInt64NoTag(id);
+        }
+    }
+
+    /**
+     * Reads a {@code TodoItem} message. An item without id gets the default id, as with JSON. The timestamps are set
+     * by the server, so they are skipped, and so are statuses unknown to this schema.
+     */
+    public static TodoItem readItem(CodedInputStream input) throws IOException {
+        Long id = null;
+        String content = null;
+        TodoItem.Status status = TodoItem.Status.OPEN;
+        int priority = 0;
+        LocalDate dueDate = null;
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            if (tag == ITEM_ID) {
+                id = input.readInt64();
+            } else if (tag == ITEM_CONTENT) {
+                content = input.readStringRequireUtf8();
+            } else if (tag == ITEM_STATUS) {
+                int ordinal = input.readEnum();
+                if (ordinal >= 0 && ordinal < STATUSES.length) {
+                    status = STATUSES[ordinal];
+                }
+            } else if (tag == ITEM_PRIORITY) {
+                priority = input.readInt32();
+            } else if (tag == ITEM_DUE_DATE) {
+                dueDate = readDate(input);
+            } else {
+                input.skipField(tag);
+            }
+        }
+        return new TodoItem(id == null ? new TodoItem().getId() : id, content, status, priority, dueDate, null, null,
+                0);
+    }
+
+    /**
+     * Reads a {@code TodoItemList} message.
+     */
+    public static List<TodoItem> readItems(CodedInputStream input) throws IOException {
+        List<TodoItem> items = new ArrayList<>();
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            if (tag == LIST_ELEMENT) {
+                int limit = input.pushLimit(input.readRawVarint32());
+                items.add(readItem(input));
+                input.popLimit(limit);
+            } else {
+                input.skipField(tag);
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Reads a {@code BatchItemResultList} message.
+     */
+    public static List<BatchItemResult> readResults(CodedInputStream input) throws IOException {
+        List<BatchItemResult> results = new ArrayList<>();
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            if (tag == LIST_ELEMENT) {
+                int limit = input.pushLimit(input.readRawVarint32());
+                int status = 0;
+                Long id = null;
+                for (int field = input.readTag(); field != 0; field = input.readTag()) {
+                    if (field == RESULT_STATUS) {
+                        status = input.readInt32();
+                    } else if (field == RESULT_ID) {
+                        id = input.readInt64();
+                    } else {
+                        input.skipField(field);
+                    }
+                }
+                results.add(new BatchItemResult(status, id));
+                input.popLimit(limit);
+            } else {
+                input.skipField(tag);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Reads an {@code IdList} message, with packed or unpacked ids.
+     */
+    public static List<Long> readIds(CodedInputStream input) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        for (int tag = input.readTag(); tag != 0; tag = input.readTag()) {
+            if (tag == LIST_ELEMENT) {
+                int limit = input.pushLimit(input.readRawVarint32());
+                while (input.getBytesUntilLimit() > 0) {
+                    ids.add(input.readInt64());
+                }
+                input.popLimit(limit);
+            } else if (tag == UNPACKED_ID) {
+                ids.add(input.readInt64());
+            } else {
+                input.skipField(tag);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Reads a date field, as yyyy-MM-dd, null if empty. An invalid date makes the message invalid, so that it is a
+     * client error like a malformed message.
+     */
+    private static LocalDate readDate(CodedInputStream input) throws IOException {
+        String date = input.readStringRequireUtf8();
+        try {
+            return date.isEmpty() ? null : LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw new InvalidProtocolBufferException("Invalid date: " + date);
+        }
+    }
+
+    private static int sizeOf(TodoItem item) {
+        int size = 0;
+        if (item.getId() != null) {
+            size += CodedOutputStream.computeInt64Size(1, item.getId());
+        }
+        if (item.getContent() != null) {
+            size += CodedOutputStream.computeStringSize(2, item.getContent());
+        }
+        if (item.getStatus() != null && item.getStatus() != TodoItem.Status.OPEN) {
+            size += CodedOutputStream.computeEnumSize(3, item.getStatus().ordinal());
+        }
+        if (item.getPriority() != 0) {
+            size += CodedOutputStream.computeInt32Size(4, item.getPriority());
+        }
+        if (item.getDueDate() != null) {
+            size += CodedOutputStream.computeStringSize(5, item.getDueDate().toString());
+        }
+        if (item.getCreated() != null) {
+            size += CodedOutputStream.computeInt64Size(6, item.getCreated().toEpochMilli());
+        }
+        if (item.getUpdated() != null) {
+            size += CodedOutputStream.computeInt64Size(7, item.getUpdated().toEpochMilli());
+        }
+        return size;
+    }
+
+    private static int sizeOf(BatchItemResult result) {
+        int size = CodedOutputStream.computeInt32Size(1, result.getStatus());
+        if (result.getId() != null) {
+            size += CodedOutputStream.computeInt64Size(2, result.getId());
+        }
+        return size;
+    }
+
+    private static int tag(int fieldNumber, int wireType) {
+        return fieldNumber << 3 | wireType;
+    }
+}
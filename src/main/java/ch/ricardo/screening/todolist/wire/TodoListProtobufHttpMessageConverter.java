@@ -0,0 +1,138 @@
+package ch.ricardo.screening.todolist.wire;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import ch.ricardo.screening.todolist.model.BatchItemResult;
+import ch.ricardo.screening.todolist.model.TodoItem;
+
+/**
+ * Reads and writes the API messages as {@code application/x-protobuf}, see {@link TodoListProtobuf}: a single
+ * {@link TodoItem}, and lists of {@link TodoItem}, {@link BatchItemResult} or ids.
+ * <p>
+ * The type of a list is told by its declared type, or by its elements when the handler does not declare it, e.g. a
+ * {@code ResponseEntity<?>}: an empty list is written the same way whatever its type.
+ */
+public class TodoListProtobufHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public TodoListProtobufHttpMessageConverter() {
+        super(WireFormats.APPLICATION_PROTOBUF);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz == TodoItem.class;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        ResolvableType resolved = ResolvableType.forType(type);
+        Class<?> raw = resolved.resolve(Object.class);
+        boolean readable = raw == TodoItem.class
+                || raw.isAssignableFrom(ArrayList.class) && elementTypeOf(resolved) != null;
+        return readable && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        ResolvableType resolved = type != null ? ResolvableType.forType(type) : ResolvableType.forClass(clazz);
+        Class<?> raw = resolved.resolve(clazz);
+        boolean list = List.class.isAssignableFrom(raw) || List.class.isAssignableFrom(clazz);
+        boolean writable = TodoItem.class.isAssignableFrom(clazz)
+                || list && (elementTypeOf(resolved) != null || !isDeclared(resolved));
+        return writable && canWrite(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        ResolvableType resolved = ResolvableType.forType(type);
+        CodedInputStream input = CodedInputStream.newInstance(inputMessage.getBody());
+        try {
+            Class<?> elementType = elementTypeOf(resolved);
+            if (elementType == null) {
+                return TodoListProtobuf.readItem(input);
+            } else if (elementType == TodoItem.class) {
+                return TodoListProtobuf.readItems(input);
+            } else if (elementType == BatchItemResult.class) {
+                return TodoListProtobuf.readResults(input);
+            } else {
+                return TodoListProtobuf.readIds(input);
+            }
+        } catch (IOException e) {
+            // malformed messages are client errors (400), like malformed JSON
+            throw new HttpMessageNotReadableException("Invalid protobuf message: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void writeInternal(Object body, Type type, HttpOutputMessage outputMessage) throws IOException {
+        CodedOutputStream output = CodedOutputStream.newInstance(outputMessage.getBody());
+        if (body instanceof TodoItem) {
+            TodoListProtobuf.writeItem((TodoItem) body, output);
+        } else {
+            Class<?> elementType = elementTypeOf(ResolvableType.forType(type));
+            if (elementType == null) {
+                elementType = elementTypeOf((List<?>) body);
+            }
+            if (elementType == TodoItem.class) {
+                TodoListProtobuf.writeItems((List<TodoItem>) body, output);
+            } else if (elementType == BatchItemResult.class) {
+                TodoListProtobuf.writeResults((List<BatchItemResult>) body, output);
+            } else if (elementType == Long.class) {
+                TodoListProtobuf.writeIds((List<Long>) body, output);
+            } else {
+                throw new HttpMessageNotWritableException("Unsupported list element " + elementType);
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * Returns the element type of a supported list type, null for other types.
+     */
+    private static Class<?> elementTypeOf(ResolvableType type) {
+        if (!type.hasGenerics()) {
+            return null;
+        }
+        Class<?> elementType = type.getGeneric(0).resolve();
+        boolean supported = elementType == TodoItem.class || elementType == BatchItemResult.class
+                || elementType == Long.class;
+        return supported ? elementType : null;
+    }
+
+    /**
+     * Returns the element type of a list whose type is not declared, told by its first element.
+     */
+    private static Class<?> elementTypeOf(List<?> list) {
+        // all the list messages are empty when the list is; iterated, as lists may only be read sequentially
+        Iterator<?> elements = list.iterator();
+        Object first = elements.hasNext() ? elements.next() : null;
+        return first == null ? TodoItem.class : first.getClass();
+    }
+
+    /**
+     * Tells whether a list type declares its element type, rather than leaving it to the value written.
+     */
+    private static boolean isDeclared(ResolvableType type) {
+        return type.hasGenerics() && type.getGeneric(0).resolve(Object.class) != Object.class;
+    }
+}
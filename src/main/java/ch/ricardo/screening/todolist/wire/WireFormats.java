@@ -0,0 +1,25 @@
+package ch.ricardo.screening.todolist.wire;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Media types of the binary representations served alongside JSON, selected with the {@code Accept} and
+ * {@code Content-Type} headers.
+ */
+public final class WireFormats {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+
+    public static final String APPLICATION_CBOR_VALUE = "application/cbor";
+
+    public static final String APPLICATION_PROTOBUF_VALUE = "application/x-protobuf";
+
+    public static final MediaType APPLICATION_SMILE = MediaType.parseMediaType(APPLICATION_SMILE_VALUE);
+
+    public static final MediaType APPLICATION_CBOR = MediaType.parseMediaType(APPLICATION_CBOR_VALUE);
+
+    public static final MediaType APPLICATION_PROTOBUF = MediaType.parseMediaType(APPLICATION_PROTOBUF_VALUE);
+
+    private WireFormats() {
+    }
+}
@@ -0,0 +1,74 @@
+package ch.ricardo.screening.todolist;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+import ch.ricardo.screening.todolist.wire.WireFormats;
+import springfox.documentation.spring.web.plugins.Docket;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = TodoListApplication.class)
+@WebAppConfiguration
+@ActiveProfiles("lean")
+public class LeanProfileTest {
+
+    private MockMvc mockMvc;
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Before
+    public void setUp() {
+        mockMvc = webAppContextSetup(webApplicationContext).build();
+    }
+
+    @Test
+    public void swaggerIsDisabled() throws Exception {
+        assertTrue(webApplicationContext.getBeansOfType(Docket.class).isEmpty());
+        mockMvc.perform(get("/v2/api-docs")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/swagger-ui.html")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void applicationBeansAreLazy() {
+        ConfigurableApplicationContext context = (ConfigurableApplicationContext) webApplicationContext;
+        assertTrue(context.getBeanFactory().getBeanDefinition("todoListRestController").isLazyInit());
+    }
+
+    @Test
+    public void listenersAreCreatedAtStartup() {
+        ConfigurableListableBeanFactory beanFactory =
+                ((ConfigurableApplicationContext) webApplicationContext).getBeanFactory();
+        for (String name : new String[] {"todoListSearchIndex", "todoListAttributeIndex", "todoListChangeFeed",
+                "itemListJsonCache"}) {
+            assertFalse(name, beanFactory.getBeanDefinition(name).isLazyInit());
+            assertTrue(name, beanFactory.containsSingleton(name));
+        }
+    }
+
+    @Test
+    public void apiIsServedInAllFormats() throws Exception {
+        mockMvc.perform(get("/todolist/items"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/todolist/items").accept(WireFormats.APPLICATION_PROTOBUF))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(WireFormats.APPLICATION_PROTOBUF));
+    }
+}
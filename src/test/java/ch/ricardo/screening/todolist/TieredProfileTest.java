@@ -0,0 +1,84 @@
+package ch.ricardo.screening.todolist;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+import ch.ricardo.screening.todolist.controller.ItemListJsonCache;
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.search.TodoListSearchIndex;
+import ch.ricardo.screening.todolist.service.TieredTodoListServiceImpl;
+import ch.ricardo.screening.todolist.service.TodoListAttributeIndex;
+import ch.ricardo.screening.todolist.service.TodoListService;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = TodoListApplication.class,
+        properties = "todolist.tiered.file=target/tiered-profile-test/contents.dat")
+@WebAppConfiguration
+@ActiveProfiles("tiered")
+public class TieredProfileTest {
+
+    private MockMvc mockMvc;
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    @Qualifier("todolistService")
+    private TodoListService storage;
+
+    @Autowired
+    private ItemListJsonCache itemListJsonCache;
+
+    @Before
+    public void setUp() {
+        mockMvc = webAppContextSetup(webApplicationContext).build();
+        storage.deleteAllItems();
+    }
+
+    @After
+    public void tearDown() {
+        storage.deleteAllItems();
+    }
+
+    @Test
+    public void heapStructuresAreDisabled() throws Exception {
+        assertTrue(storage instanceof TieredTodoListServiceImpl);
+        assertTrue(webApplicationContext.getBeansOfType(TodoListSearchIndex.class).isEmpty());
+        assertTrue(webApplicationContext.getBeansOfType(TodoListAttributeIndex.class).isEmpty());
+        assertFalse(itemListJsonCache.isEnabled());
+        mockMvc.perform(get("/todolist/items/search").param("q", "item"))
+                .andExpect(status().isNotImplemented());
+        mockMvc.perform(get("/todolist/items").param("sort", "-priority"))
+                .andExpect(status().isNotImplemented());
+    }
+
+    @Test
+    public void listIsWrittenAsItIsRead() throws Exception {
+        storage.create(new TodoItem("item1"));
+        storage.create(new TodoItem("item2"));
+
+        mockMvc.perform(get("/todolist/items"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].content", is("item2")));
+    }
+}
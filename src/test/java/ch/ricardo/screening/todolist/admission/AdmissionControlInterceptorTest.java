@@ -0,0 +1,146 @@
+package ch.ricardo.screening.todolist.admission;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class AdmissionControlInterceptorTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private final CountDownLatch retrieving = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        AdmissionProperties properties = new AdmissionProperties();
+        properties.setClientHeader("X-Client-Id");
+        properties.setRate(Collections.singletonMap("deleteAllItems", 1.0));
+        properties.setBurstSeconds(1);
+        properties.setLimitedEndpoints(new HashSet<>(Arrays.asList("retrieveAllItems", "streamAllItems")));
+        properties.setMaxConcurrentRequests(1);
+        properties.setMaxQueueSize(0);
+        mockMvc = MockMvcBuilders.standaloneSetup(new ItemsController())
+                .addInterceptors(new AdmissionControlInterceptor(properties, registry))
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void clientsOverTheRateAreRejected() throws Exception {
+        mockMvc.perform(delete("/todolist/items").header("X-Client-Id", "alice"))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete("/todolist/items").header("X-Client-Id", "alice"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+        // other clients have their own rate
+        mockMvc.perform(delete("/todolist/items").header("X-Client-Id", "bob"))
+                .andExpect(status().isNoContent());
+
+        assertEquals(1, registry.counter(AdmissionControlInterceptor.REJECTIONS, "endpoint", "deleteAllItems",
+                "reason", AdmissionControlInterceptor.RATE_LIMITED).count(), 0);
+    }
+
+    @Test
+    public void requestsOverTheConcurrencyLimitAreShed() throws Exception {
+        Future<?> first = executor.submit(() -> mockMvc.perform(get("/todolist/items"))
+                .andExpect(status().isOk()));
+        retrieving.await(10, TimeUnit.SECONDS);
+
+        mockMvc.perform(get("/todolist/items"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+        // endpoints without limit are still served
+        mockMvc.perform(delete("/todolist/items"))
+                .andExpect(status().isNoContent());
+
+        release.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        // the permit is back
+        mockMvc.perform(get("/todolist/items"))
+                .andExpect(status().isOk());
+        assertEquals(1, registry.counter(AdmissionControlInterceptor.REJECTIONS, "endpoint", "retrieveAllItems",
+                "reason", AdmissionControlInterceptor.OVERLOADED).count(), 0);
+    }
+
+    @Test
+    public void asynchronousRequestsHoldTheirPermitUntilComplete() throws Exception {
+        MvcResult streaming = mockMvc.perform(get("/todolist/items/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        retrieving.await(10, TimeUnit.SECONDS);
+
+        // the controller method returned, the response is still being written
+        mockMvc.perform(get("/todolist/items"))
+                .andExpect(status().isServiceUnavailable());
+
+        release.countDown();
+        streaming.getAsyncResult(10_000);
+        mockMvc.perform(asyncDispatch(streaming))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/todolist/items"))
+                .andExpect(status().isOk());
+    }
+
+    @RestController
+    @RequestMapping("/todolist/items")
+    public class ItemsController {
+
+        @RequestMapping(method = RequestMethod.GET)
+        public String retrieveAllItems() throws InterruptedException {
+            retrieving.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return "[]";
+        }
+
+        @RequestMapping(value = "/stream", method = RequestMethod.GET)
+        public Callable<String> streamAllItems() {
+            return this::retrieveAllItems;
+        }
+
+        @RequestMapping(method = RequestMethod.DELETE)
+        public ResponseEntity<Void> deleteAllItems() {
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ch.ricardo.screening.todolist.admission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ConcurrencyLimiterTest {
+
+    @Test
+    public void requestsOverTheLimitWaitThenAreRejected() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 4, 20);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertEquals(2, limiter.inFlight());
+
+        long start = System.nanoTime();
+        assertFalse(limiter.tryAcquire());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertEquals(0, limiter.queued());
+
+        limiter.release();
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void waitingRequestGetsTheReleasedPermit() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 4, 10_000);
+        assertTrue(limiter.tryAcquire());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> waiting = executor.submit(limiter::tryAcquire);
+            while (limiter.queued() == 0) {
+                Thread.sleep(1);
+            }
+            limiter.release();
+            assertTrue(waiting.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void requestsBeyondTheQueueAreRejectedAtOnce() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 10_000);
+        assertTrue(limiter.tryAcquire());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+        try {
+            Future<Boolean> waiting = executor.submit(() -> {
+                started.countDown();
+                return limiter.tryAcquire();
+            });
+            started.await();
+            while (limiter.queued() == 0) {
+                Thread.sleep(1);
+            }
+            long start = System.nanoTime();
+            assertFalse(limiter.tryAcquire());
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+
+            limiter.release();
+            assertTrue(waiting.get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
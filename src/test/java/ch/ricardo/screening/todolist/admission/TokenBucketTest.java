@@ -0,0 +1,85 @@
+package ch.ricardo.screening.todolist.admission;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void burstIsAllowedThenTheRate() {
+        long now = 42 * SECOND;
+        // 10 tokens per second, 5 at once
+        TokenBucket bucket = new TokenBucket(10, 5, now);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire(now));
+        }
+        assertEquals(SECOND / 10, bucket.tryAcquire(now));
+        assertFalse(bucket.isFull(now));
+
+        assertEquals(SECOND / 20, bucket.tryAcquire(now + SECOND / 20));
+        assertEquals(0, bucket.tryAcquire(now + SECOND / 10));
+        assertTrue(bucket.tryAcquire(now + SECOND / 10) > 0);
+    }
+
+    @Test
+    public void idleBucketRefillsUpToItsBurst() {
+        long now = -SECOND;
+        TokenBucket bucket = new TokenBucket(10, 5, now);
+        assertEquals(0, bucket.tryAcquire(now));
+
+        now += 60 * SECOND;
+        assertTrue(bucket.isFull(now));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire(now));
+        }
+        assertTrue(bucket.tryAcquire(now) > 0);
+    }
+
+    @Test
+    public void rateLimiterKeepsABucketPerClientAndEndpoint() {
+        RateLimiter limiter = new RateLimiter(Collections.singletonMap("deleteAllItems", 1.0), 0, 2, 2);
+        long now = 0;
+        assertEquals(0, limiter.tryAcquire("alice", "deleteAllItems", now));
+        assertEquals(0, limiter.tryAcquire("alice", "deleteAllItems", now));
+        assertEquals(SECOND, limiter.tryAcquire("alice", "deleteAllItems", now));
+        assertEquals(0, limiter.tryAcquire("bob", "deleteAllItems", now));
+        // no default rate: not limited, and not tracked
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, limiter.tryAcquire("alice", "retrieveItem", now));
+        }
+        assertEquals(2, limiter.bucketCount());
+
+        // full buckets are dropped to make room for new clients
+        now += 10 * SECOND;
+        assertEquals(0, limiter.tryAcquire("carol", "deleteAllItems", now));
+        assertEquals(1, limiter.bucketCount());
+    }
+
+    @Test
+    public void clientsBeyondTheMaximumShareABucket() {
+        RateLimiter limiter = new RateLimiter(Collections.singletonMap("deleteAllItems", 1.0), 0, 1, 2);
+        long now = 0;
+        assertEquals(0, limiter.tryAcquire("alice", "deleteAllItems", now));
+        assertEquals(0, limiter.tryAcquire("bob", "deleteAllItems", now));
+
+        // the buckets of alice and bob are not full yet: carol and dave share an overflow bucket, and are not tracked
+        now += SECOND / 2;
+        assertEquals(0, limiter.tryAcquire("carol", "deleteAllItems", now));
+        assertEquals(SECOND, limiter.tryAcquire("dave", "deleteAllItems", now));
+        assertEquals(2, limiter.bucketCount());
+
+        // the next sweep, a burst later, drops the full buckets: dave gets a bucket of its own
+        now += SECOND;
+        assertEquals(0, limiter.tryAcquire("dave", "deleteAllItems", now));
+        assertEquals(1, limiter.bucketCount());
+        assertEquals(SECOND, limiter.tryAcquire("dave", "deleteAllItems", now));
+    }
+}
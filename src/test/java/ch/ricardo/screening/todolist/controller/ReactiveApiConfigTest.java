@@ -0,0 +1,72 @@
+package ch.ricardo.screening.todolist.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+public class ReactiveApiConfigTest {
+
+    private final Scheduler scheduler = ReactiveApiConfig.boundedScheduler("test-", 1, 1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        scheduler.dispose();
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void tasksBeyondTheQueueAreRejected() throws InterruptedException {
+        CountDownLatch running = new CountDownLatch(1);
+        Mono.fromRunnable(() -> {
+            running.countDown();
+            awaitRelease();
+        }).subscribeOn(scheduler).subscribe();
+        running.await();
+        Mono.fromRunnable(this::awaitRelease).subscribeOn(scheduler).subscribe();
+
+        Mono.fromCallable(() -> "rejected").subscribeOn(scheduler).block();
+    }
+
+    @Test
+    public void queuedTasksRunOnceAThreadIsFree() {
+        Mono.fromRunnable(this::awaitRelease).subscribeOn(scheduler).subscribe();
+        Mono<String> queued = Mono.fromCallable(() -> "queued").subscribeOn(scheduler);
+
+        release.countDown();
+
+        assertEquals("queued", queued.block());
+    }
+
+    @Test
+    public void rejectedRequestsGetServiceUnavailable() {
+        WebTestClient webTestClient = WebTestClient.bindToRouterFunction(
+                route(GET("/todolist/items"), request -> Mono.error(new RejectedExecutionException()))
+                        .filter(ReactiveApiConfig.REJECTED_AS_UNAVAILABLE))
+                .build();
+
+        webTestClient.get().uri("/todolist/items").exchange()
+                .expectStatus().isEqualTo(503)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "1");
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package ch.ricardo.screening.todolist.controller;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+import ch.ricardo.screening.todolist.TodoListApplication;
+import ch.ricardo.screening.todolist.model.BatchItemResult;
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.service.TodoListService;
+import ch.ricardo.screening.todolist.wire.TodoListProtobuf;
+import ch.ricardo.screening.todolist.wire.WireFormats;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = TodoListApplication.class)
+@WebAppConfiguration
+public class TodoListBatchRestControllerTest {
+
+    private MediaType contentType = new MediaType(MediaType.APPLICATION_JSON.getType(),
+            MediaType.APPLICATION_JSON.getSubtype(),
+            Charset.forName("utf8"));
+
+    private MockMvc mockMvc;
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private TodoListService todoListService;
+
+    private long firstId;
+
+    @Before
+    public void setUp() throws Exception {
+        todoListService.deleteAllItems();
+
+        this.mockMvc = webAppContextSetup(webApplicationContext).build();
+
+        // Init TodoList with 2 items
+        firstId = todoListService.create(new TodoItem("item1")).getId();
+        todoListService.create(new TodoItem("item2"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        todoListService.deleteAllItems();
+    }
+
+    @Test
+    public void createItems() throws Exception {
+        this.mockMvc.perform(post("/todolist/items:batch")
+                .contentType(contentType)
+                .content("[{\"content\":\"item3\"},{\"content\":\"item1\"},"
+                        + "{\"content\":\"item3\"},{\"content\":\"item4\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(4)))
+                .andExpect(jsonPath("$[0].status", is(201)))
+                .andExpect(jsonPath("$[0].id", is((int) id(3))))
+                .andExpect(jsonPath("$[1].status", is(409)))
+                .andExpect(jsonPath("$[1].id", nullValue()))
+                .andExpect(jsonPath("$[2].status", is(409)))
+                .andExpect(jsonPath("$[3].status", is(201)))
+                .andExpect(jsonPath("$[3].id", is((int) id(4))));
+
+        mockMvc.perform(get("/todolist/items"))
+                .andExpect(jsonPath("$", hasSize(4)));
+    }
+
+    @Test
+    public void updateItems() throws Exception {
+        this.mockMvc.perform(patch("/todolist/items:batch")
+                .contentType(contentType)
+                .content("[{\"id\":" + id(1) + ",\"content\":\"item1 updated\"},{\"id\":" + id(3)
+                        + ",\"content\":\"item3\"},{\"id\":" + id(2) + ",\"content\":\"item1 updated\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].status", is(200)))
+                .andExpect(jsonPath("$[0].id", is((int) id(1))))
+                .andExpect(jsonPath("$[1].status", is(404)))
+                .andExpect(jsonPath("$[2].status", is(409)));
+
+        mockMvc.perform(get("/todolist/items/" + id(1)))
+                .andExpect(jsonPath("$.content", is("item1 updated")));
+    }
+
+    @Test
+    public void deleteItems() throws Exception {
+        this.mockMvc.perform(delete("/todolist/items:batch")
+                .contentType(contentType)
+                .content("[" + id(2) + ", " + id(3) + ", " + id(2) + "]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].status", is(204)))
+                .andExpect(jsonPath("$[0].id", is((int) id(2))))
+                .andExpect(jsonPath("$[1].status", is(404)))
+                .andExpect(jsonPath("$[2].status", is(404)));
+
+        mockMvc.perform(get("/todolist/items"))
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    public void deleteItemsInProtobuf() throws Exception {
+        ByteArrayOutputStream ids = new ByteArrayOutputStream();
+        CodedOutputStream output = CodedOutputStream.newInstance(ids);
+        TodoListProtobuf.writeIds(Arrays.asList(id(2), id(3)), output);
+        output.flush();
+        byte[] protobuf = this.mockMvc.perform(delete("/todolist/items:batch")
+                .contentType(WireFormats.APPLICATION_PROTOBUF)
+                .accept(WireFormats.APPLICATION_PROTOBUF)
+                .content(ids.toByteArray()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+
+        List<BatchItemResult> results = TodoListProtobuf.readResults(CodedInputStream.newInstance(protobuf));
+        assertEquals(2, results.size());
+        assertEquals(204, results.get(0).getStatus());
+        assertEquals(Long.valueOf(id(2)), results.get(0).getId());
+        assertEquals(404, results.get(1).getStatus());
+    }
+
+    @Test
+    public void batchTooLarge() throws Exception {
+        StringBuilder ids = new StringBuilder("[0");
+        for (int i = 1; i <= TodoListBatchRestController.MAX_BATCH_SIZE; i++) {
+            ids.append(',').append(i);
+        }
+        this.mockMvc.perform(delete("/todolist/items:batch")
+                .contentType(contentType)
+                .content(ids.append(']').toString()))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void batchWithNullItems() throws Exception {
+        this.mockMvc.perform(post("/todolist/items:batch")
+                .contentType(contentType)
+                .content("[{\"content\":\"item3\"},null]"))
+                .andExpect(status().isBadRequest());
+        this.mockMvc.perform(patch("/todolist/items:batch")
+                .contentType(contentType)
+                .content("[null]"))
+                .andExpect(status().isBadRequest());
+        this.mockMvc.perform(delete("/todolist/items:batch")
+                .contentType(contentType)
+                .content("[" + id(2) + ", null]"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/todolist/items"))
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    /**
+     * Id of the n-th item created by a test: ids are not reused after deleting all items, so they do not start over
+     * with each test.
+     */
+    private long id(int n) {
+        return firstId + n - 1;
+    }
+}
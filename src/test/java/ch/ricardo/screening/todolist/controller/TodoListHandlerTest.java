@@ -0,0 +1,224 @@
+package ch.ricardo.screening.todolist.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import ch.ricardo.screening.todolist.TodoListApplication;
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.service.TodoListService;
+
+/**
+ * The reactive variant of the API, served by Netty.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = TodoListApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.main.web-application-type=reactive")
+public class TodoListHandlerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private TodoListService todoListService;
+
+    private long firstId;
+
+    @Before
+    public void setUp() {
+        todoListService.deleteAllItems();
+        firstId = todoListService.create(new TodoItem("item1")).getId();
+        todoListService.create(new TodoItem("item2"));
+    }
+
+    @After
+    public void tearDown() {
+        todoListService.deleteAllItems();
+    }
+
+    @Test
+    public void retrieveAllItems() {
+        webTestClient.get().uri("/todolist/items").exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON_UTF8)
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].id").isEqualTo((int) id(1))
+                .jsonPath("$[0].content").isEqualTo("item1")
+                .jsonPath("$[1].id").isEqualTo((int) id(2))
+                .jsonPath("$[1].content").isEqualTo("item2");
+    }
+
+    @Test
+    public void retrieveAllItemsFromEmptyList() {
+        todoListService.deleteAllItems();
+        webTestClient.get().uri("/todolist/items").exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("[]");
+    }
+
+    @Test
+    public void retrieveManyItemsIsStreamedAsOneArray() {
+        for (int i = 3; i <= 2_500; i++) {
+            todoListService.create(new TodoItem("item" + i));
+        }
+        webTestClient.get().uri("/todolist/items").exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2_500)
+                .jsonPath("$[2499].content").isEqualTo("item2500");
+    }
+
+    @Test
+    public void retrieveAllItemsIsNotModifiedUntilAWrite() {
+        String etag = webTestClient.get().uri("/todolist/items").exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class).getResponseHeaders().getETag();
+        assertNotNull(etag);
+
+        webTestClient.get().uri("/todolist/items").header(HttpHeaders.IF_NONE_MATCH, etag).exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, etag);
+
+        todoListService.create(new TodoItem("item3"));
+        webTestClient.get().uri("/todolist/items").header(HttpHeaders.IF_NONE_MATCH, etag).exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.length()").isEqualTo(3);
+    }
+
+    @Test
+    public void streamAllItems() {
+        webTestClient.get().uri("/todolist/items").accept(TodoListHandler.APPLICATION_NDJSON).exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(TodoListHandler.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .isEqualTo(itemJson(id(1)) + "\n" + itemJson(id(2)) + "\n");
+    }
+
+    @Test
+    public void retrieveItemsPage() {
+        todoListService.create(new TodoItem("item3"));
+
+        webTestClient.get().uri("/todolist/items?limit=2").exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueMatches(HttpHeaders.LINK,
+                        ".*/todolist/items\\?after=" + id(2) + "&limit=2>; rel=\"next\"")
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[1].id").isEqualTo((int) id(2));
+
+        webTestClient.get().uri("/todolist/items?after=" + id(2) + "&limit=2").exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(HttpHeaders.LINK)
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].content").isEqualTo("item3");
+    }
+
+    @Test
+    public void retrieveItemsPageWithInvalidLimit() {
+        webTestClient.get().uri("/todolist/items?limit=0").exchange().expectStatus().isBadRequest();
+        webTestClient.get().uri("/todolist/items?limit=10001").exchange().expectStatus().isBadRequest();
+        webTestClient.get().uri("/todolist/items?limit=ten").exchange().expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void retrieveItem() {
+        String etag = webTestClient.get().uri("/todolist/items/" + id(1)).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo((int) id(1))
+                .jsonPath("$.content").isEqualTo("item1")
+                .returnResult().getResponseHeaders().getETag();
+
+        webTestClient.get().uri("/todolist/items/" + id(1)).header(HttpHeaders.IF_NONE_MATCH, etag).exchange()
+                .expectStatus().isNotModified();
+        webTestClient.get().uri("/todolist/items/" + id(3)).exchange().expectStatus().isNotFound();
+        webTestClient.get().uri("/todolist/items/one").exchange().expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void createItem() {
+        webTestClient.post().uri("/todolist/items").contentType(MediaType.APPLICATION_JSON)
+                .syncBody(new TodoItem("new todo item")).exchange()
+                .expectStatus().isCreated()
+                .expectHeader().valueMatches(HttpHeaders.LOCATION, ".*/todolist/items/" + id(3));
+        assertEquals("new todo item", todoListService.findItemById(id(3)).get().getContent());
+
+        webTestClient.post().uri("/todolist/items").contentType(MediaType.APPLICATION_JSON)
+                .syncBody(new TodoItem("item1")).exchange()
+                .expectStatus().isEqualTo(409);
+    }
+
+    @Test
+    public void updateItem() {
+        webTestClient.put().uri("/todolist/items/" + id(1)).contentType(MediaType.APPLICATION_JSON)
+                .syncBody(new TodoItem("item1 updated")).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.id").isEqualTo((int) id(1))
+                .jsonPath("$.content").isEqualTo("item1 updated");
+
+        webTestClient.put().uri("/todolist/items/" + id(1)).contentType(MediaType.APPLICATION_JSON)
+                .syncBody(new TodoItem("item2")).exchange()
+                .expectStatus().isEqualTo(409);
+        webTestClient.put().uri("/todolist/items/" + id(3)).contentType(MediaType.APPLICATION_JSON)
+                .syncBody(new TodoItem("item3")).exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void updateAndDeleteItemIfMatch() {
+        String etag = webTestClient.get().uri("/todolist/items/" + id(1)).exchange()
+                .returnResult(String.class).getResponseHeaders().getETag();
+
+        webTestClient.put().uri("/todolist/items/" + id(1)).header(HttpHeaders.IF_MATCH, etag)
+                .contentType(MediaType.APPLICATION_JSON).syncBody(new TodoItem("item1 updated")).exchange()
+                .expectStatus().isOk();
+        webTestClient.put().uri("/todolist/items/" + id(1)).header(HttpHeaders.IF_MATCH, etag)
+                .contentType(MediaType.APPLICATION_JSON).syncBody(new TodoItem("lost update")).exchange()
+                .expectStatus().isEqualTo(412);
+        webTestClient.delete().uri("/todolist/items/" + id(1)).header(HttpHeaders.IF_MATCH, etag).exchange()
+                .expectStatus().isEqualTo(412);
+        webTestClient.delete().uri("/todolist/items/" + id(1)).header(HttpHeaders.IF_MATCH, "*").exchange()
+                .expectStatus().isNoContent();
+        webTestClient.delete().uri("/todolist/items/" + id(1)).header(HttpHeaders.IF_MATCH, "*").exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    public void deleteItems() {
+        webTestClient.delete().uri("/todolist/items/" + id(1)).exchange().expectStatus().isNoContent();
+        webTestClient.delete().uri("/todolist/items/" + id(1)).exchange().expectStatus().isNotFound();
+
+        webTestClient.delete().uri("/todolist/items").exchange().expectStatus().isNoContent();
+        webTestClient.get().uri("/todolist/items/" + id(2)).exchange().expectStatus().isNotFound();
+    }
+
+    /**
+     * Id of the n-th item created by a test: ids are not reused after deleting all items, so they do not start over
+     * with each test.
+     */
+    private long id(int n) {
+        return firstId + n - 1;
+    }
+
+    /**
+     * JSON of an item of the list with the default attributes, as it is written in a stream.
+     */
+    private String itemJson(long id) {
+        TodoItem item = todoListService.findItemById(id).get();
+        return "{\"id\":" + id + ",\"content\":\"" + item.getContent() + "\",\"status\":\"OPEN\",\"priority\":0,"
+                + "\"created\":\"" + item.getCreated() + "\",\"updated\":\"" + item.getUpdated() + "\"}";
+    }
+}
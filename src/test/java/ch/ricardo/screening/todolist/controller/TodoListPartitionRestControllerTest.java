@@ -0,0 +1,176 @@
+package ch.ricardo.screening.todolist.controller;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+import ch.ricardo.screening.todolist.TodoListApplication;
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.service.TodoListPartitions;
+import ch.ricardo.screening.todolist.service.TodoListService;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = TodoListApplication.class)
+@WebAppConfiguration
+public class TodoListPartitionRestControllerTest {
+
+    private MockMvc mockMvc;
+
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private TodoListService todoListService;
+
+    @Autowired
+    private TodoListPartitions partitions;
+
+    // ids are not reused after deleting all items, so they do not start over with each test
+    private long itemId;
+
+    private long aliceId;
+
+    private long bobId;
+
+    @Before
+    public void setUp() {
+        this.mockMvc = webAppContextSetup(webApplicationContext).build();
+        todoListService.deleteAllItems();
+        itemId = todoListService.create(new TodoItem("item1")).getId();
+        aliceId = partitions.getOrCreate("alice").create(new TodoItem("alice1")).getId();
+        partitions.getOrCreate("alice").create(new TodoItem("alice2"));
+        bobId = partitions.getOrCreate("bob").create(new TodoItem("bob1")).getId();
+    }
+
+    @After
+    public void tearDown() {
+        todoListService.deleteAllItems();
+        partitions.getOrCreate("alice").deleteAllItems();
+        partitions.getOrCreate("bob").deleteAllItems();
+    }
+
+    @Test
+    public void retrieveListItems() throws Exception {
+        mockMvc.perform(get("/todolist/alice/items"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id", is((int) aliceId)))
+                .andExpect(jsonPath("$[0].content", is("alice1")));
+        mockMvc.perform(get("/todolist/bob/items"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is((int) bobId)))
+                .andExpect(jsonPath("$[0].content", is("bob1")));
+        mockMvc.perform(get("/todolist/carol/items"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    public void retrieveListItemsPage() throws Exception {
+        mockMvc.perform(get("/todolist/alice/items").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.LINK, endsWith("/todolist/alice/items?after=" + aliceId
+                        + "&limit=1>; rel=\"next\"")))
+                .andExpect(jsonPath("$", hasSize(1)));
+        mockMvc.perform(get("/todolist/alice/items").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void retrieveListItem() throws Exception {
+        String etag = mockMvc.perform(get("/todolist/bob/items/" + bobId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", is("bob1")))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(get("/todolist/bob/items/" + bobId).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/todolist/bob/items/" + (bobId + 1))).andExpect(status().isNotFound());
+        mockMvc.perform(get("/todolist/carol/items/1")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void createListItem() throws Exception {
+        mockMvc.perform(post("/todolist/carol/items").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"content\":\"item1\"}"))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(HttpHeaders.LOCATION, containsString("/todolist/carol/items/")));
+        mockMvc.perform(post("/todolist/carol/items").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"content\":\"item1\"}"))
+                .andExpect(status().isConflict());
+        partitions.getOrCreate("carol").deleteAllItems();
+    }
+
+    @Test
+    public void updateListItem() throws Exception {
+        mockMvc.perform(put("/todolist/alice/items/" + aliceId).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"content\":\"alice1 updated\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", is("alice1 updated")));
+        mockMvc.perform(put("/todolist/alice/items/" + aliceId).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"content\":\"alice2\"}"))
+                .andExpect(status().isConflict());
+        mockMvc.perform(put("/todolist/bob/items/" + (bobId + 1)).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"content\":\"alice2\"}"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void updateAndDeleteListItemIfMatch() throws Exception {
+        String etag = mockMvc.perform(get("/todolist/alice/items/" + aliceId))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(put("/todolist/alice/items/" + aliceId).header(HttpHeaders.IF_MATCH, etag)
+                .contentType(MediaType.APPLICATION_JSON).content("{\"content\":\"alice1 updated\"}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/todolist/alice/items/" + aliceId).header(HttpHeaders.IF_MATCH, etag)
+                .contentType(MediaType.APPLICATION_JSON).content("{\"content\":\"lost update\"}"))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(delete("/todolist/alice/items/" + aliceId).header(HttpHeaders.IF_MATCH, etag))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(delete("/todolist/alice/items/" + aliceId).header(HttpHeaders.IF_MATCH, "*"))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    public void deleteAllListItemsLeavesOtherListsAlone() throws Exception {
+        mockMvc.perform(delete("/todolist/alice/items/" + (aliceId + 1))).andExpect(status().isNoContent());
+        mockMvc.perform(delete("/todolist/alice/items/" + (aliceId + 1))).andExpect(status().isNotFound());
+
+        mockMvc.perform(delete("/todolist/alice/items")).andExpect(status().isNoContent());
+        mockMvc.perform(get("/todolist/alice/items")).andExpect(jsonPath("$", hasSize(0)));
+        mockMvc.perform(get("/todolist/bob/items")).andExpect(jsonPath("$", hasSize(1)));
+        mockMvc.perform(get("/todolist/items")).andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    public void defaultListKeepsItsPaths() throws Exception {
+        mockMvc.perform(get("/todolist/items/" + itemId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", is("item1")));
+        // not the items of a list named "items"
+        mockMvc.perform(get("/todolist/items/items")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/todolist/not.a.list/items")).andExpect(status().isNotFound());
+    }
+}
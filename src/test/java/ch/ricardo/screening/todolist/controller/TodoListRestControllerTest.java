@@ -1,9 +1,15 @@
 package ch.ricardo.screening.todolist.controller;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -11,18 +17,28 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.List;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -32,11 +48,18 @@ import org.springframework.mock.http.MockHttpOutputMessage;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.context.WebApplicationContext;
 
 import ch.ricardo.screening.todolist.TodoListApplication;
 import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.search.TodoListSearchIndex;
+import ch.ricardo.screening.todolist.service.ReplicableTodoListService;
 import ch.ricardo.screening.todolist.service.TodoListService;
+import ch.ricardo.screening.todolist.wire.TodoListProtobuf;
+import ch.ricardo.screening.todolist.wire.WireFormats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 
 /**
  * Created by tmi on 19/04/18.
@@ -58,8 +81,23 @@ public class TodoListRestControllerTest {
     @Autowired
     private TodoListService todoListService;
 
+    @Autowired
+    @Qualifier("todolistService")
+    private TodoListService storage;
+
+    @Autowired
+    private TodoListSearchIndex searchIndex;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ItemListJsonCache itemListJsonCache;
+
     private HttpMessageConverter mappingJackson2HttpMessageConverter;
 
+    private long firstId;
+
     @Autowired
     void setConverters(HttpMessageConverter<?>[] converters) {
 
@@ -79,7 +117,7 @@ public class TodoListRestControllerTest {
         this.mockMvc = webAppContextSetup(webApplicationContext).build();
 
         // Init TodoList with 2 items
-        todoListService.create(new TodoItem("item1"));
+        firstId = todoListService.create(new TodoItem("item1")).getId();
         todoListService.create(new TodoItem("item2"));
     }
 
@@ -94,9 +132,9 @@ public class TodoListRestControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(contentType))
                 .andExpect(jsonPath("$", hasSize(2)))
-                .andExpect(jsonPath("$[0].id", is(1)))
+                .andExpect(jsonPath("$[0].id", is((int) id(1))))
                 .andExpect(jsonPath("$[0].content", is("item1")))
-                .andExpect(jsonPath("$[1].id", is(2)))
+                .andExpect(jsonPath("$[1].id", is((int) id(2))))
                 .andExpect(jsonPath("$[1].content", is("item2")));
     }
 
@@ -109,18 +147,353 @@ public class TodoListRestControllerTest {
                 .andExpect(jsonPath("$", hasSize(0)));
     }
 
+    @Test
+    public void retrieveAllItemsIsNotModifiedUntilAWrite() throws Exception {
+        String etag = mockMvc.perform(get("/todolist/items"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        mockMvc.perform(get("/todolist/items").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+
+        todoListService.create(new TodoItem("item3"));
+
+        mockMvc.perform(get("/todolist/items").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)))
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[2].content", is("item3")));
+    }
+
+    @Test
+    public void retrieveAllItemsWithoutTheListCache() throws Exception {
+        String etag = mockMvc.perform(get("/todolist/items"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        long maxBytes = itemListJsonCache.maxBytes;
+        itemListJsonCache.maxBytes = 0;
+        try {
+            mockMvc.perform(get("/todolist/items"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(contentType))
+                    .andExpect(header().string(HttpHeaders.ETAG, etag))
+                    .andExpect(jsonPath("$", hasSize(2)))
+                    .andExpect(jsonPath("$[1].content", is("item2")));
+        } finally {
+            itemListJsonCache.maxBytes = maxBytes;
+        }
+    }
+
+    @Test
+    public void retrieveItemIsNotModifiedUntilTheItemChanges() throws Exception {
+        String etag = mockMvc.perform(get("/todolist/items/" + id(1)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").doesNotExist())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // changes to other items do not change the ETag of an item
+        todoListService.updateItem(id(2), new TodoItem("item2 updated"));
+        mockMvc.perform(get("/todolist/items/" + id(1)).header(HttpHeaders.IF_NONE_MATCH, "\"other\", " + etag))
+                .andExpect(status().isNotModified());
+
+        todoListService.updateItem(id(1), new TodoItem("item1 updated"));
+        mockMvc.perform(get("/todolist/items/" + id(1)).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", is("item1 updated")));
+    }
+
+    @Test
+    public void retrieveItemsPage() throws Exception {
+        todoListService.create(new TodoItem("item3"));
+
+        mockMvc.perform(get("/todolist/items").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(contentType))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id", is((int) id(1))))
+                .andExpect(jsonPath("$[1].id", is((int) id(2))))
+                .andExpect(header().string(HttpHeaders.LINK,
+                        endsWith("/todolist/items?after=" + id(2) + "&limit=2>; rel=\"next\"")));
+
+        mockMvc.perform(get("/todolist/items").param("limit", "2").param("after", String.valueOf(id(2))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is((int) id(3))))
+                .andExpect(jsonPath("$[0].content", is("item3")))
+                .andExpect(header().doesNotExist(HttpHeaders.LINK));
+    }
+
+    @Test
+    public void retrieveItemsPageWithInvalidLimit() throws Exception {
+        mockMvc.perform(get("/todolist/items").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/todolist/items").param("limit", "10001"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void createItemWithAttributes() throws Exception {
+        this.mockMvc.perform(post("/todolist/items")
+                .contentType(contentType)
+                .content("{\"content\":\"new todo item\",\"status\":\"IN_PROGRESS\",\"priority\":3,"
+                        + "\"dueDate\":\"2030-01-07\",\"created\":\"2000-01-01T00:00:00Z\"}"))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/todolist/items/" + id(3)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status", is("IN_PROGRESS")))
+                .andExpect(jsonPath("$.priority", is(3)))
+                .andExpect(jsonPath("$.dueDate", is("2030-01-07")))
+                // set by the server
+                .andExpect(jsonPath("$.created", not("2000-01-01T00:00:00Z")))
+                .andExpect(jsonPath("$.updated").exists());
+        mockMvc.perform(get("/todolist/items/" + id(1)))
+                .andExpect(jsonPath("$.status", is("OPEN")))
+                .andExpect(jsonPath("$.priority", is(0)))
+                .andExpect(jsonPath("$.dueDate").doesNotExist());
+    }
+
+    @Test
+    public void retrieveItemsMatchingAttributes() throws Exception {
+        LocalDate monday = LocalDate.of(2030, 1, 7);
+        todoListService.create(new TodoItem(null, "item3", TodoItem.Status.OPEN, 1, monday, null, null, 0));
+        todoListService.create(new TodoItem(null, "item4", TodoItem.Status.DONE, 5, monday, null, null, 0));
+        todoListService.create(new TodoItem(null, "item5", TodoItem.Status.OPEN, 2, monday.plusDays(6), null, null, 0));
+        todoListService.create(new TodoItem(null, "item6", TodoItem.Status.OPEN, 3, monday.plusDays(7), null, null, 0));
+
+        mockMvc.perform(get("/todolist/items").param("status", "OPEN").param("dueFrom", "2030-01-07")
+                .param("dueTo", "2030-01-13").param("sort", "-priority"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(contentType))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].content", is("item5")))
+                .andExpect(jsonPath("$[1].content", is("item3")))
+                .andExpect(header().doesNotExist(HttpHeaders.LINK));
+
+        // the next page is at the cursor of the last item: priority 2, id of item5, in base 36
+        // the link carries the query string of the request
+        String link = mockMvc.perform(get("/todolist/items?status=OPEN&status=DONE&minPriority=1&sort=priority"
+                + "&limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].content", is("item3")))
+                .andExpect(jsonPath("$[1].content", is("item5")))
+                .andExpect(header().string(HttpHeaders.LINK,
+                        endsWith("&sort=priority&cursor=2." + Long.toString(id(5), 36) + "&limit=2>; rel=\"next\"")))
+                .andReturn().getResponse().getHeader(HttpHeaders.LINK);
+
+        mockMvc.perform(get(link.substring(1, link.indexOf('>'))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].content", is("item6")))
+                .andExpect(jsonPath("$[1].content", is("item4")));
+
+        mockMvc.perform(get("/todolist/items").param("status", "OPEN,DONE").param("minPriority", "1")
+                .param("sort", "priority").param("offset", "2").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].content", is("item6")))
+                .andExpect(jsonPath("$[1].content", is("item4")));
+    }
+
+    @Test
+    public void retrieveItemsMatchingInvalidAttributes() throws Exception {
+        mockMvc.perform(get("/todolist/items").param("sort", "content"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/todolist/items").param("status", "CLOSED"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/todolist/items").param("dueFrom", "07.01.2030"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/todolist/items").param("status", "OPEN").param("after", "1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/todolist/items").param("status", "OPEN").param("offset", "9999").param("limit", "2"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/todolist/items").param("cursor", "2"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void retrieveAllItemsInBinaryFormats() throws Exception {
+        byte[] protobuf = mockMvc.perform(get("/todolist/items").accept(WireFormats.APPLICATION_PROTOBUF))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(WireFormats.APPLICATION_PROTOBUF))
+                .andReturn().getResponse().getContentAsByteArray();
+        List<TodoItem> items = TodoListProtobuf.readItems(CodedInputStream.newInstance(protobuf));
+        assertEquals(2, items.size());
+        assertEquals(Long.valueOf(id(2)), items.get(1).getId());
+        assertEquals("item2", items.get(1).getContent());
+
+        for (MediaType binaryType : Arrays.asList(WireFormats.APPLICATION_SMILE, WireFormats.APPLICATION_CBOR)) {
+            MvcResult result = mockMvc.perform(get("/todolist/items").accept(binaryType))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentTypeCompatibleWith(binaryType))
+                    .andReturn();
+            TodoItem[] decoded = jackson(binaryType).readValue(result.getResponse().getContentAsByteArray(),
+                    TodoItem[].class);
+            assertEquals(2, decoded.length);
+            assertEquals("item1", decoded[0].getContent());
+
+            // each representation of the list has its own ETag
+            String etag = result.getResponse().getHeader(HttpHeaders.ETAG);
+            assertEquals(HttpHeaders.ACCEPT, result.getResponse().getHeader(HttpHeaders.VARY));
+            mockMvc.perform(get("/todolist/items").accept(binaryType).header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isNotModified())
+                    .andExpect(header().string(HttpHeaders.ETAG, etag));
+            mockMvc.perform(get("/todolist/items").accept(MediaType.APPLICATION_JSON)
+                    .header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+        }
+
+        mockMvc.perform(get("/todolist/items").accept(WireFormats.APPLICATION_CBOR).param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.LINK,
+                        endsWith("/todolist/items?after=" + id(1) + "&limit=1>; rel=\"next\"")));
+    }
+
+    @Test
+    public void retrieveItemInProtobuf() throws Exception {
+        byte[] protobuf = mockMvc.perform(get("/todolist/items/" + id(1)).accept(WireFormats.APPLICATION_PROTOBUF))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(WireFormats.APPLICATION_PROTOBUF))
+                .andReturn().getResponse().getContentAsByteArray();
+        TodoItem item = TodoListProtobuf.readItem(CodedInputStream.newInstance(protobuf));
+        assertEquals(Long.valueOf(id(1)), item.getId());
+        assertEquals("item1", item.getContent());
+    }
+
+    @Test
+    public void createAndUpdateItemInBinaryFormats() throws Exception {
+        ByteArrayOutputStream protobuf = new ByteArrayOutputStream();
+        CodedOutputStream output = CodedOutputStream.newInstance(protobuf);
+        TodoListProtobuf.writeItem(new TodoItem("new todo item"), output);
+        output.flush();
+        this.mockMvc.perform(post("/todolist/items")
+                .contentType(WireFormats.APPLICATION_PROTOBUF)
+                .content(protobuf.toByteArray()))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(HttpHeaders.LOCATION, endsWith("/todolist/items/" + id(3))));
+
+        this.mockMvc.perform(put("/todolist/items/" + id(3))
+                .contentType(WireFormats.APPLICATION_SMILE)
+                .accept(WireFormats.APPLICATION_SMILE)
+                .content(jackson(WireFormats.APPLICATION_SMILE).writeValueAsBytes(new TodoItem("item3"))))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(WireFormats.APPLICATION_SMILE));
+
+        mockMvc.perform(get("/todolist/items/" + id(3)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", is("item3")));
+    }
+
+    @Test
+    public void createItemFromInvalidProtobuf() throws Exception {
+        this.mockMvc.perform(post("/todolist/items")
+                .contentType(WireFormats.APPLICATION_PROTOBUF)
+                .content(new byte[] {0x12, 0x7f, 'a'}))
+                .andExpect(status().isBadRequest());
+        // content "a", due date "2030-13-45"
+        this.mockMvc.perform(post("/todolist/items")
+                .contentType(WireFormats.APPLICATION_PROTOBUF)
+                .content(new byte[] {0x12, 0x01, 'a', 0x2a, 0x0a, '2', '0', '3', '0', '-', '1', '3', '-', '4', '5'}))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void streamAllItems() throws Exception {
+        MvcResult result = mockMvc.perform(get("/todolist/items").accept(TodoListRestController.APPLICATION_NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(TodoListRestController.APPLICATION_NDJSON_VALUE))
+                .andExpect(content().string(itemJson(id(1)) + "\n" + itemJson(id(2)) + "\n"));
+    }
+
+    @Test
+    public void searchItems() throws Exception {
+        todoListService.create(new TodoItem("buy milk"));
+        todoListService.create(new TodoItem("buy bread and milk"));
+        todoListService.create(new TodoItem("call the bank"));
+        todoListService.updateItem(id(1), new TodoItem("buy more milk"));
+        awaitSearchIndex();
+
+        mockMvc.perform(get("/todolist/items/search").param("q", "Milk BUY"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(contentType))
+                .andExpect(header().string(TodoListRestController.TOTAL_COUNT_HEADER, "3"))
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].content", is("buy milk")))
+                .andExpect(jsonPath("$[2].content", is("buy bread and milk")));
+
+        mockMvc.perform(get("/todolist/items/search").param("q", "ba*").param("offset", "0").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(TodoListRestController.TOTAL_COUNT_HEADER, "1"))
+                .andExpect(jsonPath("$[0].id", is((int) id(5))));
+
+        mockMvc.perform(get("/todolist/items/search").param("q", "item1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(TodoListRestController.TOTAL_COUNT_HEADER, "0"))
+                .andExpect(jsonPath("$", hasSize(0)));
+    }
+
+    @Test
+    public void searchItemsWithInvalidPage() throws Exception {
+        mockMvc.perform(get("/todolist/items/search").param("q", "item").param("offset", "-1"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/todolist/items/search").param("q", "item").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void streamEvents() throws Exception {
+        long version = todoListService.getVersion();
+        // resumes after the creation of item1, so the creation of item2 is sent first
+        MvcResult result = mockMvc.perform(get("/todolist/items/events").accept(MediaType.TEXT_EVENT_STREAM)
+                .header(TodoListRestController.LAST_EVENT_ID_HEADER, version - 1))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String created = itemJson(id(2));
+        todoListService.updateItem(id(1), new TodoItem("item1 updated"));
+        String updated = itemJson(id(1));
+        todoListService.deleteItemById(id(2));
+        todoListService.deleteAllItems();
+
+        String events = awaitEvents(result, 4);
+        assertEquals("id:" + version + "\nevent:created\ndata:" + created + "\n\n"
+                + "id:" + (version + 1) + "\nevent:updated\ndata:" + updated + "\n\n"
+                + "id:" + (version + 2) + "\nevent:deleted\ndata:{\"id\":" + id(2) + "}\n\n"
+                + "id:" + (version + 3) + "\nevent:cleared\ndata:{}\n\n", events);
+    }
+
+    @Test
+    public void streamEventsResetsWhenChangesAreNoLongerAvailable() throws Exception {
+        MvcResult result = mockMvc.perform(get("/todolist/items/events").accept(MediaType.TEXT_EVENT_STREAM)
+                .header(TodoListRestController.LAST_EVENT_ID_HEADER, todoListService.getVersion() + 1))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        long version = todoListService.getVersion();
+        assertEquals("id:" + version + "\nevent:reset\ndata:{\"version\":" + version + "}\n\n",
+                awaitEvents(result, 1));
+    }
+
     @Test
     public void retrieveItem() throws Exception {
-        mockMvc.perform(get("/todolist/items/1"))
+        mockMvc.perform(get("/todolist/items/" + id(1)))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(contentType))
-                .andExpect(jsonPath("$.id", is(1)))
+                .andExpect(jsonPath("$.id", is((int) id(1))))
                 .andExpect(jsonPath("$.content", is("item1")));
     }
 
     @Test
     public void retrieveNonExistingItem() throws Exception {
-        mockMvc.perform(get("/todolist/items/3"))
+        mockMvc.perform(get("/todolist/items/" + id(3)))
                 .andExpect(status().isNotFound());
     }
 
@@ -132,7 +505,7 @@ public class TodoListRestControllerTest {
                 .contentType(contentType)
                 .content(itemJson))
                 .andExpect(status().isCreated())
-                .andExpect(header().string(HttpHeaders.LOCATION, endsWith("/todolist/items/3")));
+                .andExpect(header().string(HttpHeaders.LOCATION, endsWith("/todolist/items/" + id(3))));
     }
 
     @Test
@@ -149,69 +522,254 @@ public class TodoListRestControllerTest {
     public void updateItem() throws Exception {
         String itemJson = json(new TodoItem("item1 updated"));
 
-        this.mockMvc.perform(put("/todolist/items/1")
+        this.mockMvc.perform(put("/todolist/items/" + id(1))
                 .contentType(contentType)
                 .content(itemJson))
                 .andExpect(status().isOk());
 
-        mockMvc.perform(get("/todolist/items/1"))
+        mockMvc.perform(get("/todolist/items/" + id(1)))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(contentType))
-                .andExpect(jsonPath("$.id", is(1)))
+                .andExpect(jsonPath("$.id", is((int) id(1))))
                 .andExpect(jsonPath("$.content", is("item1 updated")));
     }
 
     @Test
     public void updateNonExistingItem() throws Exception {
         String itemJson = json(new TodoItem("item updated"));
+        double notFound = notFoundRejections();
 
-        this.mockMvc.perform(put("/todolist/items/3")
+        this.mockMvc.perform(put("/todolist/items/" + id(3))
                 .contentType(contentType)
                 .content(itemJson))
                 .andExpect(status().isNotFound());
+        // counted once, by the update
+        assertEquals(notFound + 1, notFoundRejections(), 0);
+    }
+
+    @Test
+    public void updateItemWithContentOfAnotherItem() throws Exception {
+        String itemJson = json(new TodoItem("item2"));
+
+        this.mockMvc.perform(put("/todolist/items/" + id(1))
+                .contentType(contentType)
+                .content(itemJson))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void updateItemIfMatch() throws Exception {
+        String etag = mockMvc.perform(get("/todolist/items/" + id(1)))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        String updatedEtag = mockMvc.perform(put("/todolist/items/" + id(1)).header(HttpHeaders.IF_MATCH, etag)
+                .contentType(contentType)
+                .content(json(new TodoItem("item1 updated"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", is("item1 updated")))
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // a client still holding the first version does not overwrite the update
+        mockMvc.perform(put("/todolist/items/" + id(1)).header(HttpHeaders.IF_MATCH, etag)
+                .contentType(contentType)
+                .content(json(new TodoItem("lost update"))))
+                .andExpect(status().isPreconditionFailed());
+        // strong comparison: a weak tag never matches
+        mockMvc.perform(put("/todolist/items/" + id(1)).header(HttpHeaders.IF_MATCH, "W/" + updatedEtag)
+                .contentType(contentType)
+                .content(json(new TodoItem("lost update"))))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(get("/todolist/items/" + id(1)))
+                .andExpect(jsonPath("$.content", is("item1 updated")));
+
+        mockMvc.perform(put("/todolist/items/" + id(1)).header(HttpHeaders.IF_MATCH, etag + ", " + updatedEtag)
+                .contentType(contentType)
+                .content(json(new TodoItem("item2"))))
+                .andExpect(status().isConflict());
+        mockMvc.perform(put("/todolist/items/" + id(1)).header(HttpHeaders.IF_MATCH, "*")
+                .contentType(contentType)
+                .content(json(new TodoItem("item1 updated again"))))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/todolist/items/" + id(3)).header(HttpHeaders.IF_MATCH, "*")
+                .contentType(contentType)
+                .content(json(new TodoItem("item3"))))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void updateItemIfMatchAnyRepresentation() throws Exception {
+        String etag = mockMvc.perform(get("/todolist/items/" + id(1)))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String protobufEtag = mockMvc.perform(get("/todolist/items/" + id(1)).accept(WireFormats.APPLICATION_PROTOBUF))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // the representations of a version of the item are the same item
+        mockMvc.perform(put("/todolist/items/" + id(1)).header(HttpHeaders.IF_MATCH,
+                protobufEtag.replaceFirst("\"$", "-gzip\""))
+                .contentType(contentType)
+                .content(json(new TodoItem("item1 updated"))))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/todolist/items/" + id(1)).header(HttpHeaders.IF_MATCH, protobufEtag)
+                .contentType(contentType)
+                .content(json(new TodoItem("lost update"))))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    public void itemsRestoredFromASnapshotHaveTheirOwnTags() throws Exception {
+        // restored items all get the version of the snapshot
+        ReplicableTodoListService replicable = (ReplicableTodoListService) storage;
+        replicable.load(replicable.snapshot());
+        String etag1 = mockMvc.perform(get("/todolist/items/" + id(1)))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String etag2 = mockMvc.perform(get("/todolist/items/" + id(2)))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag1, etag2);
+
+        mockMvc.perform(delete("/todolist/items/" + id(1)).header(HttpHeaders.IF_MATCH, etag2))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(delete("/todolist/items/" + id(1)).header(HttpHeaders.IF_MATCH, etag1))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    public void deleteItemIfMatch() throws Exception {
+        String etag = mockMvc.perform(get("/todolist/items/" + id(1)))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        todoListService.updateItem(id(1), new TodoItem("item1 updated"));
+
+        mockMvc.perform(delete("/todolist/items/" + id(1)).header(HttpHeaders.IF_MATCH, etag))
+                .andExpect(status().isPreconditionFailed());
+
+        String updatedEtag = mockMvc.perform(get("/todolist/items/" + id(1)))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        mockMvc.perform(delete("/todolist/items/" + id(1)).header(HttpHeaders.IF_MATCH, updatedEtag))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete("/todolist/items/" + id(1)).header(HttpHeaders.IF_MATCH, updatedEtag))
+                .andExpect(status().isNotFound());
     }
 
     @Test
     public void deleteItem() throws Exception {
-        this.mockMvc.perform(get("/todolist/items/1"))
+        this.mockMvc.perform(get("/todolist/items/" + id(1)))
                 .andExpect(status().isOk());
 
-        this.mockMvc.perform(delete("/todolist/items/1"))
+        this.mockMvc.perform(delete("/todolist/items/" + id(1)))
                 .andExpect(status().isNoContent());
 
-        this.mockMvc.perform(get("/todolist/items/1"))
+        this.mockMvc.perform(get("/todolist/items/" + id(1)))
                 .andExpect(status().isNotFound());
     }
 
     @Test
     public void deleteNonExistingItem() throws Exception {
-        this.mockMvc.perform(delete("/todolist/items/3")
+        this.mockMvc.perform(delete("/todolist/items/" + id(3))
                 .contentType(contentType))
                 .andExpect(status().isNotFound());
     }
 
     @Test
     public void deleteAllItems() throws Exception {
-        this.mockMvc.perform(get("/todolist/items/1"))
+        this.mockMvc.perform(get("/todolist/items/" + id(1)))
                 .andExpect(status().isOk());
-        this.mockMvc.perform(get("/todolist/items/2"))
+        this.mockMvc.perform(get("/todolist/items/" + id(2)))
                 .andExpect(status().isOk());
 
         this.mockMvc.perform(delete("/todolist/items/"))
                 .andExpect(status().isNoContent());
 
-        this.mockMvc.perform(get("/todolist/items/1"))
+        this.mockMvc.perform(get("/todolist/items/" + id(1)))
                 .andExpect(status().isNotFound());
-        this.mockMvc.perform(get("/todolist/items/2"))
+        this.mockMvc.perform(get("/todolist/items/" + id(2)))
                 .andExpect(status().isNotFound());
 
-        // Check that id counter has actually been reset
+        // Check that ids are not handed out again
         String itemJson = json(new TodoItem("new todo item"));
         this.mockMvc.perform(post("/todolist/items")
                 .contentType(contentType)
                 .content(itemJson))
                 .andExpect(status().isCreated())
-                .andExpect(header().string(HttpHeaders.LOCATION, endsWith("/todolist/items/1")));
+                .andExpect(header().string(HttpHeaders.LOCATION, endsWith("/todolist/items/" + id(3))));
+    }
+
+    @Test
+    public void serviceMetricsAreExposedForPrometheus() throws Exception {
+        this.mockMvc.perform(get("/todolist/items/" + id(42)))
+                .andExpect(status().isNotFound());
+        this.mockMvc.perform(put("/todolist/items/" + id(42))
+                .contentType(contentType)
+                .content(json(new TodoItem("new todo item"))))
+                .andExpect(status().isNotFound());
+
+        this.mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString(
+                        "todolist_service_seconds{operation=\"findItemById\",quantile=\"0.99\",}")))
+                .andExpect(content().string(containsString(
+                        "todolist_service_rejections_total{operation=\"update\",reason=\"not_found\",}")))
+                .andExpect(content().string(containsString("todolist_items 2.0")));
+    }
+
+    /**
+     * The search index is updated in the background: waits until it has caught up with the last write.
+     */
+    private void awaitSearchIndex() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (searchIndex.getVersion() < todoListService.getVersion()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("search index is still at version " + searchIndex.getVersion());
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Events are sent in the background: waits until the given number of events is written.
+     */
+    private String awaitEvents(MvcResult result, int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        String events = result.getResponse().getContentAsString();
+        while (events.split("\n\n", -1).length <= count) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("events not received, got " + events);
+            }
+            Thread.sleep(10);
+            events = result.getResponse().getContentAsString();
+        }
+        return events;
+    }
+
+    /**
+     * Id of the n-th item created by a test: ids are not reused after deleting all items, so they do not start over
+     * with each test.
+     */
+    private long id(int n) {
+        return firstId + n - 1;
+    }
+
+    /**
+     * JSON of an item of the list with the default attributes, as it is written in a stream.
+     */
+    private String itemJson(long id) {
+        TodoItem item = todoListService.findItemById(id).get();
+        return "{\"id\":" + id + ",\"content\":\"" + item.getContent() + "\",\"status\":\"OPEN\",\"priority\":0,"
+                + "\"created\":\"" + item.getCreated() + "\",\"updated\":\"" + item.getUpdated() + "\"}";
+    }
+
+    @Test
+    public void apiDocumentationDescribesEveryRepresentationOfTheList() throws Exception {
+        mockMvc.perform(get("/v2/api-docs")).andExpect(status().isOk())
+                .andExpect(jsonPath("$.paths['/todolist/items'].get.produces",
+                        hasItems("application/json", WireFormats.APPLICATION_CBOR_VALUE,
+                                WireFormats.APPLICATION_PROTOBUF_VALUE)));
+    }
+
+    private static ObjectMapper jackson(MediaType binaryType) {
+        return new ObjectMapper(
+                binaryType.equals(WireFormats.APPLICATION_SMILE) ? new SmileFactory() : new CBORFactory());
     }
 
     protected String json(Object o) throws IOException {
@@ -221,4 +779,9 @@ public class TodoListRestControllerTest {
         return mockHttpOutputMessage.getBodyAsString();
     }
 
-}
\ No newline at end of file
+
+    private double notFoundRejections() {
+        return meterRegistry.find("todolist.service.rejections").tag("reason", "not_found").meters().stream()
+                .mapToDouble(counter -> ((Counter) counter).count()).sum();
+    }
+}
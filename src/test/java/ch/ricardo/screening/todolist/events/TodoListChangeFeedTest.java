@@ -0,0 +1,233 @@
+package ch.ricardo.screening.todolist.events;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.model.TodoListEvent;
+import ch.ricardo.screening.todolist.service.ConcurrentTodoListServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class TodoListChangeFeedTest {
+
+    private static final int HISTORY_SIZE = 20;
+
+    private static final int BUFFER_SIZE = 10;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private ConcurrentTodoListServiceImpl todolistService;
+
+    private TodoListChangeFeed feed;
+
+    @Before
+    public void setUp() {
+        todolistService = new ConcurrentTodoListServiceImpl();
+        todolistService.create(new TodoItem("item1"));
+        feed = new TodoListChangeFeed(todolistService, registry, HISTORY_SIZE, BUFFER_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        feed.close();
+    }
+
+    @Test
+    public void sendsEachChangeInOrder() throws InterruptedException {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        feed.subscribe(null, subscriber);
+
+        todolistService.create(new TodoItem("item2"));
+        todolistService.updateItem(1L, new TodoItem("item1 updated"));
+        todolistService.deleteItemById(2L);
+        todolistService.deleteAllItems();
+
+        assertEquals("2 CREATED 2 item2", subscriber.next());
+        assertEquals("3 UPDATED 1 item1 updated", subscriber.next());
+        assertEquals("4 DELETED 2 null", subscriber.next());
+        assertEquals("5 ALL_DELETED null null", subscriber.next());
+        assertEquals(1.0, registry.get(TodoListChangeFeed.SUBSCRIBERS).gauge().value(), 0);
+    }
+
+    @Test
+    public void resumesAfterTheLastEventReceived() throws InterruptedException {
+        for (int i = 2; i <= 5; i++) {
+            todolistService.create(new TodoItem("item" + i));
+        }
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        feed.subscribe(3L, subscriber);
+        todolistService.create(new TodoItem("item6"));
+
+        assertEquals("4 CREATED 4 item4", subscriber.next());
+        assertEquals("5 CREATED 5 item5", subscriber.next());
+        assertEquals("6 CREATED 6 item6", subscriber.next());
+    }
+
+    @Test
+    public void resetsWhenMissedEventsAreNoLongerAvailable() throws InterruptedException {
+        // the event of version 1 happened before the feed started
+        todolistService.create(new TodoItem("item2"));
+        RecordingSubscriber tooOld = new RecordingSubscriber();
+        feed.subscribe(0L, tooOld);
+        assertEquals("reset 2", tooOld.next());
+
+        // more missed events than a buffer can hold
+        for (int i = 3; i <= 3 + BUFFER_SIZE; i++) {
+            todolistService.create(new TodoItem("item" + i));
+        }
+        RecordingSubscriber tooFarBehind = new RecordingSubscriber();
+        feed.subscribe(2L, tooFarBehind);
+        assertEquals("reset 13", tooFarBehind.next());
+
+        // an event the feed never sent, e.g. from before a restart
+        RecordingSubscriber fromTheFuture = new RecordingSubscriber();
+        feed.subscribe(100L, fromTheFuture);
+        assertEquals("reset 13", fromTheFuture.next());
+
+        todolistService.create(new TodoItem("item14"));
+        assertEquals("14 CREATED 14 item14", fromTheFuture.next());
+    }
+
+    @Test
+    public void resetsWhenTheWholeListIsReplaced() throws InterruptedException {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        feed.subscribe(null, subscriber);
+        todolistService.create(new TodoItem("item2"));
+        assertEquals("2 CREATED 2 item2", subscriber.next());
+
+        // e.g. a replica loading a snapshot of its primary, possibly older than its own version
+        ConcurrentTodoListServiceImpl primary = new ConcurrentTodoListServiceImpl();
+        primary.create(new TodoItem("other"));
+        todolistService.load(primary.snapshot());
+        assertEquals("reset 1", subscriber.next());
+
+        // the events of the replaced list are gone
+        RecordingSubscriber late = new RecordingSubscriber();
+        feed.subscribe(2L, late);
+        todolistService.create(new TodoItem("item2"));
+        assertEquals("2 CREATED 2 item2", subscriber.next());
+        assertEquals("reset 1", late.next());
+        assertEquals("2 CREATED 2 item2", late.next());
+    }
+
+    @Test
+    public void slowSubscriberIsDisconnectedWithoutBlockingWrites() throws InterruptedException {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch unblock = new CountDownLatch(1);
+        RecordingSubscriber slow = new RecordingSubscriber() {
+            @Override
+            public void send(TodoListEvent event) {
+                sending.countDown();
+                awaitUninterruptibly(unblock);
+                super.send(event);
+            }
+        };
+        RecordingSubscriber fast = new RecordingSubscriber();
+        feed.subscribe(null, slow);
+        feed.subscribe(null, fast);
+
+        todolistService.create(new TodoItem("item2"));
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        assertEquals("2 CREATED 2 item2", fast.next());
+        // the slow subscriber is stuck sending the first event, buffers BUFFER_SIZE more, and the next one overflows
+        for (int i = 3; i <= BUFFER_SIZE + 3; i++) {
+            todolistService.create(new TodoItem("item" + i));
+            assertEquals(i + " CREATED " + i + " item" + i, fast.next());
+        }
+        assertEquals(1.0, registry.get(TodoListChangeFeed.DISCONNECTIONS).counter().count(), 0);
+        assertEquals(1.0, registry.get(TodoListChangeFeed.SUBSCRIBERS).gauge().value(), 0);
+
+        unblock.countDown();
+        assertEquals("2 CREATED 2 item2", slow.next());
+        assertEquals("disconnected", slow.next());
+        assertTrue(slow.received.isEmpty());
+    }
+
+    @Test
+    public void subscribersAndSenderThreadsAreBounded() throws InterruptedException {
+        feed.close();
+        feed = new TodoListChangeFeed(todolistService, new SimpleMeterRegistry(), HISTORY_SIZE, BUFFER_SIZE, 1, 2);
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch unblock = new CountDownLatch(1);
+        RecordingSubscriber slow = new RecordingSubscriber() {
+            @Override
+            public void send(TodoListEvent event) {
+                sending.countDown();
+                awaitUninterruptibly(unblock);
+                super.send(event);
+            }
+        };
+        assertTrue(feed.subscribe(null, slow).isPresent());
+        todolistService.create(new TodoItem("item2"));
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+        RecordingSubscriber fast = new RecordingSubscriber();
+        assertTrue(feed.subscribe(null, fast).isPresent());
+        assertFalse(feed.subscribe(null, new RecordingSubscriber()).isPresent());
+
+        // the only sender thread is held by the slow subscriber
+        todolistService.create(new TodoItem("item3"));
+        assertEquals(null, fast.received.poll(100, TimeUnit.MILLISECONDS));
+        unblock.countDown();
+        assertEquals("3 CREATED 3 item3", fast.next());
+        assertEquals("2 CREATED 2 item2", slow.next());
+        assertEquals("3 CREATED 3 item3", slow.next());
+    }
+
+    @Test
+    public void cancelledSubscriberReceivesNoMoreEvents() throws InterruptedException {
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        TodoListChangeFeed.Subscription subscription = feed.subscribe(null, subscriber).get();
+        subscription.cancel();
+
+        todolistService.create(new TodoItem("item2"));
+        assertEquals(null, subscriber.received.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(0.0, registry.get(TodoListChangeFeed.SUBSCRIBERS).gauge().value(), 0);
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class RecordingSubscriber implements ChangeFeedSubscriber {
+
+        final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+
+        @Override
+        public void send(TodoListEvent event) {
+            received.add(event.getSequence() + " " + event.getType() + " " + event.getId() + " " + event.getContent());
+        }
+
+        @Override
+        public void reset(long version) {
+            received.add("reset " + version);
+        }
+
+        @Override
+        public void disconnect() {
+            received.add("disconnected");
+        }
+
+        String next() throws InterruptedException {
+            String next = received.poll(5, TimeUnit.SECONDS);
+            if (next == null) {
+                throw new AssertionError("no event received");
+            }
+            return next;
+        }
+    }
+}
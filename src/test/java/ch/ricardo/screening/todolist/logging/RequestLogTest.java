@@ -0,0 +1,198 @@
+package ch.ricardo.screening.todolist.logging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class RequestLogTest {
+
+    private static final String ENDPOINT = "testEndpoint";
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger(RequestLog.LOGGER_PREFIX + ENDPOINT);
+
+    private final RecordingAppender appender = new RecordingAppender();
+
+    private final RequestLogProperties properties = new RequestLogProperties();
+
+    private RequestLog requestLog;
+
+    @Before
+    public void setUp() {
+        appender.start();
+        logger.addAppender(appender);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        appender.release.countDown();
+        if (requestLog != null) {
+            requestLog.close();
+        }
+        logger.detachAppender(appender);
+    }
+
+    @Test
+    public void syncModeLogsOnTheCallerThread() {
+        properties.setMode(RequestLogMode.SYNC);
+        appender.release.countDown();
+        requestLog = new RequestLog(properties, new SimpleMeterRegistry());
+
+        requestLog.info(ENDPOINT, "Retrieving item id {}", 42L);
+        requestLog.warn(ENDPOINT, "Unable to retrieve item id {}", 42L);
+
+        assertEquals(2, appender.events.size());
+        assertEquals("Retrieving item id 42", appender.events.get(0).getFormattedMessage());
+        assertEquals(Thread.currentThread().getName(), appender.events.get(0).getThreadName());
+    }
+
+    @Test
+    public void longArgumentsAreTruncated() {
+        properties.setMode(RequestLogMode.SYNC);
+        properties.setMaxArgumentLength(5);
+        appender.release.countDown();
+        requestLog = new RequestLog(properties, new SimpleMeterRegistry());
+
+        requestLog.info(ENDPOINT, "Creating new item with content {}", "0123456789");
+
+        assertEquals("Creating new item with content 01234... (10 chars)",
+                appender.events.get(0).getFormattedMessage());
+    }
+
+    @Test
+    public void unsampledEndpointsOnlyLogWarnings() {
+        properties.setMode(RequestLogMode.SYNC);
+        properties.getSampleRate().put(ENDPOINT, 0.0);
+        appender.release.countDown();
+        requestLog = new RequestLog(properties, new SimpleMeterRegistry());
+
+        for (int i = 0; i < 100; i++) {
+            requestLog.info(ENDPOINT, "Retrieving all items");
+        }
+        requestLog.warn(ENDPOINT, "Unable to retrieve items, invalid page limit {}", 0);
+
+        assertEquals(1, appender.events.size());
+    }
+
+    @Test
+    public void asyncModeDropsMessagesWhenTheBufferIsFull() throws InterruptedException {
+        properties.setMode(RequestLogMode.ASYNC);
+        properties.setBufferSize(2);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        requestLog = new RequestLog(properties, registry);
+
+        // the writer blocks on the first message, the next two fill the buffer, the last two are dropped
+        requestLog.info(ENDPOINT, "message {}", 1);
+        assertTrue(appender.blocked.await(10, TimeUnit.SECONDS));
+        for (int i = 2; i <= 5; i++) {
+            requestLog.info(ENDPOINT, "message {}", i);
+        }
+        assertEquals(2, requestLog.getDropped());
+        assertEquals(2, registry.get(RequestLog.DROPPED).functionCounter().count(), 0);
+
+        appender.release.countDown();
+        requestLog.close();
+        assertEquals(3, appender.events.size());
+        assertEquals("message 3", appender.events.get(2).getFormattedMessage());
+    }
+
+    @Test
+    public void asyncModeKeepsTheThreadAndTimeOfTheRequest() throws InterruptedException {
+        properties.setMode(RequestLogMode.ASYNC);
+        appender.release.countDown();
+        requestLog = new RequestLog(properties, new SimpleMeterRegistry());
+
+        long before = System.currentTimeMillis();
+        requestLog.warn(ENDPOINT, "Unable to retrieve item id {}", 42L);
+        long after = System.currentTimeMillis();
+        requestLog.close();
+
+        ILoggingEvent event = appender.events.get(0);
+        assertEquals("Unable to retrieve item id 42", event.getFormattedMessage());
+        assertEquals(Level.WARN, event.getLevel());
+        assertEquals(Thread.currentThread().getName(), event.getThreadName());
+        assertTrue(event.getTimeStamp() >= before && event.getTimeStamp() <= after);
+    }
+
+    @Test
+    public void asyncModeGoesOnAfterAMessageFailsToBeWritten() throws InterruptedException {
+        properties.setMode(RequestLogMode.ASYNC);
+        appender.release.countDown();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        requestLog = new RequestLog(properties, registry);
+        FailingAppender failing = new FailingAppender();
+        failing.start();
+        logger.addAppender(failing);
+        try {
+            for (int i = 1; i <= 3; i++) {
+                requestLog.info(ENDPOINT, "message {}", i);
+            }
+            requestLog.close();
+        } finally {
+            logger.detachAppender(failing);
+        }
+
+        assertEquals(2, requestLog.getFailed());
+        assertEquals(2, registry.get(RequestLog.FAILED).functionCounter().count(), 0);
+        // the writer went on after the failures
+        assertEquals(3, appender.events.size());
+        assertEquals("message 3", appender.events.get(2).getFormattedMessage());
+    }
+
+    /**
+     * Fails to append the first two events, past the safety net of {@link AppenderBase}.
+     */
+    private static class FailingAppender extends AppenderBase<ILoggingEvent> {
+
+        private int failures = 2;
+
+        @Override
+        public synchronized void doAppend(ILoggingEvent event) {
+            if (failures > 0) {
+                failures--;
+                throw new IllegalStateException("appender failure");
+            }
+        }
+
+        @Override
+        protected void append(ILoggingEvent event) {
+        }
+    }
+
+    /**
+     * Records events, blocking the appending thread until released.
+     */
+    private static class RecordingAppender extends AppenderBase<ILoggingEvent> {
+
+        private final List<ILoggingEvent> events = new CopyOnWriteArrayList<>();
+
+        private final CountDownLatch blocked = new CountDownLatch(1);
+
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        protected void append(ILoggingEvent event) {
+            blocked.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add(event);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package ch.ricardo.screening.todolist.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.service.ConcurrentTodoListServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class MeteredTodoListServiceTest {
+
+    private MeterRegistry registry;
+
+    private MeteredTodoListService service;
+
+    @Before
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        service = new MeteredTodoListService(new ConcurrentTodoListServiceImpl(), registry);
+    }
+
+    @Test
+    public void callsAreTimedPerOperation() {
+        service.create(new TodoItem("item1"));
+        service.findItemById(1L);
+        service.findItemById(1L);
+        service.retrieveAllItems();
+
+        assertEquals(1, timerCount("create"));
+        assertEquals(2, timerCount("findItemById"));
+        assertEquals(1, timerCount("retrieveAllItems"));
+        assertEquals(0, timerCount("deleteItemById"));
+    }
+
+    @Test
+    public void conflictsAndMissingItemsAreCounted() {
+        service.createIfAbsent(new TodoItem("item1"));
+        service.createIfAbsent(new TodoItem("item2"));
+        service.createIfAbsent(new TodoItem("item1"));
+        service.updateItem(2L, new TodoItem("item1"));
+        service.updateItem(3L, new TodoItem("item3"));
+        service.update(2L, new TodoItem("item1"));
+        service.update(3L, new TodoItem("item3"));
+        service.deleteItemById(3L);
+
+        assertEquals(1, rejections("createIfAbsent", MeteredTodoListService.CONFLICT), 0);
+        assertEquals(1, rejections("updateItem", MeteredTodoListService.CONFLICT), 0);
+        assertEquals(1, rejections("updateItem", MeteredTodoListService.NOT_FOUND), 0);
+        assertEquals(1, rejections("update", MeteredTodoListService.CONFLICT), 0);
+        assertEquals(1, rejections("update", MeteredTodoListService.NOT_FOUND), 0);
+        assertEquals(1, rejections("deleteItemById", MeteredTodoListService.NOT_FOUND), 0);
+    }
+
+    @Test
+    public void missingItemsOfLookupsAreNotCounted() {
+        service.findItemById(1L);
+
+        assertEquals(1, timerCount("findItemById"));
+        assertNull(registry.find(MeteredTodoListService.REJECTIONS).tag("operation", "findItemById").counter());
+    }
+
+    @Test
+    public void batchRejectionsAreCountedPerItem() {
+        service.createItemsIfAbsent(Arrays.asList(new TodoItem("item1"), new TodoItem("item1"),
+                new TodoItem("item1")));
+        service.deleteItemsById(Arrays.asList(1L, 2L, 3L));
+
+        assertEquals(1, timerCount("createItemsIfAbsent"));
+        assertEquals(2, rejections("createItemsIfAbsent", MeteredTodoListService.CONFLICT), 0);
+        assertEquals(2, rejections("deleteItemsById", MeteredTodoListService.NOT_FOUND), 0);
+    }
+
+    @Test
+    public void gaugeFollowsTheNumberOfItems() {
+        service.create(new TodoItem("item1"));
+        service.create(new TodoItem("item2"));
+        assertEquals(2, registry.get(MeteredTodoListService.ITEMS).gauge().value(), 0);
+
+        service.deleteItemById(1L);
+        assertEquals(1, registry.get(MeteredTodoListService.ITEMS).gauge().value(), 0);
+
+        service.deleteAllItems();
+        assertEquals(0, registry.get(MeteredTodoListService.ITEMS).gauge().value(), 0);
+    }
+
+    private long timerCount(String operation) {
+        return registry.get(MeteredTodoListService.OPERATIONS).tag("operation", operation).timer().count();
+    }
+
+    private double rejections(String operation, String reason) {
+        return registry.get(MeteredTodoListService.REJECTIONS).tag("operation", operation).tag("reason", reason)
+                .counter().count();
+    }
+}
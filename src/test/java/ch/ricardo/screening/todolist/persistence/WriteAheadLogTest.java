@@ -0,0 +1,274 @@
+package ch.ricardo.screening.todolist.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.service.ConcurrentTodoListServiceImpl;
+
+public class WriteAheadLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path directory;
+
+    private WriteAheadLog wal;
+
+    private ConcurrentTodoListServiceImpl service;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.getRoot().toPath();
+        reopen();
+    }
+
+    @After
+    public void tearDown() {
+        wal.close();
+    }
+
+    @Test
+    public void itemsAndCounterSurviveARestart() throws IOException {
+        service.create(new TodoItem("item1"));
+        service.create(new TodoItem("item2"));
+        service.create(new TodoItem("item3"));
+        service.updateItem(1L, new TodoItem("item1 updated"));
+        service.deleteItemById(2L);
+        service.deleteItemById(3L);
+
+        reopen();
+
+        List<TodoItem> items = service.retrieveAllItems();
+        assertEquals(1, items.size());
+        assertEquals("item1 updated", items.get(0).getContent());
+        assertTrue(service.exists(new TodoItem("item1 updated")));
+        // ids of deleted items are not handed out again
+        assertEquals(Long.valueOf(4), service.create(new TodoItem("item4")).getId());
+    }
+
+    @Test
+    public void idsAreNotReusedAfterDeletingAllItemsAndRestarting() throws IOException {
+        service.create(new TodoItem("item1"));
+        service.create(new TodoItem("item2"));
+        service.deleteAllItems();
+
+        reopen();
+
+        assertTrue(service.retrieveAllItems().isEmpty());
+        assertEquals(Long.valueOf(3), service.create(new TodoItem("item1")).getId());
+        wal.takeSnapshot();
+        service.deleteAllItems();
+
+        reopen();
+
+        assertEquals(Long.valueOf(4), service.create(new TodoItem("item1")).getId());
+    }
+
+    @Test
+    public void snapshotCompactsTheLog() throws IOException {
+        for (int i = 1; i <= 100; i++) {
+            service.create(new TodoItem("item" + i));
+        }
+        service.deleteItemById(100L);
+        wal.takeSnapshot();
+
+        assertTrue(Files.exists(directory.resolve(WriteAheadLog.SNAPSHOT_FILE)));
+        List<Path> segments = segments();
+        assertEquals(1, segments.size());
+        assertEquals(0, Files.size(segments.get(0)));
+
+        service.create(new TodoItem("item101"));
+        service.updateItem(1L, new TodoItem("item1 updated"));
+        reopen();
+
+        List<TodoItem> items = service.retrieveAllItems();
+        assertEquals(100, items.size());
+        assertEquals("item1 updated", items.get(0).getContent());
+        assertEquals(Long.valueOf(101), items.get(99).getId());
+        assertEquals(Long.valueOf(102), service.create(new TodoItem("item102")).getId());
+    }
+
+    @Test
+    public void attributesSurviveTheLogAndTheSnapshot() throws IOException {
+        LocalDate dueDate = LocalDate.of(2030, 1, 31);
+        TodoItem snapshotted = service.create(new TodoItem(null, "item1", TodoItem.Status.DONE, 3, dueDate, null,
+                null, 0));
+        wal.takeSnapshot();
+        TodoItem logged = service.create(new TodoItem(null, "item2", TodoItem.Status.IN_PROGRESS, -1, null, null,
+                null, 0));
+        service.updateItem(logged.getId(), new TodoItem(null, "item2 updated", TodoItem.Status.DONE, 5, dueDate,
+                null, null, 0));
+        TodoItem updated = service.findItemById(logged.getId()).get();
+        reopen();
+
+        TodoItem item1 = service.findItemById(snapshotted.getId()).get();
+        assertEquals(TodoItem.Status.DONE, item1.getStatus());
+        assertEquals(3, item1.getPriority());
+        assertEquals(dueDate, item1.getDueDate());
+        assertEquals(snapshotted.getCreated(), item1.getCreated());
+        assertEquals(snapshotted.getUpdated(), item1.getUpdated());
+
+        TodoItem item2 = service.findItemById(logged.getId()).get();
+        assertEquals("item2 updated", item2.getContent());
+        assertEquals(TodoItem.Status.DONE, item2.getStatus());
+        assertEquals(5, item2.getPriority());
+        assertEquals(dueDate, item2.getDueDate());
+        assertEquals(logged.getCreated(), item2.getCreated());
+        assertEquals(updated.getUpdated(), item2.getUpdated());
+    }
+
+    @Test
+    public void snapshotIsSkippedWhenNothingChanged() throws IOException {
+        service.create(new TodoItem("item1"));
+        wal.takeSnapshot();
+        Files.delete(directory.resolve(WriteAheadLog.SNAPSHOT_FILE));
+
+        wal.takeSnapshot();
+
+        assertFalse(Files.exists(directory.resolve(WriteAheadLog.SNAPSHOT_FILE)));
+    }
+
+    @Test
+    public void tornRecordIsDiscardedAtRecovery() throws IOException {
+        service.create(new TodoItem("item1"));
+        service.create(new TodoItem("item2"));
+        wal.close();
+        // simulate a crash in the middle of a record: a size announcing more bytes than what follows
+        Path lastSegment = segments().get(segments().size() - 1);
+        Files.write(lastSegment, new byte[] {0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        reopen();
+        assertEquals(2, service.retrieveAllItems().size());
+        service.create(new TodoItem("item3"));
+
+        reopen();
+        assertEquals(3, service.retrieveAllItems().size());
+        assertEquals("item3", service.findItemById(3L).get().getContent());
+    }
+
+    @Test
+    public void concurrentWritersAreAllDurable() throws Exception {
+        int threads = 8;
+        int itemsPerThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                tasks.add(() -> {
+                    for (int i = 0; i < itemsPerThread; i++) {
+                        service.createIfAbsent(new TodoItem("item-" + thread + "-" + i));
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        assertEquals(threads * itemsPerThread, wal.getDurableSequence());
+
+        reopen();
+        assertEquals(threads * itemsPerThread, service.retrieveAllItems().size());
+    }
+
+    @Test
+    public void failedFlushRejectsEveryLaterWrite() throws IOException {
+        Path full = Paths.get("/dev/full");
+        Assume.assumeTrue(Files.isWritable(full));
+        service.create(new TodoItem("item1"));
+        // the next segment is a device on which every write fails
+        Files.createSymbolicLink(directory.resolve(String.format("wal-%020d.log", 2)), full);
+        wal.takeSnapshot();
+
+        try {
+            service.create(new TodoItem("item2"));
+            fail("the write was not durable");
+        } catch (UncheckedIOException e) {
+            // expected
+        }
+        assertTrue(wal.hasFailed());
+        // already applied, the failed write was visible, but no write is accepted any more
+        assertEquals(2, service.countItems());
+        try {
+            service.create(new TodoItem("item3"));
+            fail("the write was accepted after the log failed");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertEquals(2, service.countItems());
+        assertFalse(service.findItemById(3L).isPresent());
+    }
+
+    @Test
+    public void logsSharingASchedulerLeaveItRunningWhenClosed() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            WriteAheadLog first = new WriteAheadLog(directory.resolve("first"), FsyncPolicy.INTERVAL, 10,
+                    TimeUnit.HOURS.toMillis(1), scheduler);
+            WriteAheadLog second = new WriteAheadLog(directory.resolve("second"), FsyncPolicy.INTERVAL, 10,
+                    TimeUnit.HOURS.toMillis(1), scheduler);
+            new ConcurrentTodoListServiceImpl(first);
+            ConcurrentTodoListServiceImpl secondService = new ConcurrentTodoListServiceImpl(second);
+            first.close();
+            assertFalse(scheduler.isShutdown());
+
+            // the background flushes of the second log still run
+            secondService.create(new TodoItem("item1"));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (second.getDurableSequence() < 1) {
+                assertTrue("the item was not flushed in time", System.currentTimeMillis() < deadline);
+                Thread.sleep(10);
+            }
+            second.close();
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private void reopen() throws IOException {
+        if (wal != null) {
+            wal.close();
+        }
+        wal = new WriteAheadLog(directory, FsyncPolicy.ALWAYS, 10, TimeUnit.HOURS.toMillis(1));
+        service = new ConcurrentTodoListServiceImpl(wal);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+}
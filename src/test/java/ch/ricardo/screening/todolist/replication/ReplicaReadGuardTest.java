@@ -0,0 +1,127 @@
+package ch.ricardo.screening.todolist.replication;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import ch.ricardo.screening.todolist.service.ConcurrentTodoListServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ReplicaReadGuardTest {
+
+    private static final long MAX_STALENESS_MS = 1000;
+
+    private final StubReplicaClient replicaClient = new StubReplicaClient();
+
+    private final ReplicaReadGuard guard = new ReplicaReadGuard(replicaClient, MAX_STALENESS_MS);
+
+    private MockMvc mockMvc;
+
+    private WebTestClient webTestClient;
+
+    @Before
+    public void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(new ItemsController())
+                .addMappedInterceptors(new String[] {ReplicaReadGuard.API_PATH + "**"}, guard)
+                .build();
+        webTestClient = WebTestClient.bindToController(new ItemsController())
+                .webFilter(guard)
+                .build();
+    }
+
+    @Test
+    public void servesReadsOfAnUpToDateReplica() throws Exception {
+        replicaClient.stalenessMs = 10;
+        mockMvc.perform(get("/todolist/items")).andExpect(status().isOk());
+        webTestClient.get().uri("/todolist/items").exchange().expectStatus().isOk();
+    }
+
+    @Test
+    public void rejectsWrites() throws Exception {
+        replicaClient.stalenessMs = 10;
+        mockMvc.perform(post("/todolist/items"))
+                .andExpect(status().isMethodNotAllowed())
+                .andExpect(header().string(HttpHeaders.ALLOW, "GET, HEAD"));
+        mockMvc.perform(delete("/todolist/items")).andExpect(status().isMethodNotAllowed());
+        webTestClient.post().uri("/todolist/items").exchange()
+                .expectStatus().isEqualTo(405)
+                .expectHeader().valueEquals(HttpHeaders.ALLOW, "GET, HEAD");
+    }
+
+    @Test
+    public void rejectsReadsOfAStaleReplica() throws Exception {
+        replicaClient.stalenessMs = MAX_STALENESS_MS + 1;
+        mockMvc.perform(get("/todolist/items"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+        webTestClient.get().uri("/todolist/items").exchange()
+                .expectStatus().isEqualTo(503)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "1");
+
+        // a replica that never reached its primary
+        replicaClient.stalenessMs = Long.MAX_VALUE;
+        mockMvc.perform(get("/todolist/items")).andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    public void doesNotServeThePartitionedLists() throws Exception {
+        replicaClient.stalenessMs = 10;
+        mockMvc.perform(get("/todolist/alice/items")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/todolist/itemsofalice/items")).andExpect(status().isNotFound());
+        webTestClient.get().uri("/todolist/alice/items").exchange().expectStatus().isNotFound();
+    }
+
+    @Test
+    public void onlyGuardsTheTodoListApi() throws Exception {
+        replicaClient.stalenessMs = Long.MAX_VALUE;
+        mockMvc.perform(delete("/other")).andExpect(status().isNoContent());
+        webTestClient.delete().uri("/other").exchange().expectStatus().isNoContent();
+    }
+
+    private static class StubReplicaClient extends ReplicaClient {
+
+        volatile long stalenessMs;
+
+        StubReplicaClient() {
+            super(new ConcurrentTodoListServiceImpl(), new ReplicationProperties(), new SimpleMeterRegistry());
+        }
+
+        @Override
+        public long getStalenessMs() {
+            return stalenessMs;
+        }
+    }
+
+    @RestController
+    public static class ItemsController {
+
+        @GetMapping({"/todolist/items", "/todolist/{listId}/items"})
+        public String retrieveAllItems() {
+            return "[]";
+        }
+
+        @PostMapping("/todolist/items")
+        public String createItem() {
+            return "{}";
+        }
+
+        @DeleteMapping({"/todolist/items", "/other"})
+        public ResponseEntity<Void> delete() {
+            return ResponseEntity.noContent().build();
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package ch.ricardo.screening.todolist.replication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.ricardo.screening.todolist.events.TodoListChangeFeed;
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.service.ConcurrentTodoListServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * A primary and its replicas in the same JVM, connected through local sockets.
+ */
+public class ReplicationTest {
+
+    private static final int HISTORY_SIZE = 50;
+
+    private static final int BUFFER_SIZE = 20;
+
+    private final SimpleMeterRegistry primaryRegistry = new SimpleMeterRegistry();
+
+    private final SimpleMeterRegistry replicaRegistry = new SimpleMeterRegistry();
+
+    private ConcurrentTodoListServiceImpl primary;
+
+    private TodoListChangeFeed feed;
+
+    private ReplicationServer server;
+
+    private Link link;
+
+    private ConcurrentTodoListServiceImpl replica;
+
+    private ReplicaClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        primary = new ConcurrentTodoListServiceImpl();
+        primary.create(new TodoItem("item1"));
+        startPrimary(0);
+        link = new Link(server.getPort());
+        replica = new ConcurrentTodoListServiceImpl();
+        client = new ReplicaClient(replica, properties(link.getPort()), replicaRegistry);
+        client.start();
+        awaitReplicated();
+    }
+
+    @After
+    public void tearDown() {
+        client.close();
+        link.close();
+        server.close();
+        feed.close();
+    }
+
+    @Test
+    public void replicatesEachChangeInOrder() {
+        primary.create(new TodoItem("item2"));
+        primary.updateItem(1L, new TodoItem("item1 updated"));
+        primary.create(new TodoItem("item3"));
+        primary.deleteItemById(2L);
+        awaitReplicated();
+        assertEquals(items(primary), items(replica));
+
+        primary.deleteAllItems();
+        primary.create(new TodoItem("item1 again"));
+        awaitReplicated();
+        assertEquals(items(primary), items(replica));
+        // only the initial snapshot was needed
+        assertEquals(1.0, replicaRegistry.get(ReplicaClient.SNAPSHOTS).counter().count(), 0);
+        assertEquals(1.0, primaryRegistry.get(ReplicationServer.REPLICAS).gauge().value(), 0);
+    }
+
+    @Test
+    public void replicasWithinTheirStalenessBound() {
+        await(() -> client.getStalenessMs() < 200);
+        primary.create(new TodoItem("item2"));
+        awaitReplicated();
+        await(() -> client.getStalenessMs() < 200);
+
+        // without a primary, the replica keeps its items but grows stale
+        link.down();
+        await(() -> client.getStalenessMs() > 500);
+        assertEquals(items(primary), items(replica));
+    }
+
+    @Test
+    public void resumesFromTheVersionReachedAfterAShortOutage() {
+        link.down();
+        for (int i = 2; i < 2 + BUFFER_SIZE; i++) {
+            primary.create(new TodoItem("item" + i));
+        }
+        link.up();
+        awaitReplicated();
+        assertEquals(items(primary), items(replica));
+        assertEquals(1.0, replicaRegistry.get(ReplicaClient.SNAPSHOTS).counter().count(), 0);
+    }
+
+    @Test
+    public void catchesUpFromASnapshotWhenTooFarBehind() {
+        link.down();
+        for (int i = 2; i < 2 + 2 * BUFFER_SIZE; i++) {
+            primary.create(new TodoItem("item" + i));
+        }
+        primary.deleteItemById(1L);
+        link.up();
+        awaitReplicated();
+        assertEquals(items(primary), items(replica));
+        assertEquals(2.0, replicaRegistry.get(ReplicaClient.SNAPSHOTS).counter().count(), 0);
+
+        primary.create(new TodoItem("after the snapshot"));
+        awaitReplicated();
+        assertEquals(items(primary), items(replica));
+    }
+
+    @Test
+    public void reloadsTheListOfARestartedPrimary() throws IOException {
+        for (int i = 2; i <= 5; i++) {
+            primary.create(new TodoItem("item" + i));
+        }
+        awaitReplicated();
+
+        // a primary without persistence restarts with another list, at a lower version
+        server.close();
+        feed.close();
+        primary = new ConcurrentTodoListServiceImpl();
+        primary.create(new TodoItem("restarted"));
+        startPrimary(link.target);
+        awaitReplicated();
+        assertEquals(items(primary), items(replica));
+        assertEquals(2.0, replicaRegistry.get(ReplicaClient.SNAPSHOTS).counter().count(), 0);
+
+        primary.create(new TodoItem("after the restart"));
+        awaitReplicated();
+        assertEquals(items(primary), items(replica));
+    }
+
+    private void startPrimary(int port) throws IOException {
+        feed = new TodoListChangeFeed(primary, primaryRegistry, HISTORY_SIZE, BUFFER_SIZE);
+        // the metrics of the first primary only
+        server = new ReplicationServer(primary, feed, properties(port),
+                port == 0 ? primaryRegistry : new SimpleMeterRegistry());
+        server.start();
+    }
+
+    private static ReplicationProperties properties(int port) {
+        ReplicationProperties properties = new ReplicationProperties();
+        properties.setPort(port);
+        properties.setHeartbeatIntervalMs(20);
+        properties.setTimeoutMs(1000);
+        properties.setReconnectDelayMs(20);
+        return properties;
+    }
+
+    private void awaitReplicated() {
+        await(() -> replica.getVersion() == primary.getVersion() && items(replica).equals(items(primary)));
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue("condition not met in time", System.currentTimeMillis() < deadline);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+
+    private static List<String> items(ConcurrentTodoListServiceImpl service) {
+        return service.retrieveAllItems().stream()
+                .map(item -> item.getId() + " " + item.getContent())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * A local TCP proxy between the replica and the primary, to take the network down and up again: while it is down,
+     * its connections are closed and new ones are refused right after they are accepted.
+     */
+    private static final class Link implements AutoCloseable {
+
+        private final int target;
+
+        private final ServerSocket serverSocket;
+
+        private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+        private volatile boolean down;
+
+        Link(int target) throws IOException {
+            this.target = target;
+            this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            Thread acceptor = new Thread(this::accept, "link-acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        void down() {
+            down = true;
+            sockets.forEach(Link::closeQuietly);
+        }
+
+        void up() {
+            down = false;
+        }
+
+        @Override
+        public void close() {
+            closeQuietly(serverSocket);
+            down();
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket in = serverSocket.accept();
+                    if (down) {
+                        closeQuietly(in);
+                        continue;
+                    }
+                    Socket out = new Socket(InetAddress.getLoopbackAddress(), target);
+                    sockets.add(in);
+                    sockets.add(out);
+                    pump(in, out);
+                    pump(out, in);
+                } catch (IOException e) {
+                    // closed, or the primary is not there: the replica tries again
+                }
+            }
+        }
+
+        private void pump(Socket from, Socket to) {
+            Thread pump = new Thread(() -> {
+                byte[] buffer = new byte[8192];
+                try (InputStream in = from.getInputStream(); OutputStream out = to.getOutputStream()) {
+                    int read;
+                    while ((read = in.read(buffer)) >= 0) {
+                        out.write(buffer, 0, read);
+                    }
+                } catch (IOException e) {
+                    // link down
+                } finally {
+                    closeQuietly(from);
+                    closeQuietly(to);
+                }
+            }, "link-pump");
+            pump.setDaemon(true);
+            pump.start();
+        }
+
+        private static void closeQuietly(AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                // already closed
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package ch.ricardo.screening.todolist.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class InvertedIndexTest {
+
+    private InvertedIndex index;
+
+    @Before
+    public void setUp() {
+        index = new InvertedIndex();
+        index.add(1, "Buy milk and bread");
+        index.add(2, "Call the bank about the mortgage");
+        index.add(3, "buy a birthday present for Milo");
+        index.add(4, "Milk the cow, milk the goat");
+    }
+
+    @Test
+    public void tokenizeSplitsOnNonAlphanumericCharacters() {
+        assertEquals(Arrays.asList("re", "book", "flight", "lx318", "zürich"),
+                InvertedIndex.tokenize("Re-book flight LX318 (Zürich)!"));
+        assertTrue(InvertedIndex.tokenize(" -- ").isEmpty());
+        assertTrue(InvertedIndex.tokenize(null).isEmpty());
+    }
+
+    @Test
+    public void allKeywordsMustMatch() {
+        assertEquals(Arrays.asList(1L, 3L), search("buy").getIds());
+        assertEquals(Collections.singletonList(1L), search("BUY milk").getIds());
+        assertEquals(Collections.emptyList(), search("buy unknown").getIds());
+        assertEquals(Collections.emptyList(), search("  ").getIds());
+    }
+
+    @Test
+    public void prefixMatchesAnyWordStartingWithIt() {
+        assertEquals(3, search("mil*").getTotal());
+        assertEquals(Collections.singletonList(2L), search("mort* bank").getIds());
+        assertEquals(Collections.emptyList(), search("mortgage*s").getIds());
+    }
+
+    @Test
+    public void repeatedAndRareTermsRankFirst() {
+        // "milk" appears twice in item 4
+        assertEquals(Arrays.asList(4L, 1L), search("milk").getIds());
+        // shorter items rank first
+        index.add(5, "buy bread");
+        index.add(6, "buy");
+        assertEquals(Arrays.asList(6L, 5L, 1L, 3L), search("buy").getIds());
+        // "bread" is rarer than "buy"
+        index.add(7, "buy buy");
+        assertEquals(Arrays.asList(5L, 1L), search("bread buy").getIds());
+        assertEquals(7L, (long) search("buy").getIds().get(0));
+    }
+
+    @Test
+    public void resultsArePaginated() {
+        for (int id = 10; id < 30; id++) {
+            index.add(id, "task " + id);
+        }
+        SearchHits page = index.search("task", 5, 5);
+        assertEquals(20, page.getTotal());
+        // equal scores are ranked by id
+        assertEquals(Arrays.asList(15L, 16L, 17L, 18L, 19L), page.getIds());
+        assertEquals(Arrays.asList(28L, 29L), index.search("task", 18, 5).getIds());
+        assertTrue(index.search("task", 20, 5).getIds().isEmpty());
+    }
+
+    @Test
+    public void updatesAndRemovesAreIncremental() {
+        index.add(1, "Buy oat milk");
+        assertEquals(Collections.emptyList(), search("bread").getIds());
+        assertEquals(Collections.singletonList(1L), search("oat").getIds());
+
+        index.remove(4);
+        assertEquals(Collections.singletonList(1L), search("milk").getIds());
+        assertEquals(3, index.size());
+
+        index.clear();
+        assertEquals(0, search("buy").getTotal());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void postingListsSurviveManyRemovals() {
+        index.clear();
+        for (int id = 1; id <= 1000; id++) {
+            index.add(id, "common word" + id);
+        }
+        for (int id = 1; id <= 1000; id++) {
+            if (id % 10 != 0) {
+                index.remove(id);
+            }
+        }
+        // re-indexing an id lower than the last one of the posting list
+        index.add(5, "common again");
+
+        SearchHits hits = index.search("common", 0, 1000);
+        assertEquals(101, hits.getTotal());
+        assertTrue(hits.getIds().contains(5L));
+        assertTrue(hits.getIds().contains(1000L));
+        assertEquals(Collections.singletonList(990L), search("word990").getIds());
+        assertEquals(Collections.emptyList(), search("word991").getIds());
+    }
+
+    private SearchHits search(String query) {
+        return index.search(query, 0, 10);
+    }
+}
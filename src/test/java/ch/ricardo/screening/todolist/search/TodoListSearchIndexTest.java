@@ -0,0 +1,94 @@
+package ch.ricardo.screening.todolist.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Test;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.service.ConcurrentTodoListServiceImpl;
+
+public class TodoListSearchIndexTest {
+
+    private final ConcurrentTodoListServiceImpl service = new ConcurrentTodoListServiceImpl();
+
+    private TodoListSearchIndex searchIndex;
+
+    @After
+    public void tearDown() {
+        searchIndex.close();
+    }
+
+    @Test
+    public void changesDroppedByAFullQueueAreRebuiltFromTheList() throws InterruptedException {
+        service.create(new TodoItem("item0"));
+        searchIndex = new TodoListSearchIndex(service, 2);
+        awaitIndexed();
+
+        // the indexer is busy while 10 changes arrive, at most 2 of them are queued
+        CountDownLatch release = new CountDownLatch(1);
+        searchIndex.onItems(service.getVersion(), new BlockingList(release));
+        for (int i = 1; i <= 10; i++) {
+            service.create(new TodoItem("item" + i));
+        }
+        service.deleteItemById(1L);
+        release.countDown();
+
+        awaitIndexed();
+        assertEquals(10, searchIndex.search("item*", 0, 20).getTotal());
+        assertEquals(Collections.singletonList(11L), searchIndex.search("item10", 0, 20).getIds());
+        assertEquals(0, searchIndex.search("item0", 0, 20).getTotal());
+
+        // later changes are applied one by one again
+        service.create(new TodoItem("item11"));
+        awaitIndexed();
+        assertEquals(11, searchIndex.search("item*", 0, 20).getTotal());
+    }
+
+    private void awaitIndexed() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (searchIndex.getVersion() != service.getVersion()) {
+            assertTrue("search index is still at version " + searchIndex.getVersion(),
+                    System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Empty list of items, blocking the indexer iterating it until released.
+     */
+    private static final class BlockingList extends AbstractList<TodoItem> {
+
+        private final CountDownLatch release;
+
+        private BlockingList(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public Iterator<TodoItem> iterator() {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Collections.emptyIterator();
+        }
+
+        @Override
+        public TodoItem get(int index) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        @Override
+        public int size() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package ch.ricardo.screening.todolist.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+
+public class ConcurrentTodoListServiceImplTest {
+
+    private static final int THREADS = 8;
+
+    private static final int ITEMS_PER_THREAD = 50_000;
+
+    private ConcurrentTodoListServiceImpl service;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        service = new ConcurrentTodoListServiceImpl();
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void retrieveAllItemsKeepsInsertionOrder() {
+        service.create(new TodoItem("b"));
+        service.create(new TodoItem("a"));
+        service.create(new TodoItem("c"));
+        service.deleteItemById(2L);
+        service.updateItem(1L, new TodoItem("b updated"));
+
+        List<TodoItem> items = service.retrieveAllItems();
+        assertEquals(2, items.size());
+        assertEquals(Long.valueOf(1), items.get(0).getId());
+        assertEquals("b updated", items.get(0).getContent());
+        assertEquals(Long.valueOf(3), items.get(1).getId());
+    }
+
+    @Test
+    public void retrieveItemsSeeksToTheRequestedPage() {
+        for (int i = 1; i <= 10; i++) {
+            service.create(new TodoItem("item" + i));
+        }
+        service.deleteItemById(5L);
+
+        List<TodoItem> page = service.retrieveItems(3, 3);
+        assertEquals(3, page.size());
+        assertEquals(Long.valueOf(4), page.get(0).getId());
+        assertEquals(Long.valueOf(6), page.get(1).getId());
+        assertEquals(Long.valueOf(7), page.get(2).getId());
+
+        assertEquals(3, service.retrieveItems(7, 5).size());
+        assertTrue(service.retrieveItems(10, 5).isEmpty());
+    }
+
+    @Test
+    public void contentIndexFollowsUpdatesAndDeletes() {
+        TodoItem item = service.create(new TodoItem("content"));
+        assertTrue(service.exists(new TodoItem("content")));
+
+        service.updateItem(item.getId(), new TodoItem("other content"));
+        assertFalse(service.exists(new TodoItem("content")));
+        assertTrue(service.exists(new TodoItem("other content")));
+
+        service.deleteItemById(item.getId());
+        assertFalse(service.exists(new TodoItem("other content")));
+    }
+
+    @Test
+    public void updateToContentOfAnotherItemIsRejected() {
+        service.create(new TodoItem("first"));
+        TodoItem second = service.create(new TodoItem("second"));
+
+        assertFalse(service.updateItem(second.getId(), new TodoItem("first")));
+        assertEquals("second", service.findItemById(second.getId()).get().getContent());
+        // an item can be "updated" with its own content
+        assertTrue(service.updateItem(second.getId(), new TodoItem("second")));
+    }
+
+    @Test
+    public void versionsIncreaseWithEachWrite() {
+        assertEquals(0, service.getVersion());
+        TodoItem first = service.create(new TodoItem("first"));
+        TodoItem second = service.create(new TodoItem("second"));
+        assertEquals(2, service.getVersion());
+        assertEquals(1, first.getVersion());
+        assertEquals(2, service.findItemById(second.getId()).get().getVersion());
+
+        service.updateItem(first.getId(), new TodoItem("first updated"));
+        assertEquals(3, service.findItemById(first.getId()).get().getVersion());
+        assertEquals(2, service.findItemById(second.getId()).get().getVersion());
+
+        service.deleteAllItems();
+        assertEquals(4, service.getVersion());
+    }
+
+    @Test
+    public void idsAreNotReusedAfterDeletingAllItems() {
+        service.create(new TodoItem("a"));
+        service.create(new TodoItem("b"));
+        service.deleteAllItems();
+        assertEquals(Long.valueOf(3), service.create(new TodoItem("a")).getId());
+        assertEquals(Long.valueOf(3), service.snapshot().getItems().get(0).getId());
+    }
+
+    @Test
+    public void createIfAbsentRejectsExistingContent() {
+        assertTrue(service.createIfAbsent(new TodoItem("content")).isPresent());
+        assertFalse(service.createIfAbsent(new TodoItem("content")).isPresent());
+
+        service.deleteItemById(1L);
+        assertEquals(Long.valueOf(2), service.createIfAbsent(new TodoItem("content")).get().getId());
+    }
+
+    @Test
+    public void concurrentCreateIfAbsentCreatesEachContentOnce() throws Exception {
+        int contents = 10_000;
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            tasks.add(() -> {
+                int created = 0;
+                for (int i = 0; i < contents; i++) {
+                    if (service.createIfAbsent(new TodoItem("item-" + i)).isPresent()) {
+                        created++;
+                    }
+                }
+                return created;
+            });
+        }
+        int created = 0;
+        for (Future<Integer> future : executor.invokeAll(tasks)) {
+            created += future.get();
+        }
+
+        assertEquals(contents, created);
+        assertEquals(contents, service.retrieveAllItems().size());
+    }
+
+    @Test
+    public void batchOperationsReportEachItem() {
+        service.create(new TodoItem("item1"));
+
+        List<Optional<TodoItem>> created = service.createItemsIfAbsent(Arrays.asList(
+                new TodoItem("item2"), new TodoItem("item1"), new TodoItem("item2"), new TodoItem("item3")));
+        assertEquals(Long.valueOf(2), created.get(0).get().getId());
+        assertFalse(created.get(1).isPresent());
+        assertFalse(created.get(2).isPresent());
+        assertEquals(Long.valueOf(3), created.get(3).get().getId());
+
+        assertEquals(Arrays.asList(WriteOutcome.APPLIED, WriteOutcome.NOT_FOUND, WriteOutcome.CONFLICT),
+                service.updateItems(Arrays.asList(new TodoItem(1L, "item1 updated"), new TodoItem(4L, "item4"),
+                        new TodoItem(2L, "item3"))));
+        assertTrue(service.exists(new TodoItem("item1 updated")));
+
+        assertEquals(Arrays.asList(true, false, true), service.deleteItemsById(Arrays.asList(1L, 1L, 3L)));
+        assertEquals(1, service.retrieveAllItems().size());
+    }
+
+    @Test
+    public void concurrentCreatesProduceUniqueIdsAndConsistentIndexes() throws Exception {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            tasks.add(() -> {
+                for (int i = 0; i < ITEMS_PER_THREAD; i++) {
+                    service.create(new TodoItem("item-" + thread + "-" + i));
+                }
+                return null;
+            });
+        }
+        runAll(tasks);
+
+        List<TodoItem> items = service.retrieveAllItems();
+        assertEquals(THREADS * ITEMS_PER_THREAD, items.size());
+
+        Set<Long> ids = new HashSet<>();
+        long previousId = 0;
+        for (TodoItem item : items) {
+            assertTrue("ids must be unique", ids.add(item.getId()));
+            assertTrue("items must be in insertion order", item.getId() > previousId);
+            previousId = item.getId();
+            assertEquals(item.getContent(), service.findItemById(item.getId()).get().getContent());
+            assertTrue(service.exists(item));
+        }
+        assertEquals(Long.valueOf(THREADS * ITEMS_PER_THREAD), items.get(items.size() - 1).getId());
+    }
+
+    @Test
+    public void concurrentMixedWritesLeaveIndexesConsistent() throws Exception {
+        int total = THREADS * ITEMS_PER_THREAD;
+        for (int i = 0; i < total; i++) {
+            service.create(new TodoItem("item-" + i));
+        }
+
+        // Each thread owns a disjoint slice of ids: it deletes even ids and updates odd ones,
+        // while a reader thread keeps scanning the list in the background.
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final long first = (long) t * ITEMS_PER_THREAD + 1;
+            tasks.add(() -> {
+                for (long id = first; id < first + ITEMS_PER_THREAD; id++) {
+                    if (id % 2 == 0) {
+                        assertTrue(service.deleteItemById(id));
+                    } else {
+                        assertTrue(service.updateItem(id, new TodoItem("updated-" + id)));
+                    }
+                }
+                return null;
+            });
+        }
+        tasks.add(() -> {
+            for (int i = 0; i < 5; i++) {
+                service.retrieveAllItems();
+            }
+            return null;
+        });
+        runAll(tasks);
+
+        List<TodoItem> items = service.retrieveAllItems();
+        assertEquals(total / 2, items.size());
+        for (TodoItem item : items) {
+            assertEquals(1, item.getId() % 2);
+            assertEquals("updated-" + item.getId(), item.getContent());
+            assertTrue(service.exists(item));
+            assertFalse(service.exists(new TodoItem("item-" + (item.getId() - 1))));
+        }
+        for (long id = 2; id <= total; id += 2) {
+            assertFalse(service.findItemById(id).isPresent());
+        }
+    }
+
+    @Test
+    public void compareAndSetWritesOnlyTheExpectedVersion() {
+        TodoItem item = service.create(new TodoItem("first"));
+        service.create(new TodoItem("second"));
+
+        assertEquals(WriteOutcome.STALE,
+                service.compareAndUpdate(item.getId(), item.getVersion() + 1, new TodoItem("updated")));
+        assertEquals(WriteOutcome.CONFLICT,
+                service.compareAndUpdate(item.getId(), item.getVersion(), new TodoItem("second")));
+        assertEquals(WriteOutcome.APPLIED,
+                service.compareAndUpdate(item.getId(), item.getVersion(), new TodoItem("updated")));
+        assertEquals(WriteOutcome.STALE,
+                service.compareAndUpdate(item.getId(), item.getVersion(), new TodoItem("lost update")));
+
+        TodoItem updated = service.findItemById(item.getId()).get();
+        assertEquals("updated", updated.getContent());
+        assertEquals(WriteOutcome.STALE, service.compareAndDelete(item.getId(), item.getVersion()));
+        assertEquals(WriteOutcome.APPLIED, service.compareAndDelete(item.getId(), updated.getVersion()));
+        assertEquals(WriteOutcome.NOT_FOUND, service.compareAndDelete(item.getId(), updated.getVersion()));
+        assertEquals(WriteOutcome.NOT_FOUND,
+                service.compareAndUpdate(item.getId(), updated.getVersion(), new TodoItem("updated")));
+    }
+
+    @Test
+    public void concurrentCompareAndUpdatesLoseNoUpdate() throws Exception {
+        int incrementsPerThread = 2_000;
+        Long id = service.create(new TodoItem("0")).getId();
+
+        // Each thread increments the counter held by the item, reading it again whenever another thread won the race.
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            tasks.add(() -> {
+                for (int i = 0; i < incrementsPerThread; ) {
+                    TodoItem current = service.findItemById(id).get();
+                    String incremented = Integer.toString(Integer.parseInt(current.getContent()) + 1);
+                    WriteOutcome outcome = service.compareAndUpdate(id, current.getVersion(),
+                            new TodoItem(incremented));
+                    if (outcome == WriteOutcome.APPLIED) {
+                        i++;
+                    } else {
+                        assertEquals(WriteOutcome.STALE, outcome);
+                    }
+                }
+                return null;
+            });
+        }
+        runAll(tasks);
+
+        TodoItem item = service.findItemById(id).get();
+        assertEquals(Integer.toString(THREADS * incrementsPerThread), item.getContent());
+        // one write per applied increment, stale attempts write nothing
+        assertEquals(1 + THREADS * incrementsPerThread, service.getVersion());
+    }
+
+    private void runAll(List<Callable<Void>> tasks) throws Exception {
+        for (Future<Void> future : executor.invokeAll(tasks)) {
+            // rethrows any assertion error raised by a worker
+            future.get();
+        }
+    }
+}
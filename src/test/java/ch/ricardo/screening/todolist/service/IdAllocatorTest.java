@@ -0,0 +1,122 @@
+package ch.ricardo.screening.todolist.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.ricardo.screening.todolist.persistence.FileIdBlockStore;
+import ch.ricardo.screening.todolist.persistence.IdBlockStore;
+
+public class IdAllocatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void idsIncreaseAcrossBlocks() {
+        IdAllocator ids = new IdAllocator();
+        for (long expected = 1; expected <= 2 * IdAllocator.DEFAULT_BLOCK_SIZE + 1; expected++) {
+            assertEquals(expected, ids.next());
+        }
+    }
+
+    @Test
+    public void theStoreIsWrittenOncePerBlock() {
+        List<Long> stored = new ArrayList<>();
+        IdAllocator ids = new IdAllocator(10, new IdBlockStore() {
+            @Override
+            public long load() {
+                return 0;
+            }
+
+            @Override
+            public void store(long ceiling) {
+                stored.add(ceiling);
+            }
+        });
+        for (int i = 0; i < 25; i++) {
+            ids.next();
+        }
+        assertEquals(Arrays.asList(10L, 20L, 30L), stored);
+    }
+
+    @Test
+    public void rangesAreConsecutiveAndStoredOnceForSeveralBlocks() {
+        List<Long> stored = new ArrayList<>();
+        IdAllocator ids = new IdAllocator(10, new IdBlockStore() {
+            @Override
+            public long load() {
+                return 0;
+            }
+
+            @Override
+            public void store(long ceiling) {
+                stored.add(ceiling);
+            }
+        });
+        assertEquals(1, ids.reserve(25));
+        assertEquals(26, ids.next());
+        assertEquals(27, ids.reserve(4));
+        assertEquals(Arrays.asList(30L), stored);
+    }
+
+    @Test
+    public void concurrentReservationsAreDisjoint() throws Exception {
+        IdAllocator ids = new IdAllocator(8, IdBlockStore.NONE);
+        Set<Long> handedOut = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int thread = 0; thread < 4; thread++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    long first = ids.reserve(3);
+                    for (long id = first; id < first + 3; id++) {
+                        assertTrue(handedOut.add(id));
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(12000, handedOut.size());
+        assertEquals(12001, ids.next());
+    }
+
+    @Test
+    public void idsAreNotHandedOutAgainAfterARestart() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("ids.dat");
+        long lastId;
+        try (FileIdBlockStore store = new FileIdBlockStore(file)) {
+            IdAllocator ids = new IdAllocator(10, store);
+            ids.next();
+            lastId = ids.next();
+        }
+        try (FileIdBlockStore store = new FileIdBlockStore(file)) {
+            // the rest of the block reserved before the restart is skipped
+            assertEquals(10, store.load());
+            assertTrue(new IdAllocator(10, store).next() > lastId);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void blocksAreNotEmpty() {
+        new IdAllocator(0, IdBlockStore.NONE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rangesAreNotEmpty() {
+        new IdAllocator().reserve(0);
+    }
+}
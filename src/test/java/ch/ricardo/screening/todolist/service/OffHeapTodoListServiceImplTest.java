@@ -0,0 +1,244 @@
+package ch.ricardo.screening.todolist.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.model.TodoListEvent;
+import ch.ricardo.screening.todolist.persistence.FsyncPolicy;
+import ch.ricardo.screening.todolist.storage.MappedItemStore;
+
+public class OffHeapTodoListServiceImplTest {
+
+    // small chunks, so that records regularly hit the end of a chunk
+    private static final int CHUNK_SIZE = 256;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+
+    private OffHeapTodoListServiceImpl service;
+
+    @Before
+    public void setUp() throws IOException {
+        file = folder.getRoot().toPath().resolve("items.dat");
+        service = new OffHeapTodoListServiceImpl(new MappedItemStore(file, CHUNK_SIZE));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        service.close();
+    }
+
+    @Test
+    public void basicOperations() {
+        service.create(new TodoItem("item1"));
+        service.create(new TodoItem("item2"));
+        service.create(new TodoItem("item3"));
+
+        assertEquals("item2", service.findItemById(2L).get().getContent());
+        assertTrue(service.exists(new TodoItem("item3")));
+        assertFalse(service.createIfAbsent(new TodoItem("item1")).isPresent());
+
+        assertTrue(service.updateItem(1L, new TodoItem("item1 updated with a much longer content than before")));
+        assertFalse(service.updateItem(2L, new TodoItem("item3")));
+        assertTrue(service.deleteItemById(2L));
+        assertFalse(service.deleteItemById(2L));
+
+        List<TodoItem> items = service.retrieveAllItems();
+        assertEquals(2, items.size());
+        assertEquals("item1 updated with a much longer content than before", items.get(0).getContent());
+        assertEquals(Long.valueOf(3), items.get(1).getId());
+        assertFalse(service.exists(new TodoItem("item1")));
+        assertFalse(service.exists(new TodoItem("item2")));
+        assertEquals(1, service.retrieveItems(1, 10).size());
+    }
+
+    @Test
+    public void compareAndSetWritesOnlyTheExpectedVersion() {
+        TodoItem item = service.create(new TodoItem("item1"));
+        long version = service.findItemById(item.getId()).get().getVersion();
+
+        assertEquals(WriteOutcome.APPLIED, service.compareAndUpdate(item.getId(), version, new TodoItem("updated")));
+        assertEquals(WriteOutcome.STALE, service.compareAndUpdate(item.getId(), version, new TodoItem("lost")));
+        assertEquals(WriteOutcome.STALE, service.compareAndDelete(item.getId(), version));
+        assertEquals("updated", service.findItemById(item.getId()).get().getContent());
+
+        long updatedVersion = service.findItemById(item.getId()).get().getVersion();
+        assertEquals(WriteOutcome.APPLIED, service.compareAndDelete(item.getId(), updatedVersion));
+        assertEquals(WriteOutcome.NOT_FOUND, service.compareAndDelete(item.getId(), updatedVersion));
+    }
+
+    @Test
+    public void itemsSurviveReopeningTheFile() throws IOException {
+        for (int i = 1; i <= 200; i++) {
+            service.create(new TodoItem("item" + i));
+        }
+        for (long id = 2; id <= 200; id += 2) {
+            service.deleteItemById(id);
+        }
+        service.updateItem(1L, new TodoItem("a content too long to be rewritten in the slab of the first item"));
+        assertEquals(100, service.countItems());
+
+        reopen();
+
+        List<TodoItem> items = service.retrieveAllItems();
+        assertEquals(100, items.size());
+        assertEquals(100, service.countItems());
+        assertEquals("a content too long to be rewritten in the slab of the first item", items.get(0).getContent());
+        assertEquals("item199", items.get(99).getContent());
+        assertTrue(service.exists(new TodoItem("item3")));
+        assertFalse(service.exists(new TodoItem("item4")));
+        assertEquals(Long.valueOf(201), service.create(new TodoItem("item201")).getId());
+    }
+
+    @Test
+    public void attributesSurviveReopeningTheFile() throws IOException {
+        LocalDate dueDate = LocalDate.of(2030, 1, 31);
+        TodoItem created = service.create(new TodoItem(null, "item1", TodoItem.Status.IN_PROGRESS, 2, dueDate, null,
+                null, 0));
+        service.create(new TodoItem("item2"));
+        // too long for the record of item2, which moves
+        service.updateItem(2L, new TodoItem(null, "item2 updated with a longer content", TodoItem.Status.DONE, -4,
+                null, null, null, 0));
+        TodoItem updated = service.findItemById(2L).get();
+        reopen();
+
+        TodoItem item1 = service.findItemById(1L).get();
+        assertEquals(TodoItem.Status.IN_PROGRESS, item1.getStatus());
+        assertEquals(2, item1.getPriority());
+        assertEquals(dueDate, item1.getDueDate());
+        assertEquals(created.getCreated(), item1.getCreated());
+        assertEquals(created.getUpdated(), item1.getUpdated());
+
+        TodoItem item2 = service.retrieveAllItems().get(1);
+        assertEquals("item2 updated with a longer content", item2.getContent());
+        assertEquals(TodoItem.Status.DONE, item2.getStatus());
+        assertEquals(-4, item2.getPriority());
+        assertNull(item2.getDueDate());
+        assertEquals(updated.getCreated(), item2.getCreated());
+        assertEquals(updated.getUpdated(), item2.getUpdated());
+    }
+
+    @Test
+    public void deleteAllItemsResetsTheStore() throws IOException {
+        service.create(new TodoItem("item1"));
+        service.create(new TodoItem("item2"));
+        service.deleteAllItems();
+
+        assertTrue(service.retrieveAllItems().isEmpty());
+        assertEquals(0, service.countItems());
+        assertFalse(service.exists(new TodoItem("item1")));
+        assertEquals(Long.valueOf(1), service.create(new TodoItem("item3")).getId());
+
+        reopen();
+        assertEquals(1, service.retrieveAllItems().size());
+    }
+
+    @Test
+    public void nullContentIsNotIndexed() {
+        service.create(new TodoItem((String) null));
+
+        assertEquals(null, service.findItemById(1L).get().getContent());
+        assertFalse(service.exists(new TodoItem((String) null)));
+    }
+
+    @Test
+    public void pagesSkipTheIdsOfDeletedItems() {
+        for (int i = 1; i <= 10_000; i++) {
+            service.create(new TodoItem("item" + i));
+        }
+        for (long id = 2; id < 10_000; id++) {
+            service.deleteItemById(id);
+        }
+
+        List<TodoItem> page = service.retrieveItems(1, 10);
+        assertEquals(1, page.size());
+        assertEquals(Long.valueOf(10_000), page.get(0).getId());
+        assertEquals(2, service.retrieveItems(0, 10).size());
+        assertTrue(service.retrieveItems(10_000, 10).isEmpty());
+    }
+
+    @Test
+    public void allItemsAreReadPageByPage() {
+        int count = 2 * PagedItems.PAGE_SIZE + 1;
+        for (int i = 1; i <= count; i++) {
+            service.create(new TodoItem("item" + i));
+        }
+        service.deleteItemById(1L);
+        VersionedItems items = service.retrieveAllItemsWithVersion();
+        assertEquals(service.getVersion(), items.getVersion());
+        assertEquals(count - 1, items.getItems().size());
+        assertFalse(items.getItems() instanceof ArrayList);
+
+        long previousId = 1;
+        for (TodoItem item : items.getItems()) {
+            assertEquals(previousId + 1, (long) item.getId());
+            assertEquals("item" + item.getId(), item.getContent());
+            previousId = item.getId();
+        }
+        assertEquals(count, previousId);
+
+        // listeners get the items page by page as well
+        List<Long> listedIds = new ArrayList<>();
+        service.addListener(new TodoListListener() {
+            @Override
+            public void onItems(long version, List<TodoItem> items) {
+                items.forEach(item -> listedIds.add(item.getId()));
+            }
+
+            @Override
+            public void onEvent(TodoListEvent event) {
+            }
+        });
+        assertEquals(count - 1, listedIds.size());
+        assertEquals(Long.valueOf(count), listedIds.get(count - 2));
+    }
+
+    @Test
+    public void itemsForcedAfterEachWriteSurviveReopeningTheFile() throws IOException {
+        service.close();
+        service = new OffHeapTodoListServiceImpl(new MappedItemStore(file, CHUNK_SIZE), FsyncPolicy.ALWAYS, 0);
+        for (int i = 1; i <= 20; i++) {
+            service.create(new TodoItem("item" + i));
+        }
+        service.deleteItemById(5L);
+
+        reopen();
+        assertEquals(19, service.countItems());
+    }
+
+    @Test
+    public void chunkSizeIsValidated() {
+        assertEquals(2047L * 1024 * 1024, OffHeapTodoListServiceImpl.chunkSize(2047));
+        for (int chunkSizeMb : new int[] {0, 2048, 4096}) {
+            try {
+                OffHeapTodoListServiceImpl.chunkSize(chunkSizeMb);
+                fail("accepted a chunk size of " + chunkSizeMb + " MB");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    private void reopen() throws IOException {
+        service.close();
+        service = new OffHeapTodoListServiceImpl(new MappedItemStore(file, CHUNK_SIZE));
+    }
+}
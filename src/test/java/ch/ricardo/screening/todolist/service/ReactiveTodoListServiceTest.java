@@ -0,0 +1,118 @@
+package ch.ricardo.screening.todolist.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+public class ReactiveTodoListServiceTest {
+
+    private final AtomicInteger pagesRead = new AtomicInteger();
+
+    private ConcurrentTodoListServiceImpl todolistService;
+
+    private Scheduler readScheduler;
+
+    private Scheduler writeScheduler;
+
+    private ReactiveTodoListService service;
+
+    @Before
+    public void setUp() {
+        todolistService = new ConcurrentTodoListServiceImpl() {
+            @Override
+            public List<TodoItem> retrieveItems(long afterId, int limit) {
+                pagesRead.incrementAndGet();
+                return super.retrieveItems(afterId, limit);
+            }
+        };
+        readScheduler = Schedulers.newSingle("test-reads");
+        writeScheduler = Schedulers.newSingle("test-writes");
+        service = new ReactiveTodoListService(todolistService, readScheduler, writeScheduler);
+    }
+
+    @After
+    public void tearDown() {
+        readScheduler.dispose();
+        writeScheduler.dispose();
+    }
+
+    @Test
+    public void retrieveAllItemsReadsPagesOnDemand() {
+        int size = 2 * ReactiveTodoListService.STREAM_PAGE_SIZE + 10;
+        for (int i = 1; i <= size; i++) {
+            todolistService.create(new TodoItem("item" + i));
+        }
+
+        StepVerifier.create(service.retrieveAllItems(), 0)
+                .expectSubscription()
+                .then(() -> assertEquals(0, pagesRead.get()))
+                .thenRequest(1)
+                .expectNextMatches(item -> item.getId() == 1)
+                .then(() -> assertEquals(1, pagesRead.get()))
+                .thenRequest(ReactiveTodoListService.STREAM_PAGE_SIZE)
+                .expectNextCount(ReactiveTodoListService.STREAM_PAGE_SIZE)
+                .then(() -> assertEquals(2, pagesRead.get()))
+                .thenRequest(Long.MAX_VALUE)
+                .expectNextCount(size - ReactiveTodoListService.STREAM_PAGE_SIZE - 1)
+                .verifyComplete();
+        // the last page is short, so the end of the list is known without reading an empty page
+        assertEquals(3, pagesRead.get());
+    }
+
+    @Test
+    public void retrieveAllItemsOfAnEmptyList() {
+        StepVerifier.create(service.retrieveAllItems()).verifyComplete();
+    }
+
+    @Test
+    public void readsRunOnTheReadScheduler() {
+        todolistService.create(new TodoItem("item1"));
+
+        StepVerifier.create(service.findItemById(1L).map(item -> Thread.currentThread().getName()))
+                .assertNext(thread -> assertTrue(thread, thread.startsWith("test-reads")))
+                .verifyComplete();
+        StepVerifier.create(service.retrieveAllItems().map(item -> Thread.currentThread().getName()))
+                .assertNext(thread -> assertTrue(thread, thread.startsWith("test-reads")))
+                .verifyComplete();
+        StepVerifier.create(service.retrieveAllItemsWithVersion())
+                .assertNext(items -> {
+                    assertEquals(todolistService.getVersion(), items.getVersion());
+                    assertEquals(1, items.getItems().size());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    public void writesRunOnTheWriteScheduler() {
+        StepVerifier.create(service.createIfAbsent(new TodoItem("item1")).map(item -> Thread.currentThread().getName()))
+                .assertNext(thread -> assertTrue(thread, thread.startsWith("test-writes")))
+                .verifyComplete();
+        StepVerifier.create(service.createIfAbsent(new TodoItem("item1"))).verifyComplete();
+    }
+
+    @Test
+    public void updateItemTellsMissingItemsFromConflicts() {
+        todolistService.create(new TodoItem("item1"));
+        todolistService.create(new TodoItem("item2"));
+
+        StepVerifier.create(service.updateItem(1L, new TodoItem("item1 updated")))
+                .expectNext(WriteOutcome.APPLIED).verifyComplete();
+        StepVerifier.create(service.updateItem(1L, new TodoItem("item2")))
+                .expectNext(WriteOutcome.CONFLICT).verifyComplete();
+        StepVerifier.create(service.updateItem(3L, new TodoItem("item3")))
+                .expectNext(WriteOutcome.NOT_FOUND).verifyComplete();
+        StepVerifier.create(service.findItemById(1L).map(TodoItem::getContent))
+                .expectNext("item1 updated").verifyComplete();
+    }
+}
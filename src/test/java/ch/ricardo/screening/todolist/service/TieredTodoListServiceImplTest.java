@@ -0,0 +1,342 @@
+package ch.ricardo.screening.todolist.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.persistence.FsyncPolicy;
+import ch.ricardo.screening.todolist.storage.ContentCache;
+import ch.ricardo.screening.todolist.storage.FileItemStore;
+
+public class TieredTodoListServiceImplTest {
+
+    // room for a handful of short contents only, so that reads regularly go to disk
+    private static final long CACHE_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+
+    private ContentCache cache;
+
+    private TieredTodoListServiceImpl service;
+
+    @Before
+    public void setUp() throws IOException {
+        file = folder.getRoot().toPath().resolve("contents.dat");
+        reopen();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        service.close();
+    }
+
+    @Test
+    public void basicOperations() {
+        service.create(new TodoItem("item1"));
+        service.create(new TodoItem("item2"));
+        service.create(new TodoItem("item3"));
+
+        assertEquals("item2", service.findItemById(2L).get().getContent());
+        assertTrue(service.exists(new TodoItem("item3")));
+        assertFalse(service.createIfAbsent(new TodoItem("item1")).isPresent());
+
+        assertTrue(service.updateItem(1L, new TodoItem("item1 updated with a much longer content than before")));
+        assertFalse(service.updateItem(2L, new TodoItem("item3")));
+        assertTrue(service.deleteItemById(2L));
+        assertFalse(service.deleteItemById(2L));
+
+        List<TodoItem> items = service.retrieveAllItems();
+        assertEquals(2, items.size());
+        assertEquals("item1 updated with a much longer content than before", items.get(0).getContent());
+        assertEquals(Long.valueOf(3), items.get(1).getId());
+        assertFalse(service.exists(new TodoItem("item1")));
+        assertFalse(service.exists(new TodoItem("item2")));
+        assertEquals(1, service.retrieveItems(1, 10).size());
+    }
+
+    @Test
+    public void compareAndSetWritesOnlyTheExpectedVersion() {
+        TodoItem item = service.create(new TodoItem("item1"));
+        long version = service.findItemById(item.getId()).get().getVersion();
+
+        assertEquals(WriteOutcome.APPLIED, service.compareAndUpdate(item.getId(), version, new TodoItem("updated")));
+        assertEquals(WriteOutcome.STALE, service.compareAndUpdate(item.getId(), version, new TodoItem("lost")));
+        assertEquals(WriteOutcome.STALE, service.compareAndDelete(item.getId(), version));
+        assertEquals("updated", service.findItemById(item.getId()).get().getContent());
+
+        long updatedVersion = service.findItemById(item.getId()).get().getVersion();
+        assertEquals(WriteOutcome.APPLIED, service.compareAndDelete(item.getId(), updatedVersion));
+        assertEquals(WriteOutcome.NOT_FOUND, service.compareAndDelete(item.getId(), updatedVersion));
+    }
+
+    @Test
+    public void evictedContentsAreReadFromDisk() {
+        for (int i = 1; i <= 100; i++) {
+            service.create(new TodoItem("item" + i));
+        }
+        assertTrue(cache.evictionCount() > 0);
+        assertTrue(cache.size() <= CACHE_SIZE);
+
+        // written last, still cached
+        assertEquals("item100", service.findItemById(100L).get().getContent());
+        assertEquals(1, cache.hitCount());
+        // evicted long ago
+        assertEquals("item1", service.findItemById(1L).get().getContent());
+        assertEquals(1, cache.missCount());
+        assertEquals("item1", service.findItemById(1L).get().getContent());
+        assertEquals(2, cache.hitCount());
+
+        assertTrue(service.exists(new TodoItem("item2")));
+        assertFalse(service.createIfAbsent(new TodoItem("item3")).isPresent());
+        assertFalse(service.updateItem(5L, new TodoItem("item4")));
+    }
+
+    @Test
+    public void scansDoNotFillTheCache() {
+        for (int i = 1; i <= 100; i++) {
+            service.create(new TodoItem("item" + i));
+        }
+        service.findItemById(1L);
+        long cachedContents = cache.count();
+
+        assertEquals(100, new ArrayList<>(service.retrieveAllItems()).size());
+        assertEquals("item1", service.findItemById(1L).get().getContent());
+        assertEquals(cachedContents, cache.count());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    public void itemsSurviveReopeningTheFile() throws IOException {
+        for (int i = 1; i <= 200; i++) {
+            service.create(new TodoItem("item" + i));
+        }
+        for (long id = 2; id <= 200; id += 2) {
+            service.deleteItemById(id);
+        }
+        service.updateItem(1L, new TodoItem("a content written over the first one"));
+        assertEquals(100, service.countItems());
+
+        reopen();
+
+        List<TodoItem> items = service.retrieveAllItems();
+        assertEquals(100, items.size());
+        assertEquals(100, service.countItems());
+        assertEquals("a content written over the first one", items.get(0).getContent());
+        assertEquals("item199", items.get(99).getContent());
+        assertTrue(service.exists(new TodoItem("item3")));
+        assertFalse(service.exists(new TodoItem("item1")));
+        assertFalse(service.exists(new TodoItem("item4")));
+        // the deleted item 200 keeps its id
+        assertEquals(Long.valueOf(201), service.create(new TodoItem("item201")).getId());
+    }
+
+    @Test
+    public void versionsSurviveReopeningTheFile() throws IOException {
+        service.create(new TodoItem("item1"));
+        service.create(new TodoItem("item2"));
+        service.updateItem(1L, new TodoItem("item1 updated"));
+        service.deleteItemById(2L);
+        long version = service.getVersion();
+        long itemVersion = service.findItemById(1L).get().getVersion();
+
+        reopen();
+        assertEquals(version, service.getVersion());
+        assertEquals(itemVersion, service.findItemById(1L).get().getVersion());
+        assertEquals(WriteOutcome.APPLIED, service.compareAndUpdate(1L, itemVersion, new TodoItem("item1 again")));
+        assertEquals(version + 1, service.getVersion());
+
+        service.deleteAllItems();
+        reopen();
+        assertEquals(version + 2, service.getVersion());
+    }
+
+    @Test
+    public void attributesSurviveReopeningTheFile() throws IOException {
+        LocalDate dueDate = LocalDate.of(2030, 1, 31);
+        TodoItem created = service.create(new TodoItem(null, "item1", TodoItem.Status.IN_PROGRESS, 2, dueDate, null,
+                null, 0));
+        service.create(new TodoItem("item2"));
+        // appends a new record for item2
+        service.updateItem(2L, new TodoItem(null, "item2 updated with a longer content", TodoItem.Status.DONE, -4,
+                null, null, null, 0));
+        TodoItem updated = service.findItemById(2L).get();
+        reopen();
+
+        TodoItem item1 = service.findItemById(1L).get();
+        assertEquals(TodoItem.Status.IN_PROGRESS, item1.getStatus());
+        assertEquals(2, item1.getPriority());
+        assertEquals(dueDate, item1.getDueDate());
+        assertEquals(created.getCreated(), item1.getCreated());
+        assertEquals(created.getUpdated(), item1.getUpdated());
+
+        TodoItem item2 = service.retrieveAllItems().get(1);
+        assertEquals("item2 updated with a longer content", item2.getContent());
+        assertEquals(TodoItem.Status.DONE, item2.getStatus());
+        assertEquals(-4, item2.getPriority());
+        assertNull(item2.getDueDate());
+        assertEquals(updated.getCreated(), item2.getCreated());
+        assertEquals(updated.getUpdated(), item2.getUpdated());
+    }
+
+    @Test
+    public void recordCutShortIsDropped() throws IOException {
+        service.create(new TodoItem("item1"));
+        service.create(new TodoItem("item2"));
+        long size = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 2);
+        }
+
+        reopen();
+        assertEquals(1, service.countItems());
+        assertEquals(Long.valueOf(2), service.create(new TodoItem("item3")).getId());
+        assertEquals(size, Files.size(file));
+
+        reopen();
+        assertEquals("item3", service.findItemById(2L).get().getContent());
+    }
+
+    @Test
+    public void corruptLastRecordIsDropped() throws IOException {
+        service.create(new TodoItem("item1"));
+        service.create(new TodoItem("item2"));
+        corrupt(Files.size(file) - 1);
+
+        reopen();
+        assertEquals(1, service.countItems());
+        assertEquals(Long.valueOf(2), service.create(new TodoItem("item3")).getId());
+
+        reopen();
+        assertEquals("item3", service.findItemById(2L).get().getContent());
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptRecordFollowedByValidOnesIsRejected() throws IOException {
+        service.create(new TodoItem("item1"));
+        service.create(new TodoItem("item2"));
+        // the last content byte of item1
+        corrupt(Files.size(file) - FileItemStore.recordSize("item2".length()) - 1);
+
+        try (FileItemStore store = new FileItemStore(file)) {
+            new TieredTodoListServiceImpl(store, new ContentCache(CACHE_SIZE, 1));
+        }
+    }
+
+    @Test
+    public void compactionReclaimsTheRecordsWrittenOver() throws IOException {
+        reopen(0);
+        for (int i = 1; i <= 10; i++) {
+            service.create(new TodoItem("item" + i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            service.updateItem(1L, new TodoItem("item1 updated " + i));
+        }
+        service.deleteItemById(10L);
+        long version = service.getVersion();
+
+        // the records written over never take more space than the live ones
+        assertTrue(Files.size(file) <= 3 * service.liveBytes());
+        assertEquals("item1 updated 999", service.findItemById(1L).get().getContent());
+        assertEquals("item2", service.findItemById(2L).get().getContent());
+
+        reopen(0);
+        assertEquals(9, service.countItems());
+        assertEquals(version, service.getVersion());
+        assertEquals("item1 updated 999", service.retrieveAllItems().get(0).getContent());
+        assertTrue(service.exists(new TodoItem("item9")));
+        // the deleted item 10 keeps its id
+        assertEquals(Long.valueOf(11), service.create(new TodoItem("item11")).getId());
+    }
+
+    @Test
+    public void allItemsAreReadPageByPage() {
+        int count = 2 * PagedItems.PAGE_SIZE + 1;
+        for (int i = 1; i <= count; i++) {
+            service.create(new TodoItem("item" + i));
+        }
+        service.deleteItemById(1L);
+        VersionedItems items = service.retrieveAllItemsWithVersion();
+        assertEquals(service.getVersion(), items.getVersion());
+        assertEquals(count - 1, items.getItems().size());
+
+        long previousId = 1;
+        for (TodoItem item : items.getItems()) {
+            assertEquals(previousId + 1, (long) item.getId());
+            assertEquals("item" + item.getId(), item.getContent());
+            previousId = item.getId();
+        }
+        assertEquals(count, previousId);
+        assertEquals(count - 1, items.getItems().stream().count());
+        assertEquals("item2", items.getItems().get(0).getContent());
+    }
+
+    @Test
+    public void deleteAllItemsResetsTheStore() throws IOException {
+        service.create(new TodoItem("item1"));
+        service.create(new TodoItem("item2"));
+        service.deleteAllItems();
+
+        assertTrue(service.retrieveAllItems().isEmpty());
+        assertEquals(0, service.countItems());
+        assertFalse(service.exists(new TodoItem("item1")));
+        assertEquals(0, cache.count());
+        assertEquals(Long.valueOf(1), service.create(new TodoItem("item3")).getId());
+
+        reopen();
+        assertEquals(1, service.retrieveAllItems().size());
+    }
+
+    @Test
+    public void nullContentIsNotIndexed() {
+        service.create(new TodoItem((String) null));
+
+        assertNull(service.findItemById(1L).get().getContent());
+        assertFalse(service.exists(new TodoItem((String) null)));
+    }
+
+    private void reopen() throws IOException {
+        if (service != null) {
+            service.close();
+        }
+        cache = new ContentCache(CACHE_SIZE, 1);
+        service = new TieredTodoListServiceImpl(new FileItemStore(file), cache);
+    }
+
+    private void reopen(long compactionMinBytes) throws IOException {
+        service.close();
+        cache = new ContentCache(CACHE_SIZE, 1);
+        service = new TieredTodoListServiceImpl(new FileItemStore(file), cache, FsyncPolicy.NEVER, 0,
+                compactionMinBytes);
+    }
+
+    private void corrupt(long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer value = ByteBuffer.allocate(1);
+            channel.read(value, position);
+            value.put(0, (byte) ~value.get(0));
+            value.clear();
+            channel.write(value, position);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package ch.ricardo.screening.todolist.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.service.ItemQuery.SortKey;
+
+public class TodoListAttributeIndexTest {
+
+    private static final LocalDate MONDAY = LocalDate.of(2030, 1, 7);
+
+    private static final LocalDate SUNDAY = MONDAY.plusDays(6);
+
+    private ConcurrentTodoListServiceImpl service;
+
+    private TodoListAttributeIndex index;
+
+    @Before
+    public void setUp() {
+        service = new ConcurrentTodoListServiceImpl();
+        index = new TodoListAttributeIndex(service);
+    }
+
+    @Test
+    public void openItemsDueThisWeekByPriority() {
+        service.create(item("due this week", TodoItem.Status.OPEN, 1, MONDAY.plusDays(2)));
+        service.create(item("done this week", TodoItem.Status.DONE, 9, MONDAY.plusDays(2)));
+        service.create(item("due next week", TodoItem.Status.OPEN, 9, SUNDAY.plusDays(1)));
+        service.create(item("urgent this week", TodoItem.Status.OPEN, 5, SUNDAY));
+        service.create(item("no due date", TodoItem.Status.OPEN, 9, null));
+        service.create(item("urgent on monday", TodoItem.Status.OPEN, 5, MONDAY));
+
+        ItemQuery query = new ItemQuery(EnumSet.of(TodoItem.Status.OPEN), null, null, MONDAY, SUNDAY,
+                SortKey.PRIORITY, true);
+        // equal priorities sort by id, even in descending order
+        assertEquals(Arrays.asList(6L, 4L, 1L), index.query(query, 0, 10));
+        assertEquals(Collections.singletonList(4L), index.query(query, 1, 1));
+    }
+
+    @Test
+    public void slicesOfTheStatusesAreMergedInSortOrder() {
+        service.create(item("item1", TodoItem.Status.OPEN, 3, null));
+        service.create(item("item2", TodoItem.Status.IN_PROGRESS, 4, null));
+        service.create(item("item3", TodoItem.Status.DONE, 5, null));
+        service.create(item("item4", TodoItem.Status.OPEN, 1, null));
+        service.create(item("item5", TodoItem.Status.IN_PROGRESS, 2, null));
+
+        ItemQuery query = new ItemQuery(Arrays.asList(TodoItem.Status.OPEN, TodoItem.Status.IN_PROGRESS), null, null,
+                null, null, SortKey.PRIORITY, false);
+        assertEquals(Arrays.asList(4L, 5L, 1L, 2L), index.query(query, 0, 10));
+        assertEquals(Arrays.asList(5L, 1L), index.query(query, 1, 2));
+
+        ItemQuery byId = new ItemQuery(null, 2, 4, null, null, null, true);
+        assertEquals(Arrays.asList(5L, 2L, 1L), index.query(byId, 0, 10));
+    }
+
+    @Test
+    public void itemsWithoutDueDateSortLastAndAreLeftOutOfDueDateRanges() {
+        service.create(item("item1", TodoItem.Status.OPEN, 0, null));
+        service.create(item("item2", TodoItem.Status.OPEN, 0, SUNDAY));
+        service.create(item("item3", TodoItem.Status.OPEN, 0, MONDAY));
+
+        assertEquals(Arrays.asList(3L, 2L, 1L),
+                index.query(new ItemQuery(null, null, null, null, null, SortKey.DUE_DATE, false), 0, 10));
+        assertEquals(Arrays.asList(3L, 2L),
+                index.query(new ItemQuery(null, null, null, MONDAY, null, SortKey.DUE_DATE, false), 0, 10));
+        assertEquals(Collections.singletonList(3L),
+                index.query(new ItemQuery(null, null, null, null, MONDAY, null, false), 0, 10));
+    }
+
+    @Test
+    public void writesMoveTheItemsInTheIndexes() {
+        service.create(item("item1", TodoItem.Status.OPEN, 1, MONDAY));
+        service.create(item("item2", TodoItem.Status.OPEN, 2, MONDAY));
+        service.create(item("item3", TodoItem.Status.OPEN, 3, MONDAY));
+        ItemQuery open = new ItemQuery(EnumSet.of(TodoItem.Status.OPEN), null, null, null, null, SortKey.PRIORITY,
+                false);
+
+        service.updateItem(1L, item("item1", TodoItem.Status.OPEN, 4, MONDAY));
+        service.updateItem(2L, item("item2", TodoItem.Status.DONE, 2, MONDAY));
+        assertEquals(Arrays.asList(3L, 1L), index.query(open, 0, 10));
+        // content only: the item keeps its place
+        service.updateItem(3L, item("item3 updated", TodoItem.Status.OPEN, 3, MONDAY));
+        assertEquals(Arrays.asList(3L, 1L), index.query(open, 0, 10));
+        assertEquals(Arrays.asList(3L, 2L, 1L),
+                index.query(new ItemQuery(null, null, null, null, null, SortKey.UPDATED, true), 0, 10));
+
+        service.deleteItemById(3L);
+        assertEquals(Collections.singletonList(1L), index.query(open, 0, 10));
+        assertEquals(2, index.size());
+
+        service.deleteAllItems();
+        assertEquals(Collections.emptyList(), index.query(open, 0, 10));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void itemsWrittenBeforeRegistrationAreIndexed() {
+        ConcurrentTodoListServiceImpl list = new ConcurrentTodoListServiceImpl();
+        list.create(item("item1", TodoItem.Status.DONE, 1, null));
+        list.create(item("item2", TodoItem.Status.OPEN, 1, null));
+
+        TodoListAttributeIndex listIndex = new TodoListAttributeIndex(list);
+        assertEquals(Collections.singletonList(2L), listIndex.query(
+                new ItemQuery(EnumSet.of(TodoItem.Status.OPEN), null, null, null, null, null, false), 0, 10));
+    }
+
+    @Test
+    public void queriesMatchAScanOfTheList() {
+        Random random = new Random(42);
+        TodoItem.Status[] statuses = TodoItem.Status.values();
+        for (int i = 0; i < 2000; i++) {
+            service.create(randomItem(random, "item" + i));
+        }
+        for (int i = 0; i < 500; i++) {
+            long id = 1 + random.nextInt(2000);
+            if (random.nextBoolean()) {
+                service.updateItem(id, randomItem(random, "updated" + i));
+            } else {
+                service.deleteItemById(id);
+            }
+        }
+
+        for (int i = 0; i < 200; i++) {
+            List<TodoItem.Status> wanted = random.nextBoolean() ? null
+                    : Arrays.asList(statuses[random.nextInt(statuses.length)], statuses[random.nextInt(3)]);
+            Integer minPriority = random.nextBoolean() ? null : random.nextInt(10);
+            Integer maxPriority = minPriority == null || random.nextBoolean() ? null : minPriority + random.nextInt(5);
+            LocalDate dueFrom = random.nextBoolean() ? null : MONDAY.plusDays(random.nextInt(60));
+            LocalDate dueTo = dueFrom == null || random.nextBoolean() ? null : dueFrom.plusDays(random.nextInt(14));
+            SortKey sortKey = SortKey.values()[random.nextInt(SortKey.values().length)];
+            ItemQuery query = new ItemQuery(wanted, minPriority, maxPriority, dueFrom, dueTo, sortKey,
+                    random.nextBoolean());
+            int offset = random.nextInt(20);
+
+            assertEquals("query " + i, scan(query, offset, 50), index.query(query, offset, 50));
+
+            ItemPage page = index.query(query, null, 0, 50);
+            List<Long> paged = new ArrayList<>(page.getIds());
+            while (page.getNext() != null) {
+                page = index.query(query, ItemCursor.parse(page.getNext().toString()), 0, 50);
+                paged.addAll(page.getIds());
+            }
+            assertEquals("query " + i, scan(query, 0, Integer.MAX_VALUE), paged);
+        }
+    }
+
+    @Test
+    public void pagesStartAfterTheCursor() {
+        service.create(item("item1", TodoItem.Status.OPEN, -3, null));
+        service.create(item("item2", TodoItem.Status.DONE, 5, null));
+        service.create(item("item3", TodoItem.Status.OPEN, 5, null));
+        service.create(item("item4", TodoItem.Status.OPEN, 7, null));
+
+        ItemQuery query = new ItemQuery(null, null, null, null, null, SortKey.PRIORITY, true);
+        ItemPage first = index.query(query, null, 0, 2);
+        assertEquals(Arrays.asList(4L, 3L), first.getIds());
+        assertEquals("5.3", first.getNext().toString());
+        // item2 is created before item3, but sorts after it in descending order
+        ItemPage second = index.query(query, first.getNext(), 0, 2);
+        assertEquals(Arrays.asList(2L, 1L), second.getIds());
+        assertEquals(new ItemCursor(-3, 1).toString(), second.getNext().toString());
+        assertEquals(Collections.emptyList(), index.query(query, second.getNext(), 0, 2).getIds());
+        assertNull(index.query(query, first.getNext(), 1, 2).getNext());
+
+        // cursors out of the range of the query start from either end of it
+        ItemQuery highPriorities = new ItemQuery(null, 5, 7, null, null, SortKey.PRIORITY, false);
+        assertEquals(Arrays.asList(2L, 3L, 4L), index.query(highPriorities, new ItemCursor(-3, 1), 0, 10).getIds());
+        assertEquals(Collections.emptyList(), index.query(highPriorities, new ItemCursor(9, 1), 0, 10).getIds());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCursorsAreRejected() {
+        ItemCursor.parse("5-3");
+    }
+
+    private List<Long> scan(ItemQuery query, int offset, int limit) {
+        Comparator<TodoItem> order = Comparator.comparingLong(item -> sortValue(item, query.getSortKey()));
+        order = order.thenComparingLong(TodoItem::getId);
+        return service.retrieveAllItems().stream()
+                .filter(item -> query.getStatuses() == null || query.getStatuses().contains(item.getStatus()))
+                .filter(item -> query.getMinPriority() == null || item.getPriority() >= query.getMinPriority())
+                .filter(item -> query.getMaxPriority() == null || item.getPriority() <= query.getMaxPriority())
+                .filter(item -> query.getDueFrom() == null && query.getDueTo() == null || item.getDueDate() != null
+                        && (query.getDueFrom() == null || !item.getDueDate().isBefore(query.getDueFrom()))
+                        && (query.getDueTo() == null || !item.getDueDate().isAfter(query.getDueTo())))
+                .sorted(query.isDescending() ? order.reversed() : order)
+                .skip(offset).limit(limit)
+                .map(TodoItem::getId)
+                .collect(Collectors.toList());
+    }
+
+    private static long sortValue(TodoItem item, SortKey key) {
+        switch (key) {
+            case PRIORITY:
+                return item.getPriority();
+            case DUE_DATE:
+                return item.getDueDate() == null ? Long.MAX_VALUE : item.getDueDate().toEpochDay();
+            case UPDATED:
+                return item.getUpdated().toEpochMilli();
+            default:
+                return item.getId();
+        }
+    }
+
+    private static TodoItem randomItem(Random random, String content) {
+        TodoItem.Status[] statuses = TodoItem.Status.values();
+        return item(content, statuses[random.nextInt(statuses.length)], random.nextInt(10),
+                random.nextInt(5) == 0 ? null : MONDAY.plusDays(random.nextInt(60)));
+    }
+
+    private static TodoItem item(String content, TodoItem.Status status, int priority, LocalDate dueDate) {
+        return new TodoItem(null, content, status, priority, dueDate, null, null, 0);
+    }
+}
@@ -0,0 +1,206 @@
+package ch.ricardo.screening.todolist.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.persistence.PersistenceConfig;
+import ch.ricardo.screening.todolist.persistence.PersistenceProperties;
+import ch.ricardo.screening.todolist.persistence.TodoListJournalFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class TodoListPartitionsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    public void listsHaveTheirOwnItemsAndIds() {
+        TodoListPartitions partitions = new TodoListPartitions(TodoListJournalFactory.NONE, registry);
+        TodoListService alice = partitions.getOrCreate("alice");
+        TodoListService bob = partitions.getOrCreate("bob");
+        assertSame(alice, partitions.getOrCreate("alice"));
+
+        assertEquals(Long.valueOf(1), alice.create(new TodoItem("buy milk")).getId());
+        assertEquals(Long.valueOf(2), alice.create(new TodoItem("walk the dog")).getId());
+        // the same content in another list is not a conflict
+        assertEquals(Long.valueOf(1), bob.createIfAbsent(new TodoItem("buy milk")).get().getId());
+
+        alice.deleteAllItems();
+        assertEquals(0, alice.countItems());
+        assertEquals(1, bob.countItems());
+        assertEquals(2.0, registry.get(TodoListPartitions.LISTS).gauge().value(), 0);
+    }
+
+    @Test
+    public void readsDoNotCreateLists() {
+        TodoListPartitions partitions = new TodoListPartitions(TodoListJournalFactory.NONE, registry);
+        assertFalse(partitions.find("alice").isPresent());
+        partitions.getOrCreate("alice");
+        assertTrue(partitions.find("alice").isPresent());
+        assertEquals(1.0, registry.get(TodoListPartitions.LISTS).gauge().value(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void listIdsCannotEscapeTheirDirectory() {
+        new TodoListPartitions(TodoListJournalFactory.NONE, registry).getOrCreate("../alice");
+    }
+
+    @Test
+    public void listsAreRecoveredFromTheirJournalAfterARestart() {
+        TodoListJournalFactory journals = new PersistenceConfig().todoListJournalFactory(persistenceProperties());
+
+        TodoListPartitions partitions = new TodoListPartitions(journals, registry);
+        partitions.getOrCreate("alice").create(new TodoItem("buy milk"));
+        partitions.getOrCreate("bob").create(new TodoItem("walk the dog"));
+        partitions.getOrCreate("bob").deleteItemById(1L);
+        partitions.close();
+
+        TodoListPartitions restarted = new TodoListPartitions(journals, new SimpleMeterRegistry());
+        assertEquals("buy milk", restarted.find("alice").get().findItemById(1L).get().getContent());
+        TodoListService bob = restarted.find("bob").get();
+        assertEquals(0, bob.countItems());
+        // ids are not reused after a restart
+        assertEquals(Long.valueOf(2), bob.create(new TodoItem("walk the cat")).getId());
+        assertFalse(restarted.find("carol").isPresent());
+        restarted.close();
+    }
+
+    @Test
+    public void listsBeyondTheMaximumAreRejected() {
+        TodoListPartitions partitions = new TodoListPartitions(TodoListJournalFactory.NONE, registry, 2, 1);
+        partitions.getOrCreate("alice").create(new TodoItem("buy milk"));
+        partitions.getOrCreate("bob");
+        try {
+            partitions.getOrCreate("carol");
+            fail("a third list was created");
+        } catch (TooManyListsException e) {
+            // expected
+        }
+        // lists that are not journaled are never evicted, they could not be loaded again
+        partitions.evictIdleLists();
+        assertEquals(1, partitions.getOrCreate("alice").countItems());
+        assertEquals(2.0, registry.get(TodoListPartitions.LISTS).gauge().value(), 0);
+        partitions.close();
+    }
+
+    @Test
+    public void idleListsAreEvictedAndLoadedAgainFromTheirJournal() throws InterruptedException {
+        TodoListJournalFactory journals = new PersistenceConfig().todoListJournalFactory(persistenceProperties());
+        TodoListPartitions partitions = new TodoListPartitions(journals, registry, 2, 1);
+        partitions.getOrCreate("alice").create(new TodoItem("buy milk"));
+        Thread.sleep(1100);
+        partitions.getOrCreate("bob").create(new TodoItem("walk the dog"));
+
+        partitions.evictIdleLists();
+        assertEquals(1.0, registry.get(TodoListPartitions.LISTS).gauge().value(), 0);
+        assertEquals("buy milk", partitions.find("alice").get().findItemById(1L).get().getContent());
+        assertEquals(2.0, registry.get(TodoListPartitions.LISTS).gauge().value(), 0);
+        try {
+            partitions.getOrCreate("carol");
+            fail("a third list was created while the others are in use");
+        } catch (TooManyListsException e) {
+            // expected
+        }
+        partitions.close();
+    }
+
+    @Test
+    public void listsInUseAreNotEvicted() throws Exception {
+        TodoListJournalFactory journals = new PersistenceConfig().todoListJournalFactory(persistenceProperties());
+        // every list is idle at once
+        TodoListPartitions partitions = new TodoListPartitions(journals, registry, 10, 0, TimeUnit.NANOSECONDS);
+        TodoListService kept = partitions.getOrCreate("alice");
+        int threads = 4;
+        int itemsPerThread = 500;
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try {
+            Future<?> evictions = executor.submit(() -> {
+                while (writing.get()) {
+                    partitions.evictIdleLists();
+                }
+            });
+            List<Callable<Void>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                writers.add(() -> {
+                    for (int i = 0; i < itemsPerThread; i++) {
+                        // a handle kept across evictions, and lists looked up again and loaded as they are evicted
+                        TodoListService list = i % 2 == 0 ? kept : partitions.getOrCreate("alice");
+                        list.create(new TodoItem("item" + thread + "-" + i));
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> result : executor.invokeAll(writers)) {
+                result.get();
+            }
+            writing.set(false);
+            evictions.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(threads * itemsPerThread, kept.countItems());
+        partitions.close();
+
+        TodoListService restarted = new TodoListPartitions(journals, new SimpleMeterRegistry()).find("alice").get();
+        assertEquals(threads * itemsPerThread, restarted.countItems());
+        assertEquals(threads * itemsPerThread, restarted.getVersion());
+    }
+
+    @Test
+    public void writesToDifferentListsRunConcurrently() throws Exception {
+        TodoListPartitions partitions = new TodoListPartitions(TodoListJournalFactory.NONE, registry);
+        int threads = 4;
+        int itemsPerList = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Callable<Void>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                String listId = "list" + t;
+                writers.add(() -> {
+                    for (int i = 1; i <= itemsPerList; i++) {
+                        partitions.getOrCreate(listId).create(new TodoItem("item" + i));
+                    }
+                    return null;
+                });
+            }
+            for (Future<Void> result : executor.invokeAll(writers)) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        for (int t = 0; t < threads; t++) {
+            TodoListService list = partitions.find("list" + t).get();
+            assertEquals(itemsPerList, list.countItems());
+            assertEquals(itemsPerList, list.getVersion());
+        }
+    }
+
+    private PersistenceProperties persistenceProperties() {
+        PersistenceProperties properties = new PersistenceProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(folder.getRoot().getPath());
+        return properties;
+    }
+}
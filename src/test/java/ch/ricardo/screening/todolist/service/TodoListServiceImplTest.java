@@ -0,0 +1,86 @@
+package ch.ricardo.screening.todolist.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.ricardo.screening.todolist.model.TodoItem;
+import ch.ricardo.screening.todolist.persistence.IdBlockStore;
+
+public class TodoListServiceImplTest {
+
+    private TodoListServiceImpl service;
+
+    @Before
+    public void setUp() {
+        service = new TodoListServiceImpl(new IdAllocator(4, IdBlockStore.NONE));
+    }
+
+    @Test
+    public void idsAreNotReusedAfterDeletingAllItems() {
+        TodoItem first = service.create(new TodoItem("item1"));
+        service.deleteAllItems();
+        TodoItem second = service.create(new TodoItem("item1"));
+        assertTrue(second.getId() > first.getId());
+    }
+
+    @Test
+    public void pagesFollowTheCreationOrder() {
+        for (int i = 1; i <= 10; i++) {
+            service.create(new TodoItem("item" + i));
+        }
+        service.deleteItemById(4L);
+        service.updateItem(5L, new TodoItem("item5 updated"));
+
+        assertEquals(ids(1, 2, 3), ids(service.retrieveItems(0, 3)));
+        assertEquals(ids(5, 6, 7), ids(service.retrieveItems(3, 3)));
+        assertEquals(ids(8, 9, 10), ids(service.retrieveItems(7, 3)));
+        assertTrue(service.retrieveItems(10, 3).isEmpty());
+        assertEquals("item5 updated", service.findItemById(5L).get().getContent());
+        assertFalse(service.findItemById(4L).isPresent());
+        assertFalse(service.findItemById(null).isPresent());
+    }
+
+    @Test
+    public void batchesGetConsecutiveIds() {
+        service.create(new TodoItem("item1"));
+        List<Optional<TodoItem>> created = service.createItemsIfAbsent(Arrays.asList(new TodoItem("item2"),
+                new TodoItem("item1"), new TodoItem("item3"), new TodoItem("item2")));
+
+        assertEquals(Arrays.asList(2L, null, 3L, null), created.stream()
+                .map(item -> item.map(TodoItem::getId).orElse(null)).collect(Collectors.toList()));
+        assertEquals(ids(1, 2, 3), ids(service.retrieveAllItems()));
+        assertEquals(4, service.create(new TodoItem("item4")).getId().longValue());
+        assertEquals(4, service.getVersion());
+    }
+
+    @Test
+    public void retrievedListsAreSnapshots() {
+        service.create(new TodoItem("item1"));
+        List<TodoItem> items = service.retrieveAllItems();
+
+        service.create(new TodoItem("item2"));
+        service.updateItem(1L, new TodoItem("item1 updated"));
+        assertEquals(1, items.size());
+        assertEquals("item1", items.get(0).getContent());
+        assertEquals(2, service.retrieveAllItems().size());
+        // each instance has its own list
+        assertTrue(new TodoListServiceImpl().retrieveAllItems().isEmpty());
+    }
+
+    private static List<Long> ids(long... ids) {
+        return Arrays.stream(ids).boxed().collect(Collectors.toList());
+    }
+
+    private static List<Long> ids(List<TodoItem> items) {
+        return items.stream().map(TodoItem::getId).collect(Collectors.toList());
+    }
+}
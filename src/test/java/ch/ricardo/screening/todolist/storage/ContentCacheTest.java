@@ -0,0 +1,55 @@
+package ch.ricardo.screening.todolist.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class ContentCacheTest {
+
+    private static final long ENTRY_SIZE = ContentCache.ENTRY_OVERHEAD + 2 * "item1".length();
+
+    @Test
+    public void leastRecentlyUsedContentsAreEvicted() {
+        ContentCache cache = new ContentCache(3 * ENTRY_SIZE, 1);
+        cache.put(1, "item1");
+        cache.put(2, "item2");
+        cache.put(3, "item3");
+        assertEquals("item1", cache.get(1));
+
+        cache.put(4, "item4");
+        assertNull(cache.get(2));
+        assertEquals("item1", cache.get(1));
+        assertEquals("item3", cache.get(3));
+        assertEquals("item4", cache.get(4));
+
+        assertEquals(1, cache.evictionCount());
+        assertEquals(4, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(3, cache.count());
+        assertEquals(3 * ENTRY_SIZE, cache.size());
+    }
+
+    @Test
+    public void sizeFollowsReplacementsAndRemovals() {
+        ContentCache cache = new ContentCache(1024, 4);
+        cache.put(1, "item1");
+        cache.put(1, "item1 updated");
+        assertEquals(ContentCache.ENTRY_OVERHEAD + 2 * "item1 updated".length(), cache.size());
+
+        cache.remove(1);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.count());
+    }
+
+    @Test
+    public void contentsLargerThanASegmentAreNotCached() {
+        ContentCache cache = new ContentCache(2 * ENTRY_SIZE, 2);
+        cache.put(1, "item1");
+        cache.put(1, "a content too large for a segment");
+
+        assertNull(cache.peek(1));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.hitCount() + cache.missCount());
+    }
+}
@@ -0,0 +1,61 @@
+package ch.ricardo.screening.todolist.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class OffHeapBitSetTest {
+
+    @Test
+    public void iteratesLikeABitSet() {
+        OffHeapBitSet bits = new OffHeapBitSet();
+        BitSet expected = new BitSet();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            // sparse regions, so that searches go through the summary
+            int index = random.nextInt(10) == 0 ? random.nextInt(1_000_000) : random.nextInt(20_000);
+            if (random.nextInt(3) == 0) {
+                expected.clear(index);
+                bits.clear(index);
+            } else {
+                expected.set(index);
+                bits.set(index);
+            }
+        }
+
+        for (int index = 0; index < 1_000_100; index += 1 + random.nextInt(100)) {
+            assertEquals(expected.get(index), bits.get(index));
+            int next = expected.nextSetBit(index);
+            assertEquals(next, bits.nextSetBit(index));
+        }
+        int count = 0;
+        for (long index = bits.nextSetBit(0); index >= 0; index = bits.nextSetBit(index + 1)) {
+            assertTrue(expected.get((int) index));
+            count++;
+        }
+        assertEquals(expected.cardinality(), count);
+    }
+
+    @Test
+    public void skipsLargeGaps() {
+        OffHeapBitSet bits = new OffHeapBitSet();
+        bits.set(1);
+        bits.set(10_000_000);
+
+        assertEquals(1, bits.nextSetBit(0));
+        assertEquals(10_000_000, bits.nextSetBit(2));
+        assertEquals(-1, bits.nextSetBit(10_000_001));
+
+        bits.clear(10_000_000);
+        assertEquals(-1, bits.nextSetBit(2));
+        bits.clear();
+        assertFalse(bits.get(1));
+        assertEquals(-1, bits.nextSetBit(0));
+    }
+}
@@ -0,0 +1,58 @@
+package ch.ricardo.screening.todolist.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class OffHeapLongLongMapTest {
+
+    @Test
+    public void behavesLikeAHashMap() {
+        OffHeapLongLongMap map = new OffHeapLongLongMap(16);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            // a small key range, so that removals hit existing keys and probe sequences get long
+            long key = 1 + random.nextInt(5_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key) != null, map.remove(key));
+            } else {
+                long value = random.nextLong();
+                expected.put(key, value);
+                map.put(key, value);
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long key = 1; key <= 5_000; key++) {
+            assertEquals(expected.getOrDefault(key, -1L).longValue(), map.get(key, -1));
+        }
+    }
+
+    @Test
+    public void clearRemovesEverything() {
+        OffHeapLongLongMap map = new OffHeapLongLongMap(16);
+        map.put(1, 10);
+        map.put(2, 20);
+
+        map.clear();
+
+        assertEquals(0, map.size());
+        assertEquals(-1, map.get(1, -1));
+        assertFalse(map.remove(2));
+        map.put(2, 30);
+        assertTrue(map.remove(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroKeyIsRejected() {
+        new OffHeapLongLongMap(16).put(0, 1);
+    }
+}
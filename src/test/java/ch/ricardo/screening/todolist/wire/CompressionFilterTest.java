@@ -0,0 +1,207 @@
+package ch.ricardo.screening.todolist.wire;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.github.luben.zstd.ZstdInputStream;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.util.StreamUtils;
+
+public class CompressionFilterTest {
+
+    private static final int MIN_RESPONSE_SIZE = 1024;
+
+    private final CompressionFilter filter = new CompressionFilter(MIN_RESPONSE_SIZE,
+            Arrays.asList(MediaType.APPLICATION_JSON, WireFormats.APPLICATION_PROTOBUF));
+
+    @Test
+    public void zstdIsPreferredToGzip() {
+        assertEquals(CompressionFilter.ZSTD, CompressionFilter.selectEncoding("gzip, deflate, zstd"));
+        assertEquals(CompressionFilter.GZIP, CompressionFilter.selectEncoding("gzip, zstd;q=0"));
+        assertEquals(CompressionFilter.GZIP, CompressionFilter.selectEncoding("deflate, GZIP;q=0.5"));
+        assertNull(CompressionFilter.selectEncoding("gzip;q=0.0, br"));
+        assertNull(CompressionFilter.selectEncoding(null));
+    }
+
+    @Test
+    public void largeResponsesAreCompressed() throws Exception {
+        byte[] body = body(10 * MIN_RESPONSE_SIZE);
+
+        MockHttpServletResponse gzip = filter("gzip", MediaType.APPLICATION_JSON_UTF8_VALUE, body);
+        assertEquals("gzip", gzip.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(gzip.getContentAsByteArray().length < body.length / 2);
+        assertArrayEquals(body, decompress("gzip", gzip.getContentAsByteArray()));
+
+        MockHttpServletResponse zstd = filter("gzip, zstd", WireFormats.APPLICATION_PROTOBUF_VALUE, body);
+        assertEquals("zstd", zstd.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertNull(zstd.getHeader(HttpHeaders.CONTENT_LENGTH));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, zstd.getHeader(HttpHeaders.VARY));
+        assertArrayEquals(body, decompress("zstd", zstd.getContentAsByteArray()));
+    }
+
+    @Test
+    public void smallResponsesAreNotCompressed() throws Exception {
+        byte[] body = body(MIN_RESPONSE_SIZE - 1);
+
+        MockHttpServletResponse response = filter("zstd", MediaType.APPLICATION_JSON_VALUE, body);
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(body.length, response.getContentLength());
+        assertArrayEquals(body, response.getContentAsByteArray());
+    }
+
+    @Test
+    public void responsesAreNotCompressedUnlessAccepted() throws Exception {
+        byte[] body = body(10 * MIN_RESPONSE_SIZE);
+
+        MockHttpServletResponse response = filter(null, MediaType.APPLICATION_JSON_VALUE, body);
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeader(HttpHeaders.VARY));
+        assertArrayEquals(body, response.getContentAsByteArray());
+    }
+
+    @Test
+    public void streamsAreNotCompressed() throws Exception {
+        byte[] body = body(10 * MIN_RESPONSE_SIZE);
+
+        MockHttpServletResponse response = filter("gzip", MediaType.TEXT_EVENT_STREAM_VALUE, body);
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(body, response.getContentAsByteArray());
+    }
+
+    @Test
+    public void tagsCarryTheSelectedCoding() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/todolist/items");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, "\"1-2-gzip\", \"3-gzip\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        List<String> ifNoneMatch = new ArrayList<>();
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+                ifNoneMatch.add(req.getHeader(HttpHeaders.IF_NONE_MATCH));
+                resp.setHeader(HttpHeaders.ETAG, "\"1-2\"");
+                resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            }
+        };
+        filter.doFilter(request, response, new MockFilterChain(servlet));
+
+        // the handler compares the tags of its own representation
+        assertEquals(Collections.singletonList("\"1-2\", \"3\""), ifNoneMatch);
+        assertEquals("\"1-2-gzip\"", response.getHeader(HttpHeaders.ETAG));
+        assertEquals("\"1-2-zstd\", W/\"3-zstd\"", CompressionFilter.withCoding("\"1-2\", W/\"3\"", "zstd"));
+    }
+
+    @Test
+    public void nonBlockingWritesAreNotCompressed() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/todolist/items");
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        List<WriteListener> listeners = new ArrayList<>();
+        MockHttpServletResponse response = new MockHttpServletResponse() {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                ServletOutputStream outputStream = super.getOutputStream();
+                return new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        outputStream.write(b);
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener writeListener) {
+                        listeners.add(writeListener);
+                    }
+                };
+            }
+        };
+        WriteListener listener = new WriteListener() {
+            @Override
+            public void onWritePossible() {
+            }
+
+            @Override
+            public void onError(Throwable t) {
+            }
+        };
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                resp.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                resp.getOutputStream().setWriteListener(listener);
+                assertTrue(resp.getOutputStream().isReady());
+                resp.getOutputStream().write(body(10 * MIN_RESPONSE_SIZE));
+            }
+        };
+        filter.doFilter(request, response, new MockFilterChain(servlet));
+
+        assertEquals(Collections.singletonList(listener), listeners);
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(10 * MIN_RESPONSE_SIZE, response.getContentAsByteArray().length);
+    }
+
+    private MockHttpServletResponse filter(String acceptEncoding, String contentType, byte[] body) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/todolist/items");
+        if (acceptEncoding != null) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        HttpServlet servlet = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                resp.setContentType(contentType);
+                resp.setContentLength(body.length);
+                // written in parts, like a message converter does
+                for (int offset = 0; offset < body.length; offset += 100) {
+                    resp.getOutputStream().write(body, offset, Math.min(100, body.length - offset));
+                }
+                resp.getOutputStream().flush();
+                resp.flushBuffer();
+            }
+        };
+        filter.doFilter(request, response, new MockFilterChain(servlet));
+        return response;
+    }
+
+    private static byte[] body(int length) {
+        StringBuilder json = new StringBuilder("[");
+        for (int id = 1; json.length() < length; id++) {
+            json.append("{\"id\":").append(id).append(",\"content\":\"item").append(id).append("\"},");
+        }
+        return json.substring(0, length).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] decompress(String encoding, byte[] compressed) throws IOException {
+        InputStream input = new ByteArrayInputStream(compressed);
+        try (InputStream decompressing = "gzip".equals(encoding) ? new GZIPInputStream(input)
+                : new ZstdInputStream(input)) {
+            return StreamUtils.copyToByteArray(decompressing);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package ch.ricardo.screening.todolist.wire;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.UnknownFieldSet;
+import org.junit.Test;
+
+import ch.ricardo.screening.todolist.model.BatchItemResult;
+import ch.ricardo.screening.todolist.model.TodoItem;
+
+public class TodoListProtobufTest {
+
+    @Test
+    public void itemsRoundTrip() throws IOException {
+        byte[] encoded = encode(output -> TodoListProtobuf.writeItems(Arrays.asList(
+                new TodoItem(1L, "buy milk"), new TodoItem(300L, "payer l'addition, 5 €"), new TodoItem(2L, "")),
+                output));
+
+        List<TodoItem> items = TodoListProtobuf.readItems(CodedInputStream.newInstance(encoded));
+        assertEquals(3, items.size());
+        assertEquals(Long.valueOf(300), items.get(1).getId());
+        assertEquals("payer l'addition, 5 €", items.get(1).getContent());
+        assertEquals("", items.get(2).getContent());
+    }
+
+    @Test
+    public void itemsFollowTheSchema() throws IOException {
+        byte[] encoded = encode(output -> TodoListProtobuf.writeItems(Collections.singletonList(
+                new TodoItem(7L, "item7")), output));
+
+        // decoded without the codec: TodoItemList.items = 1, TodoItem.id = 1 and TodoItem.content = 2
+        UnknownFieldSet list = UnknownFieldSet.parseFrom(encoded);
+        UnknownFieldSet item = UnknownFieldSet.parseFrom(list.getField(1).getLengthDelimitedList().get(0));
+        assertEquals(Collections.singletonList(7L), item.getField(1).getVarintList());
+        assertEquals("item7", item.getField(2).getLengthDelimitedList().get(0).toStringUtf8());
+    }
+
+    @Test
+    public void attributesFollowTheSchema() throws IOException {
+        Instant created = Instant.ofEpochMilli(1_000_000);
+        Instant updated = Instant.ofEpochMilli(2_000_000);
+        byte[] encoded = encode(output -> TodoListProtobuf.writeItem(new TodoItem(7L, "item7",
+                TodoItem.Status.DONE, -2, LocalDate.of(2030, 1, 31), created, updated, 0), output));
+
+        // TodoItem.status = 3, priority = 4, due_date = 5, created = 6 and updated = 7
+        UnknownFieldSet item = UnknownFieldSet.parseFrom(encoded);
+        assertEquals(Collections.singletonList(2L), item.getField(3).getVarintList());
+        assertEquals(-2, item.getField(4).getVarintList().get(0).intValue());
+        assertEquals("2030-01-31", item.getField(5).getLengthDelimitedList().get(0).toStringUtf8());
+        assertEquals(Collections.singletonList(1_000_000L), item.getField(6).getVarintList());
+        assertEquals(Collections.singletonList(2_000_000L), item.getField(7).getVarintList());
+
+        // the timestamps are set by the server, not read from clients
+        TodoItem read = TodoListProtobuf.readItem(CodedInputStream.newInstance(encoded));
+        assertEquals(TodoItem.Status.DONE, read.getStatus());
+        assertEquals(-2, read.getPriority());
+        assertEquals(LocalDate.of(2030, 1, 31), read.getDueDate());
+        assertNull(read.getCreated());
+    }
+
+    @Test
+    public void defaultAttributesAreNotWritten() throws IOException {
+        byte[] encoded = encode(output -> TodoListProtobuf.writeItem(new TodoItem(7L, "item7"), output));
+
+        UnknownFieldSet item = UnknownFieldSet.parseFrom(encoded);
+        assertEquals(2, item.asMap().size());
+        assertEquals(TodoItem.Status.OPEN, TodoListProtobuf.readItem(CodedInputStream.newInstance(encoded))
+                .getStatus());
+    }
+
+    @Test
+    public void itemWithoutIdGetsTheDefaultId() throws IOException {
+        byte[] encoded = encode(output -> output.writeString(2, "new item"));
+
+        TodoItem item = TodoListProtobuf.readItem(CodedInputStream.newInstance(encoded));
+        assertEquals(new TodoItem("new item").getId(), item.getId());
+        assertEquals("new item", item.getContent());
+    }
+
+    @Test
+    public void unknownFieldsAreSkipped() throws IOException {
+        byte[] encoded = encode(output -> {
+            output.writeInt64(1, 4L);
+            output.writeString(15, "from a newer schema");
+            output.writeFixed32(16, 42);
+            output.writeString(2, "item4");
+        });
+
+        TodoItem item = TodoListProtobuf.readItem(CodedInputStream.newInstance(encoded));
+        assertEquals(Long.valueOf(4), item.getId());
+        assertEquals("item4", item.getContent());
+    }
+
+    @Test
+    public void idsArePackedButAlsoReadUnpacked() throws IOException {
+        byte[] packed = encode(output -> TodoListProtobuf.writeIds(Arrays.asList(1L, 200L, 1L << 40), output));
+        assertEquals(1, UnknownFieldSet.parseFrom(packed).getField(1).getLengthDelimitedList().size());
+        assertEquals(Arrays.asList(1L, 200L, 1L << 40),
+                TodoListProtobuf.readIds(CodedInputStream.newInstance(packed)));
+
+        byte[] unpacked = encode(output -> {
+            output.writeInt64(1, 5L);
+            output.writeInt64(1, 6L);
+        });
+        assertEquals(Arrays.asList(5L, 6L), TodoListProtobuf.readIds(CodedInputStream.newInstance(unpacked)));
+    }
+
+    @Test
+    public void resultsRoundTrip() throws IOException {
+        byte[] encoded = encode(output -> TodoListProtobuf.writeResults(Arrays.asList(
+                new BatchItemResult(201, 3L), new BatchItemResult(409, null)), output));
+
+        List<BatchItemResult> results = TodoListProtobuf.readResults(CodedInputStream.newInstance(encoded));
+        assertEquals(2, results.size());
+        assertEquals(201, results.get(0).getStatus());
+        assertEquals(Long.valueOf(3), results.get(0).getId());
+        assertEquals(409, results.get(1).getStatus());
+        assertNull(results.get(1).getId());
+    }
+
+    private static byte[] encode(Encoder encoder) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CodedOutputStream output = CodedOutputStream.newInstance(bytes);
+        encoder.encode(output);
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private interface Encoder {
+        void encode(CodedOutputStream output) throws IOException;
+    }
+}